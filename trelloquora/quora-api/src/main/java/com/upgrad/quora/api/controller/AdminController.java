@@ -37,8 +37,8 @@ public class AdminController {
       @PathVariable("userId") final String userId,
       @RequestHeader("authorization") final String authorization)
       throws AuthorizationFailedException, UserNotFoundException {
-        UserEntity deleteUserEntity = adminBusinessService.deleteUser(userId, authorization);
-        UserDeleteResponse userDeleteResponse = new UserDeleteResponse().id(deleteUserEntity.getUuid()).status("USER SUCCESSFULLY DELETED");
+        UserEntity deleteUserEntity = adminBusinessService.deleteUser(Uuids.parse(userId), authorization);
+        UserDeleteResponse userDeleteResponse = new UserDeleteResponse().id(deleteUserEntity.getUuid().toString()).status("USER SUCCESSFULLY DELETED");
 
         return new ResponseEntity<UserDeleteResponse>(userDeleteResponse, HttpStatus.OK);
     }
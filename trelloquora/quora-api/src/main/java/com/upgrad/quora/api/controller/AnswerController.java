@@ -1,20 +1,28 @@
 package com.upgrad.quora.api.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.upgrad.quora.api.model.AnswerResponse;
 import com.upgrad.quora.api.model.AnswerRequest;
+import com.upgrad.quora.api.model.AnswerBulkItemResult;
+import com.upgrad.quora.api.model.AnswerBulkResponse;
 import com.upgrad.quora.api.model.AnswerEditRequest;
 import com.upgrad.quora.api.model.AnswerEditResponse;
 import com.upgrad.quora.api.model.AnswerDeleteResponse;
 import com.upgrad.quora.api.model.AnswerDetailsResponse;
 
 import com.upgrad.quora.service.business.QuestionBusinessService;
+import com.upgrad.quora.service.dto.AnswerSummary;
+import com.upgrad.quora.service.dto.BulkItemResult;
+import com.upgrad.quora.service.dto.QuestionSnapshot;
 import com.upgrad.quora.service.entity.AnswerEntity;
 import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.exception.AnswerNotFoundException;
 
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.BulkRequestRejectedException;
 
 import com.upgrad.quora.service.exception.InvalidQuestionException;
+import com.upgrad.quora.service.exception.ServiceUnavailableException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -24,12 +32,16 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestHeader;
+import com.upgrad.quora.service.business.BulkWriter;
 import com.upgrad.quora.service.business.AnswerBusinessService;
+import com.upgrad.quora.service.business.EntityIdGenerator;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Class - AnswerController
@@ -45,6 +57,12 @@ public class AnswerController {
     @Autowired
     private QuestionBusinessService questionBusinessService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private BulkWriter bulkWriter;
+
     /**
      * Handles "question/{questionId}/answer/create" endpoint which is used to create answer for a
      * given question Uuid.
@@ -68,13 +86,13 @@ public class AnswerController {
             final AnswerRequest request)
             throws AuthorizationFailedException, InvalidQuestionException {
 
-        //Retrieve the question entity from question uuid
-        QuestionEntity quesEntity = questionBusinessService.getQuestion(questionUuid);
+        //Retrieve a reference to the question entity from question uuid
+        QuestionEntity quesEntity = questionBusinessService.getQuestionReference(Uuids.parse(questionUuid));
 
         //Prepare the answer entity object which will used in create answer
         AnswerEntity answerEntity = new AnswerEntity();
         answerEntity.setQuestion(quesEntity);
-        answerEntity.setUuid(UUID.randomUUID().toString());
+        answerEntity.setUuid(EntityIdGenerator.nextId());
         answerEntity.setAns(request.getAnswer());
         Timestamp date = new Timestamp(System.currentTimeMillis());
         answerEntity.setDate(date);
@@ -83,12 +101,59 @@ public class AnswerController {
         final AnswerEntity createdAnswerEntity = answerBusinessService.createAnswer(answerEntity,authorization);
 
         //If the Answer got created successfully it will return AnswerResponse else it will throw exception
-        final AnswerResponse answerResponse = new AnswerResponse().id(createdAnswerEntity.getUuid()).status("ANSWER CREATED");
+        final AnswerResponse answerResponse = new AnswerResponse().id(createdAnswerEntity.getUuid().toString()).status("ANSWER CREATED");
 
         return new ResponseEntity<AnswerResponse>(answerResponse,HttpStatus.CREATED);
 
     }
 
+    /**
+     * Handles "question/{questionId}/answer/bulk" endpoint which is used to create many Answers to a Question with a
+     * single request. The answers which are not valid are reported and skipped, the others are created.
+     *
+     * @param @PathVariable("questionId")
+     * @param @RequestHeader("authorization") - JWT Token can be found from "/user/signin" endpoints
+     * @param body - JSON array of AnswerRequest, read one element at a time
+     *
+     * @return ResponseEntity<AnswerBulkResponse> - result of every answer, in request order
+     * @throws AuthorizationFailedException
+     * @throws InvalidQuestionException
+     * @throws BulkRequestRejectedException
+     */
+    @RequestMapping(method = RequestMethod.POST,
+            path="question/{questionId}/answer/bulk",
+            consumes = MediaType.APPLICATION_JSON_UTF8_VALUE,
+            produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<AnswerBulkResponse> createAnswers(
+            @RequestHeader("authorization") final String authorization,
+            @PathVariable("questionId") final String questionUuid,
+            final InputStream body)
+            throws AuthorizationFailedException, InvalidQuestionException, BulkRequestRejectedException {
+
+        // the body is only read once the token and the question are checked
+        final List<BulkItemResult> results = answerBusinessService.createAnswers(Uuids.parse(questionUuid), () -> {
+            final List<AnswerRequest> requests = JsonArrayStreamReader.read(objectMapper, body, AnswerRequest.class, bulkWriter.getMaxItems());
+            final List<String> answers = new ArrayList<>(requests.size());
+            for (AnswerRequest request : requests) {
+                answers.add(request == null ? null : request.getAnswer());
+            }
+            return answers;
+        }, authorization);
+
+        final AnswerBulkResponse answerBulkResponse = new AnswerBulkResponse()
+                .created(BulkItemResult.count(results, BulkItemResult.Status.CREATED))
+                .rejected(BulkItemResult.count(results, BulkItemResult.Status.REJECTED))
+                .failed(BulkItemResult.count(results, BulkItemResult.Status.FAILED))
+                .results(new ArrayList<>(results.size()));
+        for (BulkItemResult result : results) {
+            answerBulkResponse.addResultsItem(new AnswerBulkItemResult().index(result.getIndex())
+                    .id(result.getUuid() == null ? null : result.getUuid().toString())
+                    .status(result.getStatus().name()).code(result.getCode()).message(result.getMessage()));
+        }
+
+        return new ResponseEntity<AnswerBulkResponse>(answerBulkResponse, HttpStatus.OK);
+    }
+
     /**
      * Handles "answer/edit/{answerId}" endpoint which is used to edit an existing Answer.
      *
@@ -113,7 +178,7 @@ public class AnswerController {
         // 2. Then update the Answer Content
         // Finally update Answer in DB.
         //Retrieve the answer entity from answer uuid from answerBusinessService
-        AnswerEntity answerEntity = answerBusinessService.getAnswerByAnswerUuid(answerUuid,authorization);
+        AnswerEntity answerEntity = answerBusinessService.getAnswerByAnswerUuid(Uuids.parse(answerUuid),authorization);
         answerEntity.setAns(editRequest.getContent());
         Timestamp date = new Timestamp(System.currentTimeMillis());
         answerEntity.setDate(date);
@@ -122,7 +187,7 @@ public class AnswerController {
         AnswerEntity updatedAnswerEntity = answerBusinessService.updateAnswer(answerEntity,authorization);
 
         //If the Answer got updated successfully it will return AnswerEditResponse else it will throw exception
-        AnswerEditResponse answerEditResponse = new AnswerEditResponse().id(updatedAnswerEntity.getUuid()).status("ANSWER EDITED");
+        AnswerEditResponse answerEditResponse = new AnswerEditResponse().id(updatedAnswerEntity.getUuid().toString()).status("ANSWER EDITED");
 
         return new ResponseEntity<AnswerEditResponse>(answerEditResponse, HttpStatus.OK);
     }
@@ -146,10 +211,10 @@ public class AnswerController {
             throws AuthorizationFailedException, AnswerNotFoundException {
         // Who all are allowed to delete the answer only user or admin as well.
         //Delete the answer entity from the DB by invoking deleteAnswer from answerBusinessService
-        AnswerEntity updatedAnswerEntity = answerBusinessService.deleteAnswer(answerUuid, authorization);
+        AnswerEntity updatedAnswerEntity = answerBusinessService.deleteAnswer(Uuids.parse(answerUuid), authorization);
 
         //If the Answer got deleted successfully it will return AnswerDeleteResponse else it will throw exception
-        AnswerDeleteResponse deleteResponse = new AnswerDeleteResponse().id(updatedAnswerEntity.getUuid()).status("ANSWER DELETED");
+        AnswerDeleteResponse deleteResponse = new AnswerDeleteResponse().id(updatedAnswerEntity.getUuid().toString()).status("ANSWER DELETED");
 
         return new ResponseEntity<AnswerDeleteResponse>(deleteResponse, HttpStatus.OK);
 
@@ -164,6 +229,7 @@ public class AnswerController {
      * @return ResponseEntity<AnswerDetailsResponse>
      * @throws AuthorizationFailedException
      * @throws InvalidQuestionException
+     * @throws ServiceUnavailableException
      */
     @RequestMapping(method = RequestMethod.GET,
             path="answer/all/{questionId}",
@@ -171,26 +237,62 @@ public class AnswerController {
         public ResponseEntity<List<AnswerDetailsResponse>> getAllAnswerToQuestion(
                 @RequestHeader("authorization") final String authorization,
                 @PathVariable("questionId") final String questionUuid)
-            throws  AuthorizationFailedException,InvalidQuestionException {
-        // First get question using questionUuid, then find the questionId and for that question Id get all the answers.
-        QuestionEntity quesEntity = questionBusinessService.getQuestion(questionUuid);
-
-        //Get all question by question ID by invoking getAllAnswerByQuestionId method from answerBusinessService
-        List<AnswerEntity> answerEntities = answerBusinessService.getAllAnswersByQuestionId(quesEntity.getId(),authorization);
+            throws  AuthorizationFailedException,InvalidQuestionException,ServiceUnavailableException {
+        //Get the question and all its answers at once by invoking getAllAnswersByQuestionUuid method from answerBusinessService
+        List<AnswerSummary> answerEntities = answerBusinessService.getAllAnswersByQuestionUuid(Uuids.parse(questionUuid),authorization);
 
         // Build the answer responses.
         List<AnswerDetailsResponse> answerDetailsResponses = new ArrayList<>();
 
-        for (AnswerEntity answerEntity : answerEntities) {
+        for (AnswerSummary answerEntity : answerEntities) {
             answerDetailsResponses.add(
                     new AnswerDetailsResponse()
-                            .id(answerEntity.getUuid())
-                            .questionContent(answerEntity.getQuestion().getContent())
-                             .answerContent(answerEntity.getAns())
+                            .id(answerEntity.getUuid().toString())
+                            .questionContent(answerEntity.getQuestionContent())
+                             .answerContent(answerEntity.getAnswerContent())
             ) ;
         }
         return new ResponseEntity<>(answerDetailsResponses,HttpStatus.OK);
 
     }
 
+    /**
+     * Handles "answer/all/{questionId}/stream" endpoint which is used to retrieve every answer for a given question
+     * uuid at once. Answers are read in chunks, each in its own short transaction, and written to the response as
+     * they come, so the memory used does not depend on the number of answers. A failure after the response was
+     * committed leaves the JSON array unclosed.
+     *
+     * @param @PathVariable("questionId")
+     * @param @RequestHeader("authorization") - JWT Token can be found from "/user/signin" endpoints
+     * @param response
+     *
+     * @throws AuthorizationFailedException
+     * @throws InvalidQuestionException
+     * @throws IOException
+     */
+    @RequestMapping(method = RequestMethod.GET,
+            path="answer/all/{questionId}/stream",
+            produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public void streamAllAnswerToQuestion(
+            @RequestHeader("authorization") final String authorization,
+            @PathVariable("questionId") final String questionUuid,
+            final HttpServletResponse response)
+            throws AuthorizationFailedException, InvalidQuestionException, IOException {
+        QuestionSnapshot questionSnapshot = questionBusinessService.getQuestion(Uuids.parse(questionUuid));
+        final String questionContent = questionSnapshot.getContent();
+        final JsonArrayStreamWriter writer = new JsonArrayStreamWriter(objectMapper, response);
+
+        try {
+            //Stream all answers by question ID by invoking streamAllAnswersByQuestionId method from answerBusinessService
+            answerBusinessService.streamAllAnswersByQuestionId(questionSnapshot.getId(), authorization,
+                    (uuid, answerContent) -> writer.writeObject("id", uuid.toString(), "questionContent", questionContent,
+                            "answerContent", answerContent));
+        } catch (RuntimeException e) {
+            // a response already committed is left truncated, without the closing bracket of the array
+            writer.abort(e);
+            return;
+        }
+
+        writer.close();
+    }
 }
@@ -32,7 +32,7 @@ public class CommonController
     public ResponseEntity<UserDetailsResponse> userProfile(@PathVariable("userId") final String Uuid, @RequestHeader("authorization") final String authorization)
             throws AuthorizationFailedException, UserNotFoundException {
 
-        final UserEntity userEntity = userBusinessService.getUserProfile(Uuid, authorization);
+        final UserEntity userEntity = userBusinessService.getUserProfile(Uuids.parse(Uuid), authorization);
 
         UserDetailsResponse userDetailsResponse = new UserDetailsResponse().userName(userEntity.getUsername())
                 .firstName(userEntity.getFirstName())
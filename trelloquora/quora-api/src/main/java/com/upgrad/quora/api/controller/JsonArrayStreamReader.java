@@ -0,0 +1,54 @@
+package com.upgrad.quora.api.controller;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.upgrad.quora.service.exception.BulkRequestRejectedException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a JSON array of objects from a request body, one element at a time. At most one element more than allowed is
+ * read: the size check of the bulk request then rejects it without the rest of the body being parsed, whereas a
+ * List request body is materialized whole before it can be counted.
+ */
+class JsonArrayStreamReader {
+
+    private JsonArrayStreamReader() {
+    }
+
+    /**
+     * @param objectMapper
+     * @param body - request body
+     * @param type - type of the array elements
+     * @param maxItems - number of elements allowed
+     * @return elements of the array in order, null for a null element; maxItems + 1 elements if there are more
+     * @throws BulkRequestRejectedException if the body is not a JSON array of elements of the type
+     */
+    static <T> List<T> read(final ObjectMapper objectMapper, final InputStream body, final Class<T> type,
+                            final int maxItems) throws BulkRequestRejectedException {
+        final List<T> items = new ArrayList<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw notAnArray();
+            }
+            while (items.size() <= maxItems && parser.nextToken() != JsonToken.END_ARRAY) {
+                items.add(parser.currentToken() == JsonToken.VALUE_NULL ? null : objectMapper.readValue(parser, type));
+            }
+        } catch (JsonProcessingException e) {
+            throw notAnArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return items;
+    }
+
+    private static BulkRequestRejectedException notAnArray() {
+        return new BulkRequestRejectedException("BLK-004", "Bulk request is not a JSON array of items");
+    }
+}
@@ -0,0 +1,92 @@
+package com.upgrad.quora.api.controller;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes a JSON array of objects straight to the servlet output stream, one element at a time.
+ * Nothing is written before the first element, so that an error raised before any element was read can still be
+ * answered with a regular error response. Once the response is committed a failure can no longer change its status:
+ * the array is then left without its closing bracket, which is how a client tells a truncated list from a complete one.
+ */
+class JsonArrayStreamWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JsonArrayStreamWriter.class);
+
+    private final ObjectMapper objectMapper;
+
+    private final HttpServletResponse response;
+
+    private JsonGenerator generator;
+
+    JsonArrayStreamWriter(final ObjectMapper objectMapper, final HttpServletResponse response) {
+        this.objectMapper = objectMapper;
+        this.response = response;
+    }
+
+    /**
+     * Writes one array element with the given fields
+     * @param fieldsAndValues - field name, value, field name, value...
+     */
+    void writeObject(final String... fieldsAndValues) {
+        try {
+            if (generator == null) {
+                response.setStatus(HttpStatus.OK.value());
+                response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+                generator = objectMapper.getFactory().createGenerator(response.getOutputStream(), JsonEncoding.UTF8);
+                generator.writeStartArray();
+            }
+            generator.writeStartObject();
+            for (int i = 0; i < fieldsAndValues.length; i += 2) {
+                generator.writeStringField(fieldsAndValues[i], fieldsAndValues[i + 1]);
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            // the client went away, abort the database cursor as well
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Ends a stream which failed before its last element. If nothing has reached the client yet the response is
+     * reset and the failure rethrown, to be answered with a regular error response. Otherwise the elements written so
+     * far are flushed and the array is left open, nothing else is appended to the response.
+     * @param failure
+     */
+    void abort(final RuntimeException failure) {
+        if (generator == null || !response.isCommitted()) {
+            generator = null;
+            response.resetBuffer();
+            throw failure;
+        }
+        LOG.warn("Streamed response truncated after it was committed", failure);
+        try {
+            generator.flush();
+        } catch (IOException e) {
+            // the client went away
+        }
+    }
+
+    /**
+     * Closes the array and flushes the response
+     * @throws IOException
+     */
+    void close() throws IOException {
+        if (generator == null) {
+            response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+            generator = objectMapper.getFactory().createGenerator(response.getOutputStream(), JsonEncoding.UTF8);
+            generator.writeStartArray();
+        }
+        generator.writeEndArray();
+        generator.close();
+    }
+}
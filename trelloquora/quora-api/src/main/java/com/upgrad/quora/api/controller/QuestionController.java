@@ -1,16 +1,26 @@
 package com.upgrad.quora.api.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.upgrad.quora.service.business.BulkWriter;
+import com.upgrad.quora.service.business.EntityIdGenerator;
+import com.upgrad.quora.service.business.Page;
 import com.upgrad.quora.service.business.QuestionBusinessService;
+import com.upgrad.quora.service.dto.BulkItemResult;
+import com.upgrad.quora.service.dto.QuestionSummary;
 import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.BulkRequestRejectedException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import com.upgrad.quora.api.model.QuestionBulkItemResult;
+import com.upgrad.quora.api.model.QuestionBulkResponse;
 import com.upgrad.quora.api.model.QuestionRequest;
 import com.upgrad.quora.api.model.QuestionResponse;
 import com.upgrad.quora.api.model.QuestionDetailsResponse;
@@ -18,10 +28,12 @@ import com.upgrad.quora.api.model.QuestionDeleteResponse;
 import com.upgrad.quora.api.model.QuestionEditRequest;
 import com.upgrad.quora.api.model.QuestionEditResponse;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Class - QuestionController
@@ -34,6 +46,12 @@ public class QuestionController {
     @Autowired
     private QuestionBusinessService questionBusinessService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private BulkWriter bulkWriter;
+
     /**
      * Handles "/question/create" endpoint which is used to create a question.
      *
@@ -55,7 +73,7 @@ public class QuestionController {
 
         //Preparing the question Entity
         QuestionEntity questionEntity = new QuestionEntity();
-        questionEntity.setUuid(UUID.randomUUID().toString());
+        questionEntity.setUuid(EntityIdGenerator.nextId());
         questionEntity.setContent(questionRequest.getContent());
         Timestamp date = new Timestamp(System.currentTimeMillis());
         questionEntity.setDate(date);
@@ -64,15 +82,63 @@ public class QuestionController {
         final QuestionEntity createdQuestionEntity = questionBusinessService.createQuestion(questionEntity, authorization);
 
         //If the Question got created successfully it will return QuestionResponse else it will throw exception
-        final QuestionResponse questionResponse = new QuestionResponse().id(createdQuestionEntity.getUuid()).status("QUESTION CREATED");
+        final QuestionResponse questionResponse = new QuestionResponse().id(createdQuestionEntity.getUuid().toString()).status("QUESTION CREATED");
 
         return new ResponseEntity<QuestionResponse>(questionResponse, HttpStatus.CREATED);
     }
 
     /**
-     * Handles "/question/all" endpoint which is used to retrieve all question.
+     * Handles "/question/bulk" endpoint which is used to create many questions with a single request. The questions
+     * which are not valid are reported and skipped, the others are created.
+     *
+     * @param body - JSON array of QuestionRequest, read one element at a time
+     * @param @RequestHeader("authorization") - JWT Token can be found from "/user/signin" endpoints
+     *
+     * @return ResponseEntity<QuestionBulkResponse> - result of every question, in request order
+     * @throws AuthorizationFailedException
+     * @throws BulkRequestRejectedException
+     *
+     */
+    @RequestMapping(method = RequestMethod.POST,
+            path="/bulk",
+            consumes = MediaType.APPLICATION_JSON_UTF8_VALUE,
+            produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<QuestionBulkResponse> createQuestions(
+            @RequestHeader("authorization") final String authorization,
+            final InputStream body)
+            throws AuthorizationFailedException, BulkRequestRejectedException {
+
+        // the body is only read once the token is checked
+        final List<BulkItemResult> results = questionBusinessService.createQuestions(() -> {
+            final List<QuestionRequest> questionRequests = JsonArrayStreamReader.read(objectMapper, body, QuestionRequest.class, bulkWriter.getMaxItems());
+            final List<String> contents = new ArrayList<>(questionRequests.size());
+            for (QuestionRequest questionRequest : questionRequests) {
+                contents.add(questionRequest == null ? null : questionRequest.getContent());
+            }
+            return contents;
+        }, authorization);
+
+        final QuestionBulkResponse questionBulkResponse = new QuestionBulkResponse()
+                .created(BulkItemResult.count(results, BulkItemResult.Status.CREATED))
+                .rejected(BulkItemResult.count(results, BulkItemResult.Status.REJECTED))
+                .failed(BulkItemResult.count(results, BulkItemResult.Status.FAILED))
+                .results(new ArrayList<>(results.size()));
+        for (BulkItemResult result : results) {
+            questionBulkResponse.addResultsItem(new QuestionBulkItemResult().index(result.getIndex())
+                    .id(result.getUuid() == null ? null : result.getUuid().toString())
+                    .status(result.getStatus().name()).code(result.getCode()).message(result.getMessage()));
+        }
+
+        return new ResponseEntity<QuestionBulkResponse>(questionBulkResponse, HttpStatus.OK);
+    }
+
+    /**
+     * Handles "/question/all" endpoint which is used to retrieve all question, one page at a time, newest first.
+     * The "next-cursor" response header carries the cursor of the next page and is absent on the last page.
      *
      * @param @RequestHeader("authorization") - JWT Token can be found from "/user/signin" endpoints
+     * @param @RequestParam("cursor") - cursor of the page to retrieve, absent for the first page
+     * @param @RequestParam("limit") - number of questions per page
      *
      * @return <List<QuestionDetailsResponse>>
      * @throws AuthorizationFailedException
@@ -83,18 +149,60 @@ public class QuestionController {
             path="/all",
             produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<List<QuestionDetailsResponse>> getAllQuestions(
-            @RequestHeader("authorization") final String authorization)
+            @RequestHeader("authorization") final String authorization,
+            @RequestParam(value = "cursor", required = false) final String cursor,
+            @RequestParam(value = "limit", required = false) final Integer limit)
             throws AuthorizationFailedException, InvalidQuestionException {
-        //Retrieve all the question from DB by invoking the getAllQuestions method in questionBusinessService
-        List<QuestionEntity> questionEntities = questionBusinessService.getAllQuestions(authorization);
+        //Retrieve one page of questions from DB by invoking the getAllQuestions method in questionBusinessService
+        Page<QuestionSummary> page = questionBusinessService.getAllQuestions(authorization, cursor, limit);
 
         //If the Questions got retrieved successfully it will return QuestionDetailsResponse else it will throw exception
-        List<QuestionDetailsResponse> questionResponses = entitiesToResponse(questionEntities);
+        List<QuestionDetailsResponse> questionResponses = entitiesToResponse(page.getItems());
 
-        return new ResponseEntity(questionResponses, HttpStatus.OK);
+        HttpHeaders headers = new HttpHeaders();
+        if (page.hasNext()) {
+            headers.add("next-cursor", page.getNextCursor());
+        }
+
+        return new ResponseEntity(questionResponses, headers, HttpStatus.OK);
     }
 
 
+    /**
+     * Handles "/question/all/stream" endpoint which is used to retrieve every question at once, newest first.
+     * Questions are read in chunks, each in its own short transaction, and written to the response as they come, so
+     * the memory used does not depend on the number of questions. A failure after the response was committed leaves
+     * the JSON array unclosed.
+     *
+     * @param @RequestHeader("authorization") - JWT Token can be found from "/user/signin" endpoints
+     * @param response
+     *
+     * @throws AuthorizationFailedException
+     * @throws InvalidQuestionException
+     * @throws IOException
+     */
+    @RequestMapping(method = RequestMethod.GET,
+            path="/all/stream",
+            produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public void streamAllQuestions(
+            @RequestHeader("authorization") final String authorization,
+            final HttpServletResponse response)
+            throws AuthorizationFailedException, InvalidQuestionException, IOException {
+        final JsonArrayStreamWriter writer = new JsonArrayStreamWriter(objectMapper, response);
+
+        try {
+            //Stream all the questions from DB by invoking the streamAllQuestions method in questionBusinessService
+            questionBusinessService.streamAllQuestions(authorization,
+                    (uuid, content) -> writer.writeObject("id", uuid.toString(), "content", content));
+        } catch (RuntimeException e) {
+            // a response already committed is left truncated, without the closing bracket of the array
+            writer.abort(e);
+            return;
+        }
+
+        writer.close();
+    }
+
     /**
      * Handles "/question/edit/{questionId}" endpoint which is used to edit a given question.
      *
@@ -117,8 +225,8 @@ public class QuestionController {
             final QuestionEditRequest questionRequest)
             throws AuthorizationFailedException, InvalidQuestionException {
 
-        //Retrieve the question from DB by invoking the getQuestion method in questionBusinessService
-        QuestionEntity questionEntity = questionBusinessService.getQuestion(questionId);
+        //Retrieve the question and its owner from DB by invoking the getQuestionWithUser method in questionBusinessService
+        QuestionEntity questionEntity = questionBusinessService.getQuestionWithUser(Uuids.parse(questionId));
         questionEntity.setContent(questionRequest.getContent());
         Timestamp date = new Timestamp(System.currentTimeMillis());
         questionEntity.setDate(date);
@@ -127,7 +235,7 @@ public class QuestionController {
         QuestionEntity updatedQuestionEntity = questionBusinessService.updateQuestion(questionEntity, authorization);
 
         //If the Questions got edited successfully it will return QuestionResponse else it will throw exception
-        QuestionEditResponse questionResponse = new QuestionEditResponse().id(updatedQuestionEntity.getUuid()).status("QUESTION EDITED");
+        QuestionEditResponse questionResponse = new QuestionEditResponse().id(updatedQuestionEntity.getUuid().toString()).status("QUESTION EDITED");
 
         return new ResponseEntity<QuestionEditResponse>(questionResponse, HttpStatus.OK);
     }
@@ -152,10 +260,10 @@ public class QuestionController {
             throws AuthorizationFailedException, InvalidQuestionException {
 
         //Delete the question entity from the DB by invoking deleteQuestion from questionBusinessService
-        QuestionEntity updatedQuestionEntity = questionBusinessService.deleteQuestion(questionId, authorization);
+        QuestionEntity updatedQuestionEntity = questionBusinessService.deleteQuestion(Uuids.parse(questionId), authorization);
 
         //If the question got deleted successfully it will return QuestionResponse else it will throw exception
-        QuestionDeleteResponse questionResponse = new QuestionDeleteResponse().id(updatedQuestionEntity.getUuid()).status("QUESTION DELETED");
+        QuestionDeleteResponse questionResponse = new QuestionDeleteResponse().id(updatedQuestionEntity.getUuid().toString()).status("QUESTION DELETED");
 
         return new ResponseEntity<QuestionDeleteResponse>(questionResponse, HttpStatus.OK);
     }
@@ -180,7 +288,7 @@ public class QuestionController {
             throws AuthorizationFailedException, InvalidQuestionException, UserNotFoundException {
 
         //Retrieve all the question raised by an user by invoking getAllQuestionsByUser method from questionBusinessService Object
-        List<QuestionEntity> questionEntities = questionBusinessService.getAllQuestionsByUser(userId, authorization);
+        List<QuestionSummary> questionEntities = questionBusinessService.getAllQuestionsByUser(Uuids.parse(userId), authorization);
 
         //Retrieve the QuestionDetailsResponse list
         List<QuestionDetailsResponse> questionResponses = entitiesToResponse(questionEntities);
@@ -189,17 +297,17 @@ public class QuestionController {
     }
 
     /**
-     * Utility method to use adn convert the list of QuestionEntities to list of QuestionDetailsResponse
+     * Utility method to use adn convert the list of QuestionSummaries to list of QuestionDetailsResponse
      *
      * @param questionEntities
      * @return List<QuestionDetailsResponse>
      */
-    private List<QuestionDetailsResponse> entitiesToResponse(List<QuestionEntity> questionEntities) {
-        List<QuestionDetailsResponse> questionResponses = new ArrayList<>();
-        for (QuestionEntity questionEntity : questionEntities) {
+    private List<QuestionDetailsResponse> entitiesToResponse(List<QuestionSummary> questionEntities) {
+        List<QuestionDetailsResponse> questionResponses = new ArrayList<>(questionEntities.size());
+        for (QuestionSummary questionEntity : questionEntities) {
             questionResponses.add(
                     new QuestionDetailsResponse()
-                            .id(questionEntity.getUuid())
+                            .id(questionEntity.getUuid().toString())
                             .content(questionEntity.getContent())
             ) ;
         }
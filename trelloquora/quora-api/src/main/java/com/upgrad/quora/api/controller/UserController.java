@@ -4,10 +4,13 @@ import com.upgrad.quora.api.model.SigninResponse;
 import com.upgrad.quora.api.model.SignoutResponse;
 import com.upgrad.quora.api.model.SignupUserRequest;
 import com.upgrad.quora.api.model.SignupUserResponse;
+import com.upgrad.quora.service.business.EntityIdGenerator;
 import com.upgrad.quora.service.business.UserBusinessService;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthenticationFailedException;
+import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.ServiceUnavailableException;
 import com.upgrad.quora.service.exception.SignOutRestrictedException;
 import com.upgrad.quora.service.exception.SignUpRestrictedException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,7 +24,6 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Base64;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/user")
@@ -36,6 +38,7 @@ public class UserController {
    * @param SignupUserRequest
    * @return ResponseEntity<SignupUserResponse>
    * @throws SignUpRestrictedException
+   * @throws ServiceUnavailableException
    */
   @RequestMapping(
       method = RequestMethod.POST,
@@ -43,11 +46,11 @@ public class UserController {
       consumes = MediaType.APPLICATION_JSON_UTF8_VALUE,
       produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
   public ResponseEntity<SignupUserResponse> signup(final SignupUserRequest signupUserRequest)
-      throws SignUpRestrictedException {
+      throws SignUpRestrictedException, ServiceUnavailableException {
 
         //Fill in the UserEntity object with the information received on SignupUserRequest
         final UserEntity userEntity = new UserEntity();
-        userEntity.setUuid(UUID.randomUUID().toString());
+        userEntity.setUuid(EntityIdGenerator.nextId());
         userEntity.setFirstName(signupUserRequest.getFirstName());
         userEntity.setLastName(signupUserRequest.getLastName());
         userEntity.setUsername(signupUserRequest.getUserName());
@@ -68,7 +71,7 @@ public class UserController {
         final UserEntity createdUserEntity = userBusinessService.signup(userEntity);
 
         SignupUserResponse signupUserResponse =
-                new SignupUserResponse().id(createdUserEntity.getUuid()).status("USER SUCCESSFULLY REGISTERED");
+                new SignupUserResponse().id(createdUserEntity.getUuid().toString()).status("USER SUCCESSFULLY REGISTERED");
         return new ResponseEntity<SignupUserResponse>(signupUserResponse, HttpStatus.CREATED);
     }
 
@@ -79,6 +82,7 @@ public class UserController {
    * @param RequestHeader("authorization") - Base64 format of username:password
    * @return ResponseEntity<SigninResponse>
    * @throws AuthenticationFailedException
+   * @throws ServiceUnavailableException
    */
   @RequestMapping(
       method = RequestMethod.POST,
@@ -86,7 +90,7 @@ public class UserController {
       produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
   public ResponseEntity<SigninResponse> signin(
       @RequestHeader("authorization") final String authorization)
-      throws AuthenticationFailedException {
+      throws AuthenticationFailedException, ServiceUnavailableException {
         try {
             //Split the authorization string which will be in the format "Basic <Base64 String>"
             //e.g., Basic dXNlcm5hbWU6cGFzc3dvcmQ=
@@ -103,12 +107,12 @@ public class UserController {
             //Otherwise it is a successful signin, so build SigninResponse object
 
             SigninResponse signinResponse = new SigninResponse()
-                    .id(UUID.fromString(userEntity.getUuid()).toString())
+                    .id(userEntity.getUuid().toString())
                     .message("Authenticated successfully");
 
             //add the access-token information to the header
             HttpHeaders headers = new HttpHeaders();
-            headers.add("access-token", userAuthEntity.getAccessToken());
+            headers.add("access-token", userAuthEntity.getIssuedToken());
 
             return new ResponseEntity<SigninResponse>(signinResponse, headers, HttpStatus.OK);
         }
@@ -143,9 +147,36 @@ public class UserController {
       throws SignOutRestrictedException {
         UserAuthEntity userAuthEntity = userBusinessService.signout(authorization);
 
-        SignoutResponse signoutResponse = new SignoutResponse().id(userAuthEntity.getUuid()).message("SIGNED OUT SUCCESSFULLY");
+        SignoutResponse signoutResponse = new SignoutResponse().id(userAuthEntity.getUuid().toString()).message("SIGNED OUT SUCCESSFULLY");
 
         return new ResponseEntity<SignoutResponse>(signoutResponse, HttpStatus.OK);
     }
 
+  /**
+   * Handles "/user/token/refresh" endpoint which is used to exchange a valid access token for a new one before
+   * it expires, without signing in again. The presented access token is no longer valid afterwards.
+   *
+   * @param RequestHeader("authorization") - auth token
+   * @return ResponseEntity<SigninResponse> with the new token in the "access-token" header
+   * @throws AuthorizationFailedException
+   */
+  @RequestMapping(
+      method = RequestMethod.POST,
+      path = "/token/refresh",
+      produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+  public ResponseEntity<SigninResponse> refreshToken(
+      @RequestHeader("authorization") final String authorization)
+      throws AuthorizationFailedException {
+        final UserAuthEntity userAuthEntity = userBusinessService.refresh(authorization);
+
+        SigninResponse signinResponse = new SigninResponse()
+                .id(userAuthEntity.getUser().getUuid().toString())
+                .message("Access token refreshed successfully");
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("access-token", userAuthEntity.getIssuedToken());
+
+        return new ResponseEntity<SigninResponse>(signinResponse, headers, HttpStatus.OK);
+    }
+
 }
@@ -0,0 +1,35 @@
+package com.upgrad.quora.api.controller;
+
+import java.util.UUID;
+
+/**
+ * Converts the ids received in request paths to the UUIDs stored in the database. An id which is not a UUID cannot
+ * match any row: it is converted to the nil UUID, which no entity has, so the endpoint checks the access token and
+ * reports its not found error in the same order as for any other unknown id.
+ */
+final class Uuids {
+
+    // never generated, neither by EntityIdGenerator nor for the legacy ids converted by migration V3
+    static final UUID NONE = new UUID(0L, 0L);
+
+    // canonical form only: UUID.fromString also accepts shortened groups such as "1-2-3-4-5"
+    private static final int LENGTH = 36;
+
+    private Uuids() {
+    }
+
+    /**
+     * @param id - id from the request path
+     * @return the UUID written as id, or NONE if the id is not a UUID
+     */
+    static UUID parse(final String id) {
+        if (id == null || id.length() != LENGTH) {
+            return NONE;
+        }
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return NONE;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.upgrad.quora.api.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Writes bulk requests through the controllers, with the entity manager opened for the whole request by
+ * open-in-view, so that a chunk rejected by the database is rolled back in the same persistence context the other
+ * chunks are then written with. A NUL character passes the validation of the service but not Postgres, which fails
+ * the chunk of the item at its flush.
+ * Runs against the database configured in application.yaml; the test creates its own user and deletes it afterwards.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "quora.bulk.chunk-size=2",
+        "quora.bulk.max-items=10",
+        "quora.session-reaper.initial-delay-ms=3600000",
+        "quora.token-filter.rebuild-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+
+public class BulkChunkRollbackTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String userUuid;
+
+    private String accessToken;
+
+    @Before
+    public void setUp() throws Exception {
+        final String userName = "bulk_" + UUID.randomUUID().toString().substring(0, 8);
+        MvcResult signup = mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated()).andReturn();
+        userUuid = JsonPath.read(signup.getResponse().getContentAsString(), "$.id");
+        final String credentials = Base64.getEncoder().encodeToString((userName + ":a").getBytes(StandardCharsets.UTF_8));
+        accessToken = mvc.perform(MockMvcRequestBuilders.post("/user/signin").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "Basic " + credentials))
+                .andExpect(status().isOk()).andReturn().getResponse().getHeader("access-token");
+    }
+
+    @After
+    public void tearDown() {
+        // questions, answers and sessions of the user are deleted by cascade
+        jdbcTemplate.update("delete from users where uuid = ?", UUID.fromString(userUuid));
+    }
+
+    //This test case passes when the chunk holding a question the database rejects is rolled back with its other
+    //question, and the chunks before and after it are stored.
+    @Test
+    public void rollsBackOnlyTheFailedQuestionChunk() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/question/bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken)
+                .content("[{\"content\":\"q0\"},{\"content\":\"q1\"},{\"content\":\"q2\\u0000\"},{\"content\":\"q3\"},{\"content\":\"\"},{\"content\":\"q5\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("created").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("rejected").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("failed").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("results[2].code").value("BLK-003"))
+                .andExpect(MockMvcResultMatchers.jsonPath("results[3].status").value("FAILED"))
+                .andExpect(MockMvcResultMatchers.jsonPath("results[4].code").value("QUES-003"))
+                .andExpect(MockMvcResultMatchers.jsonPath("results[5].status").value("CREATED"));
+
+        assertEquals(Arrays.asList("q0", "q1", "q5"), jdbcTemplate.queryForList(
+                "select q.content from question q join users u on u.id = q.user_id where u.uuid = ? order by q.content",
+                String.class, UUID.fromString(userUuid)));
+    }
+
+    //This test case passes when the chunk holding an answer the database rejects is rolled back, and the answers of
+    //the other chunks are stored under the question.
+    @Test
+    public void rollsBackOnlyTheFailedAnswerChunk() throws Exception {
+        MvcResult question = mvc.perform(MockMvcRequestBuilders.post("/question/create?content=my_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isCreated()).andReturn();
+        final String questionUuid = JsonPath.read(question.getResponse().getContentAsString(), "$.id");
+
+        mvc.perform(MockMvcRequestBuilders.post("/question/" + questionUuid + "/answer/bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken)
+                .content("[{\"answer\":\"a0\\u0000\"},{\"answer\":\"a1\"},{\"answer\":\"a2\"},null,{\"answer\":\"a4\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("created").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("rejected").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("failed").value(2));
+
+        final List<String> answers = jdbcTemplate.queryForList(
+                "select a.ans from answer a join question q on q.id = a.question_id where q.uuid = ? order by a.ans",
+                String.class, UUID.fromString(questionUuid));
+        assertEquals(Arrays.asList("a2", "a4"), answers);
+    }
+
+    //This test case passes when a request with more items than allowed is rejected as a whole, and so is a body which
+    //is not a JSON array of items.
+    @Test
+    public void rejectsOversizedAndMalformedRequests() throws Exception {
+        final StringBuilder oversized = new StringBuilder("[");
+        for (int i = 0; i < 11; i++) {
+            oversized.append(i == 0 ? "" : ",").append("{\"content\":\"q").append(i).append("\"}");
+        }
+        // the items past the limit are not read, the body may as well be truncated
+        oversized.append(",{\"content\":");
+        mvc.perform(MockMvcRequestBuilders.post("/question/bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken)
+                .content(oversized.toString()))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("BLK-002"));
+
+        mvc.perform(MockMvcRequestBuilders.post("/question/bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken)
+                .content("{\"content\":\"q0\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("BLK-004"));
+
+        assertEquals(Integer.valueOf(0), jdbcTemplate.queryForObject(
+                "select count(*) from question q join users u on u.id = q.user_id where u.uuid = ?",
+                Integer.class, UUID.fromString(userUuid)));
+    }
+
+    //This test case passes when a bulk request with a token which is not signed in is refused before its body is read,
+    //so a malformed body is reported as unauthorized rather than as a bad request.
+    @Test
+    public void authorizesBeforeReadingBody() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/question/bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "non_existing_access_token")
+                .content("{\"content\":\"q0\"}"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
+
+        mvc.perform(MockMvcRequestBuilders.post("/question/" + UUID.randomUUID() + "/answer/bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "non_existing_access_token")
+                .content("not json"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
+    }
+}
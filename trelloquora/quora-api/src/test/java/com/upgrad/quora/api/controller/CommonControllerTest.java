@@ -24,14 +24,14 @@ public class CommonControllerTest {
     //This test case passes when you try to get the details of the existing user and the JWT token entered exists in the database and the user corresponding to that JWT token is signed in.
     @Test
     public void details() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", "database_accesstoken"))
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/00000000-0000-4000-8000-000000001026").header("authorization", "database_accesstoken"))
                 .andExpect(status().isOk());
     }
 
     //This test case passes when you try to get the details of the existing user but the JWT token entered does not exist in the database.
     @Test
     public void detailsUsingNonExistingAccessToken() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", "non_existing_access_token"))
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/00000000-0000-4000-8000-000000001026").header("authorization", "non_existing_access_token"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
     }
@@ -0,0 +1,157 @@
+package com.upgrad.quora.api.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import com.upgrad.quora.service.business.OpaqueTokenProvider;
+import com.upgrad.quora.service.business.UserBusinessService;
+import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.entity.UserAuthEntity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Signs in with opaque tokens, of which only the SHA-256 digest is stored, and checks that tokens issued in either
+ * session mode keep working once the mode is switched. The mode is switched on the service itself between signins.
+ * Runs against the database configured in application.yaml; the test creates its own user and deletes it afterwards.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "quora.session.mode=opaque",
+        "quora.session-reaper.initial-delay-ms=3600000",
+        "quora.token-filter.rebuild-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+
+public class OpaqueSessionTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserBusinessService userBusinessService;
+
+    @Autowired
+    private OpaqueTokenProvider opaqueTokenProvider;
+
+    @Autowired
+    private UserDao userDao;
+
+    private String userName;
+
+    private String userUuid;
+
+    @Before
+    public void setUp() throws Exception {
+        userName = "opaque_" + UUID.randomUUID().toString().substring(0, 8);
+        MvcResult signup = mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated()).andReturn();
+        userUuid = JsonPath.read(signup.getResponse().getContentAsString(), "$.id");
+    }
+
+    @After
+    public void tearDown() {
+        setSessionMode("opaque");
+        // sessions of the user are deleted by cascade
+        jdbcTemplate.update("delete from users where uuid = ?", UUID.fromString(userUuid));
+    }
+
+    //This test case passes when a signin in opaque mode issues a 22 character token which is not stored, only its
+    //SHA-256 digest, and the session is found by that digest.
+    @Test
+    public void storesOnlyDigestOfOpaqueToken() throws Exception {
+        final String accessToken = signin();
+        assertTrue(accessToken, opaqueTokenProvider.isOpaqueToken(accessToken));
+
+        final Map<String, Object> row = jdbcTemplate.queryForMap(
+                "select a.access_token, a.access_token_digest from user_auth a join users u on u.id = a.user_id where u.uuid = ?",
+                UUID.fromString(userUuid));
+        assertNull(row.get("access_token"));
+        assertArrayEquals(opaqueTokenProvider.digest(accessToken), (byte[]) row.get("access_token_digest"));
+
+        final UserAuthEntity userAuthEntity = userDao.getUserAuthTokenByDigest(opaqueTokenProvider.digest(accessToken));
+        assertNotNull(userAuthEntity);
+        assertEquals(UUID.fromString(userUuid), userAuthEntity.getUuid());
+
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/" + userUuid).header("authorization", accessToken))
+                .andExpect(status().isOk());
+    }
+
+    //This test case passes when an opaque token which was never issued is refused as not signed in, and no session
+    //has its digest.
+    @Test
+    public void rejectsUnknownOpaqueToken() throws Exception {
+        signin();
+        final String unknownToken = opaqueTokenProvider.generateToken();
+
+        assertNull(userDao.getUserAuthTokenByDigest(opaqueTokenProvider.digest(unknownToken)));
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/" + userUuid).header("authorization", unknownToken))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
+        mvc.perform(MockMvcRequestBuilders.post("/user/token/refresh").header("authorization", unknownToken))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
+    }
+
+    //This test case passes when a JWT issued in jwt mode is accepted in opaque mode, and an opaque token issued in
+    //opaque mode is accepted in jwt mode, so the mode can be switched without signing anyone out.
+    @Test
+    public void acceptsTokensOfEitherMode() throws Exception {
+        final String opaqueToken = signin();
+        setSessionMode("jwt");
+        final String jwt = signin();
+        assertTrue(jwt, jwt.contains("."));
+
+        // jwt mode
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/" + userUuid).header("authorization", opaqueToken))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/" + userUuid).header("authorization", jwt))
+                .andExpect(status().isOk());
+
+        setSessionMode("opaque");
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/" + userUuid).header("authorization", jwt))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/user/signout").header("authorization", jwt))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/user/signout").header("authorization", opaqueToken))
+                .andExpect(status().isOk());
+    }
+
+    private String signin() throws Exception {
+        final String credentials = Base64.getEncoder().encodeToString((userName + ":a").getBytes(StandardCharsets.UTF_8));
+        return mvc.perform(MockMvcRequestBuilders.post("/user/signin").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "Basic " + credentials))
+                .andExpect(status().isOk()).andReturn().getResponse().getHeader("access-token");
+    }
+
+    private void setSessionMode(final String sessionMode) {
+        // the service is proxied for its transactions, the mode is a field of the target
+        ReflectionTestUtils.setField(AopTestUtils.getTargetObject(userBusinessService), "sessionMode", sessionMode);
+    }
+}
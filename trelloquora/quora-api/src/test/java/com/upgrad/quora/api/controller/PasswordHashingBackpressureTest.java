@@ -0,0 +1,115 @@
+package com.upgrad.quora.api.controller;
+
+import com.upgrad.quora.service.business.PasswordHashingExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Saturates the password hashing pool (one thread, a queue of one) and checks that signins are turned away at once
+ * with 503 and a Retry-After header, while requests which do not hash keep being served.
+ * Runs against the database configured in application.yaml; the test creates its own user and deletes it afterwards.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "quora.password-hashing.threads=1",
+        "quora.password-hashing.queue-capacity=1",
+        "quora.password-hashing.timeout-ms=30000",
+        "quora.password-hashing.retry-after-seconds=7"
+})
+@AutoConfigureMockMvc
+
+public class PasswordHashingBackpressureTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(2);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private String userName;
+
+    @Before
+    public void setUp() throws Exception {
+        userName = "hashing_" + UUID.randomUUID().toString().substring(0, 8);
+        mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated());
+
+        // one task occupies the only hashing thread, the other one the only queue slot
+        for (int i = 0; i < 2; i++) {
+            callers.submit(() -> passwordHashingExecutor.execute(() -> {
+                release.await();
+                return null;
+            }));
+        }
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (passwordHashingExecutor.getQueueDepth() < 1) {
+            assertTrue("the hashing pool was not saturated", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+        jdbcTemplate.update("delete from users where username = ?", userName);
+    }
+
+    //This test case passes when a signin finding the hashing pool full is answered 503 with a Retry-After header.
+    @Test
+    public void signinIsRejectedWhenHashingPoolIsFull() throws Exception {
+        final String credentials = Base64.getEncoder().encodeToString((userName + ":a").getBytes(StandardCharsets.UTF_8));
+        mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "7"))
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("SVC-001"));
+    }
+
+    //This test case passes when a signup finding the hashing pool full is answered 503 with a Retry-After header.
+    @Test
+    public void signupIsRejectedWhenHashingPoolIsFull() throws Exception {
+        final String otherUserName = userName + "_2";
+        mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + otherUserName + "&emailAddress=" + otherUserName + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "7"));
+    }
+
+    //This test case passes when requests which need no hashing, such as a signup with a taken username, are still
+    //answered while the hashing pool is full.
+    @Test
+    public void requestsWithoutHashingAreServedWhenHashingPoolIsFull() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=other&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isConflict())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("SGR-001"));
+    }
+}
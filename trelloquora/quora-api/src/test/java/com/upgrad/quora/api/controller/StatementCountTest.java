@@ -0,0 +1,187 @@
+package com.upgrad.quora.api.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import javax.persistence.EntityManagerFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Counts the SQL statements issued by each endpoint, so that an association loaded by accident (an eager association,
+ * or a lazy one touched outside of the fetch plan of its call site) shows up as a failing test.
+ * Runs against the database configured in application.yaml; the test creates its own user, question and answer and
+ * deletes them afterwards. The session of the user is cached by the first request, so the endpoints are measured
+ * without the session lookup, except in firstRequestAfterSignin.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "quora.session-reaper.initial-delay-ms=3600000",
+        "quora.token-filter.rebuild-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+
+public class StatementCountTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+
+    private String userName;
+
+    private String userUuid;
+
+    private String accessToken;
+
+    private String questionUuid;
+
+    private String answerUuid;
+
+    @Before
+    public void setUp() throws Exception {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        userName = "statements_" + UUID.randomUUID().toString().substring(0, 8);
+        MvcResult signup = mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated()).andReturn();
+        userUuid = JsonPath.read(signup.getResponse().getContentAsString(), "$.id");
+        accessToken = signin();
+
+        MvcResult question = mvc.perform(MockMvcRequestBuilders.post("/question/create?content=my_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isCreated()).andReturn();
+        questionUuid = JsonPath.read(question.getResponse().getContentAsString(), "$.id");
+        MvcResult answer = mvc.perform(MockMvcRequestBuilders.post("/question/" + questionUuid + "/answer/create?answer=my_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isCreated()).andReturn();
+        answerUuid = JsonPath.read(answer.getResponse().getContentAsString(), "$.id");
+    }
+
+    @After
+    public void tearDown() {
+        // questions, answers and sessions of the user are deleted by cascade
+        jdbcTemplate.update("delete from users where uuid = ?", UUID.fromString(userUuid));
+    }
+
+    //The session lookup joins the user of the session; the requested profile comes from the second-level cache,
+    //filled when the user was loaded by the signin.
+    @Test
+    public void firstRequestAfterSignin() throws Exception {
+        final String newAccessToken = signin();
+        statistics.clear();
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/" + userUuid).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", newAccessToken))
+                .andExpect(status().isOk());
+        assertStatements(1);
+    }
+
+    //A page of questions is read with a single projection query.
+    @Test
+    public void getAllQuestions() throws Exception {
+        statistics.clear();
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isOk());
+        assertStatements(1);
+    }
+
+    //The question is resolved by its uuid and joined to its answers in a single statement.
+    @Test
+    public void getAllAnswersToQuestion() throws Exception {
+        statistics.clear();
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/" + questionUuid).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isOk());
+        assertStatements(1);
+    }
+
+    //The author and its questions are read in a single statement, then served from the author question cache.
+    @Test
+    public void getAllQuestionsByUser() throws Exception {
+        statistics.clear();
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/" + userUuid).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isOk());
+        assertStatements(1);
+
+        statistics.clear();
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/" + userUuid).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isOk());
+        assertStatements(0);
+    }
+
+    //The question is read with its owner in one statement, then updated, and the invalidation is published.
+    @Test
+    public void editQuestion() throws Exception {
+        statistics.clear();
+        mvc.perform(MockMvcRequestBuilders.put("/question/edit/" + questionUuid + "?content=edited_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isOk());
+        assertStatements(3);
+    }
+
+    //The question is read with its owner in one statement, then deleted, and the invalidation is published.
+    @Test
+    public void deleteQuestion() throws Exception {
+        statistics.clear();
+        mvc.perform(MockMvcRequestBuilders.delete("/question/delete/" + questionUuid).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isOk());
+        assertStatements(3);
+    }
+
+    //The answer is read with its owner but without its question, then updated.
+    @Test
+    public void editAnswer() throws Exception {
+        statistics.clear();
+        mvc.perform(MockMvcRequestBuilders.put("/answer/edit/" + answerUuid + "?content=edited_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isOk());
+        assertStatements(2);
+    }
+
+    //The answer is read with its owner but without its question, then deleted.
+    @Test
+    public void deleteAnswer() throws Exception {
+        statistics.clear();
+        mvc.perform(MockMvcRequestBuilders.delete("/answer/delete/" + answerUuid).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isOk());
+        assertStatements(2);
+    }
+
+    //The session is read with its user, then signed out, and the invalidation is published.
+    @Test
+    public void signout() throws Exception {
+        statistics.clear();
+        mvc.perform(MockMvcRequestBuilders.post("/user/signout").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isOk());
+        assertStatements(3);
+    }
+
+    private String signin() throws Exception {
+        final String credentials = Base64.getEncoder().encodeToString((userName + ":a").getBytes(StandardCharsets.UTF_8));
+        return mvc.perform(MockMvcRequestBuilders.post("/user/signin").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "Basic " + credentials))
+                .andExpect(status().isOk()).andReturn().getResponse().getHeader("access-token");
+    }
+
+    private void assertStatements(final long expected) {
+        assertEquals("SQL statements", expected, statistics.getPrepareStatementCount());
+    }
+}
@@ -0,0 +1,159 @@
+package com.upgrad.quora.api.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Refreshes access tokens through /user/token/refresh. A token is refreshed by a conditional UPDATE of its session, so
+ * of concurrent refreshes of one token exactly one gets a new token.
+ * Runs against the database configured in application.yaml; the test creates its own user and deletes it afterwards.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "quora.session-reaper.initial-delay-ms=3600000",
+        "quora.token-filter.rebuild-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+
+public class TokenRefreshTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String userUuid;
+
+    private String accessToken;
+
+    @Before
+    public void setUp() throws Exception {
+        final String userName = "refresh_" + UUID.randomUUID().toString().substring(0, 8);
+        MvcResult signup = mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated()).andReturn();
+        userUuid = JsonPath.read(signup.getResponse().getContentAsString(), "$.id");
+        final String credentials = Base64.getEncoder().encodeToString((userName + ":a").getBytes(StandardCharsets.UTF_8));
+        accessToken = mvc.perform(MockMvcRequestBuilders.post("/user/signin").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "Basic " + credentials))
+                .andExpect(status().isOk()).andReturn().getResponse().getHeader("access-token");
+    }
+
+    @After
+    public void tearDown() {
+        // sessions of the user are deleted by cascade
+        jdbcTemplate.update("delete from users where uuid = ?", UUID.fromString(userUuid));
+    }
+
+    //This test case passes when a refreshed token is replaced by the new one: the new token is accepted and the
+    //refreshed one is not.
+    @Test
+    public void replacesRefreshedToken() throws Exception {
+        final String newAccessToken = refresh(accessToken).getHeader("access-token");
+        assertNotNull(newAccessToken);
+        assertNotEquals(accessToken, newAccessToken);
+
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/" + userUuid).header("authorization", newAccessToken))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/user/token/refresh").header("authorization", accessToken))
+                .andExpect(status().isForbidden());
+    }
+
+    //This test case passes when, of concurrent refreshes of one token, exactly one gets a new token and the others are
+    //refused, and the session holds the token of the winner.
+    @Test
+    public void onlyOneConcurrentRefreshWins() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            final List<Future<MockHttpServletResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                responses.add(executor.submit((Callable<MockHttpServletResponse>) () -> {
+                    start.await();
+                    return mvc.perform(MockMvcRequestBuilders.post("/user/token/refresh").header("authorization", accessToken))
+                            .andReturn().getResponse();
+                }));
+            }
+            start.countDown();
+
+            String winnerToken = null;
+            int refreshed = 0;
+            for (final Future<MockHttpServletResponse> response : responses) {
+                final MockHttpServletResponse result = response.get(30, TimeUnit.SECONDS);
+                if (result.getStatus() == 200) {
+                    refreshed++;
+                    winnerToken = result.getHeader("access-token");
+                } else {
+                    assertEquals(result.getContentAsString(), 403, result.getStatus());
+                }
+            }
+            assertEquals(1, refreshed);
+            assertEquals(winnerToken, jdbcTemplate.queryForObject(
+                    "select a.access_token from user_auth a join users u on u.id = a.user_id where u.uuid = ?",
+                    String.class, UUID.fromString(userUuid)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    //This test case passes when the token of a signed-out session cannot be refreshed.
+    @Test
+    public void rejectsSignedOutSession() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/user/signout").header("authorization", accessToken))
+                .andExpect(status().isOk());
+
+        mvc.perform(MockMvcRequestBuilders.post("/user/token/refresh").header("authorization", accessToken))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
+
+    //This test case passes when the token of a session whose expiry has passed cannot be refreshed, even though the
+    //token itself has not expired.
+    @Test
+    public void rejectsExpiredSession() throws Exception {
+        // the signin time, written in the time zone of the application like the expiry, has passed
+        jdbcTemplate.update("update user_auth set expires_at = login_at where user_id = (select id from users where uuid = ?)",
+                UUID.fromString(userUuid));
+
+        mvc.perform(MockMvcRequestBuilders.post("/user/token/refresh").header("authorization", accessToken))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
+
+    private MockHttpServletResponse refresh(final String token) throws Exception {
+        return mvc.perform(MockMvcRequestBuilders.post("/user/token/refresh").header("authorization", token))
+                .andExpect(status().isOk()).andReturn().getResponse();
+    }
+}
@@ -0,0 +1,123 @@
+package com.upgrad.quora.api.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Requests every endpoint taking a uuid in its path with ids which are not UUIDs, and checks that they are reported
+ * with the not found code of the endpoint, after the access token was checked, rather than failing with a 500.
+ * Runs against the database configured in application.yaml; the test creates its own user and deletes it afterwards.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "quora.session-reaper.initial-delay-ms=3600000",
+        "quora.token-filter.rebuild-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+
+public class UuidPathVariableTest {
+
+    private static final String[] INVALID_IDS = {"not-a-uuid", "1-2-3-4-5", "1025", "zzzzzzzz-zzzz-zzzz-zzzz-zzzzzzzzzzzz"};
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String userUuid;
+
+    private String accessToken;
+
+    @Before
+    public void setUp() throws Exception {
+        final String userName = "uuid_" + UUID.randomUUID().toString().substring(0, 8);
+        MvcResult signup = mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated()).andReturn();
+        userUuid = JsonPath.read(signup.getResponse().getContentAsString(), "$.id");
+        final String credentials = Base64.getEncoder().encodeToString((userName + ":a").getBytes(StandardCharsets.UTF_8));
+        accessToken = mvc.perform(MockMvcRequestBuilders.post("/user/signin").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "Basic " + credentials))
+                .andExpect(status().isOk()).andReturn().getResponse().getHeader("access-token");
+    }
+
+    @After
+    public void tearDown() {
+        // sessions of the user are deleted by cascade
+        jdbcTemplate.update("delete from users where uuid = ?", UUID.fromString(userUuid));
+    }
+
+    //This test case passes when a user id which is not a UUID is reported as a user which does not exist.
+    @Test
+    public void reportsInvalidUserIdAsNotFound() throws Exception {
+        for (final String id : INVALID_IDS) {
+            assertNotFound(MockMvcRequestBuilders.get("/userprofile/" + id), "USR-001");
+            assertNotFound(MockMvcRequestBuilders.get("/question/all/" + id), "USR-001");
+        }
+    }
+
+    //This test case passes when a question id which is not a UUID is reported as a question which does not exist.
+    @Test
+    public void reportsInvalidQuestionIdAsNotFound() throws Exception {
+        for (final String id : INVALID_IDS) {
+            assertNotFound(MockMvcRequestBuilders.put("/question/edit/" + id + "?content=edited").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE), "QUES-001");
+            assertNotFound(MockMvcRequestBuilders.delete("/question/delete/" + id), "QUES-001");
+            assertNotFound(MockMvcRequestBuilders.post("/question/" + id + "/answer/create?answer=answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE), "QUES-001");
+            assertNotFound(MockMvcRequestBuilders.post("/question/" + id + "/answer/bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE)
+                    .content("[{\"answer\":\"a0\"}]"), "QUES-001");
+            assertNotFound(MockMvcRequestBuilders.get("/answer/all/" + id), "QUES-001");
+            assertNotFound(MockMvcRequestBuilders.get("/answer/all/" + id + "/stream"), "QUES-001");
+        }
+    }
+
+    //This test case passes when an answer id which is not a UUID is reported as an answer which does not exist.
+    @Test
+    public void reportsInvalidAnswerIdAsNotFound() throws Exception {
+        for (final String id : INVALID_IDS) {
+            assertNotFound(MockMvcRequestBuilders.put("/answer/edit/" + id + "?content=edited").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE), "ANS-001");
+            assertNotFound(MockMvcRequestBuilders.delete("/answer/delete/" + id), "ANS-001");
+        }
+    }
+
+    //This test case passes when an invalid id sent without a signed in token is refused as not signed in, before the
+    //id is looked up, and a user who is not an admin is refused the deletion of an invalid user id.
+    @Test
+    public void checksTokenBeforeInvalidId() throws Exception {
+        for (final String id : INVALID_IDS) {
+            mvc.perform(MockMvcRequestBuilders.get("/userprofile/" + id).header("authorization", "non_existing_access_token"))
+                    .andExpect(status().isForbidden())
+                    .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
+            mvc.perform(MockMvcRequestBuilders.delete("/answer/delete/" + id).header("authorization", "non_existing_access_token"))
+                    .andExpect(status().isForbidden())
+                    .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
+            mvc.perform(MockMvcRequestBuilders.delete("/admin/user/" + id).header("authorization", accessToken))
+                    .andExpect(status().isForbidden())
+                    .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-003"));
+        }
+    }
+
+    private void assertNotFound(final MockHttpServletRequestBuilder request, final String code) throws Exception {
+        mvc.perform(request.header("authorization", accessToken))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value(code));
+    }
+}
@@ -0,0 +1,34 @@
+package com.upgrad.quora.api.controller;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+public class UuidsTest {
+
+    //This test case passes when an id in the canonical UUID form, in either case, is parsed as that UUID.
+    @Test
+    public void parsesCanonicalUuids() {
+        final UUID uuid = UUID.fromString("0165f0f1-7a3b-7c2d-9e4f-5a6b7c8d9e0f");
+
+        assertEquals(uuid, Uuids.parse("0165f0f1-7a3b-7c2d-9e4f-5a6b7c8d9e0f"));
+        assertEquals(uuid, Uuids.parse("0165F0F1-7A3B-7C2D-9E4F-5A6B7C8D9E0F"));
+        assertEquals(UUID.fromString("00000000-0000-4000-8000-000000001025"), Uuids.parse("00000000-0000-4000-8000-000000001025"));
+    }
+
+    //This test case passes when ids which are not canonical UUIDs, among them the shortened groups UUID.fromString
+    //accepts and the legacy ids, are parsed as the nil UUID instead of failing.
+    @Test
+    public void parsesOtherIdsAsNone() {
+        assertEquals(Uuids.NONE, Uuids.parse(null));
+        assertEquals(Uuids.NONE, Uuids.parse(""));
+        assertEquals(Uuids.NONE, Uuids.parse("not-a-uuid"));
+        assertEquals(Uuids.NONE, Uuids.parse("1-2-3-4-5"));
+        assertEquals(Uuids.NONE, Uuids.parse("database_uuid1"));
+        assertEquals(Uuids.NONE, Uuids.parse("zzzzzzzz-zzzz-zzzz-zzzz-zzzzzzzzzzzz"));
+        assertEquals(Uuids.NONE, Uuids.parse("0165f0f1-7a3b-7c2d-9e4f-5a6b7c8d9e0f0"));
+        assertEquals(Uuids.NONE, Uuids.parse("0165f0f1-7a3b-7c2d-9e4f-5a6b7c8d9e0"));
+    }
+}
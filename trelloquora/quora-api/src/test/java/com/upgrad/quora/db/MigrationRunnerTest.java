@@ -0,0 +1,252 @@
+package com.upgrad.quora.db;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * MigrationRunner.pending is package-private, so this test lives in its package. Scripts are loaded from temporary
+ * folders through a class loader of their own.
+ */
+public class MigrationRunnerTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    //This test case passes when the scripts are loaded in version order, not name order, with their description and
+    //maintenance window marker.
+    @Test
+    public void loadsScriptsInVersionOrder() throws Exception {
+        final MigrationRunner runner = runner("checkout",
+                "V10__add_index.sql", "CREATE INDEX A_IDX ON A(ID);\n",
+                "V2__create_table.sql", "CREATE TABLE A(ID INTEGER);\n",
+                "V11__drop_column.sql", "--quora:maintenance-window\nALTER TABLE A DROP COLUMN B;\n");
+
+        final List<Migration> migrations = runner.load();
+
+        assertEquals(Arrays.asList(2, 10, 11), versions(migrations));
+        assertEquals("create table", migrations.get(0).getDescription());
+        assertEquals("V2__create_table.sql", migrations.get(0).getScript());
+        assertFalse(migrations.get(1).isMaintenanceWindow());
+        assertTrue(migrations.get(2).isMaintenanceWindow());
+    }
+
+    //This test case passes when only the scripts marked no-transaction are run outside of a transaction.
+    @Test
+    public void findsNoTransactionMarker() throws Exception {
+        final List<Migration> migrations = runner("no-transaction",
+                "V1__create_table.sql", "CREATE TABLE A(ID INTEGER);\n",
+                "V2__add_index.sql", "--builds while A is written\n--quora:no-transaction\nCREATE INDEX CONCURRENTLY A_IDX ON A(ID);\n").load();
+
+        assertTrue(migrations.get(0).isTransactional());
+        assertFalse(migrations.get(1).isTransactional());
+        assertFalse(migrations.get(1).isMaintenanceWindow());
+    }
+
+    //This test case passes when a script is split at the semicolons ending its statements, and not at those in a
+    //string, a quoted identifier, a dollar quoted body or a comment; parts holding only comments are left out.
+    @Test
+    public void splitsScriptIntoStatements() {
+        final String block = "DO $body$ BEGIN RAISE NOTICE 'a;b'; END $body$";
+        final List<String> statements = MigrationRunner.statements("--first; comment\n"
+                + "CREATE INDEX CONCURRENTLY A_IDX ON A(ID);\n"
+                + "INSERT INTO \"B;C\" VALUES ('it''s; quoted', $$x;y$$) ;\n"
+                + block + ";\n"
+                + "/* block; comment */\n"
+                + "--last; comment\n"
+                + "SELECT 1");
+
+        assertEquals(Arrays.asList(
+                "--first; comment\nCREATE INDEX CONCURRENTLY A_IDX ON A(ID)",
+                "INSERT INTO \"B;C\" VALUES ('it''s; quoted', $$x;y$$)",
+                block,
+                "/* block; comment */\n--last; comment\nSELECT 1"), statements);
+        assertEquals(Arrays.asList(), MigrationRunner.statements("--only a comment;\n;\n  "));
+    }
+
+    //This test case passes when the statements of V2__lookup_indexes.sql, which is run outside of a transaction, are
+    //split into its two checks and its eight index builds.
+    @Test
+    public void splitsLookupIndexesMigration() {
+        final Migration lookupIndexes = new MigrationRunner(MigrationRunner.DEFAULT_LOCATION).load().get(1);
+        final List<String> statements = MigrationRunner.statements(lookupIndexes.getSql());
+
+        assertFalse(lookupIndexes.isTransactional());
+        assertEquals(10, statements.size());
+        assertTrue(statements.get(0), statements.get(0).endsWith("END $$"));
+        assertTrue(statements.get(1), statements.get(1).endsWith("END $$"));
+        for (final String statement : statements.subList(2, statements.size())) {
+            assertTrue(statement, statement.contains("INDEX CONCURRENTLY IF NOT EXISTS"));
+        }
+    }
+
+    //This test case passes when a script checked out with CRLF line endings has the same content and checksum as with
+    //LF line endings, and its maintenance window marker is still found.
+    @Test
+    public void normalizesLineEndings() throws Exception {
+        final Migration lf = runner("lf", "V1__drop_column.sql", "--quora:maintenance-window\nALTER TABLE A DROP COLUMN B;\n").load().get(0);
+        final Migration crlf = runner("crlf", "V1__drop_column.sql", "--quora:maintenance-window\r\nALTER TABLE A DROP COLUMN B;\r\n").load().get(0);
+
+        assertEquals(lf.getSql(), crlf.getSql());
+        assertEquals(lf.getChecksum(), crlf.getChecksum());
+        assertEquals(64, crlf.getChecksum().length());
+        assertTrue(crlf.isMaintenanceWindow());
+    }
+
+    //This test case passes when a script which is not named V<version>__<description>.sql is refused.
+    @Test
+    public void rejectsMisnamedScript() throws Exception {
+        assertLoadFails(runner("misnamed", "V1__create_table.sql", "SELECT 1;\n", "V2-add-index.sql", "SELECT 2;\n"), "V2-add-index.sql");
+        assertLoadFails(runner("no-description", "V3.sql", "SELECT 3;\n"), "V3.sql");
+    }
+
+    //This test case passes when two scripts of the same version are refused, even when their numbers are written
+    //differently.
+    @Test
+    public void rejectsDuplicateVersions() throws Exception {
+        assertLoadFails(runner("duplicate", "V1__create_table.sql", "SELECT 1;\n", "V01__create_index.sql", "SELECT 2;\n"), "same version");
+    }
+
+    //This test case passes when only the migrations not applied yet are pending, in version order.
+    @Test
+    public void pendingSkipsAppliedMigrations() throws Exception {
+        final MigrationRunner runner = runner("pending", "V1__a.sql", "SELECT 1;\n", "V2__b.sql", "SELECT 2;\n", "V3__c.sql", "SELECT 3;\n");
+        final List<Migration> migrations = runner.load();
+
+        assertEquals(Arrays.asList(1, 2, 3), versions(runner.pending(migrations, new HashMap<>())));
+        assertEquals(Arrays.asList(3), versions(runner.pending(migrations, applied(migrations.get(0), migrations.get(1)))));
+        assertEquals(Arrays.asList(), versions(runner.pending(migrations, applied(migrations.toArray(new Migration[0])))));
+    }
+
+    //This test case passes when a script whose checksum differs from the one recorded when it was applied is refused.
+    @Test
+    public void rejectsChangedScript() throws Exception {
+        final MigrationRunner runner = runner("changed", "V1__a.sql", "SELECT 1;\n", "V2__b.sql", "SELECT 2;\n");
+        final List<Migration> migrations = runner.load();
+        final Map<Integer, String> applied = applied(migrations.get(0), migrations.get(1));
+        applied.put(1, runner("original", "V1__a.sql", "SELECT 10;\n").load().get(0).getChecksum());
+
+        assertPendingFails(runner, migrations, applied, "V1__a.sql changed since it was applied");
+    }
+
+    //This test case passes when a new script with a version below the latest applied one is refused, instead of being
+    //applied out of order.
+    @Test
+    public void rejectsNewScriptBelowLatestApplied() throws Exception {
+        final MigrationRunner runner = runner("older", "V1__a.sql", "SELECT 1;\n", "V2__b.sql", "SELECT 2;\n", "V3__c.sql", "SELECT 3;\n");
+        final List<Migration> migrations = runner.load();
+
+        assertPendingFails(runner, migrations, applied(migrations.get(0), migrations.get(2)), "V2__b.sql is older than the latest applied version 3");
+    }
+
+    //This test case passes when migrations applied by a newer release, unknown to this one, are tolerated, and the
+    //scripts above the latest applied version are still pending.
+    @Test
+    public void toleratesUnknownAppliedVersions() throws Exception {
+        final MigrationRunner runner = runner("unknown", "V1__a.sql", "SELECT 1;\n", "V2__b.sql", "SELECT 2;\n");
+        final List<Migration> migrations = runner.load();
+
+        final Map<Integer, String> newerRelease = applied(migrations.get(0), migrations.get(1));
+        newerRelease.put(3, migrations.get(0).getChecksum());
+        assertEquals(Arrays.asList(), versions(runner.pending(migrations, newerRelease)));
+        assertEquals(Collections.singleton(3), newerRelease.keySet());
+
+        final MigrationRunner next = runner("next", "V1__a.sql", "SELECT 1;\n", "V4__d.sql", "SELECT 4;\n");
+        final Map<Integer, String> partlyKnown = applied(migrations.get(0));
+        partlyKnown.put(3, migrations.get(0).getChecksum());
+        assertEquals(Arrays.asList(4), versions(next.pending(next.load(), partlyKnown)));
+    }
+
+    //This test case passes when the migrations sql/quora.sql records as applied are the ones of db/migration, with the
+    //same script name, description and checksum, so that a schema set up by it is not refused at startup.
+    @Test
+    public void setupScriptRecordsCurrentMigrations() throws Exception {
+        final String setup;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("sql/quora.sql");
+             Scanner scanner = new Scanner(in, StandardCharsets.UTF_8.name())) {
+            setup = scanner.useDelimiter("\\A").next();
+        }
+        final Matcher row = Pattern.compile("\\((\\d+), '([^']*)', '([^']*)', '([0-9a-f]{64})', 0\\)").matcher(setup);
+        final List<Migration> migrations = new MigrationRunner(MigrationRunner.DEFAULT_LOCATION).load();
+        int recorded = 0;
+        while (row.find()) {
+            final Migration migration = migrations.get(recorded++);
+            assertEquals(migration.getVersion(), Integer.parseInt(row.group(1)));
+            assertEquals(migration.getDescription(), row.group(2));
+            assertEquals(migration.getScript(), row.group(3));
+            assertEquals(migration.getScript(), migration.getChecksum(), row.group(4));
+        }
+        assertTrue("sql/quora.sql records no migration", recorded > 0);
+    }
+
+    /**
+     * @param namesAndContents - script name, content, script name, content...
+     * @return runner loading the scripts from a new folder, at the default location
+     */
+    private MigrationRunner runner(final String folderName, final String... namesAndContents) throws IOException {
+        final File root = folder.newFolder(folderName);
+        final File location = new File(root, MigrationRunner.DEFAULT_LOCATION);
+        assertTrue(location.mkdirs());
+        for (int i = 0; i < namesAndContents.length; i += 2) {
+            Files.write(new File(location, namesAndContents[i]).toPath(), namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+        }
+        // no parent, so that the scripts of quora-db on the test classpath are not found
+        return new MigrationRunner(MigrationRunner.DEFAULT_LOCATION, new URLClassLoader(new URL[]{root.toURI().toURL()}, null));
+    }
+
+    private static Map<Integer, String> applied(final Migration... migrations) {
+        final Map<Integer, String> checksums = new HashMap<>();
+        for (final Migration migration : migrations) {
+            checksums.put(migration.getVersion(), migration.getChecksum());
+        }
+        return checksums;
+    }
+
+    private static List<Integer> versions(final List<Migration> migrations) {
+        final Integer[] versions = new Integer[migrations.size()];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = migrations.get(i).getVersion();
+        }
+        return Arrays.asList(versions);
+    }
+
+    private static void assertLoadFails(final MigrationRunner runner, final String message) {
+        try {
+            runner.load();
+            fail("Expected a MigrationException mentioning " + message);
+        } catch (MigrationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+    private static void assertPendingFails(final MigrationRunner runner, final List<Migration> migrations,
+                                           final Map<Integer, String> applied, final String message) {
+        try {
+            runner.pending(migrations, applied);
+            fail("Expected a MigrationException mentioning " + message);
+        } catch (MigrationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}
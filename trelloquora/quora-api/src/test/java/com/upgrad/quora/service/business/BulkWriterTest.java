@@ -0,0 +1,118 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.dto.BulkItemResult;
+import com.upgrad.quora.service.exception.BulkRequestRejectedException;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class BulkWriterTest {
+
+    private final BulkWriter bulkWriter = new BulkWriter();
+
+    private final CountingTransactionManager transactionManager = new CountingTransactionManager();
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(bulkWriter, "maxItems", 10);
+        ReflectionTestUtils.setField(bulkWriter, "chunkSize", 2);
+        ReflectionTestUtils.setField(bulkWriter, "transactionManager", transactionManager);
+    }
+
+    //This test case passes when an empty request and a request over the maximum are rejected as a whole.
+    @Test
+    public void rejectsEmptyAndOversizedRequests() {
+        assertRejected(0, "BLK-001");
+        assertRejected(11, "BLK-002");
+    }
+
+    //This test case passes when the valid items are written in chunks of the chunk size, one transaction per chunk, and
+    //the items rejected by the validation keep their result.
+    @Test
+    public void writesValidItemsInChunks() {
+        final List<UUID> items = Arrays.asList(UUID.randomUUID(), null, UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        final BulkItemResult[] results = new BulkItemResult[items.size()];
+        results[1] = BulkItemResult.rejected(1, "QUES-003", "Entered question content is empty");
+        final List<List<UUID>> chunks = new ArrayList<>();
+
+        final List<BulkItemResult> report = bulkWriter.write(items, results, uuid -> uuid, chunk -> chunks.add(new ArrayList<>(chunk)));
+
+        assertEquals(3, chunks.size());
+        assertEquals(Arrays.asList(items.get(0), items.get(2)), chunks.get(0));
+        assertEquals(Arrays.asList(items.get(5)), chunks.get(2));
+        assertEquals(3, transactionManager.commits);
+        assertEquals(BulkItemResult.Status.REJECTED, report.get(1).getStatus());
+        assertNull(report.get(1).getUuid());
+        for (final int i : new int[]{0, 2, 3, 4, 5}) {
+            assertEquals(BulkItemResult.Status.CREATED, report.get(i).getStatus());
+            assertEquals(i, report.get(i).getIndex());
+            assertEquals(items.get(i), report.get(i).getUuid());
+        }
+    }
+
+    //This test case passes when a chunk which cannot be written is rolled back and only its own items fail.
+    @Test
+    public void failsOnlyTheItemsOfAFailedChunk() {
+        final List<UUID> items = Arrays.asList(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        final UUID broken = items.get(2);
+
+        final List<BulkItemResult> report = bulkWriter.write(items, new BulkItemResult[items.size()], uuid -> uuid, chunk -> {
+            if (chunk.contains(broken)) {
+                throw new IllegalStateException("duplicate key");
+            }
+        });
+
+        assertEquals(2, transactionManager.commits);
+        assertEquals(1, transactionManager.rollbacks);
+        assertEquals(BulkItemResult.Status.CREATED, report.get(1).getStatus());
+        assertEquals(BulkItemResult.Status.FAILED, report.get(2).getStatus());
+        assertEquals(BulkItemResult.Status.FAILED, report.get(3).getStatus());
+        assertEquals("BLK-003", report.get(3).getCode());
+        assertNull(report.get(3).getUuid());
+        assertEquals(BulkItemResult.Status.CREATED, report.get(4).getStatus());
+    }
+
+    private void assertRejected(final int items, final String code) {
+        try {
+            bulkWriter.checkSize(items);
+            fail("Expected a BulkRequestRejectedException for " + items + " items");
+        } catch (BulkRequestRejectedException e) {
+            assertEquals(code, e.getCode());
+        }
+    }
+
+    private static final class CountingTransactionManager implements PlatformTransactionManager {
+
+        private int commits;
+
+        private int rollbacks;
+
+        @Override
+        public TransactionStatus getTransaction(final TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(final TransactionStatus status) {
+            commits++;
+        }
+
+        @Override
+        public void rollback(final TransactionStatus status) {
+            rollbacks++;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.upgrad.quora.service.business;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EntityIdGeneratorTest {
+
+    private static final int IDS = 100000;
+
+    //This test case passes when the ids are version 7 UUIDs of the RFC 4122 variant, stamped with the current time.
+    @Test
+    public void generatesVersion7Uuids() {
+        final long before = System.currentTimeMillis();
+        final UUID id = EntityIdGenerator.nextId();
+        final long after = System.currentTimeMillis();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        assertTrue(EntityIdGenerator.timestampOf(id) >= before);
+        assertTrue(EntityIdGenerator.timestampOf(id) <= after + 1);
+    }
+
+    //This test case passes when the ids of a thread increase strictly, in the byte order Postgres sorts UUIDs in.
+    @Test
+    public void increasesWithinThread() {
+        String previous = EntityIdGenerator.nextId().toString();
+        for (int i = 0; i < IDS; i++) {
+            final String id = EntityIdGenerator.nextId().toString();
+            assertTrue(previous + " >= " + id, previous.compareTo(id) < 0);
+            previous = id;
+        }
+    }
+
+    //This test case passes when threads generating ids at the same time never generate the same one.
+    @Test
+    public void uniqueAcrossThreads() throws Exception {
+        final int threads = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final Set<UUID> ids = ConcurrentHashMap.newKeySet();
+        try {
+            final List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < IDS; i++) {
+                        ids.add(EntityIdGenerator.nextId());
+                    }
+                }));
+            }
+            for (final Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(threads * IDS, ids.size());
+    }
+}
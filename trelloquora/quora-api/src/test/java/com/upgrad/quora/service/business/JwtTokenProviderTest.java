@@ -0,0 +1,127 @@
+package com.upgrad.quora.service.business;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.junit.Test;
+
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JwtTokenProviderTest {
+
+    private static final String KEYS = "2018-08=old-secret,2018-09=new-secret";
+
+    private final JwtTokenProvider jwtTokenProvider = new JwtTokenProvider(KEYS, "2018-09", true);
+
+    //This test case passes when a token issued by the provider verifies, carrying the uuid of its user, the active kid
+    //and a token id.
+    @Test
+    public void verifiesIssuedToken() {
+        final ZonedDateTime now = ZonedDateTime.now();
+        final DecodedJWT decodedJWT = jwtTokenProvider.verifyToken(jwtTokenProvider.generateToken("user-uuid", now, now.plusHours(1)));
+
+        assertNotNull(decodedJWT);
+        assertEquals(Collections.singletonList("user-uuid"), decodedJWT.getAudience());
+        assertEquals("2018-09", decodedJWT.getKeyId());
+        assertNotNull(decodedJWT.getId());
+    }
+
+    //This test case passes when a token signed with a key which is no longer active still verifies, so a key can be
+    //rolled out without signing everyone out.
+    @Test
+    public void verifiesTokenOfPreviousKey() {
+        final JwtTokenProvider previous = new JwtTokenProvider(KEYS, "2018-08", true);
+        final ZonedDateTime now = ZonedDateTime.now();
+
+        assertNotNull(jwtTokenProvider.verifyToken(previous.generateToken("user-uuid", now, now.plusHours(1))));
+    }
+
+    //This test case passes when a token under a known kid but signed with another secret is refused.
+    @Test
+    public void rejectsForgedToken() {
+        assertNull(jwtTokenProvider.verifyToken(token("2018-09", "guessed-secret", "https://quora.io", 1)));
+
+        // a valid token whose payload was swapped for that of another user
+        final ZonedDateTime now = ZonedDateTime.now();
+        final String[] valid = jwtTokenProvider.generateToken("user-uuid", now, now.plusHours(1)).split("\\.");
+        final String[] other = jwtTokenProvider.generateToken("admin-uuid", now, now.plusHours(1)).split("\\.");
+        assertNull(jwtTokenProvider.verifyToken(valid[0] + "." + other[1] + "." + valid[2]));
+    }
+
+    //This test case passes when a token whose expiry has passed is refused, even though its signature is valid.
+    @Test
+    public void rejectsExpiredToken() {
+        final ZonedDateTime now = ZonedDateTime.now();
+
+        assertNull(jwtTokenProvider.verifyToken(jwtTokenProvider.generateToken("user-uuid", now.minusHours(2), now.minusHours(1))));
+        assertNull(jwtTokenProvider.verifyToken(token("2018-09", "new-secret", "https://quora.io", -1)));
+    }
+
+    //This test case passes when a token signed with a valid key but issued by another issuer is refused.
+    @Test
+    public void rejectsWrongIssuer() {
+        assertNotNull(jwtTokenProvider.verifyToken(token("2018-09", "new-secret", "https://quora.io", 1)));
+        assertNull(jwtTokenProvider.verifyToken(token("2018-09", "new-secret", "https://example.com", 1)));
+    }
+
+    //This test case passes when a token under a kid which is not configured, or without a kid, is refused, as are the
+    //tokens of the releases before the keys, signed with the password hash under a random kid.
+    @Test
+    public void rejectsUnknownKid() {
+        assertNull(jwtTokenProvider.verifyToken(token("2018-10", "new-secret", "https://quora.io", 1)));
+        assertNull(jwtTokenProvider.verifyToken(token(null, "new-secret", "https://quora.io", 1)));
+        assertNull(jwtTokenProvider.verifyToken(token("b8a1f2c4-legacy", "password-hash", "https://quora.io", 1)));
+        assertNull(jwtTokenProvider.verifyToken("not-a-jwt"));
+    }
+
+    //This test case passes when a keys entry which is not kid=secret fails the startup with a message naming the
+    //property and the kid, without the secret.
+    @Test
+    public void rejectsMalformedKeys() {
+        assertStartupFails("2018-08=old-secret,2018-09=", "2018-09", "kid 2018-09 has no secret");
+        final String message = assertStartupFails("2018-09=new-secret,bare-secret", "2018-09", "quora.jwt.keys");
+        assertFalse(message, message.contains("bare-secret"));
+        assertStartupFails("", "2018-09", "quora.jwt.keys");
+    }
+
+    //This test case passes when an active key id which is not one of the configured kids fails the startup with a
+    //message naming the property and the kid.
+    @Test
+    public void rejectsUnknownActiveKeyId() {
+        final String message = assertStartupFails(KEYS, "2018-10", "quora.jwt.active-key-id 2018-10");
+        assertFalse(message, message.contains("secret"));
+    }
+
+    /**
+     * @param keyId - kid header, none if null
+     * @param expiresInHours - hours from now until the token expires, negative for an expired token
+     * @return HS512 token signed with the secret by the stock algorithm of java-jwt
+     */
+    private static String token(final String keyId, final String secret, final String issuer, final int expiresInHours) {
+        final ZonedDateTime now = ZonedDateTime.now();
+        return JWT.create().withIssuer(issuer).withKeyId(keyId).withAudience("user-uuid")
+                .withIssuedAt(Date.from(now.minusHours(2).toInstant()))
+                .withExpiresAt(Date.from(now.plusHours(expiresInHours).toInstant()))
+                .sign(Algorithm.HMAC512(secret));
+    }
+
+    private static String assertStartupFails(final String keys, final String activeKeyId, final String message) {
+        try {
+            new JwtTokenProvider(keys, activeKeyId, true);
+            fail("Expected the JWT configuration to be refused with " + message);
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+            return e.getMessage();
+        }
+        return null;
+    }
+}
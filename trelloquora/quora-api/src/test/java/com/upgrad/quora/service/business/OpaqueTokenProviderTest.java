@@ -0,0 +1,58 @@
+package com.upgrad.quora.service.business;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OpaqueTokenProviderTest {
+
+    private static final int TOKENS = 100000;
+
+    private final OpaqueTokenProvider opaqueTokenProvider = new OpaqueTokenProvider();
+
+    //This test case passes when the tokens are 22 base64url characters without padding, recognized as opaque, and
+    //do not repeat.
+    @Test
+    public void generatesDistinctUrlSafeTokens() {
+        final Set<String> tokens = new HashSet<>();
+        for (int i = 0; i < TOKENS; i++) {
+            final String token = opaqueTokenProvider.generateToken();
+            assertTrue(token, token.matches("[A-Za-z0-9_-]{" + OpaqueTokenProvider.TOKEN_LENGTH + "}"));
+            assertTrue(token, opaqueTokenProvider.isOpaqueToken(token));
+            tokens.add(token);
+        }
+        assertEquals(TOKENS, tokens.size());
+    }
+
+    //This test case passes when JWTs, tokens of another length and missing tokens are not taken for opaque tokens.
+    @Test
+    public void recognizesOnlyOpaqueTokens() {
+        assertFalse(opaqueTokenProvider.isOpaqueToken(null));
+        assertFalse(opaqueTokenProvider.isOpaqueToken(""));
+        assertFalse(opaqueTokenProvider.isOpaqueToken("database_accesstoken"));
+        assertFalse(opaqueTokenProvider.isOpaqueToken("eyJhbGciOiJIUzUxMiJ9.e30.c2ln"));
+        assertFalse(opaqueTokenProvider.isOpaqueToken("abcdefghij.lmnopqrstuv"));
+    }
+
+    //This test case passes when the stored digest is the 32 byte SHA-256 of the token, the same on every call and
+    //different for another token.
+    @Test
+    public void digestsWithSha256() throws Exception {
+        final String token = opaqueTokenProvider.generateToken();
+        final byte[] digest = opaqueTokenProvider.digest(token);
+
+        assertEquals(32, digest.length);
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII)), digest);
+        assertArrayEquals(digest, opaqueTokenProvider.digest(token));
+        assertFalse(Arrays.equals(digest, opaqueTokenProvider.digest(opaqueTokenProvider.generateToken())));
+    }
+}
@@ -0,0 +1,66 @@
+package com.upgrad.quora.service.business;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PageCursorTest {
+
+    //This test case passes when a decoded cursor has the date, to the nanosecond, and the id it was encoded with.
+    @Test
+    public void decodesEncodedCursor() {
+        final Timestamp date = new Timestamp(1538000000123L);
+        date.setNanos(123456789);
+
+        final PageCursor cursor = PageCursor.decode(new PageCursor(date, 4711).encode());
+
+        assertEquals(date, cursor.getDate());
+        assertEquals(123456789, cursor.getDate().getNanos());
+        assertEquals(4711, cursor.getId());
+    }
+
+    //This test case passes when the cursor token can be put in a query string or a header as it is.
+    @Test
+    public void encodesUrlSafeToken() {
+        final Timestamp date = new Timestamp(-1L);
+        date.setNanos(999999999);
+        for (final String token : new String[]{new PageCursor(date, Integer.MAX_VALUE).encode(),
+                new PageCursor(new Timestamp(0), 0).encode()}) {
+            assertTrue(token, token.matches("[A-Za-z0-9_-]+"));
+        }
+    }
+
+    //This test case passes when a cursor altered by the client, to another version, another number of parts or
+    //values which are not numbers or out of range, is not decoded.
+    @Test
+    public void rejectsTamperedCursor() {
+        assertNull(PageCursor.decode(token("2:1538000000123:123456789:4711")));
+        assertNull(PageCursor.decode(token("1:1538000000123:123456789")));
+        assertNull(PageCursor.decode(token("1:1538000000123:123456789:4711:1")));
+        assertNull(PageCursor.decode(token("1:1538000000123:123456789:x")));
+        assertNull(PageCursor.decode(token("1:99999999999999999999:0:4711")));
+        assertNull(PageCursor.decode(token("1:1538000000123:1000000000:4711")));
+        assertNull(PageCursor.decode(token("1:1538000000123:-1:4711")));
+        assertNull(PageCursor.decode(token("1:1538000000123:0:4294967296")));
+    }
+
+    //This test case passes when a token which is not base64url, or decodes to anything but a cursor, is not decoded.
+    @Test
+    public void rejectsGarbage() {
+        assertNull(PageCursor.decode(""));
+        assertNull(PageCursor.decode("not a cursor"));
+        assertNull(PageCursor.decode("%%%"));
+        assertNull(PageCursor.decode(token("garbage")));
+        assertNull(PageCursor.decode(Base64.getUrlEncoder().encodeToString(new byte[]{(byte) 0xff, 0x3a, 0x00, 0x3a})));
+    }
+
+    private static String token(final String position) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,129 @@
+package com.upgrad.quora.service.business;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PasswordCryptographyProviderTest {
+
+    // salt of the legacy hash below, base64 of the bytes 0 to 31
+    private static final String LEGACY_SALT = "AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8=";
+
+    // PBKDF2WithHmacSHA512 of "secret" with 1000 iterations and a 64 bit key, stored as plain hex before the
+    // "$id$parameters$hash" format existed
+    private static final String LEGACY_HASH = "E4279823480EC503";
+
+    //This test case passes when scrypt reproduces the test vectors of RFC 7914, section 12.
+    @Test
+    public void scryptMatchesRfc7914Vectors() {
+        final ScryptPasswordHasher hasher = new ScryptPasswordHasher(32);
+        assertArrayEquals(hex("77d6576238657b203b19ca42c18a0497f16b4844e3074ae8dfdffa3fede21442"
+                        + "fcd0069ded0948f8326a753a0fc81f17e8d3e0fb2e0d3628cf35e20c38d18906"),
+                hasher.hash("".toCharArray(), new byte[0], "ln=4,r=1,p=1,l=64"));
+        assertArrayEquals(hex("fdbabe1c9d3472007856e7190d01e9fe7c6ad7cbc8237830e77376634b373162"
+                        + "2eaf30d92e22a3886ff109279d9830dac727afb94a83ee6d8360cbdfa2cc0640"),
+                hasher.hash("password".toCharArray(), "NaCl".getBytes(StandardCharsets.US_ASCII), "ln=10,r=8,p=16,l=64"));
+    }
+
+    //This test case passes when PBKDF2WithHmacSHA512 reproduces the published vectors for the RFC 6070 inputs.
+    @Test
+    public void pbkdf2MatchesSha512Vectors() {
+        final Pbkdf2PasswordHasher hasher = new Pbkdf2PasswordHasher();
+        final byte[] salt = "salt".getBytes(StandardCharsets.US_ASCII);
+        assertArrayEquals(hex("867f70cf1ade02cff3752599a3a53dc4af34c7a669815ae5d513554e1c8cf252"
+                        + "c02d470a285a0501bad999bfe943c08f050235d7d68b1da55e63f73b60a57fce"),
+                hasher.hash("password".toCharArray(), salt, "i=1,l=512"));
+        assertArrayEquals(hex("e1d9c16aa681708a45f5c7c4e215ceb66e011a2e9f0040713f18aefdb866d53c"
+                        + "f76cab2868a39b9f7840edce4fef5a82be67335c77a6068e04112754f27ccf4e"),
+                hasher.hash("password".toCharArray(), salt, "i=2,l=512"));
+    }
+
+    //This test case passes when a legacy hash, plain hex without algorithm and parameters, is verified as
+    //PBKDF2WithHmacSHA512 with 1000 iterations and a 64 bit key, and is due for a rehash.
+    @Test
+    public void verifiesLegacyHash() {
+        final PasswordCryptographyProvider provider = provider(new Pbkdf2PasswordHasher(), "pbkdf2-sha512", 10000);
+        assertTrue(provider.matches("secret", LEGACY_SALT, LEGACY_HASH));
+        assertFalse(provider.matches("Secret", LEGACY_SALT, LEGACY_HASH));
+        assertTrue(provider.needsRehash(LEGACY_HASH));
+    }
+
+    //This test case passes when a new hash is written in the "$id$parameters$hash" format, verified, and not due for a
+    //rehash while the configuration is unchanged.
+    @Test
+    public void verifiesNewHash() {
+        final PasswordCryptographyProvider provider = provider(new Pbkdf2PasswordHasher(), "pbkdf2-sha512", 10000);
+        final String[] encrypted = provider.encrypt("secret");
+        assertTrue(encrypted[1].startsWith("$pbkdf2-sha512$i=10000,l=512$"));
+        assertTrue(provider.matches("secret", encrypted[0], encrypted[1]));
+        assertFalse(provider.matches("Secret", encrypted[0], encrypted[1]));
+        assertFalse(provider.needsRehash(encrypted[1]));
+    }
+
+    //This test case passes when a hash is due for a rehash once the iterations went up by more than a third, and not
+    //for smaller changes such as a recalibration on similar hardware.
+    @Test
+    public void needsRehashWhenPbkdf2CostIncreases() {
+        final String storedHash = provider(new Pbkdf2PasswordHasher(), "pbkdf2-sha512", 10000).encrypt("secret")[1];
+        assertFalse(provider(new Pbkdf2PasswordHasher(), "pbkdf2-sha512", 12000).needsRehash(storedHash));
+        assertTrue(provider(new Pbkdf2PasswordHasher(), "pbkdf2-sha512", 20000).needsRehash(storedHash));
+        assertFalse(provider(new Pbkdf2PasswordHasher(), "pbkdf2-sha512", 5000).needsRehash(storedHash));
+    }
+
+    //This test case passes when a hash is due for a rehash once scrypt got a higher memory cost.
+    @Test
+    public void needsRehashWhenScryptCostIncreases() {
+        final String storedHash = provider(new ScryptPasswordHasher(32), "scrypt", 10).encrypt("secret")[1];
+        assertTrue(storedHash.startsWith("$scrypt$ln=10,r=8,p=1,l=32$"));
+        assertFalse(provider(new ScryptPasswordHasher(32), "scrypt", 10).needsRehash(storedHash));
+        assertTrue(provider(new ScryptPasswordHasher(32), "scrypt", 11).needsRehash(storedHash));
+    }
+
+    //This test case passes when hashes of the other algorithm are still verified and due for a rehash, in both
+    //directions.
+    @Test
+    public void needsRehashWhenAlgorithmChanges() {
+        final PasswordCryptographyProvider pbkdf2 = provider(new Pbkdf2PasswordHasher(), "pbkdf2-sha512", 10000);
+        final PasswordCryptographyProvider scrypt = provider(new ScryptPasswordHasher(32), "scrypt", 10);
+        final String[] pbkdf2Hash = pbkdf2.encrypt("secret");
+        final String[] scryptHash = scrypt.encrypt("secret");
+
+        assertTrue(pbkdf2.matches("secret", scryptHash[0], scryptHash[1]));
+        assertTrue(pbkdf2.needsRehash(scryptHash[1]));
+        assertTrue(scrypt.matches("secret", pbkdf2Hash[0], pbkdf2Hash[1]));
+        assertTrue(scrypt.needsRehash(pbkdf2Hash[1]));
+    }
+
+    //This test case passes when a hash of an unknown algorithm never matches.
+    @Test
+    public void rejectsUnknownAlgorithm() {
+        final PasswordCryptographyProvider provider = provider(new Pbkdf2PasswordHasher(), "pbkdf2-sha512", 10000);
+        assertFalse(provider.matches("secret", LEGACY_SALT, "$bcrypt$c=10$00"));
+        assertTrue(provider.needsRehash("$bcrypt$c=10$00"));
+    }
+
+    /**
+     * Provider preferring the given hasher with a fixed cost, able to verify hashes of both algorithms
+     */
+    private static PasswordCryptographyProvider provider(final PasswordHasher preferred, final String preferredId, final int cost) {
+        final PasswordHasher other = preferred instanceof ScryptPasswordHasher
+                ? new Pbkdf2PasswordHasher() : new ScryptPasswordHasher(32);
+        final PasswordCryptographyProvider provider = new PasswordCryptographyProvider(Arrays.asList(preferred, other),
+                preferredId, 50, cost);
+        provider.calibrate();
+        return provider;
+    }
+
+    private static byte[] hex(final String hex) {
+        final byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,121 @@
+package com.upgrad.quora.service.business;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+public class PooledHmacAlgorithmTest {
+
+    private static final String SECRET = "new-secret";
+
+    private static final int THREADS = 8;
+
+    private static final int SIGNATURES_PER_THREAD = 10000;
+
+    private final Algorithm stock = Algorithm.HMAC512(SECRET);
+
+    private PooledHmacAlgorithm pooled;
+
+    @Before
+    public void setUp() throws Exception {
+        pooled = new PooledHmacAlgorithm("2018-09", SECRET.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //This test case passes when the signatures are the ones of the stock HS512 algorithm of java-jwt, for contents of
+    //every length around the 128 byte block of SHA-512.
+    @Test
+    public void signsLikeStockAlgorithm() throws Exception {
+        for (int length = 0; length <= 300; length++) {
+            final byte[] content = content(length);
+            assertArrayEquals("content of " + length + " bytes", stock.sign(content), pooled.sign(content));
+        }
+        assertEquals("HS512", pooled.getName());
+        assertEquals("2018-09", pooled.getSigningKeyId());
+    }
+
+    //This test case passes when a token signed by either algorithm is the same and verifies with the other one, and a
+    //token whose signature was altered is refused.
+    @Test
+    public void verifiesTokensOfStockAlgorithm() {
+        final Date issuedAt = new Date(1535760000000L);
+        final Date expiresAt = new Date(4102444800000L);
+        final String stockToken = JWT.create().withKeyId("2018-09").withIssuer("https://quora.io").withAudience("user-uuid")
+                .withIssuedAt(issuedAt).withExpiresAt(expiresAt).sign(stock);
+        final String pooledToken = JWT.create().withKeyId("2018-09").withIssuer("https://quora.io").withAudience("user-uuid")
+                .withIssuedAt(issuedAt).withExpiresAt(expiresAt).sign(pooled);
+
+        assertEquals(stockToken, pooledToken);
+        assertNotNull(JWT.require(pooled).build().verify(stockToken));
+        assertNotNull(JWT.require(stock).build().verify(pooledToken));
+
+        final String signature = pooledToken.substring(pooledToken.lastIndexOf('.') + 1);
+        final String altered = pooledToken.substring(0, pooledToken.length() - signature.length())
+                + (signature.charAt(0) == 'A' ? 'B' : 'A') + signature.substring(1);
+        try {
+            pooled.verify(JWT.decode(altered));
+            fail("Expected the altered signature to be refused");
+        } catch (SignatureVerificationException expected) {
+        }
+    }
+
+    //This test case passes when threads signing at once, each with its own Mac, all get the signatures of the stock
+    //algorithm.
+    @Test
+    public void signsConcurrentlyLikeStockAlgorithm() throws Exception {
+        final byte[][] contents = new byte[16][];
+        final byte[][] signatures = new byte[contents.length][];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = content(20 * i);
+            signatures[i] = stock.sign(contents[i]);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            final List<Future<Void>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int offset = t;
+                results.add(executor.submit((Callable<Void>) () -> {
+                    start.await();
+                    for (int i = 0; i < SIGNATURES_PER_THREAD; i++) {
+                        final int c = (offset + i) % contents.length;
+                        assertArrayEquals(signatures[c], pooled.sign(contents[c]));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (final Future<Void> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] content(final int length) {
+        final byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) (i * 31 + 7);
+        }
+        return content;
+    }
+}
@@ -0,0 +1,149 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.dao.UserDao;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs session reapers of its own on the transaction manager and the data source of the application, so that the
+ * advisory lock is taken in the database configured in application.yaml. The sessions are played by a UserDao which
+ * reports full batches a given number of times, so no session of the database is deleted.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "quora.session-reaper.initial-delay-ms=3600000",
+        "quora.token-filter.rebuild-interval-ms=3600000"
+})
+
+public class SessionReaperTest {
+
+    private static final int BATCH_SIZE = 2;
+
+    private static final long PAUSE_MILLIS = 100;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    //This test case passes when the reaper pauses between full batches, runs each batch in a transaction, and stops
+    //without a pause after the first batch which is not full.
+    @Test
+    public void pacesBatchesUntilOneIsNotFull() {
+        final StaleSessions staleSessions = new StaleSessions(3);
+        final SessionReaper sessionReaper = reaper(staleSessions, 10);
+
+        sessionReaper.reap();
+
+        assertEquals(4, staleSessions.batchStartNanos.size());
+        for (int i = 1; i < staleSessions.batchStartNanos.size(); i++) {
+            final long pause = TimeUnit.NANOSECONDS.toMillis(staleSessions.batchStartNanos.get(i) - staleSessions.batchStartNanos.get(i - 1));
+            assertTrue("batch " + i + " started " + pause + " ms after the previous one", pause >= PAUSE_MILLIS);
+        }
+        assertTrue(staleSessions.inTransaction);
+        assertEquals(3 * BATCH_SIZE + 1, sessionReaper.getDeletedSessions());
+        assertEquals(1, sessionReaper.getRuns());
+    }
+
+    //This test case passes when a run stops after its maximum number of batches although sessions are left, and the
+    //next run carries on deleting them.
+    @Test
+    public void stopsAfterMaximumBatches() {
+        final StaleSessions staleSessions = new StaleSessions(Integer.MAX_VALUE);
+        final SessionReaper sessionReaper = reaper(staleSessions, 3);
+
+        sessionReaper.reap();
+        assertEquals(3, staleSessions.batchStartNanos.size());
+        assertEquals(3 * BATCH_SIZE, sessionReaper.getDeletedSessions());
+
+        sessionReaper.reap();
+        assertEquals(6, staleSessions.batchStartNanos.size());
+        assertEquals(2, sessionReaper.getRuns());
+    }
+
+    //This test case passes when a run is skipped without touching any session while another node holds the advisory
+    //lock, and a run after the lock was released reaps.
+    @Test
+    public void skipsRunWhileAnotherNodeHoldsLock() throws Exception {
+        final StaleSessions staleSessions = new StaleSessions(0);
+        final SessionReaper sessionReaper = reaper(staleSessions, 10);
+        final long lockKey = (Long) ReflectionTestUtils.getField(SessionReaper.class, "LOCK_KEY");
+
+        // the other node, on a connection of its own
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeQuery("SELECT pg_advisory_lock(" + lockKey + ")").close();
+            try {
+                sessionReaper.reap();
+            } finally {
+                statement.executeQuery("SELECT pg_advisory_unlock(" + lockKey + ")").close();
+            }
+        }
+        assertEquals(1, sessionReaper.getSkippedRuns());
+        assertEquals(0, sessionReaper.getRuns());
+        assertTrue(staleSessions.batchStartNanos.isEmpty());
+
+        sessionReaper.reap();
+        assertEquals(1, sessionReaper.getSkippedRuns());
+        assertEquals(1, sessionReaper.getRuns());
+        assertEquals(1, staleSessions.batchStartNanos.size());
+    }
+
+    private SessionReaper reaper(final UserDao userDao, final int maximumBatchesPerRun) {
+        final SessionReaper sessionReaper = new SessionReaper(transactionManager, dataSource, 24, BATCH_SIZE,
+                PAUSE_MILLIS, maximumBatchesPerRun, false, 62);
+        ReflectionTestUtils.setField(sessionReaper, "userDao", userDao);
+        return sessionReaper;
+    }
+
+    /**
+     * Reports full batches of stale sessions a given number of times, then a batch of one session, then none
+     */
+    private static class StaleSessions extends UserDao {
+
+        private final int fullBatches;
+
+        private final List<Long> batchStartNanos = new ArrayList<>();
+
+        private boolean inTransaction = true;
+
+        private StaleSessions(final int fullBatches) {
+            this.fullBatches = fullBatches;
+        }
+
+        @Override
+        public List<Integer> findStaleUserAuthIds(final ZonedDateTime cutoff, final int limit) {
+            batchStartNanos.add(System.nanoTime());
+            inTransaction &= TransactionSynchronizationManager.isActualTransactionActive();
+            final int batch = batchStartNanos.size();
+            if (batch <= fullBatches) {
+                return Collections.nCopies(limit, batch);
+            }
+            return batch == fullBatches + 1 ? Collections.singletonList(batch) : Collections.emptyList();
+        }
+
+        @Override
+        public int deleteUserAuths(final List<Integer> ids) {
+            return ids.size();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.exception.ServiceUnavailableException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+    private static final int CALLS = 8;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLS);
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    //This test case passes when concurrent calls for the same key run the read once and all get its result.
+    @Test
+    public void coalescesConcurrentReads() throws Exception {
+        final SingleFlight<String, String> flight = new SingleFlight<>("test", 10000, 1);
+        final AtomicInteger reads = new AtomicInteger();
+        final List<Future<String>> results = callConcurrently(flight, () -> {
+            reads.incrementAndGet();
+            return "answers";
+        });
+
+        release.countDown();
+        for (final Future<String> result : results) {
+            assertEquals("answers", result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, reads.get());
+        assertEquals(1, flight.getExecutions());
+        assertEquals(CALLS - 1, flight.getCoalesced());
+        assertEquals((double) (CALLS - 1) / CALLS, flight.getCoalescingRatio(), 1e-9);
+        assertEquals(0, flight.getInFlight());
+    }
+
+    //This test case passes when the exception of the read is thrown to every call which joined it.
+    @Test
+    public void propagatesFailureToJoinedCalls() throws Exception {
+        final SingleFlight<String, String> flight = new SingleFlight<>("test", 10000, 1);
+        final IllegalStateException failure = new IllegalStateException("database down");
+        final List<Future<String>> results = callConcurrently(flight, () -> {
+            throw failure;
+        });
+
+        release.countDown();
+        for (final Future<String> result : results) {
+            try {
+                result.get(10, TimeUnit.SECONDS);
+                fail("the failure of the read was not propagated");
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+        }
+        assertEquals(1, flight.getFailures());
+        assertEquals(0, flight.getInFlight());
+    }
+
+    //This test case passes when a call which joined a read gives up after the timeout with ServiceUnavailableException.
+    @Test
+    public void timesOutJoinedCalls() throws Exception {
+        final SingleFlight<String, String> flight = new SingleFlight<>("test", 50, 3);
+        final Future<String> leader = executor.submit(() -> flight.execute("question", this::blockedRead));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        try {
+            flight.execute("question", () -> "not run");
+            fail("the joined call did not time out");
+        } catch (ServiceUnavailableException e) {
+            assertEquals("SVC-002", e.getCode());
+            assertEquals(3, e.getRetryAfterSeconds());
+        }
+        assertEquals(1, flight.getTimeouts());
+
+        release.countDown();
+        assertEquals("answers", leader.get(10, TimeUnit.SECONDS));
+    }
+
+    //This test case passes when calls for different keys, or made after the read completed, each run their own read.
+    @Test
+    public void runsNewReadOnceCompleted() throws Exception {
+        final SingleFlight<String, String> flight = new SingleFlight<>("test", 10000, 1);
+        assertEquals("first", flight.execute("question", () -> "first"));
+        assertEquals("second", flight.execute("question", () -> "second"));
+        assertEquals("other", flight.execute("other question", () -> "other"));
+        assertEquals(3, flight.getExecutions());
+        assertEquals(0, flight.getCoalesced());
+    }
+
+    /**
+     * Starts a call whose read blocks until released, then CALLS - 1 calls joining it
+     */
+    private List<Future<String>> callConcurrently(final SingleFlight<String, String> flight,
+                                                  final Supplier<String> read) throws Exception {
+        final List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> flight.execute("question", () -> {
+            blockedRead();
+            return read.get();
+        })));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i < CALLS; i++) {
+            results.add(executor.submit(() -> flight.execute("question", () -> {
+                throw new AssertionError("a joined call ran the read");
+            })));
+        }
+        await(() -> flight.getCoalesced() == CALLS - 1);
+        return results;
+    }
+
+    private String blockedRead() {
+        started.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        return "answers";
+    }
+
+    private static void await(final BooleanSupplier condition) {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("timed out", System.currentTimeMillis() < deadline);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
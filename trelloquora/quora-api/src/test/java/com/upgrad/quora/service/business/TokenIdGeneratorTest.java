@@ -0,0 +1,64 @@
+package com.upgrad.quora.service.business;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TokenIdGeneratorTest {
+
+    private static final int THREADS = 8;
+
+    private static final int IDS_PER_THREAD = 50000;
+
+    //This test case passes when the ids are lower case version 4 UUIDs of the IETF variant, in canonical form.
+    @Test
+    public void generatesVersion4Uuids() {
+        for (int i = 0; i < 10000; i++) {
+            final String id = TokenIdGenerator.nextId();
+            assertTrue(id, id.matches("[0-9a-f]{8}-[0-9a-f]{4}-4[0-9a-f]{3}-[89ab][0-9a-f]{3}-[0-9a-f]{12}"));
+            final UUID uuid = UUID.fromString(id);
+            assertEquals(4, uuid.version());
+            assertEquals(2, uuid.variant());
+            assertEquals(id, uuid.toString());
+        }
+    }
+
+    //This test case passes when the ids drawn by threads at once from their own random generators do not repeat.
+    @Test
+    public void generatesDistinctIdsAcrossThreads() throws Exception {
+        final Set<String> ids = ConcurrentHashMap.newKeySet();
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            final List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        ids.add(TokenIdGenerator.nextId());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (final Future<?> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+    }
+}
@@ -0,0 +1,151 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.cache.AccessTokenFilter.Membership;
+import com.upgrad.quora.service.dao.UserDao;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+
+public class AccessTokenFilterTest {
+
+    // issue time of the tokens issued long before any rebuild, which the filter is trusted for
+    private static final Date LONG_AGO = new Date(System.currentTimeMillis() - 3600000);
+
+    private final AccessTokenFilter accessTokenFilter = new AccessTokenFilter(new NoOpTransactionManager(), 1000, 0.01, 5);
+
+    // the live access tokens of the user_auth table
+    private final Set<String> database = ConcurrentHashMap.newKeySet();
+
+    private Consumer<String> duringRead = token -> { };
+
+    private volatile boolean failRead;
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(accessTokenFilter, "userDao", new UserDao() {
+            @Override
+            public void forEachLiveAccessToken(final ZonedDateTime now, final Consumer<String> consumer) {
+                if (failRead) {
+                    throw new IllegalStateException("connection lost");
+                }
+                // the read sees the tokens committed when it started, like the snapshot of its transaction
+                for (final String token : new ArrayList<>(database)) {
+                    consumer.accept(token);
+                    duringRead.accept(token);
+                }
+            }
+        });
+    }
+
+    //This test case passes when no token is checked before the filter was first built from the database.
+    @Test
+    public void checksNothingBeforeFirstRebuild() {
+        accessTokenFilter.add("issued");
+        assertEquals(Membership.NOT_CHECKED, accessTokenFilter.check("issued", LONG_AGO));
+        assertEquals(Membership.NOT_CHECKED, accessTokenFilter.check("unknown", LONG_AGO));
+    }
+
+    //This test case passes when, after a rebuild, live tokens may be present, unknown tokens are absent, and tokens
+    //issued since the rebuild started (less the clock skew) are not checked.
+    @Test
+    public void checksTokensIssuedBeforeRebuild() {
+        database.add("live");
+        accessTokenFilter.rebuild();
+
+        assertEquals(Membership.MAYBE_PRESENT, accessTokenFilter.check("live", LONG_AGO));
+        assertEquals(Membership.ABSENT, accessTokenFilter.check("unknown", LONG_AGO));
+        assertEquals(Membership.ABSENT, accessTokenFilter.check("unknown", null));
+        assertEquals(Membership.NOT_CHECKED, accessTokenFilter.check("unknown", new Date()));
+    }
+
+    //This test case passes when a token issued while the filter is rebuilt, and not seen by the rebuild read, is in
+    //the rebuilt filter, as is a token issued after the rebuild.
+    @Test
+    public void keepsTokensIssuedDuringRebuild() {
+        database.add("live");
+        duringRead = token -> issue("issued-during-rebuild");
+        accessTokenFilter.rebuild();
+        duringRead = token -> { };
+        issue("issued-after-rebuild");
+
+        assertEquals(Membership.MAYBE_PRESENT, accessTokenFilter.check("issued-during-rebuild", LONG_AGO));
+        assertEquals(Membership.MAYBE_PRESENT, accessTokenFilter.check("issued-after-rebuild", LONG_AGO));
+    }
+
+    //This test case passes when no committed token is ever reported absent while tokens are issued concurrently with
+    //repeated rebuilds.
+    @Test
+    public void rebuildLosesNoLiveToken() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            database.add("seed-" + i);
+        }
+        accessTokenFilter.rebuild();
+
+        final Thread issuer = new Thread(() -> {
+            for (int i = 0; i < 20000; i++) {
+                issue("concurrent-" + i);
+            }
+        });
+        issuer.start();
+        int rebuilds = 0;
+        while (issuer.isAlive() || rebuilds == 0) {
+            accessTokenFilter.rebuild();
+            rebuilds++;
+        }
+        issuer.join();
+
+        assertEquals(21000, database.size());
+        for (final String token : database) {
+            assertEquals(token, Membership.MAYBE_PRESENT, accessTokenFilter.check(token, LONG_AGO));
+        }
+    }
+
+    //This test case passes when a failed rebuild keeps the previous filter.
+    @Test
+    public void keepsPreviousFilterWhenRebuildFails() {
+        database.add("live");
+        accessTokenFilter.rebuild();
+        failRead = true;
+        accessTokenFilter.rebuild();
+
+        assertEquals(Membership.MAYBE_PRESENT, accessTokenFilter.check("live", LONG_AGO));
+        assertEquals(Membership.ABSENT, accessTokenFilter.check("unknown", LONG_AGO));
+    }
+
+    /**
+     * Issues a token as signin does: the session is committed, then the token added to the filter
+     */
+    private void issue(final String token) {
+        database.add(token);
+        accessTokenFilter.add(token);
+    }
+
+    private static final class NoOpTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(final TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(final TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(final TransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.dto.QuestionSummary;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AuthorQuestionCacheTest {
+
+    private static final UUID AUTHOR = UUID.randomUUID();
+
+    private static final long NOW = 1538000000000L;
+
+    private final AuthorQuestionCache authorQuestionCache = new AuthorQuestionCache(100);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    //This test case passes when a created question is put at its position in the cached list, newest first, and by
+    //descending id among questions of the same date.
+    @Test
+    public void insertsCreatedQuestionInOrder() {
+        load(question(3, 0), question(1, -1000));
+
+        authorQuestionCache.put(AUTHOR, question(2, 0));
+        authorQuestionCache.put(AUTHOR, question(5, 0));
+        authorQuestionCache.put(AUTHOR, question(4, 1000));
+        authorQuestionCache.put(AUTHOR, question(0, -2000));
+
+        assertEquals(Arrays.asList(4, 5, 3, 2, 1, 0), ids(cached()));
+        assertEquals(4, authorQuestionCache.getUpdateCount());
+        assertEquals(1, loads.get());
+    }
+
+    //This test case passes when an edited question replaces its previous state, at its new position if its date
+    //changed, without being duplicated.
+    @Test
+    public void movesEditedQuestion() {
+        load(question(3, 0), question(2, -1000), question(1, -2000));
+
+        final QuestionSummary edited = new QuestionSummary(2, uuid(2), "edited", new Timestamp(NOW - 1000));
+        authorQuestionCache.put(AUTHOR, edited);
+        assertEquals(Arrays.asList(3, 2, 1), ids(cached()));
+        assertEquals("edited", cached().get(1).getContent());
+
+        authorQuestionCache.put(AUTHOR, question(1, 1000));
+        assertEquals(Arrays.asList(1, 3, 2), ids(cached()));
+    }
+
+    //This test case passes when a deleted question is removed from the cached list, and removing a question which is
+    //not in the list leaves it unchanged.
+    @Test
+    public void removesDeletedQuestion() {
+        load(question(3, 0), question(2, -1000), question(1, -2000));
+
+        authorQuestionCache.remove(AUTHOR, 2);
+        assertEquals(Arrays.asList(3, 1), ids(cached()));
+        authorQuestionCache.remove(AUTHOR, 7);
+        assertEquals(Arrays.asList(3, 1), ids(cached()));
+    }
+
+    //This test case passes when a write within a transaction is applied to the cached list when the transaction
+    //commits, and never when it rolls back.
+    @Test
+    public void appliesWriteOnlyOnCommit() {
+        load(question(1, 0));
+
+        TransactionSynchronizationManager.initSynchronization();
+        authorQuestionCache.put(AUTHOR, question(2, 1000));
+        assertEquals(Arrays.asList(1), ids(cached()));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(Arrays.asList(1), ids(cached()));
+
+        TransactionSynchronizationManager.initSynchronization();
+        authorQuestionCache.remove(AUTHOR, 1);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(Arrays.asList(1), ids(cached()));
+
+        TransactionSynchronizationManager.initSynchronization();
+        authorQuestionCache.put(AUTHOR, question(3, 1000));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(Arrays.asList(3, 1), ids(cached()));
+    }
+
+    //This test case passes when a list loaded while a write of the author commits is returned to its reader but not
+    //cached, since it may miss the write.
+    @Test
+    public void doesNotCacheListLoadedDuringWrite() {
+        final List<QuestionSummary> stale = authorQuestionCache.get(AUTHOR, counting(uuid -> {
+            // a question of the author is created and committed while the list is being read
+            authorQuestionCache.put(AUTHOR, question(2, 1000));
+            return Collections.singletonList(question(1, 0));
+        }));
+        assertEquals(Arrays.asList(1), ids(stale));
+        assertEquals(0, authorQuestionCache.size());
+
+        load(question(2, 1000), question(1, 0));
+        assertEquals(Arrays.asList(2, 1), ids(cached()));
+        assertEquals(2, loads.get());
+    }
+
+    //This test case passes when a list loaded while a write within a transaction is pending is not cached either,
+    //whether the transaction then commits or rolls back.
+    @Test
+    public void doesNotCacheListLoadedDuringPendingWrite() {
+        TransactionSynchronizationManager.initSynchronization();
+        authorQuestionCache.put(AUTHOR, question(2, 1000));
+        final List<QuestionSummary> loaded = authorQuestionCache.get(AUTHOR, counting(uuid -> {
+            complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+            return Collections.singletonList(question(1, 0));
+        }));
+        assertEquals(Arrays.asList(1), ids(loaded));
+        assertEquals(0, authorQuestionCache.size());
+    }
+
+    //This test case passes when a write of an author whose list is not cached caches nothing, and unknown authors are
+    //not cached.
+    @Test
+    public void doesNotCacheWithoutLoad() {
+        authorQuestionCache.put(AUTHOR, question(1, 0));
+        assertEquals(0, authorQuestionCache.size());
+        assertNull(authorQuestionCache.get(AUTHOR, counting(uuid -> null)));
+        assertEquals(0, authorQuestionCache.size());
+    }
+
+    private void load(final QuestionSummary... questions) {
+        authorQuestionCache.get(AUTHOR, counting(uuid -> Arrays.asList(questions)));
+    }
+
+    private List<QuestionSummary> cached() {
+        return authorQuestionCache.get(AUTHOR, uuid -> {
+            throw new AssertionError("the list of the author is not cached");
+        });
+    }
+
+    private Function<UUID, List<QuestionSummary>> counting(final Function<UUID, List<QuestionSummary>> loader) {
+        return uuid -> {
+            loads.incrementAndGet();
+            return loader.apply(uuid);
+        };
+    }
+
+    /**
+     * Completes the current transaction, as the transaction manager does after a commit or a rollback
+     */
+    private static void complete(final int status) {
+        final List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (final TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    private static List<Integer> ids(final List<QuestionSummary> questions) {
+        final List<Integer> ids = new ArrayList<>();
+        for (final QuestionSummary question : questions) {
+            ids.add(question.getId());
+        }
+        return ids;
+    }
+
+    private static UUID uuid(final int id) {
+        return new UUID(0, id);
+    }
+
+    private static QuestionSummary question(final int id, final long offsetMillis) {
+        return new QuestionSummary(id, uuid(id), "question " + id, new Timestamp(NOW + offsetMillis));
+    }
+}
@@ -0,0 +1,93 @@
+package com.upgrad.quora.service.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BloomFilterTest {
+
+    private static final int INSERTIONS = 100000;
+
+    //This test case passes when every inserted value is reported as possibly present.
+    @Test
+    public void hasNoFalseNegatives() {
+        final BloomFilter filter = new BloomFilter(INSERTIONS, 0.01);
+        for (int i = 0; i < INSERTIONS; i++) {
+            filter.put(token(i));
+        }
+        for (int i = 0; i < INSERTIONS; i++) {
+            assertTrue(token(i), filter.mightContain(token(i)));
+        }
+        assertEquals(INSERTIONS, filter.getInsertionCount());
+    }
+
+    //This test case passes when, filled to the expected number of insertions, the filter reports absent values as
+    //present at about the configured probability.
+    @Test
+    public void falsePositiveRateStaysWithinBound() {
+        final BloomFilter filter = new BloomFilter(INSERTIONS, 0.01);
+        for (int i = 0; i < INSERTIONS; i++) {
+            filter.put(token(i));
+        }
+        int falsePositives = 0;
+        for (int i = INSERTIONS; i < 2 * INSERTIONS; i++) {
+            if (filter.mightContain(token(i))) {
+                falsePositives++;
+            }
+        }
+        final double rate = (double) falsePositives / INSERTIONS;
+        assertTrue("false positive rate " + rate, rate < 0.015);
+        final double expected = filter.expectedFalsePositiveProbability();
+        assertTrue("expected false positive probability " + expected, expected > 0.005 && expected < 0.015);
+    }
+
+    //This test case passes when an empty filter reports every value as absent.
+    @Test
+    public void emptyFilterContainsNothing() {
+        final BloomFilter filter = new BloomFilter(INSERTIONS, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(filter.mightContain(token(i)));
+        }
+        assertEquals(0, filter.expectedFalsePositiveProbability(), 0);
+    }
+
+    //This test case passes when values inserted concurrently by several threads are all reported as possibly present,
+    //none of the lock-free bit updates being lost.
+    @Test
+    public void concurrentInsertionsAreNotLost() throws Exception {
+        final BloomFilter filter = new BloomFilter(INSERTIONS, 0.01);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                final int first = thread;
+                futures.add(executor.submit(() -> {
+                    for (int i = first; i < INSERTIONS; i += 4) {
+                        filter.put(token(i));
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (int i = 0; i < INSERTIONS; i++) {
+            assertTrue(token(i), filter.mightContain(token(i)));
+        }
+    }
+
+    private static String token(final int i) {
+        return "eyJraWQiOiIyMDE4LTA5IiwiYWxnIjoiSFM1MTIifQ.token-" + i;
+    }
+}
@@ -0,0 +1,65 @@
+package com.upgrad.quora.service.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * FrequencySketch is package-private, so this test lives in its package.
+ */
+public class FrequencySketchTest {
+
+    // sized for 1000 keys, so every counter is halved after 10000 recorded accesses
+    private final FrequencySketch sketch = new FrequencySketch(1000);
+
+    //This test case passes when the frequency of a key counts its accesses, up to the 4-bit maximum of 15.
+    @Test
+    public void countsAccessesUpToFifteen() {
+        assertEquals(0, sketch.frequency("question"));
+        for (int i = 1; i <= 15; i++) {
+            sketch.increment("question");
+            assertEquals(i, sketch.frequency("question"));
+        }
+        sketch.increment("question");
+        assertEquals(15, sketch.frequency("question"));
+    }
+
+    //This test case passes when every counter is halved once the sample size of accesses was recorded, and not
+    //before, so that keys popular long ago fade away.
+    @Test
+    public void halvesCountersAfterSampleSize() {
+        for (int i = 0; i < 12; i++) {
+            sketch.increment("popular");
+        }
+        assertEquals(12, sketch.frequency("popular"));
+
+        // 12 + 9987 recorded accesses, one short of the sample size; other keys can only raise the estimate
+        for (int i = 0; i < 9987; i++) {
+            sketch.increment("key-" + i);
+        }
+        assertTrue(sketch.frequency("popular") >= 12);
+
+        sketch.increment("key-last");
+        final int halved = sketch.frequency("popular");
+        assertTrue("frequency " + halved + " was not halved", halved >= 6 && halved <= 7);
+    }
+
+    //This test case passes when a key accessed often is estimated above keys accessed once, despite collisions.
+    @Test
+    public void separatesFrequentFromRareKeys() {
+        for (int i = 0; i < 1000; i++) {
+            sketch.increment("rare-" + i);
+        }
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("frequent");
+        }
+        int rareAboveFrequent = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (sketch.frequency("rare-" + i) >= sketch.frequency("frequent")) {
+                rareAboveFrequent++;
+            }
+        }
+        assertEquals(0, rareAboveFrequent);
+    }
+}
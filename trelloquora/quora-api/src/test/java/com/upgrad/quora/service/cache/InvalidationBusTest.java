@@ -0,0 +1,169 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.dto.QuestionSnapshot;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exercises the cache invalidation bus against the database configured in application.yaml. The other nodes are
+ * played by notifications sent straight to the channel with a foreign node id.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "quora.invalidation-bus.poll-timeout-ms=50",
+        "quora.invalidation-bus.reconnect-delay-ms=100",
+        "quora.invalidation-bus.keepalive-ms=100"
+})
+
+public class InvalidationBusTest {
+
+    private static final String CHANNEL = "quora_cache_invalidation";
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    @Autowired
+    private QuestionCache questionCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Before
+    public void setUp() {
+        await(invalidationBus::isConnected);
+    }
+
+    //This test case passes when a question invalidated by another node is dropped from the cache.
+    @Test
+    public void appliesInvalidationsOfOtherNodes() {
+        final UUID invalidated = cache();
+        final UUID kept = cache();
+        notifyAs("other-node", "q" + invalidated);
+        await(() -> !isCached(invalidated));
+        assertTrue(isCached(kept));
+    }
+
+    //This test case passes when the invalidations published by the node itself are not applied again.
+    @Test
+    public void ignoresOwnInvalidations() {
+        final UUID own = cache();
+        final UUID foreign = cache();
+        notifyAs(invalidationBus.getNodeId(), "q" + own);
+        notifyAs("other-node", "q" + foreign);
+        // notifications are delivered in order, so the own one was handled once the foreign one is
+        await(() -> !isCached(foreign));
+        assertTrue(isCached(own));
+    }
+
+    //This test case passes when the keys of a transaction are coalesced in one notification sent on commit only.
+    @Test
+    public void publishesOnCommitOnly() {
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        final long notifications = invalidationBus.getNotifications();
+        final long coalesced = invalidationBus.getCoalescedKeys();
+
+        transactionTemplate.execute(status -> {
+            invalidationBus.publish(InvalidationType.QUESTION, UUID.randomUUID().toString());
+            status.setRollbackOnly();
+            return null;
+        });
+        assertEquals(notifications, invalidationBus.getNotifications());
+
+        final long ignored = invalidationBus.getIgnoredKeys();
+        final String questionUuid = UUID.randomUUID().toString();
+        transactionTemplate.execute(status -> {
+            invalidationBus.publish(InvalidationType.QUESTION, questionUuid);
+            invalidationBus.publish(InvalidationType.QUESTION, questionUuid);
+            invalidationBus.publish(InvalidationType.SESSIONS_OF_USER, UUID.randomUUID().toString());
+            return null;
+        });
+        assertEquals(notifications + 1, invalidationBus.getNotifications());
+        assertEquals(coalesced + 1, invalidationBus.getCoalescedKeys());
+        // the notification comes back to this node with its two keys
+        await(() -> invalidationBus.getIgnoredKeys() == ignored + 2);
+    }
+
+    //This test case passes when a malformed key is skipped without failing the rest of the notification or reconnecting.
+    @Test
+    public void skipsMalformedKeys() {
+        final UUID foreign = cache();
+        final long flushes = invalidationBus.getFullFlushes();
+        notifyAs("other-node", "qnot_a_uuid q" + foreign);
+        await(() -> !isCached(foreign));
+        assertEquals(flushes, invalidationBus.getFullFlushes());
+        assertTrue(invalidationBus.isConnected());
+    }
+
+    //This test case passes when the caches are flushed after the listener lost its connection and reconnected.
+    @Test
+    public void flushesCachesOnReconnect() {
+        final UUID cached = cache();
+        final long flushes = invalidationBus.getFullFlushes();
+        jdbcTemplate.queryForList("select pg_terminate_backend(pid) from pg_stat_activity where application_name = ?",
+                InvalidationBus.LISTENER_NAME);
+        await(() -> invalidationBus.getFullFlushes() > flushes && invalidationBus.isConnected());
+        assertFalse(isCached(cached));
+    }
+
+    //This test case passes when the listener connection is checked at every keepalive interval and stays connected.
+    @Test
+    public void checksListenerConnection() {
+        final long flushes = invalidationBus.getFullFlushes();
+        await(() -> jdbcTemplate.queryForObject("select count(*) from pg_stat_activity where application_name = ? and query = 'SELECT 1'",
+                Integer.class, InvalidationBus.LISTENER_NAME) > 0);
+        assertTrue(invalidationBus.isConnected());
+        assertEquals(0, invalidationBus.getKeepaliveFailures());
+        assertEquals(flushes, invalidationBus.getFullFlushes());
+    }
+
+    private UUID cache() {
+        final UUID uuid = UUID.randomUUID();
+        questionCache.get(uuid, key -> new QuestionSnapshot(1, key, "content", new Timestamp(0), 1));
+        assertTrue(isCached(uuid));
+        return uuid;
+    }
+
+    private boolean isCached(final UUID uuid) {
+        final AtomicBoolean loaded = new AtomicBoolean();
+        questionCache.get(uuid, key -> {
+            loaded.set(true);
+            return null;
+        });
+        return !loaded.get();
+    }
+
+    private void notifyAs(final String nodeId, final String entry) {
+        jdbcTemplate.queryForList("select cast(pg_notify(?, ?) as text)", CHANNEL, nodeId + " " + entry);
+    }
+
+    private static void await(final BooleanSupplier condition) {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("timed out", System.currentTimeMillis() < deadline);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.dto.QuestionSnapshot;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Uses the package-private QuestionCache.segmentOf, so this test lives in the package of the cache.
+ */
+public class QuestionCacheTest {
+
+    // a window of 1 entry and a main segment of 99, of which at most 79 protected
+    private final QuestionCache questionCache = new QuestionCache(100);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    //This test case passes when a new question enters the window, moves on probation when it leaves the window, and is
+    //promoted to the protected segment on its next access.
+    @Test
+    public void promotesFromWindowToProbationToProtected() {
+        get(0);
+        assertEquals("window", questionCache.segmentOf(uuid(0)));
+        get(1);
+        assertEquals("probation", questionCache.segmentOf(uuid(0)));
+        assertEquals("window", questionCache.segmentOf(uuid(1)));
+        get(0);
+        assertEquals("protected", questionCache.segmentOf(uuid(0)));
+        assertEquals(2, loads.get());
+        assertEquals(1, questionCache.getHitCount());
+    }
+
+    //This test case passes when the least recently used protected question is demoted back on probation once the
+    //protected segment is full.
+    @Test
+    public void demotesFromProtectedWhenFull() {
+        for (int i = 0; i < 100; i++) {
+            get(i);
+        }
+        for (int i = 0; i < 80; i++) {
+            get(i);
+        }
+        assertEquals("probation", questionCache.segmentOf(uuid(0)));
+        assertEquals("protected", questionCache.segmentOf(uuid(1)));
+        assertEquals("protected", questionCache.segmentOf(uuid(79)));
+        assertEquals("probation", questionCache.segmentOf(uuid(80)));
+        assertEquals(100, questionCache.size());
+    }
+
+    //This test case passes when a question leaving the window only displaces the probation victim if it was accessed
+    //more often, so that questions read once cannot flush the cache.
+    @Test
+    public void admitsByFrequency() {
+        for (int i = 0; i < 100; i++) {
+            get(i);
+        }
+
+        // question 99 leaves the window, read as often as the victim (question 0): it is not admitted
+        get(1000);
+        assertNull(questionCache.segmentOf(uuid(99)));
+        assertEquals("probation", questionCache.segmentOf(uuid(0)));
+        assertEquals(1, questionCache.getEvictionCount());
+
+        // question 1000 was read twice when it leaves the window: it displaces the victim
+        get(1000);
+        get(1001);
+        assertEquals("probation", questionCache.segmentOf(uuid(1000)));
+        assertNull(questionCache.segmentOf(uuid(0)));
+        assertEquals(2, questionCache.getEvictionCount());
+        assertEquals(100, questionCache.size());
+    }
+
+    //This test case passes when a question read while it is invalidated is returned to its reader but not cached.
+    @Test
+    public void doesNotCacheSnapshotLoadedDuringInvalidation() {
+        final QuestionSnapshot stale = questionCache.get(uuid(0), counting(uuid -> {
+            // the question is edited while it is being read
+            questionCache.invalidate(uuid);
+            return snapshot(0, 1);
+        }));
+        assertEquals(uuid(0), stale.getUuid());
+        assertNull(questionCache.segmentOf(uuid(0)));
+
+        get(0);
+        get(0);
+        assertEquals(2, loads.get());
+    }
+
+    //This test case passes when a question read while its owner or the whole cache is invalidated is not cached.
+    @Test
+    public void doesNotCacheSnapshotLoadedDuringUserInvalidationOrClear() {
+        questionCache.get(uuid(0), counting(uuid -> {
+            questionCache.invalidateUser(2);
+            return snapshot(0, 1);
+        }));
+        questionCache.get(uuid(1), counting(uuid -> {
+            questionCache.clear();
+            return snapshot(1, 1);
+        }));
+        assertEquals(0, questionCache.size());
+    }
+
+    //This test case passes when the questions of a deleted user are dropped, and those of other users kept.
+    @Test
+    public void invalidatesQuestionsOfUser() {
+        questionCache.get(uuid(0), uuid -> snapshot(0, 1));
+        questionCache.get(uuid(1), uuid -> snapshot(1, 2));
+        questionCache.get(uuid(2), uuid -> snapshot(2, 1));
+
+        questionCache.invalidateUser(1);
+        assertEquals(1, questionCache.size());
+        assertEquals("probation", questionCache.segmentOf(uuid(1)));
+        assertEquals(2, questionCache.getInvalidationCount());
+    }
+
+    //This test case passes when unknown questions are not cached.
+    @Test
+    public void doesNotCacheUnknownQuestion() {
+        assertNull(questionCache.get(uuid(0), counting(uuid -> null)));
+        assertNull(questionCache.get(uuid(0), counting(uuid -> null)));
+        assertEquals(2, loads.get());
+        assertEquals(0, questionCache.size());
+    }
+
+    private void get(final int question) {
+        assertEquals(uuid(question), questionCache.get(uuid(question), counting(uuid -> snapshot(question, 1))).getUuid());
+    }
+
+    private Function<UUID, QuestionSnapshot> counting(final Function<UUID, QuestionSnapshot> loader) {
+        return uuid -> {
+            loads.incrementAndGet();
+            return loader.apply(uuid);
+        };
+    }
+
+    private static UUID uuid(final int question) {
+        return new UUID(0x5155455354494F4EL, question);
+    }
+
+    private static QuestionSnapshot snapshot(final int question, final int userId) {
+        return new QuestionSnapshot(question, uuid(question), "content of question " + question,
+                new Timestamp(System.currentTimeMillis()), userId);
+    }
+}
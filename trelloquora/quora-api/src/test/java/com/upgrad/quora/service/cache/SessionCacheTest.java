@@ -0,0 +1,137 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.entity.UserAuthEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+import org.junit.Test;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SessionCacheTest {
+
+    private final SessionCache sessionCache = new SessionCache(100, 300, 1000);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    //This test case passes when a session is loaded on the first lookup of its token and served from the cache after.
+    @Test
+    public void cachesLoadedSession() {
+        final UserAuthEntity userAuthEntity = session(user("admin"), ZonedDateTime.now().plusHours(1));
+        final Function<String, UserAuthEntity> loader = counting(token -> userAuthEntity);
+
+        assertEquals("admin", sessionCache.get("token", loader).getUser().getRole());
+        assertEquals("admin", sessionCache.get("token", loader).getUser().getRole());
+        assertEquals(1, loads.get());
+        assertEquals(1, sessionCache.getHitCount());
+        assertEquals(1, sessionCache.getMissCount());
+    }
+
+    //This test case passes when unknown tokens are not cached.
+    @Test
+    public void doesNotCacheUnknownToken() {
+        final Function<String, UserAuthEntity> loader = counting(token -> null);
+        assertNull(sessionCache.get("token", loader));
+        assertNull(sessionCache.get("token", loader));
+        assertEquals(2, loads.get());
+    }
+
+    //This test case passes when a session read before a signout committed is returned to its reader but not cached,
+    //so the signed-out state is read on the next lookup.
+    @Test
+    public void doesNotCacheSessionLoadedDuringInvalidation() {
+        final UserEntity user = user("nonadmin");
+        final UserAuthEntity signedIn = session(user, ZonedDateTime.now().plusHours(1));
+        final UserAuthEntity signedOut = session(user, signedIn.getExpiresAt());
+        signedOut.setLogoutAt(ZonedDateTime.now());
+
+        final CachedSession stale = sessionCache.get("token", counting(token -> {
+            // the signout commits while the session is being read
+            sessionCache.invalidate(token);
+            return signedIn;
+        }));
+        assertFalse(stale.isSignedOut());
+        assertEquals(0, sessionCache.size());
+
+        assertTrue(sessionCache.get("token", counting(token -> signedOut)).isSignedOut());
+        assertTrue(sessionCache.get("token", counting(token -> signedIn)).isSignedOut());
+        assertEquals(2, loads.get());
+    }
+
+    //This test case passes when the sessions of a deleted user are dropped, and those of other users kept.
+    @Test
+    public void invalidatesSessionsOfUser() {
+        final UserEntity deleted = user("nonadmin");
+        final UserEntity other = user("nonadmin");
+        sessionCache.get("deleted-1", token -> session(deleted, ZonedDateTime.now().plusHours(1)));
+        sessionCache.get("deleted-2", token -> session(deleted, ZonedDateTime.now().plusHours(1)));
+        sessionCache.get("other", token -> session(other, ZonedDateTime.now().plusHours(1)));
+
+        sessionCache.invalidateUser(deleted.getUuid());
+        assertEquals(1, sessionCache.size());
+        assertEquals(other.getUuid(), sessionCache.get("other", counting(token -> null)).getUser().getUuid());
+        assertEquals(0, loads.get());
+    }
+
+    //This test case passes when a session which has expired already is returned but not cached.
+    @Test
+    public void doesNotCacheExpiredSession() {
+        final CachedSession session = sessionCache.get("token", token -> session(user("nonadmin"), ZonedDateTime.now().minusMinutes(1)));
+        assertTrue(session.isSessionExpired());
+        assertEquals(0, sessionCache.size());
+    }
+
+    //This test case passes when every caller gets its own copy of the user, without the password hash and salt, so
+    //that no request can change the user seen by the others.
+    @Test
+    public void handsOutCopiesOfUser() {
+        final UserEntity user = user("nonadmin");
+        sessionCache.get("token", token -> session(user, ZonedDateTime.now().plusHours(1)));
+        user.setRole("admin");
+
+        final UserEntity first = sessionCache.get("token", counting(token -> null)).getUser();
+        first.setRole("admin");
+        final UserEntity second = sessionCache.get("token", counting(token -> null)).getUser();
+
+        assertNotSame(first, second);
+        assertEquals("nonadmin", second.getRole());
+        assertEquals(user.getId(), second.getId());
+        assertEquals(user.getUuid(), second.getUuid());
+        assertNull(second.getPassword());
+        assertNull(second.getSalt());
+    }
+
+    private Function<String, UserAuthEntity> counting(final Function<String, UserAuthEntity> loader) {
+        return token -> {
+            loads.incrementAndGet();
+            return loader.apply(token);
+        };
+    }
+
+    private static UserEntity user(final String role) {
+        final UserEntity user = new UserEntity();
+        user.setId(Math.abs(UUID.randomUUID().hashCode()));
+        user.setUuid(UUID.randomUUID());
+        user.setUsername("user");
+        user.setPassword("$pbkdf2-sha512$i=10000,l=512$00");
+        user.setSalt("salt");
+        user.setRole(role);
+        return user;
+    }
+
+    private static UserAuthEntity session(final UserEntity user, final ZonedDateTime expiresAt) {
+        final UserAuthEntity userAuthEntity = new UserAuthEntity();
+        userAuthEntity.setUser(user);
+        userAuthEntity.setUuid(user.getUuid());
+        userAuthEntity.setLoginAt(ZonedDateTime.now());
+        userAuthEntity.setExpiresAt(expiresAt);
+        return userAuthEntity;
+    }
+}
@@ -0,0 +1,124 @@
+package com.upgrad.quora.service.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TimingWheel is package-private, so this test lives in its package.
+ */
+public class TimingWheelTest {
+
+    private static final long TICK = 1000000;
+
+    // an arbitrary System.nanoTime origin, ticks are counted from it
+    private static final long ORIGIN = 123456789L;
+
+    private final TimingWheel<Long> wheel = new TimingWheel<>(TICK, ORIGIN);
+
+    private final List<Long> fired = new ArrayList<>();
+
+    //This test case passes when a timeout fires on the first advance at or after its deadline, and not before.
+    @Test
+    public void firesAtDeadline() {
+        wheel.schedule(6L, at(5) + TICK / 2);
+        assertEquals(0, advance(at(5) + TICK / 2 - 1));
+        assertEquals(0, advance(at(6) - 1));
+        assertEquals(1, advance(at(6)));
+        assertEquals(0, wheel.size());
+    }
+
+    //This test case passes when a timeout whose deadline went by between two advances fires on the next advance.
+    @Test
+    public void firesAfterDeadlineWhenAdvancedLate() {
+        wheel.schedule(3L, at(3));
+        wheel.schedule(70L, at(70));
+        wheel.schedule(5000L, at(5000));
+        assertEquals(3, advance(at(100000)));
+        assertEquals(Arrays.asList(3L, 70L, 5000L), fired);
+    }
+
+    //This test case passes when timeouts scheduled in every level, and beyond the span of the wheel, are cascaded
+    //down and each fire in the tick of its deadline.
+    @Test
+    public void cascadesBetweenLevels() {
+        firesInDeadlineTick(0, new long[]{1, 63, 64, 65, 100, 4095, 4096, 4097, 262143, 262144, 262145, 300000,
+                16777215, 16777216, 16777217, 20000000});
+    }
+
+    //This test case passes when timeouts are cascaded correctly when scheduled from a tick which is not aligned on
+    //the buckets of any level.
+    @Test
+    public void cascadesFromUnalignedTick() {
+        advance(at(4001));
+        firesInDeadlineTick(4002, new long[]{4002, 4095, 4096, 4160, 8191, 8192, 266000, 270337, 16781312});
+    }
+
+    //This test case passes when a cancelled timeout never fires, including one cancelled while parked in an upper
+    //level, and when cancelling twice or after the timeout fired does nothing.
+    @Test
+    public void cancelledTimeoutDoesNotFire() {
+        final TimingWheel.Timeout<Long> near = wheel.schedule(10L, at(10));
+        final TimingWheel.Timeout<Long> far = wheel.schedule(300000L, at(300000));
+        final TimingWheel.Timeout<Long> kept = wheel.schedule(300001L, at(300001));
+        assertEquals(3, wheel.size());
+
+        wheel.cancel(near);
+        wheel.cancel(far);
+        wheel.cancel(far);
+        assertFalse(near.isPending());
+        assertEquals(1, wheel.size());
+
+        assertEquals(1, advance(at(400000)));
+        assertEquals(Arrays.asList(300001L), fired);
+        assertFalse(kept.isPending());
+        wheel.cancel(kept);
+        assertEquals(0, wheel.size());
+    }
+
+    //This test case passes when a timeout scheduled with a deadline in the past fires on the next tick, instead of
+    //being lost in a bucket which already went by.
+    @Test
+    public void pastDeadlineFiresOnNextTick() {
+        advance(at(10000));
+        final TimingWheel.Timeout<Long> late = wheel.schedule(2L, at(2));
+        assertTrue(late.isPending());
+        assertEquals(0, advance(at(10000)));
+        assertEquals(1, advance(at(10001)));
+        assertEquals(Arrays.asList(2L), fired);
+    }
+
+    /**
+     * Schedules a timeout at every deadline tick, from the current tick, and checks that advancing to the tick before
+     * a deadline fires nothing new, and advancing to the deadline fires it
+     */
+    private void firesInDeadlineTick(final long currentTick, final long[] deadlineTicks) {
+        for (final long deadlineTick : deadlineTicks) {
+            wheel.schedule(deadlineTick, at(deadlineTick));
+        }
+        long previous = currentTick - 1;
+        for (final long deadlineTick : deadlineTicks) {
+            if (deadlineTick - 1 > previous) {
+                assertEquals("fired before tick " + deadlineTick, 0, advance(at(deadlineTick - 1)));
+            }
+            assertEquals("did not fire at tick " + deadlineTick, 1, advance(at(deadlineTick)));
+            assertEquals(Long.valueOf(deadlineTick), fired.get(fired.size() - 1));
+            previous = deadlineTick;
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    private int advance(final long nowNanos) {
+        return wheel.advance(nowNanos, timeout -> fired.add(timeout.getValue()));
+    }
+
+    private static long at(final long tick) {
+        return ORIGIN + tick * TICK;
+    }
+}
@@ -0,0 +1,240 @@
+package com.upgrad.quora.service.cache;
+
+import com.jayway.jsonpath.JsonPath;
+import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.entity.UserEntity;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.NaturalIdCacheStatistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Writes users through the controllers and checks the second-level cache regions of UserEntity, on this node and on
+ * the other nodes, which are played by notifications sent straight to the channel with a foreign node id. The
+ * invalidations the services publish are read from the channel on a connection of the test.
+ * Runs against the database configured in application.yaml; the test creates its own users and deletes them afterwards.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "quora.session-reaper.initial-delay-ms=3600000",
+        "quora.token-filter.rebuild-interval-ms=3600000",
+        "quora.invalidation-bus.poll-timeout-ms=50"
+})
+@AutoConfigureMockMvc
+
+public class UserCacheRegionsTest {
+
+    private static final String CHANNEL = "quora_cache_invalidation";
+
+    // salt and hash of the password "secret" as written before the "$id$parameters$hash" format existed, which
+    // signin upgrades and writes back
+    private static final String LEGACY_SALT = "AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8=";
+
+    private static final String LEGACY_HASH = "E4279823480EC503";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserCacheRegions userCacheRegions;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    @Autowired
+    private UserDao userDao;
+
+    private final List<String> userUuids = new ArrayList<>();
+
+    private String userName;
+
+    private UUID userUuid;
+
+    private Integer userId;
+
+    @Before
+    public void setUp() throws Exception {
+        await(invalidationBus::isConnected);
+        userName = signup();
+        userUuid = UUID.fromString(userUuids.get(0));
+        userId = jdbcTemplate.queryForObject("select id from users where uuid = ?", Integer.class, userUuid);
+    }
+
+    @After
+    public void tearDown() {
+        for (final String uuid : userUuids) {
+            // sessions of the users are deleted by cascade
+            jdbcTemplate.update("delete from users where uuid = ?", UUID.fromString(uuid));
+        }
+    }
+
+    //This test case passes when the user whose password hash signin upgrades is published as invalidated, and the
+    //other nodes evict both its entity and its natural id on receiving the invalidation.
+    @Test
+    public void evictsUserUpdatedAtSigninOnOtherNodes() throws Exception {
+        jdbcTemplate.update("update users set salt = ?, password = ? where id = ?", LEGACY_SALT, LEGACY_HASH, userId);
+        // the update above bypassed Hibernate
+        userCacheRegions.evict(userId);
+
+        final List<String> published = publishedDuring(() -> signin(userName, "secret"));
+        assertTrue(published.toString(), published.contains("u" + userId));
+        assertTrue(jdbcTemplate.queryForObject("select password from users where id = ?", String.class, userId).startsWith("$"));
+
+        loadUser();
+        assertTrue(cache().containsEntity(UserEntity.class, userId));
+        final long naturalIdHits = naturalIdStatistics().getHitCount();
+        loadUser();
+        assertEquals(naturalIdHits + 1, naturalIdStatistics().getHitCount());
+
+        notifyAs("other-node", "u" + userId);
+        await(() -> !cache().containsEntity(UserEntity.class, userId));
+        final long naturalIdMisses = naturalIdStatistics().getMissCount();
+        assertEquals(userUuid, loadUser().getUuid());
+        assertEquals(naturalIdMisses + 1, naturalIdStatistics().getMissCount());
+    }
+
+    //This test case passes when a user deleted by an admin is published as invalidated, and is gone from both the
+    //entity region and the natural-id region of this node, so that its uuid no longer resolves.
+    @Test
+    public void evictsUserDeletedByAdmin() throws Exception {
+        final String adminName = signup();
+        final Integer adminId = jdbcTemplate.queryForObject("select id from users where uuid = ?", Integer.class,
+                UUID.fromString(userUuids.get(1)));
+        jdbcTemplate.update("update users set role = 'admin' where id = ?", adminId);
+        // the update above bypassed Hibernate
+        userCacheRegions.evict(adminId);
+        final String adminToken = signin(adminName, "a");
+
+        loadUser();
+        assertTrue(cache().containsEntity(UserEntity.class, userId));
+
+        final List<String> published = publishedDuring(() ->
+                mvc.perform(MockMvcRequestBuilders.delete("/admin/user/" + userUuid).header("authorization", adminToken))
+                        .andExpect(status().isOk()));
+        assertTrue(published.toString(), published.contains("u" + userId));
+
+        assertFalse(cache().containsEntity(UserEntity.class, userId));
+        final long naturalIdMisses = naturalIdStatistics().getMissCount();
+        assertNull(loadUser());
+        assertEquals(naturalIdMisses + 1, naturalIdStatistics().getMissCount());
+    }
+
+    private String signup() throws Exception {
+        final String name = "l2_" + UUID.randomUUID().toString().substring(0, 8);
+        MvcResult signup = mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + name + "&emailAddress=" + name + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated()).andReturn();
+        userUuids.add(JsonPath.read(signup.getResponse().getContentAsString(), "$.id"));
+        return name;
+    }
+
+    private String signin(final String name, final String password) throws Exception {
+        final String credentials = Base64.getEncoder().encodeToString((name + ":" + password).getBytes(StandardCharsets.UTF_8));
+        return mvc.perform(MockMvcRequestBuilders.post("/user/signin").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "Basic " + credentials))
+                .andExpect(status().isOk()).andReturn().getResponse().getHeader("access-token");
+    }
+
+    private UserEntity loadUser() {
+        return new TransactionTemplate(transactionManager).execute(status -> userDao.getUserByUuid(userUuid));
+    }
+
+    /**
+     * @return the entries of the notifications this node sent while the request ran
+     */
+    private List<String> publishedDuring(final Request request) throws Exception {
+        final List<String> entries = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("LISTEN " + CHANNEL);
+            try {
+                request.perform();
+                // notifications are delivered along with the result of the next statement
+                statement.execute("SELECT 1");
+                final PGNotification[] notifications = connection.unwrap(PGConnection.class).getNotifications();
+                for (final PGNotification notification : notifications == null ? new PGNotification[0] : notifications) {
+                    final List<String> parts = Arrays.asList(notification.getParameter().split(" "));
+                    if (parts.get(0).equals(invalidationBus.getNodeId())) {
+                        entries.addAll(parts.subList(1, parts.size()));
+                    }
+                }
+            } finally {
+                statement.execute("UNLISTEN " + CHANNEL);
+            }
+        }
+        return entries;
+    }
+
+    private Cache cache() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+
+    private NaturalIdCacheStatistics naturalIdStatistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics()
+                .getNaturalIdCacheStatistics(UserEntity.NATURAL_ID_CACHE_REGION);
+    }
+
+    private void notifyAs(final String nodeId, final String entry) {
+        jdbcTemplate.queryForList("select cast(pg_notify(?, ?) as text)", CHANNEL, nodeId + " " + entry);
+    }
+
+    private static void await(final BooleanSupplier condition) {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("timed out", System.currentTimeMillis() < deadline);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private interface Request {
+        void perform() throws Exception;
+    }
+}
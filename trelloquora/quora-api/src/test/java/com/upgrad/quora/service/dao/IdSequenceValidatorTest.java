@@ -0,0 +1,65 @@
+package com.upgrad.quora.service.dao;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IdSequenceValidatorTest {
+
+    //This test case passes when sequences whose INCREMENT BY equals the increment_size of their generator pass.
+    @Test
+    public void acceptsMatchingSequences() {
+        IdSequenceValidator.check(incrementSizes(), incrementBys(10L, 50L));
+    }
+
+    //This test case passes when a sequence left with the INCREMENT BY 1 of its SERIAL column fails the startup, naming
+    //the sequence and both increments, and the sequence which matches is not named.
+    @Test
+    public void rejectsMismatchedIncrement() {
+        final String message = checkFails(incrementSizes(), incrementBys(10L, 1L));
+
+        assertTrue(message, message.contains("question_id_seq has INCREMENT BY 1 but increment_size 50"));
+        assertFalse(message, message.contains("users_id_seq"));
+    }
+
+    //This test case passes when a sequence which does not exist fails the startup.
+    @Test
+    public void rejectsMissingSequence() {
+        final Map<String, Long> incrementBys = incrementBys(10L, 50L);
+        incrementBys.remove("users_id_seq");
+
+        final String message = checkFails(incrementSizes(), incrementBys);
+
+        assertTrue(message, message.contains("users_id_seq does not exist"));
+        assertFalse(message, message.contains("question_id_seq"));
+    }
+
+    private static Map<String, Integer> incrementSizes() {
+        final Map<String, Integer> incrementSizes = new TreeMap<>();
+        incrementSizes.put("users_id_seq", 10);
+        incrementSizes.put("question_id_seq", 50);
+        return incrementSizes;
+    }
+
+    private static Map<String, Long> incrementBys(final long users, final long question) {
+        final Map<String, Long> incrementBys = new TreeMap<>();
+        incrementBys.put("users_id_seq", users);
+        incrementBys.put("question_id_seq", question);
+        return incrementBys;
+    }
+
+    private static String checkFails(final Map<String, Integer> incrementSizes, final Map<String, Long> incrementBys) {
+        try {
+            IdSequenceValidator.check(incrementSizes, incrementBys);
+        } catch (IllegalStateException e) {
+            return e.getMessage();
+        }
+        fail("Expected the id sequences to be rejected");
+        return null;
+    }
+}
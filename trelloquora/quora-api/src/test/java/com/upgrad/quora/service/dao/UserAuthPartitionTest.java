@@ -0,0 +1,96 @@
+package com.upgrad.quora.service.dao;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Drops monthly partitions of the partitioned user_auth schema (quora_partitioned.sql) through UserDao. The schema is
+ * created in a schema of its own, first on the search path, inside a transaction which is rolled back afterwards, so
+ * the user_auth table of the database configured in application.yaml is left as it is. Partitioned tables with a
+ * default partition require PostgreSQL 11 or later, the test is skipped on older servers.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "quora.session-reaper.initial-delay-ms=3600000",
+        "quora.token-filter.rebuild-interval-ms=3600000"
+})
+
+public class UserAuthPartitionTest {
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private String partitionedSchema;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(jdbcTemplate.queryForObject("select current_setting('server_version_num')::int", Integer.class) >= 110000);
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("sql/quora_partitioned.sql")) {
+            partitionedSchema = StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    //This test case passes when the partitions past retention whose sessions all expired or were signed out are
+    //dropped, and a partition past retention holding a session whose expiry was extended by a refresh is kept.
+    @Test
+    public void keepsPartitionsWithLiveRefreshedSessions() {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            status.setRollbackOnly();
+            jdbcTemplate.execute("CREATE SCHEMA quora_partition_test");
+            jdbcTemplate.execute("SET LOCAL search_path TO quora_partition_test");
+            jdbcTemplate.execute("CREATE TABLE USERS(ID SERIAL PRIMARY KEY)");
+            jdbcTemplate.execute(partitionedSchema);
+            jdbcTemplate.update("insert into users default values");
+            for (final String month : new String[]{"2018-01-01", "2018-02-01", "2018-03-01"}) {
+                jdbcTemplate.execute("select create_user_auth_partition('" + month + "')");
+            }
+
+            // expired within its month
+            insertSession("2018-01-10", "'2018-01-11'", null);
+            // refreshed until tomorrow
+            insertSession("2018-02-10", "CURRENT_TIMESTAMP + INTERVAL '1 day'", null);
+            // refreshed until tomorrow, then signed out within its month
+            insertSession("2018-03-10", "CURRENT_TIMESTAMP + INTERVAL '1 day'", "'2018-03-12'");
+
+            assertEquals(2, userDao.dropUserAuthPartitionsBefore(ZonedDateTime.now().minusDays(62)));
+            assertNull(partition("user_auth_2018_01"));
+            assertNotNull(partition("user_auth_2018_02"));
+            assertNull(partition("user_auth_2018_03"));
+            assertNotNull(partition("user_auth_default"));
+            assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject("select count(*) from user_auth", Integer.class));
+            return null;
+        });
+    }
+
+    private void insertSession(final String loginAt, final String expiresAt, final String logoutAt) {
+        jdbcTemplate.update("insert into user_auth (uuid, user_id, access_token, expires_at, login_at, logout_at)" +
+                " values (md5(random()::text)::uuid, 1, md5(random()::text), " + expiresAt + ", '" + loginAt + "', " + logoutAt + ")");
+    }
+
+    private String partition(final String name) {
+        return jdbcTemplate.queryForObject("select cast(to_regclass(?) as text)", String.class, name);
+    }
+}
@@ -0,0 +1,136 @@
+package com.upgrad.quora.benchmark;
+
+import com.upgrad.quora.service.business.EntityIdGenerator;
+import com.upgrad.quora.service.entity.AnswerEntity;
+import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.entity.UserAuthEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Questions inserted per second by /question/bulk, which writes them in chunks of quora.bulk.chunk-size, each chunk
+ * persisted, flushed and committed at once as QuestionDao.createQuestions does, compared to a chunk size of 1, which
+ * is a transaction per question as with repeated calls to /question/create. The session factory is configured as in
+ * application.yaml: JDBC batches of 50 ordered inserts, rewritten into multi-row inserts by the driver, and ids
+ * allocated pooled-lo from question_id_seq.
+ *
+ * Each operation inserts ITEMS questions of the first user; they are deleted after the trial. Start the application
+ * once before, so that V4__pooled_id_sequences.sql has set the INCREMENT BY the generator expects. The database is
+ * configured with the system properties quora.benchmark.url, quora.benchmark.user and quora.benchmark.password.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(BulkInsertBenchmark.ITEMS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class BulkInsertBenchmark {
+
+    static final int ITEMS = 1000;
+
+    private static final String CONTENT = "bulk insert benchmark";
+
+    @Param({"1", "100", "1000"})
+    private int chunkSize;
+
+    private SessionFactory sessionFactory;
+
+    private Integer userId;
+
+    @Setup
+    public void setup() {
+        final StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting("hibernate.connection.driver_class", "org.postgresql.Driver")
+                .applySetting("hibernate.connection.url", System.getProperty("quora.benchmark.url",
+                        "jdbc:postgresql://localhost:5432/quora") + "?reWriteBatchedInserts=true")
+                .applySetting("hibernate.connection.username", System.getProperty("quora.benchmark.user", "postgres"))
+                .applySetting("hibernate.connection.password", System.getProperty("quora.benchmark.password", "post998#"))
+                .applySetting("hibernate.connection.pool_size", "4")
+                .applySetting("hibernate.dialect", "org.hibernate.dialect.PostgreSQL9Dialect")
+                .applySetting("hibernate.temp.use_jdbc_metadata_defaults", "false")
+                .applySetting("hibernate.jdbc.batch_size", "50")
+                .applySetting("hibernate.order_inserts", "true")
+                .build();
+        sessionFactory = new MetadataSources(registry)
+                .addAnnotatedClass(UserEntity.class)
+                .addAnnotatedClass(UserAuthEntity.class)
+                .addAnnotatedClass(QuestionEntity.class)
+                .addAnnotatedClass(AnswerEntity.class)
+                .buildMetadata()
+                .buildSessionFactory();
+        try (Session session = sessionFactory.openSession()) {
+            userId = session.createQuery("select min(u.id) from UserEntity u", Integer.class).getSingleResult();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createQuery("delete from QuestionEntity q where q.content = :content")
+                    .setParameter("content", CONTENT)
+                    .executeUpdate();
+            session.getTransaction().commit();
+        }
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public int insertQuestions() {
+        final Timestamp date = new Timestamp(System.currentTimeMillis());
+        int inserted = 0;
+        while (inserted < ITEMS) {
+            try (Session session = sessionFactory.openSession()) {
+                session.beginTransaction();
+                final UserEntity user = session.getReference(UserEntity.class, userId);
+                for (int i = 0; i < chunkSize && inserted < ITEMS; i++, inserted++) {
+                    final QuestionEntity questionEntity = new QuestionEntity();
+                    questionEntity.setUuid(EntityIdGenerator.nextId());
+                    questionEntity.setContent(CONTENT);
+                    questionEntity.setDate(date);
+                    questionEntity.setUser(user);
+                    session.persist(questionEntity);
+                }
+                session.flush();
+                session.getTransaction().commit();
+            }
+        }
+        return inserted;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        final Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(BulkInsertBenchmark.class.getSimpleName())
+                .build()).run();
+        for (RunResult result : results) {
+            System.out.printf("chunk-size=%-5s %,12.0f questions/s%n", result.getParams().getParam("chunkSize"),
+                    result.getPrimaryResult().getScore());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.upgrad.quora.benchmark;
+
+import com.upgrad.quora.service.dto.AnswerSummary;
+import com.upgrad.quora.service.dto.QuestionSummary;
+import com.upgrad.quora.service.entity.AnswerEntity;
+import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.entity.UserAuthEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Latency and allocations of reading 1000 questions (one page of /question/all) and 1000 answers (/answer/all) as
+ * managed entities in a read-write transaction, as the list endpoints used to, compared to the DTO projections run in
+ * a read-only transaction with flushing disabled. The entity queries fetch the users and questions the entities used
+ * to load eagerly.
+ *
+ * Seed the database first with: mvn -P setup,benchmark-data process-resources (in quora-db). The database is
+ * configured with the system properties quora.benchmark.url, quora.benchmark.user and quora.benchmark.password.
+ * Allocations per 1000 rows are reported as gc.alloc.rate.norm when run through main, or with -prof gc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ProjectionBenchmark {
+
+    private static final int ROWS = 1000;
+
+    private SessionFactory sessionFactory;
+
+    private int questionId;
+
+    private UUID questionUuid;
+
+    @Setup
+    public void setup() {
+        final StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting("hibernate.connection.driver_class", "org.postgresql.Driver")
+                .applySetting("hibernate.connection.url", System.getProperty("quora.benchmark.url", "jdbc:postgresql://localhost:5432/quora"))
+                .applySetting("hibernate.connection.username", System.getProperty("quora.benchmark.user", "postgres"))
+                .applySetting("hibernate.connection.password", System.getProperty("quora.benchmark.password", "post998#"))
+                .applySetting("hibernate.connection.pool_size", "4")
+                .applySetting("hibernate.dialect", "org.hibernate.dialect.PostgreSQL9Dialect")
+                .applySetting("hibernate.temp.use_jdbc_metadata_defaults", "false")
+                .build();
+        sessionFactory = new MetadataSources(registry)
+                .addAnnotatedClass(UserEntity.class)
+                .addAnnotatedClass(UserAuthEntity.class)
+                .addAnnotatedClass(QuestionEntity.class)
+                .addAnnotatedClass(AnswerEntity.class)
+                .buildMetadata()
+                .buildSessionFactory();
+        final Object[] question = inTransaction(false, session -> session
+                .createQuery("select a.question.id, a.question.uuid from AnswerEntity a group by a.question.id, a.question.uuid order by count(a) desc", Object[].class)
+                .setMaxResults(1)
+                .getSingleResult());
+        questionId = (Integer) question[0];
+        questionUuid = (UUID) question[1];
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public List<QuestionEntity> questionEntities() {
+        return inTransaction(false, session -> session
+                .createQuery("select q from QuestionEntity q join fetch q.user order by q.date desc, q.id desc", QuestionEntity.class)
+                .setMaxResults(ROWS)
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<QuestionSummary> questionProjections() {
+        return inTransaction(true, session -> session
+                .createNamedQuery("questionsFirstPage", QuestionSummary.class)
+                .setMaxResults(ROWS)
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<AnswerEntity> answerEntities() {
+        return inTransaction(false, session -> session
+                .createQuery("select u from AnswerEntity u join fetch u.user join fetch u.question q join fetch q.user where q.id = :id", AnswerEntity.class)
+                .setParameter("id", questionId)
+                .setMaxResults(ROWS)
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<AnswerSummary> answerProjections() {
+        return inTransaction(true, session -> session
+                .createNamedQuery("answersByQuestionUuid", AnswerSummary.class)
+                .setParameter("uuid", questionUuid)
+                .setMaxResults(ROWS)
+                .getResultList());
+    }
+
+    /**
+     * Runs the work in a transaction; read-only transactions are set up the way Spring sets up
+     * Transactional(readOnly = true) for Hibernate: read-only session and no flush
+     */
+    private <T> T inTransaction(final boolean readOnly, final Function<Session, T> work) {
+        try (Session session = sessionFactory.openSession()) {
+            if (readOnly) {
+                session.setDefaultReadOnly(true);
+                session.setHibernateFlushMode(FlushMode.MANUAL);
+            }
+            session.beginTransaction();
+            final T result = work.apply(session);
+            session.getTransaction().commit();
+            return result;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProjectionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
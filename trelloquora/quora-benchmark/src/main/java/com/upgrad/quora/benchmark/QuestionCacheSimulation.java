@@ -0,0 +1,95 @@
+package com.upgrad.quora.benchmark;
+
+import com.upgrad.quora.service.cache.QuestionCache;
+import com.upgrad.quora.service.dto.QuestionSnapshot;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Hit ratio of the QuestionCache (W-TinyLFU) compared to an LRU cache of the same size, replaying the same trace of
+ * question lookups: a skewed (Zipf) hot set of questions, interleaved with one-off lookups of questions read only
+ * once, as a crawler or a stream consumer resolving every question would do.
+ *
+ * This is a simulation, not a JMH benchmark: the result is a ratio, not a latency. Run it from the shaded jar with:
+ * java -cp target/benchmarks.jar com.upgrad.quora.benchmark.QuestionCacheSimulation
+ * The trace is configured with the system properties quora.simulation.cache-size, quora.simulation.questions,
+ * quora.simulation.lookups, quora.simulation.one-off-share, quora.simulation.zipf-exponent and quora.simulation.seed.
+ */
+public class QuestionCacheSimulation {
+
+    public static void main(final String[] args) {
+        final int cacheSize = Integer.getInteger("quora.simulation.cache-size", 1000);
+        final int questions = Integer.getInteger("quora.simulation.questions", 50000);
+        final int lookups = Integer.getInteger("quora.simulation.lookups", 2000000);
+        final double oneOffShare = Double.parseDouble(System.getProperty("quora.simulation.one-off-share", "0.4"));
+        final double exponent = Double.parseDouble(System.getProperty("quora.simulation.zipf-exponent", "0.9"));
+        final long seed = Long.getLong("quora.simulation.seed", 42L);
+
+        final long[] trace = trace(questions, lookups, oneOffShare, exponent, seed);
+        final double tinyLfu = questionCacheHitRatio(cacheSize, trace);
+        final double lru = lruHitRatio(cacheSize, trace);
+        System.out.printf("cache size %d, %d questions, %d lookups, %.0f%% one-off lookups, zipf exponent %.2f%n",
+                cacheSize, questions, lookups, oneOffShare * 100, exponent);
+        System.out.printf("QuestionCache (W-TinyLFU) hit ratio: %.3f%n", tinyLfu);
+        System.out.printf("LRU hit ratio:                       %.3f%n", lru);
+    }
+
+    /**
+     * @return question number of every lookup; the hot questions are numbered from 0, the one-off questions from
+     * the number of hot questions up, each looked up once
+     */
+    private static long[] trace(final int questions, final int lookups, final double oneOffShare,
+                                final double exponent, final long seed) {
+        final double[] cumulative = new double[questions];
+        double total = 0;
+        for (int i = 0; i < questions; i++) {
+            total += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = total;
+        }
+        final Random random = new Random(seed);
+        final long[] trace = new long[lookups];
+        long nextOneOff = questions;
+        for (int i = 0; i < lookups; i++) {
+            if (random.nextDouble() < oneOffShare) {
+                trace[i] = nextOneOff++;
+            } else {
+                final int index = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+                trace[i] = index >= 0 ? index : Math.min(questions - 1, -index - 1);
+            }
+        }
+        return trace;
+    }
+
+    private static double questionCacheHitRatio(final int cacheSize, final long[] trace) {
+        final QuestionCache questionCache = new QuestionCache(cacheSize);
+        final Timestamp date = new Timestamp(System.currentTimeMillis());
+        for (final long question : trace) {
+            questionCache.get(new UUID(0, question),
+                    uuid -> new QuestionSnapshot((int) question, uuid, "question " + question, date, 1));
+        }
+        return questionCache.getHitRatio();
+    }
+
+    private static double lruHitRatio(final int cacheSize, final long[] trace) {
+        final Map<Long, Boolean> lru = new LinkedHashMap<Long, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, Boolean> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        long hits = 0;
+        for (final long question : trace) {
+            if (lru.get(question) != null) {
+                hits++;
+            } else {
+                lru.put(question, Boolean.TRUE);
+            }
+        }
+        return (double) hits / trace.length;
+    }
+}
@@ -0,0 +1,118 @@
+package com.upgrad.quora.benchmark;
+
+import com.upgrad.quora.service.business.OpaqueTokenProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a session lookup by the JWT stored in user_auth.ACCESS_TOKEN compared to a lookup by the digest of an
+ * opaque token in user_auth.ACCESS_TOKEN_DIGEST.
+ *
+ * Seed the database first with: mvn -P setup,benchmark-data process-resources (in quora-db), which creates 10 million
+ * sessions whose tokens are derived from the row number the same way as below. The database is configured with the
+ * system properties quora.benchmark.url, quora.benchmark.user and quora.benchmark.password.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SessionLookupBenchmark {
+
+    private static final int ROWS = 10000000;
+    private static final int TOKENS = 4096;
+    private static final String JWT_HEADER = "eyJraWQiOiIyMDE4LTA5IiwiYWxnIjoiSFM1MTIifQ";
+
+    private final OpaqueTokenProvider opaqueTokenProvider = new OpaqueTokenProvider();
+
+    private final String[] jwtTokens = new String[TOKENS];
+    private final String[] opaqueTokens = new String[TOKENS];
+
+    private Connection connection;
+    private PreparedStatement byAccessToken;
+    private PreparedStatement byAccessTokenDigest;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException, NoSuchAlgorithmException {
+        final MessageDigest md5 = MessageDigest.getInstance("MD5");
+        for (int i = 0; i < TOKENS; i++) {
+            final int n = 1 + ThreadLocalRandom.current().nextInt(ROWS);
+            final StringBuilder jwt = new StringBuilder(JWT_HEADER).append('.');
+            final String payload = md5Hex(md5, "jwt-" + n);
+            for (int j = 0; j < 8; j++) {
+                jwt.append(payload);
+            }
+            jwtTokens[i] = jwt.append('.').append(md5Hex(md5, "sig-" + n)).toString();
+            opaqueTokens[i] = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(md5.digest(("opaque-" + n).getBytes(StandardCharsets.UTF_8)));
+        }
+        connection = DriverManager.getConnection(
+                System.getProperty("quora.benchmark.url", "jdbc:postgresql://localhost:5432/quora"),
+                System.getProperty("quora.benchmark.user", "postgres"),
+                System.getProperty("quora.benchmark.password", "post998#"));
+        connection.setReadOnly(true);
+        byAccessToken = connection.prepareStatement(
+                "select ID, USER_ID, EXPIRES_AT, LOGOUT_AT from USER_AUTH where ACCESS_TOKEN = ?");
+        byAccessTokenDigest = connection.prepareStatement(
+                "select ID, USER_ID, EXPIRES_AT, LOGOUT_AT from USER_AUTH where ACCESS_TOKEN_DIGEST = ?");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public long jwtColumn() throws SQLException {
+        byAccessToken.setString(1, jwtTokens[next++ & (TOKENS - 1)]);
+        return read(byAccessToken);
+    }
+
+    @Benchmark
+    public long opaqueTokenDigest() throws SQLException {
+        // the digest is part of every opaque lookup, so it is measured as well
+        byAccessTokenDigest.setBytes(1, opaqueTokenProvider.digest(opaqueTokens[next++ & (TOKENS - 1)]));
+        return read(byAccessTokenDigest);
+    }
+
+    private static long read(final PreparedStatement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            if (!resultSet.next()) {
+                throw new IllegalStateException("Session not found, is the benchmark data seeded?");
+            }
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static String md5Hex(final MessageDigest md5, final String value) {
+        final StringBuilder hex = new StringBuilder(32);
+        for (byte b : md5.digest(value.getBytes(StandardCharsets.UTF_8))) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
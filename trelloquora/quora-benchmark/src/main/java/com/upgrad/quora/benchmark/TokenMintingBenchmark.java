@@ -0,0 +1,83 @@
+package com.upgrad.quora.benchmark;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.upgrad.quora.service.business.JwtTokenProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokens minted per second by the singleton JwtTokenProvider compared to the former signin path, which built a new
+ * HMAC512 algorithm from the user's hashed password and drew the token id from UUID.randomUUID for every login.
+ *
+ * Run all thread counts from 1 to 64 with: java -cp target/benchmarks.jar com.upgrad.quora.benchmark.TokenMintingBenchmark
+ * or a single configuration with: java -jar target/benchmarks.jar TokenMintingBenchmark -t 16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenMintingBenchmark {
+
+    private static final String USER_UUID = "0b9a7a5e-4c1d-4d52-9a57-8a3f3b7a1c2e";
+    private static final String HASHED_PASSWORD = "$pbkdf2-sha512$i=210000,l=512$507FF5FED1CAC746507FF5FED1CAC746";
+
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Setup
+    public void setup() {
+        jwtTokenProvider = new JwtTokenProvider("bench=3f7a1c9e5b2d4f6081a3c5e7f9b1d3e5", "bench", true);
+    }
+
+    @Benchmark
+    public String singletonProvider() {
+        final ZonedDateTime now = ZonedDateTime.now();
+        return jwtTokenProvider.generateToken(USER_UUID, now, now.plusHours(1));
+    }
+
+    @Benchmark
+    public String providerPerSignin() {
+        final ZonedDateTime now = ZonedDateTime.now();
+        final Algorithm algorithm = Algorithm.HMAC512(HASHED_PASSWORD);
+        return JWT.create().withIssuer("https://quora.io")
+                .withKeyId(UUID.randomUUID().toString())
+                .withAudience(USER_UUID)
+                .withIssuedAt(Date.from(now.toInstant())).withExpiresAt(Date.from(now.plusHours(1).toInstant()))
+                .sign(algorithm);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 2, 4, 8, 16, 32, 64}) {
+            final Options options = new OptionsBuilder()
+                    .include(TokenMintingBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            final Collection<RunResult> results = new Runner(options).run();
+            for (RunResult result : results) {
+                System.out.printf("%-60s threads=%-3d %,15.0f tokens/s%n", result.getParams().getBenchmark(), threads,
+                        result.getPrimaryResult().getScore());
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.upgrad.quora.benchmark;
+
+import com.upgrad.quora.service.business.EntityIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows inserted per second into a table with a unique index on a UUID column, as the uuid columns of USERS, QUESTION
+ * and ANSWER, when the ids are random version 4 UUIDs from UUID.randomUUID and when they are the time-ordered
+ * version 7 UUIDs of EntityIdGenerator. Each operation inserts and commits a batch of BATCH rows.
+ *
+ * The table is created and filled with quora.benchmark.prefill rows (1 million by default) of the same version before
+ * the measurement, so that the index does not fit in the few pages a fresh one would. Random ids touch a random leaf of
+ * the whole index with every row; time-ordered ids only touch its rightmost leaves.
+ *
+ * Run with: java -cp target/benchmarks.jar com.upgrad.quora.benchmark.UuidInsertBenchmark
+ * The database is configured with the system properties quora.benchmark.url, quora.benchmark.user and
+ * quora.benchmark.password.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class UuidInsertBenchmark {
+
+    private static final int BATCH = 100;
+
+    @Param({"v4", "v7"})
+    private String version;
+
+    private Connection connection;
+    private PreparedStatement insert;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("quora.benchmark.url", "jdbc:postgresql://localhost:5432/quora"),
+                System.getProperty("quora.benchmark.user", "postgres"),
+                System.getProperty("quora.benchmark.password", "post998#"));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS UUID_INSERT_BENCHMARK");
+            statement.execute("CREATE TABLE UUID_INSERT_BENCHMARK(id SERIAL, uuid UUID NOT NULL, PRIMARY KEY(id))");
+            statement.execute("CREATE UNIQUE INDEX UUID_INSERT_BENCHMARK_UUID_IDX ON UUID_INSERT_BENCHMARK(uuid)");
+        }
+        connection.setAutoCommit(false);
+        insert = connection.prepareStatement("INSERT INTO UUID_INSERT_BENCHMARK(uuid) VALUES (?)");
+        final int prefill = Integer.getInteger("quora.benchmark.prefill", 1000000);
+        for (int i = 0; i < prefill; i += BATCH) {
+            insertBatch();
+        }
+        // VACUUM cannot run in a transaction
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("VACUUM ANALYZE UUID_INSERT_BENCHMARK");
+        }
+        connection.setAutoCommit(false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE UUID_INSERT_BENCHMARK");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public int insertBatch() throws SQLException {
+        final boolean timeOrdered = "v7".equals(version);
+        for (int i = 0; i < BATCH; i++) {
+            insert.setObject(1, timeOrdered ? EntityIdGenerator.nextId() : UUID.randomUUID());
+            insert.addBatch();
+        }
+        final int rows = insert.executeBatch().length;
+        connection.commit();
+        return rows;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(UuidInsertBenchmark.class.getSimpleName())
+                .build();
+        final Collection<RunResult> results = new Runner(options).run();
+        for (RunResult result : results) {
+            System.out.printf("%-60s version=%-3s %,15.0f rows/s%n", result.getParams().getBenchmark(),
+                    result.getParams().getParam("version"), result.getPrimaryResult().getScore() * BATCH);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.upgrad.quora.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a lookup by uuid through the unique index of a VARCHAR(200) column, as the uuid columns were stored, and
+ * of the native UUID column which replaced it.
+ *
+ * Seed the database first with: mvn -P benchmark-uuid process-resources (in quora-db), which creates 10 million rows
+ * in each table, whose uuids are derived from the row number the same way as below, and prints the size of both
+ * indexes. The database is configured with the system properties quora.benchmark.url, quora.benchmark.user and
+ * quora.benchmark.password.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UuidLookupBenchmark {
+
+    private static final int ROWS = 10000000;
+    private static final int UUIDS = 4096;
+
+    private final UUID[] uuids = new UUID[UUIDS];
+
+    private Connection connection;
+    private PreparedStatement byVarchar;
+    private PreparedStatement byUuid;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException, NoSuchAlgorithmException {
+        final MessageDigest md5 = MessageDigest.getInstance("MD5");
+        for (int i = 0; i < UUIDS; i++) {
+            final int n = 1 + ThreadLocalRandom.current().nextInt(ROWS);
+            // md5(...)::UUID reads the digest as the 16 bytes of the UUID
+            final ByteBuffer digest = ByteBuffer.wrap(md5.digest(("uuid-" + n).getBytes(StandardCharsets.UTF_8)));
+            uuids[i] = new UUID(digest.getLong(), digest.getLong());
+        }
+        connection = DriverManager.getConnection(
+                System.getProperty("quora.benchmark.url", "jdbc:postgresql://localhost:5432/quora"),
+                System.getProperty("quora.benchmark.user", "postgres"),
+                System.getProperty("quora.benchmark.password", "post998#"));
+        connection.setReadOnly(true);
+        byVarchar = connection.prepareStatement("select ID from UUID_BENCHMARK_VARCHAR where UUID = ?");
+        byUuid = connection.prepareStatement("select ID from UUID_BENCHMARK_NATIVE where UUID = ?");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public long varcharColumn() throws SQLException {
+        // formatting the id was part of every lookup, so it is measured as well
+        byVarchar.setString(1, uuids[next++ & (UUIDS - 1)].toString());
+        return read(byVarchar);
+    }
+
+    @Benchmark
+    public long uuidColumn() throws SQLException {
+        byUuid.setObject(1, uuids[next++ & (UUIDS - 1)]);
+        return read(byUuid);
+    }
+
+    private static long read(final PreparedStatement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            if (!resultSet.next()) {
+                throw new IllegalStateException("Uuid not found, is the benchmark data seeded?");
+            }
+            return resultSet.getLong(1);
+        }
+    }
+}
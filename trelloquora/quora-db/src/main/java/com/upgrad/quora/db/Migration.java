@@ -0,0 +1,67 @@
+package com.upgrad.quora.db;
+
+/**
+ * A migration script, named V&lt;version&gt;__&lt;description&gt;.sql, with the SHA-256 checksum of its content.
+ * A script containing the line "--quora:maintenance-window" can only be applied while no node serves requests.
+ * A script containing the line "--quora:no-transaction" is run statement by statement outside of a transaction.
+ */
+public final class Migration {
+
+    private final int version;
+
+    private final String description;
+
+    private final String script;
+
+    private final String sql;
+
+    private final String checksum;
+
+    private final boolean maintenanceWindow;
+
+    private final boolean transactional;
+
+    public Migration(final int version, final String description, final String script, final String sql, final String checksum,
+                     final boolean maintenanceWindow, final boolean transactional) {
+        this.version = version;
+        this.description = description;
+        this.script = script;
+        this.sql = sql;
+        this.checksum = checksum;
+        this.maintenanceWindow = maintenanceWindow;
+        this.transactional = transactional;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getScript() {
+        return script;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public boolean isMaintenanceWindow() {
+        return maintenanceWindow;
+    }
+
+    public boolean isTransactional() {
+        return transactional;
+    }
+
+    @Override
+    public String toString() {
+        return script;
+    }
+}
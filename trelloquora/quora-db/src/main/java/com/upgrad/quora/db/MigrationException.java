@@ -0,0 +1,18 @@
+package com.upgrad.quora.db;
+
+/**
+ * MigrationException is thrown when the migrations cannot be loaded, do not match the migrations applied to the
+ * database, or fail to apply. The database is left at the last migration applied successfully.
+ */
+public class MigrationException extends RuntimeException {
+
+    private static final long serialVersionUID = -4185316409271842371L;
+
+    public MigrationException(final String message) {
+        super(message);
+    }
+
+    public MigrationException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
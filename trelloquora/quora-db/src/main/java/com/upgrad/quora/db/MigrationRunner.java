@@ -0,0 +1,418 @@
+package com.upgrad.quora.db;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the versioned migration scripts found on the classpath to a Postgres database, in version order, each in
+ * its own transaction. Applied migrations are recorded in the SCHEMA_VERSION table with the checksum of their script.
+ *
+ * Migrations are forward-only: a script which was applied must not change, and a new script must have a version
+ * above every applied one; the runner refuses to migrate otherwise. Migrations applied by a newer release and unknown
+ * to this one are tolerated, so that nodes of the previous release can restart during a rolling deployment.
+ *
+ * A migration which the previous release cannot run against, or which locks tables for long, is marked with the line
+ * "--quora:maintenance-window". It is never applied at startup: the migrations before it are applied and the startup
+ * fails, so the nodes of the previous release keep serving until the marked migration is applied from the command
+ * line with --maintenance-window, once every node is stopped.
+ *
+ * A migration which cannot run in a transaction block, such as CREATE INDEX CONCURRENTLY, is marked with the line
+ * "--quora:no-transaction". Its statements are run one by one in auto-commit mode and it is recorded once they all
+ * succeeded, so it must be written to be run again after a failure halfway.
+ *
+ * Nodes starting at the same time serialize on a Postgres advisory lock, so every migration is applied once. The lock
+ * is polled rather than waited for: a node blocked in pg_advisory_lock holds a snapshot, which a CREATE INDEX
+ * CONCURRENTLY of the migrating node would wait for in turn.
+ *
+ * Usage: java com.upgrad.quora.db.MigrationRunner [--online|--maintenance-window] &lt;jdbc url&gt; &lt;user&gt; &lt;password&gt; [location]
+ */
+public class MigrationRunner {
+
+    private static final Logger LOG = Logger.getLogger(MigrationRunner.class.getName());
+
+    public static final String DEFAULT_LOCATION = "db/migration";
+
+    // key of the advisory lock held while migrating, arbitrary but fixed
+    private static final long LOCK_KEY = 7_201_818_462_301L;
+
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private static final long LOCK_POLL_MS = 1000;
+
+    private static final Pattern MAINTENANCE_WINDOW = Pattern.compile("^--quora:maintenance-window$", Pattern.MULTILINE);
+
+    private static final Pattern DOLLAR_QUOTE = Pattern.compile("\\$(?:[A-Za-z_][A-Za-z_0-9]*)?\\$");
+
+    private static final Pattern NO_TRANSACTION = Pattern.compile("^--quora:no-transaction$", Pattern.MULTILINE);
+
+    private static final String ONLINE_OPTION = "--online";
+
+    private static final String MAINTENANCE_WINDOW_OPTION = "--maintenance-window";
+
+    private final String location;
+
+    private final ClassLoader classLoader;
+
+    public MigrationRunner(final String location) {
+        this(location, MigrationRunner.class.getClassLoader());
+    }
+
+    public MigrationRunner(final String location, final ClassLoader classLoader) {
+        this.location = location.endsWith("/") ? location.substring(0, location.length() - 1) : location;
+        this.classLoader = classLoader;
+    }
+
+    public static void main(final String[] args) throws SQLException {
+        final boolean maintenanceWindow = args.length > 0 && MAINTENANCE_WINDOW_OPTION.equals(args[0]);
+        final int first = maintenanceWindow || args.length > 0 && ONLINE_OPTION.equals(args[0]) ? 1 : 0;
+        if (args.length - first < 3) {
+            System.err.println("Usage: MigrationRunner [" + ONLINE_OPTION + "|" + MAINTENANCE_WINDOW_OPTION + "] <jdbc url> <user> <password> [location]");
+            System.exit(2);
+        }
+        final MigrationRunner runner = new MigrationRunner(args.length > first + 3 ? args[first + 3] : DEFAULT_LOCATION);
+        try (Connection connection = DriverManager.getConnection(args[first], args[first + 1], args[first + 2])) {
+            final List<Migration> applied = runner.migrate(connection, maintenanceWindow);
+            System.out.println(applied.isEmpty() ? "Schema is up to date" : "Applied " + applied);
+        }
+    }
+
+    /**
+     * Applies the pending migrations with a connection of the data source, as a starting node does
+     * @param dataSource
+     * @return the migrations applied, in order
+     * @throws MigrationException also when a pending migration needs a maintenance window
+     */
+    public List<Migration> migrate(final DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            return migrate(connection, false);
+        } catch (SQLException e) {
+            throw new MigrationException("Could not connect to the database to migrate", e);
+        }
+    }
+
+    /**
+     * Applies the pending migrations. The connection is left in its auto-commit mode.
+     * @param connection
+     * @param maintenanceWindow - true if no node is serving, so that the marked migrations can be applied too
+     * @return the migrations applied, in order
+     * @throws MigrationException also when a pending migration needs a maintenance window and maintenanceWindow is false
+     */
+    public List<Migration> migrate(final Connection connection, final boolean maintenanceWindow) {
+        final List<Migration> migrations = load();
+        try {
+            final boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(true);
+            try (Statement statement = connection.createStatement()) {
+                lock(statement);
+                try {
+                    statement.execute("CREATE TABLE IF NOT EXISTS SCHEMA_VERSION(" +
+                            "VERSION INTEGER PRIMARY KEY, " +
+                            "DESCRIPTION VARCHAR(200) NOT NULL, " +
+                            "SCRIPT VARCHAR(255) NOT NULL, " +
+                            "CHECKSUM CHAR(64) NOT NULL, " +
+                            "INSTALLED_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                            "EXECUTION_MS INTEGER NOT NULL)");
+                    final List<Migration> pending = pending(migrations, appliedChecksums(statement));
+                    final List<Migration> applied = new ArrayList<>();
+                    for (final Migration migration : pending) {
+                        if (migration.isMaintenanceWindow() && !maintenanceWindow) {
+                            throw new MigrationException("Migration " + migration.getScript() + " must be applied in a maintenance window"
+                                    + " (applied before it: " + applied + "); stop every node and run MigrationRunner "
+                                    + MAINTENANCE_WINDOW_OPTION);
+                        }
+                        apply(connection, migration);
+                        applied.add(migration);
+                    }
+                    return applied;
+                } finally {
+                    statement.executeQuery("SELECT pg_advisory_unlock(" + LOCK_KEY + ")").close();
+                }
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new MigrationException("Could not migrate the database", e);
+        }
+    }
+
+    /**
+     * @return the migrations found at the location, in version order
+     * @throws MigrationException if a script is misnamed or two scripts have the same version
+     */
+    public List<Migration> load() {
+        final TreeMap<Integer, Migration> migrations = new TreeMap<>();
+        for (final String script : scriptNames()) {
+            final Matcher matcher = SCRIPT_NAME.matcher(script);
+            if (!matcher.matches()) {
+                throw new MigrationException("Migration script " + script + " is not named V<version>__<description>.sql");
+            }
+            final int version = Integer.parseInt(matcher.group(1));
+            // line endings are normalized so that the checksum does not depend on the checkout
+            final String sql = read(location + "/" + script).replace("\r\n", "\n");
+            final Migration migration = new Migration(version, matcher.group(2).replace('_', ' '), script, sql, sha256(sql),
+                    MAINTENANCE_WINDOW.matcher(sql).find(), !NO_TRANSACTION.matcher(sql).find());
+            final Migration duplicate = migrations.put(version, migration);
+            if (duplicate != null) {
+                throw new MigrationException("Migration scripts " + duplicate.getScript() + " and " + script + " have the same version");
+            }
+        }
+        return new ArrayList<>(migrations.values());
+    }
+
+    /**
+     * Checks the loaded migrations against the applied ones
+     * @param migrations - loaded migrations, in version order
+     * @param appliedChecksums - checksum of every applied migration by version; the known versions are removed from it
+     * @return the migrations to apply
+     * @throws MigrationException if an applied script changed or a script not applied is older than the latest applied
+     */
+    List<Migration> pending(final List<Migration> migrations, final Map<Integer, String> appliedChecksums) {
+        final int latestApplied = appliedChecksums.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+        final List<Migration> pending = new ArrayList<>();
+        for (final Migration migration : migrations) {
+            final String appliedChecksum = appliedChecksums.remove(migration.getVersion());
+            if (appliedChecksum == null) {
+                if (migration.getVersion() < latestApplied) {
+                    throw new MigrationException("Migration " + migration.getScript() + " is older than the latest applied version "
+                            + latestApplied + "; give it a version above " + latestApplied);
+                }
+                pending.add(migration);
+            } else if (!appliedChecksum.equals(migration.getChecksum())) {
+                throw new MigrationException("Migration " + migration.getScript() + " changed since it was applied; add a new migration instead");
+            }
+        }
+        if (!appliedChecksums.isEmpty()) {
+            LOG.warning("Database has migrations " + appliedChecksums.keySet() + " unknown to this release");
+        }
+        return pending;
+    }
+
+    private Map<Integer, String> appliedChecksums(final Statement statement) throws SQLException {
+        final Map<Integer, String> checksums = new HashMap<>();
+        try (ResultSet resultSet = statement.executeQuery("SELECT VERSION, CHECKSUM FROM SCHEMA_VERSION")) {
+            while (resultSet.next()) {
+                checksums.put(resultSet.getInt(1), resultSet.getString(2).trim());
+            }
+        }
+        return checksums;
+    }
+
+    /**
+     * Takes the advisory lock of the migrations, polling until the node holding it released it
+     */
+    private void lock(final Statement statement) throws SQLException {
+        boolean logged = false;
+        while (true) {
+            try (ResultSet resultSet = statement.executeQuery("SELECT pg_try_advisory_lock(" + LOCK_KEY + ")")) {
+                resultSet.next();
+                if (resultSet.getBoolean(1)) {
+                    return;
+                }
+            }
+            if (!logged) {
+                LOG.info("Waiting for another node to finish migrating");
+                logged = true;
+            }
+            try {
+                Thread.sleep(LOCK_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MigrationException("Interrupted while waiting for another node to finish migrating", e);
+            }
+        }
+    }
+
+    /**
+     * Runs the script and records it in a single transaction, so a failed migration leaves no trace; a migration marked
+     * no-transaction is run statement by statement and recorded after its last statement
+     */
+    private void apply(final Connection connection, final Migration migration) throws SQLException {
+        LOG.info("Applying migration " + migration.getScript());
+        final long start = System.nanoTime();
+        if (!migration.isTransactional()) {
+            try (Statement statement = connection.createStatement()) {
+                // one statement at a time, as the driver would send the statements of a script in one implicit transaction
+                for (final String sql : statements(migration.getSql())) {
+                    statement.execute(sql);
+                }
+                record(connection, migration, start);
+            } catch (SQLException | RuntimeException e) {
+                throw new MigrationException("Migration " + migration.getScript() + " failed, the statements before the"
+                        + " failed one were not rolled back", e);
+            }
+            return;
+        }
+        connection.setAutoCommit(false);
+        try {
+            try (Statement statement = connection.createStatement()) {
+                // the driver splits the script into its statements
+                statement.execute(migration.getSql());
+            }
+            record(connection, migration, start);
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw new MigrationException("Migration " + migration.getScript() + " failed", e);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private void record(final Connection connection, final Migration migration, final long start) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO SCHEMA_VERSION(VERSION, DESCRIPTION, SCRIPT, CHECKSUM, EXECUTION_MS) VALUES (?, ?, ?, ?, ?)")) {
+            insert.setInt(1, migration.getVersion());
+            insert.setString(2, migration.getDescription());
+            insert.setString(3, migration.getScript());
+            insert.setString(4, migration.getChecksum());
+            insert.setInt(5, (int) ((System.nanoTime() - start) / 1_000_000));
+            insert.executeUpdate();
+        }
+    }
+
+    /**
+     * Splits a script into its statements at the semicolons which are not in a quoted string or identifier, a dollar
+     * quoted body or a comment
+     * @param sql - script
+     * @return the statements, without their semicolon; parts holding only comments are left out
+     */
+    static List<String> statements(final String sql) {
+        final List<String> statements = new ArrayList<>();
+        int start = 0;
+        final Matcher dollarQuote = DOLLAR_QUOTE.matcher(sql);
+        boolean code = false;
+        int i = 0;
+        while (i < sql.length()) {
+            final char c = sql.charAt(i);
+            if (c == '-' && sql.startsWith("--", i)) {
+                final int end = sql.indexOf('\n', i);
+                i = end < 0 ? sql.length() : end + 1;
+            } else if (c == '/' && sql.startsWith("/*", i)) {
+                final int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? sql.length() : end + 2;
+            } else if (c == '\'' || c == '"') {
+                // a doubled quote inside the string is read as the end of one string and the start of the next
+                final int end = sql.indexOf(c, i + 1);
+                i = end < 0 ? sql.length() : end + 1;
+                code = true;
+            } else if (c == '$' && dollarQuote.region(i, sql.length()).lookingAt()) {
+                final int end = sql.indexOf(dollarQuote.group(), dollarQuote.end());
+                i = end < 0 ? sql.length() : end + dollarQuote.group().length();
+                code = true;
+            } else if (c == ';') {
+                if (code) {
+                    statements.add(sql.substring(start, i).trim());
+                }
+                start = ++i;
+                code = false;
+            } else {
+                code |= !Character.isWhitespace(c);
+                i++;
+            }
+        }
+        if (code) {
+            statements.add(sql.substring(start).trim());
+        }
+        return statements;
+    }
+
+    /**
+     * @return the names of the files directly at the location, in every classpath root which has the location
+     */
+    private TreeSet<String> scriptNames() {
+        final TreeSet<String> names = new TreeSet<>();
+        try {
+            final Enumeration<URL> roots = classLoader.getResources(location);
+            while (roots.hasMoreElements()) {
+                final URL root = roots.nextElement();
+                if ("file".equals(root.getProtocol())) {
+                    try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(root.toURI()), "*.sql")) {
+                        for (final Path file : files) {
+                            names.add(file.getFileName().toString());
+                        }
+                    }
+                } else {
+                    final URLConnection connection = root.openConnection();
+                    if (!(connection instanceof JarURLConnection)) {
+                        throw new MigrationException("Cannot list the migration scripts at " + root);
+                    }
+                    final JarURLConnection jarConnection = (JarURLConnection) connection;
+                    final String prefix = jarConnection.getEntryName() + "/";
+                    // the jar file is cached and shared with the class loader, so it is not closed
+                    final JarFile jarFile = jarConnection.getJarFile();
+                    final Enumeration<JarEntry> entries = jarFile.entries();
+                    while (entries.hasMoreElements()) {
+                        final String name = entries.nextElement().getName();
+                        if (name.startsWith(prefix) && name.endsWith(".sql") && name.indexOf('/', prefix.length()) < 0) {
+                            names.add(name.substring(prefix.length()));
+                        }
+                    }
+                }
+            }
+        } catch (IOException | URISyntaxException e) {
+            throw new MigrationException("Cannot list the migration scripts at " + location, e);
+        }
+        return names;
+    }
+
+    private String read(final String resource) {
+        try (InputStream in = classLoader.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new MigrationException("Migration script " + resource + " not found");
+            }
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new MigrationException("Cannot read migration script " + resource, e);
+        }
+    }
+
+    private static String sha256(final String sql) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(sql.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder hex = new StringBuilder(64);
+            for (final byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
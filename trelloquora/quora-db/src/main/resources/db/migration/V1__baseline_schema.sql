@@ -0,0 +1,35 @@
+--Schema of quora.sql as of the first migration, without its DROP statements and data. Every statement is a no-op on
+--a database set up with quora.sql (or quora_partitioned.sql), so such a database is brought under migration as is.
+
+--USERS table is created to store the details of all the users
+CREATE TABLE IF NOT EXISTS USERS(id SERIAL, uuid VARCHAR(200) NOT NULL ,firstName VARCHAR(30) NOT NULL , lastName VARCHAR(30) NOT NULL ,userName VARCHAR(30) UNIQUE NOT NULL,  email VARCHAR(50) UNIQUE NOT NULL ,password VARCHAR(255) NOT NULL, salt VARCHAR(200) NOT NULL ,country VARCHAR(30) ,aboutMe VARCHAR(50),dob VARCHAR(30), role VARCHAR(30),contactNumber VARCHAR(30), PRIMARY KEY (id));
+
+--USER_AUTH table is created to store the login information of all the users
+CREATE TABLE IF NOT EXISTS USER_AUTH(
+	ID BIGSERIAL PRIMARY KEY,
+	uuid VARCHAR(200) NOT NULL,
+	USER_ID INTEGER NOT NULL,
+	ACCESS_TOKEN VARCHAR(500) NULL,
+	ACCESS_TOKEN_DIGEST BYTEA NULL,
+	EXPIRES_AT TIMESTAMP NOT NULL,
+	LOGIN_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+	LOGOUT_AT TIMESTAMP NULL,
+	CHECK (ACCESS_TOKEN IS NOT NULL OR ACCESS_TOKEN_DIGEST IS NOT NULL),
+	CONSTRAINT FK_USER_AUTH_USER_ID FOREIGN KEY(USER_ID) REFERENCES USERS(ID) ON DELETE CASCADE
+);
+
+--opaque sessions are looked up by the SHA-256 digest of their token
+CREATE UNIQUE INDEX IF NOT EXISTS USER_AUTH_ACCESS_TOKEN_DIGEST_IDX ON USER_AUTH(ACCESS_TOKEN_DIGEST);
+
+--the session reaper deletes sessions which expired or were signed out before a cutoff
+CREATE INDEX IF NOT EXISTS USER_AUTH_EXPIRES_AT_IDX ON USER_AUTH(EXPIRES_AT);
+CREATE INDEX IF NOT EXISTS USER_AUTH_LOGOUT_AT_IDX ON USER_AUTH(LOGOUT_AT) WHERE LOGOUT_AT IS NOT NULL;
+
+--QUESTION table is created to store the questions related information posted by any user in the Application
+CREATE TABLE IF NOT EXISTS QUESTION(id SERIAL,uuid VARCHAR(200) NOT NULL, content VARCHAR(500) NOT NULL, date TIMESTAMP NOT NULL , user_id INTEGER NOT NULL, PRIMARY KEY(id), FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE);
+
+--/question/all pages through the questions newest first by (date, id)
+CREATE INDEX IF NOT EXISTS QUESTION_DATE_ID_IDX ON QUESTION(date, id);
+
+--ANSWER table is created to store the answers related information in reply to any question posted in the Application
+CREATE TABLE IF NOT EXISTS ANSWER(id SERIAL,uuid VARCHAR(200) NOT NULL, ans VARCHAR(255) NOT NULL,date TIMESTAMP NOT NULL , user_id INTEGER NOT NULL, question_id INTEGER NOT NULL , PRIMARY KEY(id), FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE, FOREIGN KEY (question_id) REFERENCES QUESTION(id) ON DELETE CASCADE);
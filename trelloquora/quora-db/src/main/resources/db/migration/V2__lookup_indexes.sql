@@ -0,0 +1,61 @@
+--Indexes of the lookups of the named queries in the entity package, which scanned their table until now.
+
+--The indexes are built CONCURRENTLY, so the nodes keep writing to the tables while they are built, which cannot be done
+--in a transaction block. A build which fails, or is interrupted, leaves an INVALID index behind that IF NOT EXISTS
+--would keep; the first block drops those, so the migration can be run again. CREATE INDEX CONCURRENTLY is not supported
+--on the partitioned USER_AUTH of quora_partitioned.sql, which creates its indexes itself.
+--quora:no-transaction
+
+--a unique index build fails on the first duplicate after scanning the whole table; check first and name the table
+DO $$
+DECLARE
+    duplicate TEXT;
+BEGIN
+    SELECT uuid::TEXT INTO duplicate FROM USERS GROUP BY uuid HAVING count(*) > 1 LIMIT 1;
+    IF FOUND THEN
+        RAISE EXCEPTION 'USERS.uuid % is not unique, resolve the duplicates before USERS_UUID_IDX is created', duplicate;
+    END IF;
+    SELECT uuid::TEXT INTO duplicate FROM QUESTION GROUP BY uuid HAVING count(*) > 1 LIMIT 1;
+    IF FOUND THEN
+        RAISE EXCEPTION 'QUESTION.uuid % is not unique, resolve the duplicates before QUESTION_UUID_IDX is created', duplicate;
+    END IF;
+    SELECT uuid::TEXT INTO duplicate FROM ANSWER GROUP BY uuid HAVING count(*) > 1 LIMIT 1;
+    IF FOUND THEN
+        RAISE EXCEPTION 'ANSWER.uuid % is not unique, resolve the duplicates before ANSWER_UUID_IDX is created', duplicate;
+    END IF;
+END $$;
+
+DO $$
+DECLARE
+    invalid TEXT;
+BEGIN
+    FOR invalid IN SELECT index_class.relname FROM pg_index JOIN pg_class index_class ON index_class.oid = pg_index.indexrelid
+            WHERE NOT pg_index.indisvalid AND index_class.relnamespace = current_schema()::regnamespace
+            AND index_class.relname IN ('users_uuid_idx', 'question_uuid_idx', 'answer_uuid_idx', 'user_auth_access_token_idx',
+                'user_auth_user_id_idx', 'question_user_id_date_id_idx', 'answer_question_id_id_idx', 'answer_user_id_idx') LOOP
+        EXECUTE format('DROP INDEX %I', invalid);
+    END LOOP;
+END $$;
+
+--the natural-id lookup of UserEntity, questionByUuid, questionSnapshotByUuid, questionsByUserUuid,
+--answersByQuestionUuid and answerByAnswerUuid resolve a single row by uuid
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS USERS_UUID_IDX ON USERS(uuid);
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS QUESTION_UUID_IDX ON QUESTION(uuid);
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS ANSWER_UUID_IDX ON ANSWER(uuid);
+
+--userAuthByAccessToken, not unique as the partitioned USER_AUTH of quora_partitioned.sql only accepts unique indexes
+--which include LOGIN_AT; a signed token does not repeat anyway
+CREATE INDEX CONCURRENTLY IF NOT EXISTS USER_AUTH_ACCESS_TOKEN_IDX ON USER_AUTH(ACCESS_TOKEN);
+
+--sessions of a user, deleted by cascade with the user
+CREATE INDEX CONCURRENTLY IF NOT EXISTS USER_AUTH_USER_ID_IDX ON USER_AUTH(USER_ID);
+
+--questionsByUserUuid lists the questions of a user newest first; also serves the cascade from USERS
+CREATE INDEX CONCURRENTLY IF NOT EXISTS QUESTION_USER_ID_DATE_ID_IDX ON QUESTION(user_id, date, id);
+
+--answersByQuestionUuid and answerSummariesByQuestionId list the answers of a question by id; also serves the cascade
+--from QUESTION
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ANSWER_QUESTION_ID_ID_IDX ON ANSWER(question_id, id);
+
+--answers of a user, deleted by cascade with the user
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ANSWER_USER_ID_IDX ON ANSWER(user_id);
@@ -0,0 +1,30 @@
+--Stores the uuid columns in the native 16 byte UUID type instead of VARCHAR(200), which took 37 bytes per value in
+--the heap and in every index on the column, and compared them with the collation of the database.
+
+--Values which are not UUIDs, such as the fixtures of quora_test.sql, are mapped to the UUID formed by their md5 digest,
+--so the same value gives the same UUID in every table and USER_AUTH.uuid still matches USERS.uuid.
+--Every table is rewritten and its indexes rebuilt under an exclusive lock, at 10 million rows expect minutes of
+--downtime; and nodes of the previous release, which bind uuids as VARCHAR, fail every lookup once it commits.
+--It is therefore not applied at startup: stop every node, then run mvn -P migrate -Dmigration.mode=maintenance-window
+--process-classes in quora-db.
+--quora:maintenance-window
+ALTER TABLE USERS ALTER COLUMN uuid TYPE UUID USING (CASE
+    WHEN uuid ~* '^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$' THEN uuid::UUID
+    ELSE md5(uuid)::UUID END);
+
+ALTER TABLE USER_AUTH ALTER COLUMN uuid TYPE UUID USING (CASE
+    WHEN uuid ~* '^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$' THEN uuid::UUID
+    ELSE md5(uuid)::UUID END);
+
+ALTER TABLE QUESTION ALTER COLUMN uuid TYPE UUID USING (CASE
+    WHEN uuid ~* '^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$' THEN uuid::UUID
+    ELSE md5(uuid)::UUID END);
+
+ALTER TABLE ANSWER ALTER COLUMN uuid TYPE UUID USING (CASE
+    WHEN uuid ~* '^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$' THEN uuid::UUID
+    ELSE md5(uuid)::UUID END);
+
+ANALYZE USERS;
+ANALYZE USER_AUTH;
+ANALYZE QUESTION;
+ANALYZE ANSWER;
@@ -0,0 +1,18 @@
+--The entities reserve blocks of ids from the sequences of the SERIAL columns (pooled-lo optimizer) instead of reading
+--the id generated by each INSERT, which kept Hibernate from batching inserts. A nextval returns the first id of a
+--block and the next block starts INCREMENT BY later, so the increments below must equal the increment_size of the
+--@GenericGenerator of each entity; a smaller increment would hand out the same ids twice.
+
+--The column defaults stay: an INSERT without id takes the first id of a block of its own, which no node uses.
+
+ALTER SEQUENCE users_id_seq INCREMENT BY 10;
+SELECT setval('users_id_seq', COALESCE((SELECT max(id) FROM USERS), 0) + 1, false);
+
+ALTER SEQUENCE user_auth_id_seq INCREMENT BY 50;
+SELECT setval('user_auth_id_seq', COALESCE((SELECT max(ID) FROM USER_AUTH), 0) + 1, false);
+
+ALTER SEQUENCE question_id_seq INCREMENT BY 50;
+SELECT setval('question_id_seq', COALESCE((SELECT max(id) FROM QUESTION), 0) + 1, false);
+
+ALTER SEQUENCE answer_id_seq INCREMENT BY 50;
+SELECT setval('answer_id_seq', COALESCE((SELECT max(id) FROM ANSWER), 0) + 1, false);
@@ -0,0 +1,17 @@
+--Seeds 100 thousand questions of the user 1024 and 1000 answers to the newest of them for the ProjectionBenchmark of
+--quora-benchmark.
+DELETE FROM ANSWER;
+DELETE FROM QUESTION;
+
+INSERT INTO QUESTION(uuid, content, date, user_id)
+SELECT md5('question-' || n)::UUID, 'Benchmark question ' || n || ' ' || repeat(md5('content-' || n), 4),
+       CURRENT_TIMESTAMP - (n || ' seconds')::INTERVAL, 1024
+FROM generate_series(1, 100000) AS n;
+
+INSERT INTO ANSWER(uuid, ans, date, user_id, question_id)
+SELECT md5('answer-' || n)::UUID, 'Benchmark answer ' || n || ' ' || repeat(md5('answer-' || n), 3),
+       CURRENT_TIMESTAMP, 1024, (SELECT id FROM QUESTION ORDER BY date DESC, id DESC LIMIT 1)
+FROM generate_series(1, 1000) AS n;
+
+ANALYZE QUESTION;
+ANALYZE ANSWER;
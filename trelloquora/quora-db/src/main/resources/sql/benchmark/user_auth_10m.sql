@@ -0,0 +1,15 @@
+--Seeds USER_AUTH with 10 million sessions of the user 1024 for the SessionLookupBenchmark of quora-benchmark.
+--Every row n carries a JWT shaped ACCESS_TOKEN and the SHA-256 digest of an opaque token, both derived from n the
+--same way as the benchmark derives them. Requires PostgreSQL 11 or later for sha256().
+TRUNCATE TABLE USER_AUTH;
+
+INSERT INTO USER_AUTH(uuid, USER_ID, ACCESS_TOKEN, ACCESS_TOKEN_DIGEST, EXPIRES_AT, LOGIN_AT)
+SELECT md5('uuid-' || n)::UUID,
+       1024,
+       'eyJraWQiOiIyMDE4LTA5IiwiYWxnIjoiSFM1MTIifQ.' || repeat(md5('jwt-' || n), 8) || '.' || md5('sig-' || n),
+       sha256(convert_to(rtrim(translate(encode(decode(md5('opaque-' || n), 'hex'), 'base64'), '+/', '-_'), '='), 'UTF8')),
+       CURRENT_TIMESTAMP + INTERVAL '1 hour',
+       CURRENT_TIMESTAMP
+FROM generate_series(1, 10000000) AS n;
+
+ANALYZE USER_AUTH;
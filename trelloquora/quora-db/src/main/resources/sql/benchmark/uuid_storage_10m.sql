@@ -0,0 +1,26 @@
+--Seeds two tables of 10 million uuids, one in the former VARCHAR(200) column and one in the native UUID column, for the
+--UuidLookupBenchmark of quora-benchmark, then reports the size of their heaps and unique indexes. Both tables hold the
+--same values, derived from the row number the same way as the benchmark derives them.
+DROP TABLE IF EXISTS UUID_BENCHMARK_VARCHAR;
+DROP TABLE IF EXISTS UUID_BENCHMARK_NATIVE;
+
+CREATE TABLE UUID_BENCHMARK_VARCHAR(id SERIAL, uuid VARCHAR(200) NOT NULL, PRIMARY KEY(id));
+CREATE TABLE UUID_BENCHMARK_NATIVE(id SERIAL, uuid UUID NOT NULL, PRIMARY KEY(id));
+
+INSERT INTO UUID_BENCHMARK_VARCHAR(uuid)
+SELECT md5('uuid-' || n)::UUID::TEXT FROM generate_series(1, 10000000) AS n;
+
+INSERT INTO UUID_BENCHMARK_NATIVE(uuid)
+SELECT md5('uuid-' || n)::UUID FROM generate_series(1, 10000000) AS n;
+
+CREATE UNIQUE INDEX UUID_BENCHMARK_VARCHAR_UUID_IDX ON UUID_BENCHMARK_VARCHAR(uuid);
+CREATE UNIQUE INDEX UUID_BENCHMARK_NATIVE_UUID_IDX ON UUID_BENCHMARK_NATIVE(uuid);
+
+VACUUM ANALYZE UUID_BENCHMARK_VARCHAR;
+VACUUM ANALYZE UUID_BENCHMARK_NATIVE;
+
+SELECT relname AS relation, pg_size_pretty(pg_relation_size(oid)) AS size, pg_relation_size(oid) AS bytes
+FROM pg_class
+WHERE relname IN ('uuid_benchmark_varchar', 'uuid_benchmark_varchar_uuid_idx',
+                  'uuid_benchmark_native', 'uuid_benchmark_native_uuid_idx')
+ORDER BY relname;
@@ -1,30 +1,68 @@
 
+--Creates the schema as the migrations of db/migration up to V3__native_uuid_columns.sql leave it, and records them as
+--applied, so a fresh database starts without the maintenance window V3 needs on a live one. The later migrations are
+--applied on the next startup, after quora_test.sql, so V4__pooled_id_sequences.sql also moves the id sequences past the
+--ids of the fixtures. A change to V1-V3 must be made here too, MigrationRunnerTest checks the checksums recorded below.
+DROP TABLE IF EXISTS SCHEMA_VERSION;
+CREATE TABLE IF NOT EXISTS SCHEMA_VERSION(VERSION INTEGER PRIMARY KEY, DESCRIPTION VARCHAR(200) NOT NULL, SCRIPT VARCHAR(255) NOT NULL, CHECKSUM CHAR(64) NOT NULL, INSTALLED_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, EXECUTION_MS INTEGER NOT NULL);
+INSERT INTO SCHEMA_VERSION(VERSION, DESCRIPTION, SCRIPT, CHECKSUM, EXECUTION_MS) VALUES
+	(1, 'baseline schema', 'V1__baseline_schema.sql', '7a4a5536f1551d76d3c092c84d2e48796ba919e6ea69e34ab5db578fcac4cede', 0),
+	(2, 'lookup indexes', 'V2__lookup_indexes.sql', '1870a122d88c365ce8a05a65a7bbbda8fa4a7693a81a115ab851f040509fdda5', 0),
+	(3, 'native uuid columns', 'V3__native_uuid_columns.sql', '05815009cc0a7ab05c0ee4f2aeee2b294e199ba04dc3e32c86166b8125680267', 0);
+
+
 --USERS table is created to store the details of all the users
 DROP TABLE IF EXISTS USERS CASCADE;
-CREATE TABLE IF NOT EXISTS USERS(id SERIAL, uuid VARCHAR(200) NOT NULL ,firstName VARCHAR(30) NOT NULL , lastName VARCHAR(30) NOT NULL ,userName VARCHAR(30) UNIQUE NOT NULL,  email VARCHAR(50) UNIQUE NOT NULL ,password VARCHAR(255) NOT NULL, salt VARCHAR(200) NOT NULL ,country VARCHAR(30) ,aboutMe VARCHAR(50),dob VARCHAR(30), role VARCHAR(30),contactNumber VARCHAR(30), PRIMARY KEY (id));
+CREATE TABLE IF NOT EXISTS USERS(id SERIAL, uuid UUID NOT NULL ,firstName VARCHAR(30) NOT NULL , lastName VARCHAR(30) NOT NULL ,userName VARCHAR(30) UNIQUE NOT NULL,  email VARCHAR(50) UNIQUE NOT NULL ,password VARCHAR(255) NOT NULL, salt VARCHAR(200) NOT NULL ,country VARCHAR(30) ,aboutMe VARCHAR(50),dob VARCHAR(30), role VARCHAR(30),contactNumber VARCHAR(30), PRIMARY KEY (id));
+CREATE UNIQUE INDEX IF NOT EXISTS USERS_UUID_IDX ON USERS(uuid);
 INSERT INTO users(
 	id, uuid, firstname, lastname, username, email, password, salt, country, aboutme, dob, role, contactnumber)
-	VALUES (1024,'rdtrdtdyt','Himmat','Singh','hsr','hs@gmail.com','507FF5FED1CAC746','8Xt6jxoCI3MWsVaKY/1ySAp2qzlb2Z7P89+vDrb1o6U=', 'India' ,'I am @ UpGrad' ,'22-10-1995' , 'admin' , '1222333333' );
+	VALUES (1024,'00000000-0000-4000-8000-000000001024','Himmat','Singh','hsr','hs@gmail.com','507FF5FED1CAC746','8Xt6jxoCI3MWsVaKY/1ySAp2qzlb2Z7P89+vDrb1o6U=', 'India' ,'I am @ UpGrad' ,'22-10-1995' , 'admin' , '1222333333' );
 
 --USER_AUTH table is created to store the login information of all the users
 DROP TABLE IF EXISTS USER_AUTH CASCADE;
 CREATE TABLE IF NOT EXISTS USER_AUTH(
 	ID BIGSERIAL PRIMARY KEY,
-	uuid VARCHAR(200) NOT NULL,
+	uuid UUID NOT NULL,
 	USER_ID INTEGER NOT NULL,
-	ACCESS_TOKEN VARCHAR(500) NOT NULL,
+	ACCESS_TOKEN VARCHAR(500) NULL,
+	ACCESS_TOKEN_DIGEST BYTEA NULL,
 	EXPIRES_AT TIMESTAMP NOT NULL,
 	LOGIN_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
-	LOGOUT_AT TIMESTAMP NULL
+	LOGOUT_AT TIMESTAMP NULL,
+	CHECK (ACCESS_TOKEN IS NOT NULL OR ACCESS_TOKEN_DIGEST IS NOT NULL)
 );
 
+--opaque sessions are looked up by the SHA-256 digest of their token
+CREATE UNIQUE INDEX IF NOT EXISTS USER_AUTH_ACCESS_TOKEN_DIGEST_IDX ON USER_AUTH(ACCESS_TOKEN_DIGEST);
+
+--the session reaper deletes sessions which expired or were signed out before a cutoff
+CREATE INDEX IF NOT EXISTS USER_AUTH_EXPIRES_AT_IDX ON USER_AUTH(EXPIRES_AT);
+CREATE INDEX IF NOT EXISTS USER_AUTH_LOGOUT_AT_IDX ON USER_AUTH(LOGOUT_AT) WHERE LOGOUT_AT IS NOT NULL;
+
 ALTER TABLE USER_AUTH ADD CONSTRAINT FK_USER_AUTH_USER_ID FOREIGN KEY(USER_ID) REFERENCES USERS(ID) ON DELETE CASCADE ;
 
+--sessions of a user, deleted by cascade with the user; userAuthByAccessToken
+CREATE INDEX IF NOT EXISTS USER_AUTH_USER_ID_IDX ON USER_AUTH(USER_ID);
+CREATE INDEX IF NOT EXISTS USER_AUTH_ACCESS_TOKEN_IDX ON USER_AUTH(ACCESS_TOKEN);
+
 --QUESTION table is created to store the questions related information posted by any user in the Application
 DROP TABLE IF EXISTS QUESTION CASCADE;
-CREATE TABLE IF NOT EXISTS QUESTION(id SERIAL,uuid VARCHAR(200) NOT NULL, content VARCHAR(500) NOT NULL, date TIMESTAMP NOT NULL , user_id INTEGER NOT NULL, PRIMARY KEY(id), FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE);
+CREATE TABLE IF NOT EXISTS QUESTION(id SERIAL,uuid UUID NOT NULL, content VARCHAR(500) NOT NULL, date TIMESTAMP NOT NULL , user_id INTEGER NOT NULL, PRIMARY KEY(id), FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE);
+
+--/question/all pages through the questions newest first by (date, id)
+CREATE INDEX IF NOT EXISTS QUESTION_DATE_ID_IDX ON QUESTION(date, id);
+
+--lookups by uuid, and the questions of a user newest first
+CREATE UNIQUE INDEX IF NOT EXISTS QUESTION_UUID_IDX ON QUESTION(uuid);
+CREATE INDEX IF NOT EXISTS QUESTION_USER_ID_DATE_ID_IDX ON QUESTION(user_id, date, id);
 
 
 --ANSWER table is created to store the answers related information in reply to any question posted in the Application
 DROP TABLE IF EXISTS ANSWER CASCADE;
-CREATE TABLE IF NOT EXISTS ANSWER(id SERIAL,uuid VARCHAR(200) NOT NULL, ans VARCHAR(255) NOT NULL,date TIMESTAMP NOT NULL , user_id INTEGER NOT NULL, question_id INTEGER NOT NULL , PRIMARY KEY(id), FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE, FOREIGN KEY (question_id) REFERENCES QUESTION(id) ON DELETE CASCADE);
+CREATE TABLE IF NOT EXISTS ANSWER(id SERIAL,uuid UUID NOT NULL, ans VARCHAR(255) NOT NULL,date TIMESTAMP NOT NULL , user_id INTEGER NOT NULL, question_id INTEGER NOT NULL , PRIMARY KEY(id), FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE, FOREIGN KEY (question_id) REFERENCES QUESTION(id) ON DELETE CASCADE);
+
+--lookups by uuid, the answers of a question by id and the answers of a user
+CREATE UNIQUE INDEX IF NOT EXISTS ANSWER_UUID_IDX ON ANSWER(uuid);
+CREATE INDEX IF NOT EXISTS ANSWER_QUESTION_ID_ID_IDX ON ANSWER(question_id, id);
+CREATE INDEX IF NOT EXISTS ANSWER_USER_ID_IDX ON ANSWER(user_id);
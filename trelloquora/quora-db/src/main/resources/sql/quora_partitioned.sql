@@ -0,0 +1,80 @@
+--Schema variant of USER_AUTH range-partitioned by LOGIN_AT, one partition per month (PostgreSQL 11 or later).
+--Run after quora.sql, it replaces the USER_AUTH table created there. Old sessions are removed by dropping whole
+--monthly partitions, which takes constant time whatever the number of rows, instead of deleting them row by row.
+--
+--Partitioned tables require the partition key in every unique constraint, so the primary key is (ID, LOGIN_AT) and
+--the digest index is unique per (ACCESS_TOKEN_DIGEST, LOGIN_AT); ID is still unique as it comes from one sequence and
+--a 128 bit random token digest does not repeat. A lookup by token or digest probes the index of every partition, so
+--keep the number of live partitions small with drop_user_auth_partitions_before.
+DROP TABLE IF EXISTS USER_AUTH CASCADE;
+CREATE TABLE IF NOT EXISTS USER_AUTH(
+	ID BIGSERIAL,
+	uuid UUID NOT NULL,
+	USER_ID INTEGER NOT NULL,
+	ACCESS_TOKEN VARCHAR(500) NULL,
+	ACCESS_TOKEN_DIGEST BYTEA NULL,
+	EXPIRES_AT TIMESTAMP NOT NULL,
+	LOGIN_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+	LOGOUT_AT TIMESTAMP NULL,
+	CHECK (ACCESS_TOKEN IS NOT NULL OR ACCESS_TOKEN_DIGEST IS NOT NULL),
+	PRIMARY KEY (ID, LOGIN_AT)
+) PARTITION BY RANGE (LOGIN_AT);
+
+--the BIGSERIAL sequence is recreated with INCREMENT BY 1, V4__pooled_id_sequences.sql alters it at the next startup
+
+CREATE UNIQUE INDEX IF NOT EXISTS USER_AUTH_ACCESS_TOKEN_DIGEST_IDX ON USER_AUTH(ACCESS_TOKEN_DIGEST, LOGIN_AT);
+CREATE INDEX IF NOT EXISTS USER_AUTH_EXPIRES_AT_IDX ON USER_AUTH(EXPIRES_AT);
+CREATE INDEX IF NOT EXISTS USER_AUTH_LOGOUT_AT_IDX ON USER_AUTH(LOGOUT_AT) WHERE LOGOUT_AT IS NOT NULL;
+--the USER_AUTH indexes of V2__lookup_indexes.sql, which quora.sql records as applied
+CREATE INDEX IF NOT EXISTS USER_AUTH_USER_ID_IDX ON USER_AUTH(USER_ID);
+CREATE INDEX IF NOT EXISTS USER_AUTH_ACCESS_TOKEN_IDX ON USER_AUTH(ACCESS_TOKEN);
+
+ALTER TABLE USER_AUTH ADD CONSTRAINT FK_USER_AUTH_USER_ID FOREIGN KEY(USER_ID) REFERENCES USERS(ID) ON DELETE CASCADE ;
+
+--sessions outside of every monthly partition, e.g. test fixtures with old login times
+CREATE TABLE IF NOT EXISTS USER_AUTH_DEFAULT PARTITION OF USER_AUTH DEFAULT;
+
+--creates the partition of the month containing the given time, unless it exists already
+CREATE OR REPLACE FUNCTION create_user_auth_partition(month_start TIMESTAMP) RETURNS VOID AS $$
+DECLARE
+	from_time TIMESTAMP := date_trunc('month', month_start);
+	partition_name TEXT := 'user_auth_' || to_char(from_time, 'YYYY_MM');
+BEGIN
+	EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF USER_AUTH FOR VALUES FROM (%L) TO (%L)',
+		partition_name, from_time, from_time + INTERVAL '1 month');
+END;
+$$ LANGUAGE plpgsql;
+
+--drops every monthly partition whose sessions all signed in before the cutoff and all expired or signed out before
+--the cutoff, returns the number of dropped partitions; a partition still holding a session whose expiry was extended
+--by a token refresh is kept until that session is past the cutoff too
+CREATE OR REPLACE FUNCTION drop_user_auth_partitions_before(cutoff TIMESTAMP) RETURNS INTEGER AS $$
+DECLARE
+	partition RECORD;
+	retained BOOLEAN;
+	dropped INTEGER := 0;
+BEGIN
+	FOR partition IN
+		SELECT child.relname AS name
+		FROM pg_inherits
+		JOIN pg_class parent ON pg_inherits.inhparent = parent.oid
+		JOIN pg_class child ON pg_inherits.inhrelid = child.oid
+		WHERE parent.relname = 'user_auth' AND child.relname ~ '^user_auth_[0-9]{4}_[0-9]{2}$'
+	LOOP
+		IF to_timestamp(substr(partition.name, 11), 'YYYY_MM')::TIMESTAMP + INTERVAL '1 month' <= cutoff THEN
+			--same condition as the staleUserAuthIds query of the row by row reaper, served by USER_AUTH_EXPIRES_AT_IDX
+			EXECUTE format('SELECT EXISTS (SELECT 1 FROM %I WHERE EXPIRES_AT >= $1 AND (LOGOUT_AT IS NULL OR LOGOUT_AT >= $1))',
+				partition.name) INTO retained USING cutoff;
+			IF NOT retained THEN
+				EXECUTE format('DROP TABLE %I', partition.name);
+				dropped := dropped + 1;
+			END IF;
+		END IF;
+	END LOOP;
+	--keep the partitions of the current and the next two months ready
+	PERFORM create_user_auth_partition(CURRENT_TIMESTAMP::TIMESTAMP + (n || ' month')::INTERVAL) FROM generate_series(0, 2) AS n;
+	RETURN dropped;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT create_user_auth_partition(CURRENT_TIMESTAMP::TIMESTAMP + (n || ' month')::INTERVAL) FROM generate_series(0, 2) AS n;
@@ -0,0 +1,58 @@
+package com.upgrad.quora.service;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.PropertySource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Hands the quora.id-allocation.[sequence_name].increment-size properties to Hibernate, where PooledSequenceGenerator
+ * reads them, so the id allocation is configured under one prefix with quora.id-allocation.validate instead of in
+ * spring.jpa.properties.
+ */
+@Configuration
+public class IdAllocationConfiguration {
+
+    private static final String PREFIX = "quora.id-allocation.";
+
+    private static final String INCREMENT_SIZE_SUFFIX = ".increment-size";
+
+    // static, so that the post processor is registered before the entity manager factory is created
+    @Bean
+    public static BeanPostProcessor idAllocationSettings(final ConfigurableEnvironment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(final Object bean, final String beanName) {
+                if (bean instanceof LocalContainerEntityManagerFactoryBean) {
+                    ((LocalContainerEntityManagerFactoryBean) bean).getJpaPropertyMap().putAll(incrementSizes(environment));
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * @return the increment-size of every sequence configured, by its property name, which is the setting
+     * PooledSequenceGenerator.INCREMENT_SIZE_SETTING reads
+     */
+    private static Map<String, String> incrementSizes(final ConfigurableEnvironment environment) {
+        final Map<String, String> incrementSizes = new TreeMap<>();
+        for (final PropertySource<?> propertySource : environment.getPropertySources()) {
+            if (propertySource instanceof EnumerablePropertySource) {
+                for (final String name : ((EnumerablePropertySource<?>) propertySource).getPropertyNames()) {
+                    if (name.startsWith(PREFIX) && name.endsWith(INCREMENT_SIZE_SUFFIX)) {
+                        // resolved through the environment, so the property source of the highest precedence wins
+                        incrementSizes.putIfAbsent(name, environment.getProperty(name));
+                    }
+                }
+            }
+        }
+        return incrementSizes;
+    }
+}
@@ -0,0 +1,46 @@
+package com.upgrad.quora.service;
+
+import com.upgrad.quora.db.Migration;
+import com.upgrad.quora.db.MigrationRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Applies the pending schema migrations of quora-db at startup. The entity manager factory depends on the migration,
+ * so no repository touches the database before its schema is current.
+ */
+@Configuration
+@ConditionalOnProperty(name = "quora.migration.enabled", havingValue = "true", matchIfMissing = true)
+public class MigrationConfiguration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MigrationConfiguration.class);
+
+    @Bean
+    public MigrationRunner migrationRunner(final DataSource dataSource,
+                                           @Value("${quora.migration.location:" + MigrationRunner.DEFAULT_LOCATION + "}") final String location) {
+        final MigrationRunner migrationRunner = new MigrationRunner(location);
+        final List<Migration> applied = migrationRunner.migrate(dataSource);
+        if (applied.isEmpty()) {
+            LOG.info("Schema is up to date");
+        } else {
+            LOG.info("Applied migrations {}", applied);
+        }
+        return migrationRunner;
+    }
+
+    @Configuration
+    static class EntityManagerFactoryDependsOnMigration extends EntityManagerFactoryDependsOnPostProcessor {
+
+        EntityManagerFactoryDependsOnMigration() {
+            super("migrationRunner");
+        }
+    }
+}
@@ -1,15 +1,35 @@
 package com.upgrad.quora.service;
 
 
+import com.upgrad.quora.service.business.SingleFlight;
+import com.upgrad.quora.service.dto.AnswerSummary;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.List;
+import java.util.UUID;
 
 /**
  * Enabling the component scan and entity scan of classes in the below mentioned "com.upgrad.quora.service" and "com.upgrad.quora.service.entity" packages respectively.
+ * Scheduling is enabled for the background jobs of the service layer.
  */
 @Configuration
+@EnableScheduling
 @ComponentScan("com.upgrad.quora.service")
 @EntityScan("com.upgrad.quora.service.entity")
 public class ServiceConfiguration {
+
+    /**
+     * Coalesces the concurrent reads of the answers to the same question, which pile up when a question is shared
+     */
+    @Bean
+    public SingleFlight<UUID, List<AnswerSummary>> answersByQuestionFlight(
+            @Value("${quora.single-flight.timeout-ms:2000}") final long timeoutMillis,
+            @Value("${quora.single-flight.retry-after-seconds:1}") final long retryAfterSeconds) {
+        return new SingleFlight<>("answers.by.question", timeoutMillis, retryAfterSeconds);
+    }
 }
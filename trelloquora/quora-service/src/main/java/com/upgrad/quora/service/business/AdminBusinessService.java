@@ -1,5 +1,10 @@
 package com.upgrad.quora.service.business;
 
+import com.upgrad.quora.service.cache.AuthorQuestionCache;
+import com.upgrad.quora.service.cache.InvalidationBus;
+import com.upgrad.quora.service.cache.InvalidationType;
+import com.upgrad.quora.service.cache.QuestionCache;
+import com.upgrad.quora.service.cache.SessionCache;
 import com.upgrad.quora.service.dao.UserDao;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
@@ -9,6 +14,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.UUID;
+
 @Service
 public class AdminBusinessService {
     @Autowired
@@ -17,16 +24,28 @@ public class AdminBusinessService {
     @Autowired
     private UserBusinessService userBusinessService;
 
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private QuestionCache questionCache;
+
+    @Autowired
+    private AuthorQuestionCache authorQuestionCache;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
     /**
      * Business login to handle the user delete request. Only Admin user can delete another user in the application
-     * @param String uuid
+     * @param UUID uuid
      * @param String authorizationToken
      * @return UserEntity
      * @throws AuthorizationFailedException
      * @throws UserNotFoundException
      */
     @Transactional(propagation = Propagation.REQUIRED)
-    public UserEntity deleteUser(final String uuid, final String authorizationToken) throws AuthorizationFailedException, UserNotFoundException {
+    public UserEntity deleteUser(final UUID uuid, final String authorizationToken) throws AuthorizationFailedException, UserNotFoundException {
 
         UserEntity userEntity = userBusinessService.getUserFromToken(authorizationToken);
         if(!userEntity.getRole().equals("admin")) {
@@ -37,7 +56,16 @@ public class AdminBusinessService {
         if(deleteUserEntity == null){
             throw new UserNotFoundException("USR-001", "User with entered uuid to be deleted does not exist");
         } else {
+            // the second-level cache of this node is updated by Hibernate, the other nodes evict the user on commit
             userDao.deleteUser(deleteUserEntity);
+            invalidationBus.publish(InvalidationType.USER, String.valueOf(deleteUserEntity.getId()));
+            sessionCache.invalidateUser(deleteUserEntity.getUuid());
+            // the questions of the user are deleted with the user
+            questionCache.invalidateUser(deleteUserEntity.getId());
+            authorQuestionCache.invalidate(deleteUserEntity.getUuid());
+            invalidationBus.publish(InvalidationType.SESSIONS_OF_USER, deleteUserEntity.getUuid().toString());
+            invalidationBus.publish(InvalidationType.QUESTIONS_OF_USER, String.valueOf(deleteUserEntity.getId()));
+            invalidationBus.publish(InvalidationType.QUESTION_LIST_OF_USER, deleteUserEntity.getUuid().toString());
         }
 
         return deleteUserEntity;
@@ -3,22 +3,38 @@ package com.upgrad.quora.service.business;
 import com.upgrad.quora.service.dao.QuestionDao;
 import com.upgrad.quora.service.dao.UserDao;
 import com.upgrad.quora.service.dao.AnswerDao;
+import com.upgrad.quora.service.dto.AnswerSummary;
+import com.upgrad.quora.service.dto.BulkItemResult;
 import com.upgrad.quora.service.entity.AnswerEntity;
+import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
 import com.upgrad.quora.service.exception.AnswerNotFoundException;
+import com.upgrad.quora.service.exception.BulkRequestRejectedException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
+import com.upgrad.quora.service.exception.ServiceUnavailableException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
+import java.util.function.BiConsumer;
 
 @Service
 public class AnswerBusinessService {
 
+    // length of ANSWER.ans
+    private static final int MAX_ANSWER_LENGTH = 255;
+
     @Autowired
     private UserDao userDao;
 
@@ -28,6 +44,27 @@ public class AnswerBusinessService {
     @Autowired
     private AnswerDao answerDao;
 
+    @Autowired
+    private QuestionDao questionDao;
+
+    @Autowired
+    private QuestionBusinessService questionBusinessService;
+
+    @Autowired
+    private BulkWriter bulkWriter;
+
+    @Autowired
+    private SingleFlight<UUID, List<AnswerSummary>> answersByQuestionFlight;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${quora.stream.chunk-size:500}")
+    private int streamChunkSize;
+
+    @Value("${quora.stream.chunk-timeout-seconds:10}")
+    private int streamChunkTimeoutSeconds;
+
     /**
      * Handle the request to Create an answer
      * @param answerEntity
@@ -45,6 +82,57 @@ public class AnswerBusinessService {
         return answerEntity;
     }
 
+    /**
+     * Handle the request to create many answers of the signed-in user to a question at once. The token is checked and
+     * the question resolved once, and every answer is validated before any is written; the valid ones are then
+     * written in chunks.
+     * @param questionUuid
+     * @param reader - reads the content of every answer, in request order, once the token and question are checked
+     * @param authorizationToken
+     * @return result of every answer, in request order
+     * @throws AuthorizationFailedException
+     * @throws InvalidQuestionException
+     * @throws BulkRequestRejectedException
+     */
+    public List<BulkItemResult> createAnswers(final UUID questionUuid, final BulkWriter.ItemReader<String> reader,
+                                              final String authorizationToken)
+            throws AuthorizationFailedException, InvalidQuestionException, BulkRequestRejectedException {
+
+        UserEntity userEntity = userBusinessService.getUserFromToken(authorizationToken);
+        final Integer questionId = questionBusinessService.getQuestion(questionUuid).getId();
+        final List<String> answers = reader.read();
+        bulkWriter.checkSize(answers.size());
+
+        final BulkItemResult[] results = new BulkItemResult[answers.size()];
+        final List<AnswerEntity> answerEntities = new ArrayList<>(answers.size());
+        final Timestamp date = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < answers.size(); i++) {
+            final String answer = answers.get(i);
+            AnswerEntity answerEntity = null;
+            if(answer == null || answer.trim().isEmpty()) {
+                results[i] = BulkItemResult.rejected(i, "ANS-003", "Entered answer is empty");
+            } else if(answer.length() > MAX_ANSWER_LENGTH) {
+                results[i] = BulkItemResult.rejected(i, "ANS-004", "Entered answer is longer than " + MAX_ANSWER_LENGTH + " characters");
+            } else {
+                answerEntity = new AnswerEntity();
+                answerEntity.setUuid(EntityIdGenerator.nextId());
+                answerEntity.setAns(answer);
+                answerEntity.setDate(date);
+                answerEntity.setUser(userEntity);
+            }
+            answerEntities.add(answerEntity);
+        }
+
+        return bulkWriter.write(answerEntities, results, AnswerEntity::getUuid, chunk -> {
+            // the persistence context is cleared after every chunk, so each chunk takes its own reference
+            final QuestionEntity question = questionDao.getQuestionReference(questionId);
+            for (final AnswerEntity answerEntity : chunk) {
+                answerEntity.setQuestion(question);
+            }
+            answerDao.createAnswers(chunk);
+        });
+    }
+
     /**
      * Handle the request to retrieve the Answer from its uuid
      * @param answerUuid
@@ -53,7 +141,7 @@ public class AnswerBusinessService {
      * @throws AuthorizationFailedException
      * @throws AnswerNotFoundException
      */
-    public AnswerEntity getAnswerByAnswerUuid(final String answerUuid, final String authorizationToken)
+    public AnswerEntity getAnswerByAnswerUuid(final UUID answerUuid, final String authorizationToken)
             throws AuthorizationFailedException,AnswerNotFoundException {
 
         userBusinessService.getUserFromToken(authorizationToken);
@@ -77,7 +165,7 @@ public class AnswerBusinessService {
 
         UserEntity userEntity = userBusinessService.getUserFromToken(authorizationToken);
 
-        if(answerEntity.getUser().getId() == userEntity.getId()) {
+        if(answerEntity.getUser().getId().equals(userEntity.getId())) {
             answerDao.updateAnswer(answerEntity);
         } else {
             throw new AuthorizationFailedException("ATHR-003", "Only the Answer owner can edit the Answer");
@@ -95,7 +183,7 @@ public class AnswerBusinessService {
      * @throws AnswerNotFoundException
      */
     @Transactional(propagation = Propagation.REQUIRED)
-    public AnswerEntity deleteAnswer(final String answerUuid, final String authorizationToken) throws AuthorizationFailedException,AnswerNotFoundException {
+    public AnswerEntity deleteAnswer(final UUID answerUuid, final String authorizationToken) throws AuthorizationFailedException,AnswerNotFoundException {
 
         UserEntity userEntity = userBusinessService.getUserFromToken(authorizationToken);
         AnswerEntity answerEntity = answerDao.getAnswerByUuid(answerUuid);
@@ -114,20 +202,66 @@ public class AnswerBusinessService {
     }
 
     /**
-     * Handle the request to retrieve all the Answers given to a given  question
-     * @param id
+     * Handle the request to retrieve all the Answers given to a given question. The question and its answers are
+     * read with a single query, which concurrent requests for the same question share: only the first one runs it,
+     * in its own read-only transaction, so the requests waiting for it do not hold a connection.
+     * @param questionUuid
      * @param authorizationToken
-     * @return List<AnswerEntity>
+     * @return List<AnswerSummary>
      * @throws AuthorizationFailedException
      * @throws InvalidQuestionException
+     * @throws ServiceUnavailableException if the shared query does not complete in time
      */
-    public List<AnswerEntity> getAllAnswersByQuestionId (final Integer id,final String authorizationToken) throws AuthorizationFailedException,InvalidQuestionException{
+    public List<AnswerSummary> getAllAnswersByQuestionUuid (final UUID questionUuid,final String authorizationToken) throws AuthorizationFailedException,InvalidQuestionException,ServiceUnavailableException{
         userBusinessService.getUserFromToken(authorizationToken);
 
-        List<AnswerEntity> answerEntities = answerDao.getAnswersByQuestionId(id);
-        if(answerEntities == null || answerEntities.size() == 0){
+        List<AnswerSummary> answerEntities = answersByQuestionFlight.execute(questionUuid, () -> {
+            final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setReadOnly(true);
+            return transactionTemplate.execute(status -> {
+                final List<AnswerSummary> answers = answerDao.getAnswersByQuestionUuid(questionUuid);
+                // shared by every request which joined the query
+                return answers == null ? null : Collections.unmodifiableList(answers);
+            });
+        });
+        if(answerEntities == null){
+            throw new InvalidQuestionException("QUES-001", "Entered question uuid does not exist");
+        }
+        if(answerEntities.size() == 0){
             throw new InvalidQuestionException("ANS-002", "No Answer with specified Question Id exist.");
         }
         return answerEntities;
     }
+
+    /**
+     * Handle the request to stream all the answers to a question. Answers are read stream-chunk-size at a time by
+     * keyset, each chunk in its own short read-only transaction with a timeout, and handed to the consumer once the
+     * transaction is over, so that no connection is held while the client reads the response.
+     * @param id - id of the question
+     * @param authorizationToken
+     * @param consumer - receives the uuid and content of every answer
+     * @throws AuthorizationFailedException
+     * @throws InvalidQuestionException
+     */
+    public void streamAllAnswersByQuestionId (final Integer id, final String authorizationToken, final BiConsumer<UUID, String> consumer) throws AuthorizationFailedException,InvalidQuestionException{
+        userBusinessService.getUserFromToken(authorizationToken);
+
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.setTimeout(streamChunkTimeoutSeconds);
+        List<AnswerSummary> chunk = transactionTemplate.execute(status -> answerDao.getAnswersPage(id, null, streamChunkSize));
+        if(chunk.isEmpty()){
+            throw new InvalidQuestionException("ANS-002", "No Answer with specified Question Id exist.");
+        }
+        while (true) {
+            for (final AnswerSummary answer : chunk) {
+                consumer.accept(answer.getUuid(), answer.getAnswerContent());
+            }
+            if (chunk.size() < streamChunkSize) {
+                return;
+            }
+            final Integer lastId = chunk.get(chunk.size() - 1).getId();
+            chunk = transactionTemplate.execute(status -> answerDao.getAnswersPage(id, lastId, streamChunkSize));
+        }
+    }
 }
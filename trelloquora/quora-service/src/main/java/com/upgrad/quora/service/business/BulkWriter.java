@@ -0,0 +1,125 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.dto.BulkItemResult;
+import com.upgrad.quora.service.exception.BulkRequestRejectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Writes the items of a bulk request in chunks of a fixed size, each chunk in its own transaction, so that a large
+ * request neither holds one long transaction nor pays a commit per item. The inserts of a chunk are flushed together
+ * and go out as JDBC batches. A chunk which fails is rolled back and its items are reported as failed; the other
+ * chunks are still written.
+ */
+@Component
+public class BulkWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkWriter.class);
+
+    @Value("${quora.bulk.max-items:50000}")
+    private int maxItems;
+
+    @Value("${quora.bulk.chunk-size:1000}")
+    private int chunkSize;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Reads the items of a bulk request from its body, which the service calls once the request is authorized, so
+     * that the body of a request which is not is never parsed
+     */
+    @FunctionalInterface
+    public interface ItemReader<T> {
+
+        /**
+         * @return every item, in request order; more items than allowed if there are, for checkSize to reject
+         * @throws BulkRequestRejectedException if the body does not hold items
+         */
+        List<T> read() throws BulkRequestRejectedException;
+    }
+
+    /**
+     * @return number of items a bulk request may have
+     */
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    /**
+     * Checks the number of items of a bulk request, before anything else is done with it
+     * @param items
+     * @throws BulkRequestRejectedException if there is no item or more items than allowed
+     */
+    public void checkSize(final int items) throws BulkRequestRejectedException {
+        if(items == 0) {
+            throw new BulkRequestRejectedException("BLK-001", "Bulk request has no item");
+        }
+        if(items > maxItems) {
+            throw new BulkRequestRejectedException("BLK-002", "Bulk request has more than " + maxItems + " items");
+        }
+    }
+
+    /**
+     * Writes the valid items in chunks
+     * @param entities - entity of every item, in request order, null for the items rejected by the validation
+     * @param results - result of every item, already set for the rejected items; set here for the others
+     * @param uuidOf - uuid of a written entity
+     * @param chunkWriter - persists the entities of a chunk, within its transaction
+     * @return results of all the items, in request order
+     */
+    public <E> List<BulkItemResult> write(final List<E> entities, final BulkItemResult[] results,
+                                          final Function<E, UUID> uuidOf, final Consumer<List<E>> chunkWriter) {
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        final List<E> chunk = new ArrayList<>(chunkSize);
+        final int[] indexes = new int[chunkSize];
+        for (int i = 0; i < entities.size(); i++) {
+            final E entity = entities.get(i);
+            if(entity == null) {
+                continue;
+            }
+            indexes[chunk.size()] = i;
+            chunk.add(entity);
+            if(chunk.size() == chunkSize) {
+                writeChunk(transactionTemplate, chunk, indexes, results, uuidOf, chunkWriter);
+                chunk.clear();
+            }
+        }
+        if(!chunk.isEmpty()) {
+            writeChunk(transactionTemplate, chunk, indexes, results, uuidOf, chunkWriter);
+        }
+        return Arrays.asList(results);
+    }
+
+    private <E> void writeChunk(final TransactionTemplate transactionTemplate, final List<E> chunk, final int[] indexes,
+                                final BulkItemResult[] results, final Function<E, UUID> uuidOf,
+                                final Consumer<List<E>> chunkWriter) {
+        try {
+            transactionTemplate.execute(status -> {
+                chunkWriter.accept(chunk);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            LOG.warn("Bulk chunk of {} items rolled back", chunk.size(), e);
+            for (int i = 0; i < chunk.size(); i++) {
+                results[indexes[i]] = BulkItemResult.failed(indexes[i], "BLK-003", "Item could not be saved, please retry it");
+            }
+            return;
+        }
+        for (int i = 0; i < chunk.size(); i++) {
+            results[indexes[i]] = BulkItemResult.created(indexes[i], uuidOf.apply(chunk.get(i)));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.upgrad.quora.service.business;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates the uuids of new users, questions and answers as version 7 UUIDs (RFC 9562): the first 48 bits are the
+ * Unix time in milliseconds, so new ids sort after the existing ones and inserts append to the right edge of the
+ * uuid indexes instead of splitting pages all over them, as the random version 4 UUIDs did.
+ *
+ * The 12 bits following the version are a counter, restarted from a random value below 2048 every millisecond, so the
+ * ids generated by a thread are strictly increasing even within a millisecond; should the counter run out, the
+ * timestamp is advanced by one millisecond. The last 62 bits are random and keep the ids of different threads and
+ * nodes apart. All state is per thread, so no lock is taken, and nothing is drawn from the shared SecureRandom of
+ * UUID.randomUUID: the ids are identifiers, not secrets, and reveal their creation time.
+ */
+public final class EntityIdGenerator {
+
+    private static final int COUNTER_MAXIMUM = 0xFFF;
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    private EntityIdGenerator() {
+    }
+
+    public static UUID nextId() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final State state = STATE.get();
+        final long now = System.currentTimeMillis();
+        if (now > state.millis) {
+            state.millis = now;
+            state.counter = random.nextInt(COUNTER_MAXIMUM / 2 + 1);
+        } else if (state.counter < COUNTER_MAXIMUM) {
+            // same millisecond, or the clock went back: stay on the last timestamp
+            state.counter++;
+        } else {
+            state.millis++;
+            state.counter = 0;
+        }
+        final long mostSignificantBits = (state.millis << 16) | 0x7000L | state.counter;
+        final long leastSignificantBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+    /**
+     * @param id - a version 7 UUID
+     * @return the creation time of the id in milliseconds since the epoch
+     */
+    public static long timestampOf(final UUID id) {
+        return id.getMostSignificantBits() >>> 16;
+    }
+
+    private static final class State {
+
+        private long millis;
+
+        private int counter;
+    }
+}
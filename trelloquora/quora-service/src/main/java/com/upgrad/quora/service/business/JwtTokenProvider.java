@@ -1,32 +1,82 @@
 package com.upgrad.quora.service.business;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
-import com.upgrad.quora.service.common.GenericErrorCode;
-import com.upgrad.quora.service.common.UnexpectedException;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.time.ZonedDateTime;
-import java.time.temporal.ChronoField;
+import java.util.Collections;
 import java.util.Date;
-import java.util.UUID;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
- * This class is used in the project to provide JWT token after successful authentication
+ * This class is used in the project to provide JWT token after successful authentication and to verify the tokens
+ * presented on later requests.
+ * Tokens are signed with a server-side key; every key has an id which is written in the "kid" header of the token,
+ * so that new keys can be rolled out while tokens signed with the previous keys are still accepted.
+ * Tokens issued before the keys were introduced were signed with the password hash of their user under a random kid;
+ * with verification enabled they are refused, so every session signed in before then has to sign in again.
+ * The provider is a singleton: the signing algorithms and verifiers are built once at startup and reused by every request.
  */
+@Component
 public class JwtTokenProvider {
     private static final String TOKEN_ISSUER = "https://quora.io";
 
+    private final String activeKeyId;
+
     private final Algorithm algorithm;
 
+    private final Map<String, JWTVerifier> verifiers;
+
+    private final boolean verificationEnabled;
+
     /**
-     * A constructor for JwtTokenProvider class which receives user password as an argument to be used in the signature part of JWT access token.
+     * @param keys                - signing keys in the format "kid1=secret1,kid2=secret2"
+     * @param activeKeyId         - id of the key used to sign new tokens
+     * @param verificationEnabled - whether presented tokens are verified before they are looked up in the database
      */
-    public JwtTokenProvider(final String secret) {
-        try {
-            algorithm = Algorithm.HMAC512(secret);
-        } catch (IllegalArgumentException e) {
-            throw new UnexpectedException(GenericErrorCode.GEN_001);
+    public JwtTokenProvider(@Value("${quora.jwt.keys:}") final String keys,
+                            @Value("${quora.jwt.active-key-id}") final String activeKeyId,
+                            @Value("${quora.jwt.verification-enabled:true}") final boolean verificationEnabled) {
+        if (keys == null || keys.trim().isEmpty()) {
+            // a default key would be public, anyone could forge tokens with it
+            throw new IllegalStateException("No JWT signing key is configured, set quora.jwt.keys (QUORA_JWT_KEYS)");
+        }
+        final Map<String, JWTVerifier> verifiers = new HashMap<>();
+        Algorithm activeAlgorithm = null;
+        for (String key : keys.split(",")) {
+            final String[] pair = key.trim().split("=", 2);
+            if (pair.length != 2 || pair[0].isEmpty() || pair[1].isEmpty()) {
+                // without a "=" the entry may be a bare secret, it is only named by its kid
+                throw new IllegalStateException("quora.jwt.keys has an entry which is not in the format kid=secret"
+                        + (pair.length == 2 && !pair[0].isEmpty() ? ": kid " + pair[0] + " has no secret" : ""));
+            }
+            final Algorithm keyAlgorithm;
+            try {
+                keyAlgorithm = new PooledHmacAlgorithm(pair[0], pair[1].getBytes(StandardCharsets.UTF_8));
+            } catch (GeneralSecurityException | IllegalArgumentException e) {
+                throw new IllegalStateException("quora.jwt.keys has an unusable secret for kid " + pair[0], e);
+            }
+            verifiers.put(pair[0], JWT.require(keyAlgorithm).withIssuer(TOKEN_ISSUER).build());
+            if (pair[0].equals(activeKeyId)) {
+                activeAlgorithm = keyAlgorithm;
+            }
         }
+        if (activeAlgorithm == null) {
+            throw new IllegalStateException("quora.jwt.active-key-id " + activeKeyId + " is not a kid of quora.jwt.keys "
+                    + verifiers.keySet());
+        }
+        this.activeKeyId = activeKeyId;
+        this.algorithm = activeAlgorithm;
+        this.verifiers = Collections.unmodifiableMap(verifiers);
+        this.verificationEnabled = verificationEnabled;
     }
 
 
@@ -42,13 +92,51 @@ public class JwtTokenProvider {
      */
     public String generateToken(final String userUuid, final ZonedDateTime issuedDateTime, final ZonedDateTime expiresDateTime) {
 
-        final Date issuedAt = new Date(issuedDateTime.getLong(ChronoField.INSTANT_SECONDS));
-        final Date expiresAt = new Date(expiresDateTime.getLong(ChronoField.INSTANT_SECONDS));
+        final Date issuedAt = Date.from(issuedDateTime.toInstant());
+        final Date expiresAt = Date.from(expiresDateTime.toInstant());
 
         return JWT.create().withIssuer(TOKEN_ISSUER) //
-                .withKeyId(UUID.randomUUID().toString())
+                .withKeyId(activeKeyId)
+                .withJWTId(TokenIdGenerator.nextId())
                 .withAudience(userUuid) //
                 .withIssuedAt(issuedAt).withExpiresAt(expiresAt).sign(algorithm);
     }
 
+    /**
+     * This method checks the signature, issuer and expiry of a token in memory, without any database access.
+     *
+     * @param token - JWT token presented by the client
+     * @return - decoded token, or null if the token is malformed, signed with an unknown key, forged or expired
+     */
+    public DecodedJWT verifyToken(final String token) {
+        try {
+            final DecodedJWT decodedJWT = JWT.decode(token);
+            final JWTVerifier verifier = decodedJWT.getKeyId() == null ? null : verifiers.get(decodedJWT.getKeyId());
+            if (verifier == null) {
+                return null;
+            }
+            return verifier.verify(token);
+        } catch (JWTVerificationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * This method reads the issue time of a token without verifying it.
+     *
+     * @param token - JWT token presented by the client
+     * @return - issue time of the token, or null if the token is not a JWT or carries no issue time
+     */
+    public Date getIssuedAt(final String token) {
+        try {
+            return JWT.decode(token).getIssuedAt();
+        } catch (JWTVerificationException e) {
+            return null;
+        }
+    }
+
+    public boolean isVerificationEnabled() {
+        return verificationEnabled;
+    }
+
 }
@@ -0,0 +1,59 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.common.UnexpectedException;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * This class provides opaque access tokens: 128 random bits, base64url encoded to 22 characters.
+ * The token itself is never stored; only its SHA-256 digest is, so that a leaked user_auth table cannot be replayed.
+ * The digest has a fixed width of 32 bytes and is looked up through a unique index.
+ */
+@Component
+public class OpaqueTokenProvider {
+
+    static final int TOKEN_LENGTH = 22;
+
+    private static final int TOKEN_BYTES = 16;
+
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+        }
+    });
+
+    /**
+     * @return - new random opaque token
+     */
+    public String generateToken() {
+        final byte[] bytes = new byte[TOKEN_BYTES];
+        SECURE_RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * @param token - access token presented by the client
+     * @return - true if the token has the shape of an opaque token; JWTs are much longer and contain dots
+     */
+    public boolean isOpaqueToken(final String token) {
+        return token != null && token.length() == TOKEN_LENGTH && token.indexOf('.') < 0;
+    }
+
+    /**
+     * @param token - opaque access token
+     * @return - SHA-256 digest of the token, as stored in user_auth.ACCESS_TOKEN_DIGEST
+     */
+    public byte[] digest(final String token) {
+        return DIGESTS.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+    }
+}
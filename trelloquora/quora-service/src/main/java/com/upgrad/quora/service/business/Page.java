@@ -0,0 +1,31 @@
+package com.upgrad.quora.service.business;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing: the items of the page and the opaque cursor of the next page, which is null
+ * on the last page.
+ */
+public final class Page<T> {
+
+    private final List<T> items;
+
+    private final String nextCursor;
+
+    public Page(final List<T> items, final String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,55 @@
+package com.upgrad.quora.service.business;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+/**
+ * Position in a listing ordered by (date desc, id desc): the date and id of the last item of a page.
+ * Clients get the position as an opaque base64url token and hand it back unchanged to fetch the next page.
+ */
+public final class PageCursor {
+
+    private static final String VERSION = "1";
+
+    private final Timestamp date;
+
+    private final int id;
+
+    public PageCursor(final Timestamp date, final int id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    public Timestamp getDate() {
+        return date;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String encode() {
+        final String position = VERSION + ":" + date.getTime() + ":" + date.getNanos() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @param token - cursor token handed out with a previous page
+     * @return PageCursor or null if the token is not a cursor
+     */
+    public static PageCursor decode(final String token) {
+        try {
+            final String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII).split(":");
+            if (parts.length != 4 || !VERSION.equals(parts[0])) {
+                return null;
+            }
+            final Timestamp date = new Timestamp(Long.parseLong(parts[1]));
+            date.setNanos(Integer.parseInt(parts[2]));
+            return new PageCursor(date, Integer.parseInt(parts[3]));
+        } catch (IllegalArgumentException e) {
+            // also covers NumberFormatException and nanos out of range
+            return null;
+        }
+    }
+}
@@ -1,26 +1,80 @@
 package com.upgrad.quora.service.business;
 
 
-import java.security.NoSuchAlgorithmException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
-import java.security.spec.InvalidKeySpecException;
 import java.util.Base64;
-import java.util.Random;
-import javax.crypto.SecretKey;
-import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.PBEKeySpec;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.PostConstruct;
 
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.common.UnexpectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 
+/**
+ * Hashes and verifies passwords with the configured PasswordHasher.
+ * Hashes are stored as "$id$parameters$hash" so that the algorithm and cost of every stored hash are known; hashes
+ * written before this format existed (plain hex) are PBKDF2WithHmacSHA512 with 1000 iterations and a 64 bit key.
+ */
 @Component
 public class PasswordCryptographyProvider {
 
-    private static String SECRET_KEY_ALGORITHM = "PBKDF2WithHmacSHA512";
-    private static int HASHING_ITERATIONS = 1000;
-    private static int HASHING_KEY_LENGTH = 64;
+    private static final Logger LOG = LoggerFactory.getLogger(PasswordCryptographyProvider.class);
+
+    private static final String LEGACY_PARAMETERS = "i=1000,l=64";
     private final static char[] hexArray = "0123456789ABCDEF".toCharArray();
 
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+    private final Map<String, PasswordHasher> hashers = new HashMap<>();
+
+    private final PasswordHasher preferredHasher;
+
+    private final long targetLatencyMillis;
+
+    private final int cost;
+
+    /**
+     * @param hashers             - every available PasswordHasher
+     * @param preferredHasherId   - id of the hasher used for new hashes
+     * @param targetLatencyMillis - hashing latency the cost of the preferred hasher is calibrated to at startup
+     * @param cost                - fixed cost of the preferred hasher, 0 to calibrate it
+     */
+    public PasswordCryptographyProvider(final List<PasswordHasher> hashers,
+                                        @Value("${quora.password.hasher:pbkdf2-sha512}") final String preferredHasherId,
+                                        @Value("${quora.password.target-latency-ms:50}") final long targetLatencyMillis,
+                                        @Value("${quora.password.cost:0}") final int cost) {
+        for (PasswordHasher hasher : hashers) {
+            this.hashers.put(hasher.getId(), hasher);
+        }
+        this.preferredHasher = this.hashers.get(preferredHasherId);
+        if (this.preferredHasher == null) {
+            throw new UnexpectedException(GenericErrorCode.GEN_001);
+        }
+        this.targetLatencyMillis = targetLatencyMillis;
+        this.cost = cost;
+    }
+
+    /**
+     * Calibrates the cost of the preferred hasher to the current hardware, unless a fixed cost is configured
+     */
+    @PostConstruct
+    public void calibrate() {
+        if (cost > 0) {
+            preferredHasher.setCost(cost);
+        } else {
+            preferredHasher.calibrate(targetLatencyMillis);
+        }
+        LOG.info("Password hashing uses {} with {}", preferredHasher.getId(), preferredHasher.getParameters());
+    }
+
     /**
      * This method generates Salt and hashed Password
      *
@@ -29,20 +83,53 @@ public class PasswordCryptographyProvider {
      */
     public String[] encrypt(final String password) {
         byte[] salt = generateSaltBytes();
-        byte[] hashedPassword = hashPassword(password.toCharArray(), salt);
-        return new String[]{getBase64EncodedBytesAsString(salt), bytesToHex(hashedPassword)};
+        String parameters = preferredHasher.getParameters();
+        byte[] hashedPassword = preferredHasher.hash(password.toCharArray(), salt, parameters);
+        return new String[]{getBase64EncodedBytesAsString(salt),
+                "$" + preferredHasher.getId() + "$" + parameters + "$" + bytesToHex(hashedPassword)};
     }
 
     /**
-     * This method re-generates hashed Password from raw-password and salt.
+     * This method re-generates hashed Password from raw-password and salt with the algorithm and parameters of the
+     * stored hash and compares both in constant time.
      * This will be used during authentication.
      *
-     * @param password char array.
-     * @param salt     byte array.
-     * @return byte array of hashed password.
+     * @param password     raw password.
+     * @param salt         encoded salt.
+     * @param storedHash   stored hashed password.
+     * @return true if the password matches the stored hash.
      */
-    public static String encrypt(final String password, String salt) {
-        return bytesToHex(hashPassword(password.toCharArray(), getBase64DecodedStringAsBytes(salt)));
+    public boolean matches(final String password, final String salt, final String storedHash) {
+        final String[] parts = split(storedHash);
+        final PasswordHasher hasher = hashers.get(parts[0]);
+        if (hasher == null) {
+            return false;
+        }
+        final String hashedPassword = bytesToHex(hasher.hash(password.toCharArray(), getBase64DecodedStringAsBytes(salt), parts[1]));
+        return MessageDigest.isEqual(hashedPassword.getBytes(StandardCharsets.US_ASCII), parts[2].getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @param storedHash stored hashed password.
+     * @return true if the stored hash was not produced by the preferred hasher with its current cost.
+     */
+    public boolean needsRehash(final String storedHash) {
+        final String[] parts = split(storedHash);
+        return !preferredHasher.getId().equals(parts[0]) || preferredHasher.needsRehash(parts[1]);
+    }
+
+    /**
+     * Splits a stored hash into [0] hasher id [1] parameters [2] hex hash
+     */
+    private static String[] split(final String storedHash) {
+        if (!storedHash.startsWith("$")) {
+            return new String[]{Pbkdf2PasswordHasher.ID, LEGACY_PARAMETERS, storedHash};
+        }
+        final String[] parts = storedHash.substring(1).split("\\$", 3);
+        if (parts.length != 3) {
+            return new String[]{"", "", ""};
+        }
+        return parts;
     }
 
     /**
@@ -51,31 +138,11 @@ public class PasswordCryptographyProvider {
      * @return 32 bytes long array
      */
     private static byte[] generateSaltBytes() {
-        final Random random = new SecureRandom();
         byte[] saltBytes = new byte[32];
-        random.nextBytes(saltBytes);
+        SECURE_RANDOM.nextBytes(saltBytes);
         return saltBytes;
     }
 
-    /**
-     * This method generates hashed Password
-     *
-     * @param password char array.
-     * @param salt     byte array.
-     * @return byte array of hashed password.
-     */
-    private static byte[] hashPassword(final char[] password, final byte[] salt) {
-        try {
-            SecretKeyFactory skf = SecretKeyFactory.getInstance(SECRET_KEY_ALGORITHM);
-            PBEKeySpec spec = new PBEKeySpec(password, salt, HASHING_ITERATIONS, HASHING_KEY_LENGTH);
-            SecretKey key = skf.generateSecret(spec);
-            byte[] res = key.getEncoded();
-            return res;
-        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
     private static String bytesToHex(byte[] bytes) {
         char[] hexChars = new char[bytes.length * 2];
         for (int j = 0; j < bytes.length; j++) {
@@ -0,0 +1,48 @@
+package com.upgrad.quora.service.business;
+
+/**
+ * A password hashing algorithm usable by PasswordCryptographyProvider.
+ * Every stored hash records the id and the parameters of the hasher which produced it, in the format
+ * "$id$parameters$hash", so that hashes produced with older parameters or another algorithm can still be verified
+ * and upgraded when the user signs in.
+ */
+public interface PasswordHasher {
+
+    /**
+     * @return identifier of the algorithm written in front of every hash, e.g. "pbkdf2-sha512"
+     */
+    String getId();
+
+    /**
+     * @return parameters used for new hashes, e.g. "i=210000,l=512"
+     */
+    String getParameters();
+
+    /**
+     * Picks the cost parameters so that hashing one password takes about the given time on the current hardware.
+     *
+     * @param targetMillis target hashing latency in milliseconds
+     */
+    void calibrate(long targetMillis);
+
+    /**
+     * Fixes the cost parameter instead of calibrating it.
+     *
+     * @param cost algorithm specific cost, e.g. number of iterations for PBKDF2
+     */
+    void setCost(int cost);
+
+    /**
+     * @param password   raw password
+     * @param salt       salt bytes
+     * @param parameters parameters the hash is computed with, as returned by getParameters
+     * @return hashed password
+     */
+    byte[] hash(char[] password, byte[] salt, String parameters);
+
+    /**
+     * @param parameters parameters a stored hash was computed with
+     * @return true if the parameters are noticeably weaker than the current ones
+     */
+    boolean needsRehash(String parameters);
+}
@@ -0,0 +1,124 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.common.UnexpectedException;
+import com.upgrad.quora.service.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs password hashing on a dedicated pool sized to the number of CPUs, so that a burst of signup and signin
+ * requests cannot occupy every request thread. The pool has a bounded queue: once it is full, new hashing requests
+ * are rejected straight away with a ServiceUnavailableException instead of waiting.
+ */
+@Component
+public class PasswordHashingExecutor implements MeterBinder, DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+
+    private final long timeoutMillis;
+
+    private final long retryAfterSeconds;
+
+    private final LongAdder hashCount = new LongAdder();
+
+    private final LongAdder hashNanos = new LongAdder();
+
+    private final LongAdder rejections = new LongAdder();
+
+    public PasswordHashingExecutor(@Value("${quora.password-hashing.threads:0}") final int threads,
+                                   @Value("${quora.password-hashing.queue-capacity:64}") final int queueCapacity,
+                                   @Value("${quora.password-hashing.timeout-ms:5000}") final long timeoutMillis,
+                                   @Value("${quora.password-hashing.retry-after-seconds:1}") final long retryAfterSeconds) {
+        final int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    final Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.timeoutMillis = timeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Runs a hashing task on the hashing pool and waits for its result
+     * @param task
+     * @return result of the task
+     * @throws ServiceUnavailableException if the queue is full or the task does not complete in time
+     */
+    public <T> T execute(final Callable<T> task) throws ServiceUnavailableException {
+        final Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                final long start = System.nanoTime();
+                try {
+                    return task.call();
+                } finally {
+                    hashNanos.add(System.nanoTime() - start);
+                    hashCount.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            throw busy();
+        }
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejections.increment();
+            throw busy();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new UnexpectedException(GenericErrorCode.GEN_001, e.getCause());
+        }
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("quora.password.hashing.queue.depth", this, PasswordHashingExecutor::getQueueDepth).register(registry);
+        Gauge.builder("quora.password.hashing.active", executor, ThreadPoolExecutor::getActiveCount).register(registry);
+        FunctionTimer.builder("quora.password.hashing.latency", this, e -> e.hashCount.sum(), e -> e.hashNanos.sum(),
+                TimeUnit.NANOSECONDS).register(registry);
+        FunctionCounter.builder("quora.password.hashing.rejections", rejections, LongAdder::sum).register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private ServiceUnavailableException busy() {
+        return new ServiceUnavailableException("SVC-001", "Too many signin requests, please retry later", retryAfterSeconds);
+    }
+}
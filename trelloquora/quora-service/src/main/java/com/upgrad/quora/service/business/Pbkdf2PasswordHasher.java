@@ -0,0 +1,96 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.common.UnexpectedException;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * PBKDF2WithHmacSHA512 password hasher. Parameters are "i=iterations,l=key length in bits".
+ */
+@Component
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+
+    static final String ID = "pbkdf2-sha512";
+
+    private static final String SECRET_KEY_ALGORITHM = "PBKDF2WithHmacSHA512";
+    private static final int KEY_LENGTH = 512;
+    private static final int MINIMUM_ITERATIONS = 10000;
+
+    // SecretKeyFactory instances are not guaranteed to be thread-safe, so every hashing thread keeps its own
+    private static final ThreadLocal<SecretKeyFactory> SECRET_KEY_FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance(SECRET_KEY_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+        }
+    });
+
+    private volatile int iterations = MINIMUM_ITERATIONS;
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @Override
+    public String getParameters() {
+        return "i=" + iterations + ",l=" + KEY_LENGTH;
+    }
+
+    @Override
+    public void calibrate(final long targetMillis) {
+        final char[] password = "calibration-password".toCharArray();
+        final byte[] salt = new byte[32];
+        int trial = MINIMUM_ITERATIONS;
+        long elapsed = 0;
+        while (elapsed < targetMillis / 4 && trial < Integer.MAX_VALUE / 2) {
+            trial *= 2;
+            final long start = System.nanoTime();
+            hash(password, salt, trial, KEY_LENGTH);
+            elapsed = (System.nanoTime() - start) / 1000000;
+        }
+        final long scaled = elapsed == 0 ? trial : (long) trial * targetMillis / elapsed;
+        iterations = (int) Math.max(MINIMUM_ITERATIONS, Math.min(Integer.MAX_VALUE, scaled));
+    }
+
+    @Override
+    public void setCost(final int cost) {
+        iterations = cost;
+    }
+
+    @Override
+    public byte[] hash(final char[] password, final byte[] salt, final String parameters) {
+        return hash(password, salt, parameter(parameters, "i"), parameter(parameters, "l"));
+    }
+
+    @Override
+    public boolean needsRehash(final String parameters) {
+        return parameter(parameters, "l") != KEY_LENGTH || parameter(parameters, "i") < iterations * 3L / 4;
+    }
+
+    private static byte[] hash(final char[] password, final byte[] salt, final int iterations, final int keyLength) {
+        final PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, keyLength);
+        try {
+            return SECRET_KEY_FACTORY.get().generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    static int parameter(final String parameters, final String name) {
+        for (String parameter : parameters.split(",")) {
+            final int separator = parameter.indexOf('=');
+            if (separator > 0 && parameter.substring(0, separator).equals(name)) {
+                return Integer.parseInt(parameter.substring(separator + 1));
+            }
+        }
+        throw new UnexpectedException(GenericErrorCode.GEN_001);
+    }
+}
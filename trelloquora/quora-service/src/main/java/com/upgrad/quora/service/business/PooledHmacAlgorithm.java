@@ -0,0 +1,76 @@
+package com.upgrad.quora.service.business;
+
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.SignatureGenerationException;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * HS512 JWT algorithm which keeps one initialized Mac per thread.
+ * The stock HMAC algorithm of java-jwt looks up a Mac and sets up the key for every token it signs or verifies;
+ * here every thread clones an initialized prototype once and reuses it afterwards.
+ */
+public class PooledHmacAlgorithm extends Algorithm {
+
+    private static final String MAC_ALGORITHM = "HmacSHA512";
+
+    private final String keyId;
+
+    private final SecretKeySpec key;
+
+    private final ThreadLocal<Mac> macs;
+
+    public PooledHmacAlgorithm(final String keyId, final byte[] secret) throws GeneralSecurityException {
+        super("HS512", MAC_ALGORITHM);
+        this.keyId = keyId;
+        this.key = new SecretKeySpec(secret, MAC_ALGORITHM);
+        final Mac prototype = Mac.getInstance(MAC_ALGORITHM);
+        prototype.init(key);
+        this.macs = ThreadLocal.withInitial(() -> newMac(prototype));
+    }
+
+    @Override
+    public String getSigningKeyId() {
+        return keyId;
+    }
+
+    @Override
+    public byte[] sign(final byte[] contentBytes) throws SignatureGenerationException {
+        return macs.get().doFinal(contentBytes);
+    }
+
+    @Override
+    public void verify(final DecodedJWT jwt) throws SignatureVerificationException {
+        final byte[] contentBytes = (jwt.getHeader() + "." + jwt.getPayload()).getBytes(StandardCharsets.UTF_8);
+        final byte[] signatureBytes;
+        try {
+            signatureBytes = Base64.getUrlDecoder().decode(jwt.getSignature());
+        } catch (IllegalArgumentException e) {
+            throw new SignatureVerificationException(this, e);
+        }
+        if (!MessageDigest.isEqual(macs.get().doFinal(contentBytes), signatureBytes)) {
+            throw new SignatureVerificationException(this);
+        }
+    }
+
+    private Mac newMac(final Mac prototype) {
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            try {
+                final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+}
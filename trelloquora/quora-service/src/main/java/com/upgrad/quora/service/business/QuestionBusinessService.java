@@ -1,30 +1,71 @@
 package com.upgrad.quora.service.business;
 
+import com.upgrad.quora.service.cache.AuthorQuestionCache;
+import com.upgrad.quora.service.cache.InvalidationBus;
+import com.upgrad.quora.service.cache.InvalidationType;
+import com.upgrad.quora.service.cache.QuestionCache;
 import com.upgrad.quora.service.dao.QuestionDao;
-import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.dto.BulkItemResult;
+import com.upgrad.quora.service.dto.QuestionSnapshot;
+import com.upgrad.quora.service.dto.QuestionSummary;
 import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.BulkRequestRejectedException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
+import java.util.function.BiConsumer;
 
 @Service
 public class QuestionBusinessService {
 
+    // length of QUESTION.content
+    private static final int MAX_CONTENT_LENGTH = 500;
+
     @Autowired
     private QuestionDao questionDao;
 
     @Autowired
-    private UserDao userDao;
+    private UserBusinessService userBusinessService;
 
     @Autowired
-    private UserBusinessService userBusinessService;
+    private QuestionCache questionCache;
+
+    @Autowired
+    private AuthorQuestionCache authorQuestionCache;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    @Autowired
+    private BulkWriter bulkWriter;
+
+    @Value("${quora.pagination.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${quora.pagination.max-page-size:100}")
+    private int maxPageSize;
+
+    @Value("${quora.stream.chunk-size:500}")
+    private int streamChunkSize;
+
+    @Value("${quora.stream.chunk-timeout-seconds:10}")
+    private int streamChunkTimeoutSeconds;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
 
     /**
      * Handle the request to Create Question
@@ -40,44 +81,145 @@ public class QuestionBusinessService {
         questionEntity.setUser(userEntity);
 
         questionDao.createQuestion(questionEntity);
+        authorQuestionCache.put(userEntity.getUuid(), toSummary(questionEntity));
+        invalidationBus.publish(InvalidationType.QUESTION_LIST_OF_USER, userEntity.getUuid().toString());
 
         return questionEntity;
     }
 
     /**
-     * Handle the request to retrieve all Questions
+     * Handle the request to create many questions of the signed-in user at once. The token is checked once and every
+     * question is validated before any is written; the valid ones are then written in chunks.
+     * @param reader - reads the content of every question, in request order, once the token is checked
+     * @param authorizationToken
+     * @return result of every question, in request order
+     * @throws AuthorizationFailedException
+     * @throws BulkRequestRejectedException
+     */
+    public List<BulkItemResult> createQuestions(final BulkWriter.ItemReader<String> reader, final String authorizationToken)
+            throws AuthorizationFailedException, BulkRequestRejectedException {
+
+        UserEntity userEntity = userBusinessService.getUserFromToken(authorizationToken);
+        final List<String> contents = reader.read();
+        bulkWriter.checkSize(contents.size());
+
+        final BulkItemResult[] results = new BulkItemResult[contents.size()];
+        final List<QuestionEntity> questionEntities = new ArrayList<>(contents.size());
+        final Timestamp date = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < contents.size(); i++) {
+            final String content = contents.get(i);
+            QuestionEntity questionEntity = null;
+            if(content == null || content.trim().isEmpty()) {
+                results[i] = BulkItemResult.rejected(i, "QUES-003", "Entered question content is empty");
+            } else if(content.length() > MAX_CONTENT_LENGTH) {
+                results[i] = BulkItemResult.rejected(i, "QUES-004", "Entered question content is longer than " + MAX_CONTENT_LENGTH + " characters");
+            } else {
+                questionEntity = new QuestionEntity();
+                questionEntity.setUuid(EntityIdGenerator.nextId());
+                questionEntity.setContent(content);
+                questionEntity.setDate(date);
+                questionEntity.setUser(userEntity);
+            }
+            questionEntities.add(questionEntity);
+        }
+
+        final List<BulkItemResult> report = bulkWriter.write(questionEntities, results, QuestionEntity::getUuid, questionDao::createQuestions);
+        // the cached list of the author is reloaded once rather than updated question by question
+        authorQuestionCache.invalidate(userEntity.getUuid());
+        invalidationBus.publish(InvalidationType.QUESTION_LIST_OF_USER, userEntity.getUuid().toString());
+        return report;
+    }
+
+    /**
+     * Handle the request to retrieve all Questions, one page at a time, newest first
      * @param authorizationToken
-     * @return List<QuestionEntity>
+     * @param cursor - cursor of the page to retrieve, null for the first page
+     * @param limit - requested page size, null for the default; capped at the maximum page size
+     * @return Page<QuestionSummary>
      * @throws InvalidQuestionException
      * @throws AuthorizationFailedException
      */
-    public List<QuestionEntity> getAllQuestions (final String authorizationToken) throws InvalidQuestionException, AuthorizationFailedException {
+    @Transactional(readOnly = true)
+    public Page<QuestionSummary> getAllQuestions (final String authorizationToken, final String cursor, final Integer limit) throws InvalidQuestionException, AuthorizationFailedException {
         userBusinessService.getUserFromToken(authorizationToken);
-        List<QuestionEntity> questionEntities = questionDao.getQuestions();
-        if(questionEntities == null || questionEntities.size() == 0){
+
+        PageCursor position = null;
+        if(cursor != null) {
+            position = PageCursor.decode(cursor);
+            if(position == null) {
+                throw new InvalidQuestionException("QUES-002", "Entered page cursor is not valid");
+            }
+        }
+        final int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+
+        // one extra row tells whether there is a next page
+        List<QuestionSummary> questionEntities = position == null
+                ? questionDao.getQuestionsPage(null, null, pageSize + 1)
+                : questionDao.getQuestionsPage(position.getDate(), position.getId(), pageSize + 1);
+        if(position == null && questionEntities.isEmpty()){
             throw new InvalidQuestionException("USR-001", "User with entered uuid whose question details are to be seen does not exist");
         }
-        return questionEntities;
+
+        String nextCursor = null;
+        if(questionEntities.size() > pageSize) {
+            questionEntities = questionEntities.subList(0, pageSize);
+            final QuestionSummary last = questionEntities.get(pageSize - 1);
+            nextCursor = new PageCursor(last.getDate(), last.getId()).encode();
+        }
+        return new Page<>(questionEntities, nextCursor);
     }
 
     /**
-     * Handle the request to retrieve all the question posted by an user
+     * Handle the request to stream all Questions, newest first. Questions are read stream-chunk-size at a time by
+     * keyset, each chunk in its own short read-only transaction with a timeout, and handed to the consumer once the
+     * transaction is over: no connection is held while the client reads the response, and no more than a chunk is
+     * kept in memory. Chunks are not read from one snapshot, so a question deleted during the stream may be missed
+     * and one created during the stream is not returned.
+     * @param authorizationToken
+     * @param consumer - receives the uuid and content of every question
+     * @throws InvalidQuestionException
+     * @throws AuthorizationFailedException
+     */
+    public void streamAllQuestions (final String authorizationToken, final BiConsumer<UUID, String> consumer) throws InvalidQuestionException, AuthorizationFailedException {
+        userBusinessService.getUserFromToken(authorizationToken);
+
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.setTimeout(streamChunkTimeoutSeconds);
+        List<QuestionSummary> chunk = transactionTemplate.execute(status -> questionDao.getQuestionsPage(null, null, streamChunkSize));
+        if(chunk.isEmpty()){
+            throw new InvalidQuestionException("USR-001", "User with entered uuid whose question details are to be seen does not exist");
+        }
+        while (true) {
+            for (final QuestionSummary question : chunk) {
+                consumer.accept(question.getUuid(), question.getContent());
+            }
+            if (chunk.size() < streamChunkSize) {
+                return;
+            }
+            final QuestionSummary last = chunk.get(chunk.size() - 1);
+            chunk = transactionTemplate.execute(status -> questionDao.getQuestionsPage(last.getDate(), last.getId(), streamChunkSize));
+        }
+    }
+
+    /**
+     * Handle the request to retrieve all the question posted by an user, newest first, from the author question cache
+     * when possible. On a miss the user and its questions are read in a single statement.
      * @param uuid
      * @param authorizationToken
-     * @return List<QuestionEntity>
+     * @return List<QuestionSummary>
      * @throws InvalidQuestionException
      * @throws AuthorizationFailedException
      * @throws UserNotFoundException
      */
-    public List<QuestionEntity> getAllQuestionsByUser (final String uuid, final String authorizationToken) throws InvalidQuestionException, AuthorizationFailedException, UserNotFoundException {
+    @Transactional(readOnly = true)
+    public List<QuestionSummary> getAllQuestionsByUser (final UUID uuid, final String authorizationToken) throws InvalidQuestionException, AuthorizationFailedException, UserNotFoundException {
         userBusinessService.getUserFromToken(authorizationToken);
-        UserEntity userEntity = userDao.getUserByUuid(uuid);
-        if (userEntity == null) {
+        List<QuestionSummary> questionEntities = authorQuestionCache.get(uuid, questionDao::getQuestionsByUserUuid);
+        if (questionEntities == null) {
             throw new UserNotFoundException("USR-001", "User with entered uuid whose question details are to be seen does not exist");
         }
 
-        List<QuestionEntity> questionEntities = questionDao.getQuestionsByUser(uuid);
-
         return questionEntities;
     }
 
@@ -93,8 +235,12 @@ public class QuestionBusinessService {
 
         UserEntity userEntity = userBusinessService.getUserFromToken(authorizationToken);
 
-        if(questionEntity.getUser().getId() == userEntity.getId()) {
+        if(questionEntity.getUser().getId().equals(userEntity.getId())) {
+            questionCache.invalidate(questionEntity.getUuid());
+            invalidationBus.publish(InvalidationType.QUESTION, questionEntity.getUuid().toString());
             questionDao.updateQuestion(questionEntity);
+            authorQuestionCache.put(userEntity.getUuid(), toSummary(questionEntity));
+            invalidationBus.publish(InvalidationType.QUESTION_LIST_OF_USER, userEntity.getUuid().toString());
         } else {
             throw new AuthorizationFailedException("ATHR-003", "Only the question owner can edit the question");
         }
@@ -111,16 +257,20 @@ public class QuestionBusinessService {
      * @throws InvalidQuestionException
      */
     @Transactional(propagation = Propagation.REQUIRED)
-    public QuestionEntity deleteQuestion(final String uuid, final String authorizationToken) throws AuthorizationFailedException, InvalidQuestionException {
+    public QuestionEntity deleteQuestion(final UUID uuid, final String authorizationToken) throws AuthorizationFailedException, InvalidQuestionException {
 
         UserEntity userEntity = userBusinessService.getUserFromToken(authorizationToken);
-        QuestionEntity questionEntity = questionDao.getQuestion(uuid);
+        QuestionEntity questionEntity = questionDao.getQuestionWithUser(uuid);
         if(questionEntity == null){
             throw new InvalidQuestionException("QUES-001", "Entered question uuid does not exist");
         }
 
         if(userEntity.getUuid().equals(questionEntity.getUser().getUuid()) || userEntity.getRole().equals("admin")) {
+            questionCache.invalidate(questionEntity.getUuid());
+            invalidationBus.publish(InvalidationType.QUESTION, questionEntity.getUuid().toString());
             questionDao.deleteQuestion(questionEntity);
+            authorQuestionCache.remove(questionEntity.getUser().getUuid(), questionEntity.getId());
+            invalidationBus.publish(InvalidationType.QUESTION_LIST_OF_USER, questionEntity.getUser().getUuid().toString());
         } else {
             throw new AuthorizationFailedException("ATHR-003", "Only the question owner or admin can delete the question");
         }
@@ -129,13 +279,40 @@ public class QuestionBusinessService {
     }
 
     /**
-     * Handle the request to retrieve the question by its uuid
+     * Handle the request to retrieve the question by its uuid, from the question cache when possible
+     * @param uuid
+     * @return QuestionSnapshot
+     * @throws InvalidQuestionException
+     */
+    public QuestionSnapshot getQuestion(final UUID uuid) throws InvalidQuestionException {
+        QuestionSnapshot questionSnapshot = questionCache.get(uuid, questionDao::getQuestionSnapshot);
+
+        if(questionSnapshot == null){
+            throw new InvalidQuestionException("QUES-001", "Entered question uuid does not exist");
+        }
+
+        return questionSnapshot;
+    }
+
+    /**
+     * Handle the request to retrieve a reference to the question with the given uuid, which can be associated with
+     * an answer. The question is resolved through the question cache and is not read from the database.
+     * @param uuid
+     * @return QuestionEntity
+     * @throws InvalidQuestionException
+     */
+    public QuestionEntity getQuestionReference(final UUID uuid) throws InvalidQuestionException {
+        return questionDao.getQuestionReference(getQuestion(uuid).getId());
+    }
+
+    /**
+     * Handle the request to retrieve the question by its uuid, together with its owner
      * @param uuid
      * @return QuestionEntity
      * @throws InvalidQuestionException
      */
-    public QuestionEntity getQuestion(String uuid) throws InvalidQuestionException {
-        QuestionEntity questionEntity = questionDao.getQuestion(uuid);
+    public QuestionEntity getQuestionWithUser(final UUID uuid) throws InvalidQuestionException {
+        QuestionEntity questionEntity = questionDao.getQuestionWithUser(uuid);
 
         if(questionEntity == null){
             throw new InvalidQuestionException("QUES-001", "Entered question uuid does not exist");
@@ -143,4 +320,8 @@ public class QuestionBusinessService {
 
         return questionEntity;
     }
+
+    private static QuestionSummary toSummary(final QuestionEntity questionEntity) {
+        return new QuestionSummary(questionEntity.getId(), questionEntity.getUuid(), questionEntity.getContent(), questionEntity.getDate());
+    }
 }
@@ -0,0 +1,208 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.common.UnexpectedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * scrypt (RFC 7914) password hasher. Parameters are "ln=log2(N),r=block size,p=parallelism,l=key length in bytes".
+ * Only the CPU/memory cost N is calibrated; it is capped so that one hash never needs more than the configured memory.
+ */
+@Component
+public class ScryptPasswordHasher implements PasswordHasher {
+
+    static final String ID = "scrypt";
+
+    private static final int BLOCK_SIZE = 8;
+    private static final int PARALLELISM = 1;
+    private static final int KEY_LENGTH = 32;
+    private static final int MINIMUM_LOG_N = 10;
+
+    private final int maximumLogN;
+
+    private volatile int logN = 14;
+
+    public ScryptPasswordHasher(@Value("${quora.password.scrypt.max-memory-mb:32}") final int maximumMemoryMegabytes) {
+        // one hash needs 128 * r * N bytes
+        final long maximumN = (long) maximumMemoryMegabytes * 1024 * 1024 / (128 * BLOCK_SIZE);
+        this.maximumLogN = Math.max(MINIMUM_LOG_N, 63 - Long.numberOfLeadingZeros(maximumN));
+        this.logN = Math.min(logN, maximumLogN);
+    }
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @Override
+    public String getParameters() {
+        return "ln=" + logN + ",r=" + BLOCK_SIZE + ",p=" + PARALLELISM + ",l=" + KEY_LENGTH;
+    }
+
+    @Override
+    public void calibrate(final long targetMillis) {
+        final byte[] password = "calibration-password".getBytes(StandardCharsets.UTF_8);
+        final byte[] salt = new byte[32];
+        int trial = MINIMUM_LOG_N;
+        while (trial < maximumLogN) {
+            final long start = System.nanoTime();
+            scrypt(password, salt, 1 << trial, BLOCK_SIZE, PARALLELISM, KEY_LENGTH);
+            if ((System.nanoTime() - start) / 1000000 * 2 > targetMillis) {
+                break;
+            }
+            trial++;
+        }
+        logN = trial;
+    }
+
+    @Override
+    public void setCost(final int cost) {
+        logN = Math.min(cost, maximumLogN);
+    }
+
+    @Override
+    public byte[] hash(final char[] password, final byte[] salt, final String parameters) {
+        final ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+        final byte[] passwordBytes = Arrays.copyOfRange(encoded.array(), encoded.position(), encoded.limit());
+        try {
+            return scrypt(passwordBytes, salt, 1 << Pbkdf2PasswordHasher.parameter(parameters, "ln"),
+                    Pbkdf2PasswordHasher.parameter(parameters, "r"), Pbkdf2PasswordHasher.parameter(parameters, "p"),
+                    Pbkdf2PasswordHasher.parameter(parameters, "l"));
+        } finally {
+            Arrays.fill(passwordBytes, (byte) 0);
+            Arrays.fill(encoded.array(), (byte) 0);
+        }
+    }
+
+    @Override
+    public boolean needsRehash(final String parameters) {
+        return Pbkdf2PasswordHasher.parameter(parameters, "ln") < logN
+                || Pbkdf2PasswordHasher.parameter(parameters, "r") != BLOCK_SIZE
+                || Pbkdf2PasswordHasher.parameter(parameters, "p") != PARALLELISM
+                || Pbkdf2PasswordHasher.parameter(parameters, "l") != KEY_LENGTH;
+    }
+
+    static byte[] scrypt(final byte[] password, final byte[] salt, final int n, final int r, final int p, final int keyLength) {
+        try {
+            final Mac mac = Mac.getInstance("HmacSHA256");
+            // SecretKeySpec rejects empty keys; HMAC zero-pads the key, so a single zero byte is equivalent to an empty key
+            mac.init(new SecretKeySpec(password.length == 0 ? new byte[1] : password, "HmacSHA256"));
+            final byte[] blocks = pbkdf2(mac, salt, 128 * r * p);
+            final int[] x = new int[32 * r];
+            final int[] y = new int[32 * r];
+            final int[] v = new int[32 * r * n];
+            final int[] scratch = new int[16];
+            for (int i = 0; i < p; i++) {
+                romix(blocks, i * 128 * r, r, n, x, y, v, scratch);
+            }
+            return pbkdf2(mac, blocks, keyLength);
+        } catch (GeneralSecurityException e) {
+            throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+        }
+    }
+
+    private static byte[] pbkdf2(final Mac mac, final byte[] salt, final int length) {
+        final byte[] output = new byte[length];
+        final byte[] blockIndex = new byte[4];
+        for (int block = 1, offset = 0; offset < length; block++, offset += 32) {
+            blockIndex[0] = (byte) (block >>> 24);
+            blockIndex[1] = (byte) (block >>> 16);
+            blockIndex[2] = (byte) (block >>> 8);
+            blockIndex[3] = (byte) block;
+            mac.update(salt);
+            final byte[] u = mac.doFinal(blockIndex);
+            System.arraycopy(u, 0, output, offset, Math.min(32, length - offset));
+        }
+        return output;
+    }
+
+    private static void romix(final byte[] b, final int offset, final int r, final int n, final int[] x, final int[] y,
+                              final int[] v, final int[] scratch) {
+        final int words = 32 * r;
+        for (int i = 0; i < words; i++) {
+            final int j = offset + i * 4;
+            x[i] = (b[j] & 0xff) | (b[j + 1] & 0xff) << 8 | (b[j + 2] & 0xff) << 16 | (b[j + 3] & 0xff) << 24;
+        }
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(x, 0, v, i * words, words);
+            blockMix(x, y, r, scratch);
+        }
+        for (int i = 0; i < n; i++) {
+            final int j = x[(2 * r - 1) * 16] & (n - 1);
+            for (int k = 0; k < words; k++) {
+                x[k] ^= v[j * words + k];
+            }
+            blockMix(x, y, r, scratch);
+        }
+        for (int i = 0; i < words; i++) {
+            final int j = offset + i * 4;
+            b[j] = (byte) x[i];
+            b[j + 1] = (byte) (x[i] >>> 8);
+            b[j + 2] = (byte) (x[i] >>> 16);
+            b[j + 3] = (byte) (x[i] >>> 24);
+        }
+    }
+
+    private static void blockMix(final int[] b, final int[] y, final int r, final int[] x) {
+        System.arraycopy(b, (2 * r - 1) * 16, x, 0, 16);
+        for (int i = 0; i < 2 * r; i++) {
+            for (int k = 0; k < 16; k++) {
+                x[k] ^= b[i * 16 + k];
+            }
+            salsa208(x);
+            // even blocks go to the first half of the output, odd blocks to the second half
+            System.arraycopy(x, 0, y, ((i & 1) * r + (i >>> 1)) * 16, 16);
+        }
+        System.arraycopy(y, 0, b, 0, y.length);
+    }
+
+    private static void salsa208(final int[] b) {
+        int x0 = b[0], x1 = b[1], x2 = b[2], x3 = b[3], x4 = b[4], x5 = b[5], x6 = b[6], x7 = b[7];
+        int x8 = b[8], x9 = b[9], x10 = b[10], x11 = b[11], x12 = b[12], x13 = b[13], x14 = b[14], x15 = b[15];
+        for (int i = 0; i < 8; i += 2) {
+            x4 ^= Integer.rotateLeft(x0 + x12, 7);
+            x8 ^= Integer.rotateLeft(x4 + x0, 9);
+            x12 ^= Integer.rotateLeft(x8 + x4, 13);
+            x0 ^= Integer.rotateLeft(x12 + x8, 18);
+            x9 ^= Integer.rotateLeft(x5 + x1, 7);
+            x13 ^= Integer.rotateLeft(x9 + x5, 9);
+            x1 ^= Integer.rotateLeft(x13 + x9, 13);
+            x5 ^= Integer.rotateLeft(x1 + x13, 18);
+            x14 ^= Integer.rotateLeft(x10 + x6, 7);
+            x2 ^= Integer.rotateLeft(x14 + x10, 9);
+            x6 ^= Integer.rotateLeft(x2 + x14, 13);
+            x10 ^= Integer.rotateLeft(x6 + x2, 18);
+            x3 ^= Integer.rotateLeft(x15 + x11, 7);
+            x7 ^= Integer.rotateLeft(x3 + x15, 9);
+            x11 ^= Integer.rotateLeft(x7 + x3, 13);
+            x15 ^= Integer.rotateLeft(x11 + x7, 18);
+            x1 ^= Integer.rotateLeft(x0 + x3, 7);
+            x2 ^= Integer.rotateLeft(x1 + x0, 9);
+            x3 ^= Integer.rotateLeft(x2 + x1, 13);
+            x0 ^= Integer.rotateLeft(x3 + x2, 18);
+            x6 ^= Integer.rotateLeft(x5 + x4, 7);
+            x7 ^= Integer.rotateLeft(x6 + x5, 9);
+            x4 ^= Integer.rotateLeft(x7 + x6, 13);
+            x5 ^= Integer.rotateLeft(x4 + x7, 18);
+            x11 ^= Integer.rotateLeft(x10 + x9, 7);
+            x8 ^= Integer.rotateLeft(x11 + x10, 9);
+            x9 ^= Integer.rotateLeft(x8 + x11, 13);
+            x10 ^= Integer.rotateLeft(x9 + x8, 18);
+            x12 ^= Integer.rotateLeft(x15 + x14, 7);
+            x13 ^= Integer.rotateLeft(x12 + x15, 9);
+            x14 ^= Integer.rotateLeft(x13 + x12, 13);
+            x15 ^= Integer.rotateLeft(x14 + x13, 18);
+        }
+        b[0] += x0; b[1] += x1; b[2] += x2; b[3] += x3; b[4] += x4; b[5] += x5; b[6] += x6; b[7] += x7;
+        b[8] += x8; b[9] += x9; b[10] += x10; b[11] += x11; b[12] += x12; b[13] += x13; b[14] += x14; b[15] += x15;
+    }
+}
@@ -0,0 +1,68 @@
+package com.upgrad.quora.service.business;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the sessions issued by signin (password hashing) and by token refresh (a single database write), so that
+ * the share of new sessions which no longer cost a password hash can be followed.
+ */
+@Component
+public class SessionMetrics implements MeterBinder {
+
+    private final LongAdder signins = new LongAdder();
+
+    private final LongAdder refreshes = new LongAdder();
+
+    private final LongAdder rejectedRefreshes = new LongAdder();
+
+    public void recordSignin() {
+        signins.increment();
+    }
+
+    public void recordRefresh() {
+        refreshes.increment();
+    }
+
+    public void recordRejectedRefresh() {
+        rejectedRefreshes.increment();
+    }
+
+    public long getSignins() {
+        return signins.sum();
+    }
+
+    public long getRefreshes() {
+        return refreshes.sum();
+    }
+
+    public long getRejectedRefreshes() {
+        return rejectedRefreshes.sum();
+    }
+
+    /**
+     * @return share of the sessions issued by refresh rather than by signin, 0 when no session was issued yet
+     */
+    public double getRefreshRatio() {
+        final long refreshed = refreshes.sum();
+        final long total = refreshed + signins.sum();
+        return total == 0 ? 0 : (double) refreshed / total;
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("quora.session.signins", this, SessionMetrics::getSignins)
+                .description("Sessions issued by signin").register(registry);
+        FunctionCounter.builder("quora.session.refreshes", this, SessionMetrics::getRefreshes)
+                .description("Sessions issued by token refresh").register(registry);
+        FunctionCounter.builder("quora.session.refreshes.rejected", this, SessionMetrics::getRejectedRefreshes)
+                .description("Token refreshes rejected because the token was unknown, signed out or expired").register(registry);
+        Gauge.builder("quora.session.refresh.ratio", this, SessionMetrics::getRefreshRatio)
+                .description("Share of the sessions issued by token refresh").register(registry);
+    }
+}
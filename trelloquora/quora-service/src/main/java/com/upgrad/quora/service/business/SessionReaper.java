@@ -0,0 +1,201 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.dao.UserDao;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deletes expired and signed-out sessions from the user_auth table.
+ * Sessions are deleted in batches of bounded size, each in its own short transaction, with a pause between batches so
+ * that the reaper never holds many row locks for long nor saturates the database. Sessions are kept for a retention
+ * period after they expired or were signed out, so that recent sessions are still reported as signed out rather than
+ * unknown.
+ * With the partitioned user_auth schema the reaper can also drop whole monthly partitions which are past retention.
+ * Every node schedules the reaper; a run first takes a Postgres advisory lock on a connection of its own, and is
+ * skipped when another node holds it, so that only one node reaps at a time.
+ */
+@Component
+public class SessionReaper implements MeterBinder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SessionReaper.class);
+
+    // key of the advisory lock held while reaping, arbitrary but fixed and distinct from the one of MigrationRunner
+    private static final long LOCK_KEY = 7_201_818_462_302L;
+
+    @Autowired
+    private UserDao userDao;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final DataSource dataSource;
+
+    private final Duration retention;
+
+    private final int batchSize;
+
+    private final long pauseMillis;
+
+    private final int maximumBatchesPerRun;
+
+    private final boolean dropPartitions;
+
+    private final Duration partitionRetention;
+
+    private final LongAdder deletedSessions = new LongAdder();
+
+    private final LongAdder droppedPartitions = new LongAdder();
+
+    private final LongAdder runs = new LongAdder();
+
+    private final LongAdder skippedRuns = new LongAdder();
+
+    private volatile long lastRunMillis;
+
+    /**
+     * @param transactionManager
+     * @param dataSource              - provides the connection holding the advisory lock during a run
+     * @param retentionHours          - hours a session is kept after it expired or was signed out
+     * @param batchSize               - sessions deleted per transaction
+     * @param pauseMillis             - pause between two batches
+     * @param maximumBatchesPerRun    - batches after which a run stops, the rest is left to the next run
+     * @param dropPartitions          - whether partitions of the partitioned user_auth schema are dropped
+     * @param partitionRetentionDays  - days after which a monthly partition is dropped
+     */
+    public SessionReaper(final PlatformTransactionManager transactionManager,
+                         final DataSource dataSource,
+                         @Value("${quora.session-reaper.retention-hours:24}") final long retentionHours,
+                         @Value("${quora.session-reaper.batch-size:1000}") final int batchSize,
+                         @Value("${quora.session-reaper.pause-ms:100}") final long pauseMillis,
+                         @Value("${quora.session-reaper.max-batches-per-run:1000}") final int maximumBatchesPerRun,
+                         @Value("${quora.session-reaper.drop-partitions:false}") final boolean dropPartitions,
+                         @Value("${quora.session-reaper.partition-retention-days:62}") final long partitionRetentionDays) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.dataSource = dataSource;
+        this.retention = Duration.ofHours(retentionHours);
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.maximumBatchesPerRun = maximumBatchesPerRun;
+        this.dropPartitions = dropPartitions;
+        this.partitionRetention = Duration.ofDays(partitionRetentionDays);
+    }
+
+    /**
+     * Runs the reaper unless another node is running it
+     */
+    @Scheduled(initialDelayString = "${quora.session-reaper.initial-delay-ms:60000}",
+            fixedDelayString = "${quora.session-reaper.interval-ms:600000}")
+    public void reap() {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            if (!tryLock(statement)) {
+                skippedRuns.increment();
+                return;
+            }
+            try {
+                reapSessions();
+            } finally {
+                statement.executeQuery("SELECT pg_advisory_unlock(" + LOCK_KEY + ")").close();
+            }
+        } catch (SQLException e) {
+            LOG.warn("Session reaper could not take its lock, retrying on its next run", e);
+        }
+    }
+
+    private static boolean tryLock(final Statement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("SELECT pg_try_advisory_lock(" + LOCK_KEY + ")")) {
+            return resultSet.next() && resultSet.getBoolean(1);
+        }
+    }
+
+    /**
+     * Deletes the sessions which are past retention, batch by batch, until none are left or the run reaches its
+     * maximum number of batches
+     */
+    private void reapSessions() {
+        final long startedAt = System.currentTimeMillis();
+        final ZonedDateTime cutoff = ZonedDateTime.now().minus(retention);
+        long deleted = 0;
+        try {
+            if (dropPartitions) {
+                final int dropped = transactionTemplate.execute(status ->
+                        userDao.dropUserAuthPartitionsBefore(ZonedDateTime.now().minus(partitionRetention)));
+                droppedPartitions.add(dropped);
+            }
+            for (int batch = 0; batch < maximumBatchesPerRun; batch++) {
+                final int count = transactionTemplate.execute(status -> {
+                    final List<Integer> ids = userDao.findStaleUserAuthIds(cutoff, batchSize);
+                    return ids.isEmpty() ? 0 : userDao.deleteUserAuths(ids);
+                });
+                deleted += count;
+                deletedSessions.add(count);
+                if (count < batchSize) {
+                    break;
+                }
+                Thread.sleep(pauseMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOG.warn("Session reaper failed, retrying on its next run", e);
+        } finally {
+            runs.increment();
+            lastRunMillis = System.currentTimeMillis() - startedAt;
+        }
+        if (deleted > 0) {
+            LOG.info("Session reaper deleted {} sessions in {} ms", deleted, lastRunMillis);
+        }
+    }
+
+    public long getDeletedSessions() {
+        return deletedSessions.sum();
+    }
+
+    public long getDroppedPartitions() {
+        return droppedPartitions.sum();
+    }
+
+    public long getRuns() {
+        return runs.sum();
+    }
+
+    public long getSkippedRuns() {
+        return skippedRuns.sum();
+    }
+
+    public long getLastRunMillis() {
+        return lastRunMillis;
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("quora.session.reaper.deleted", this, SessionReaper::getDeletedSessions)
+                .description("Expired and signed-out sessions deleted from user_auth").register(registry);
+        FunctionCounter.builder("quora.session.reaper.partitions.dropped", this, SessionReaper::getDroppedPartitions)
+                .description("Monthly user_auth partitions dropped").register(registry);
+        FunctionCounter.builder("quora.session.reaper.runs", this, SessionReaper::getRuns).register(registry);
+        FunctionCounter.builder("quora.session.reaper.runs.skipped", this, SessionReaper::getSkippedRuns)
+                .description("Runs skipped because another node was reaping").register(registry);
+        Gauge.builder("quora.session.reaper.last.run.duration", this, SessionReaper::getLastRunMillis)
+                .baseUnit("milliseconds").register(registry);
+    }
+}
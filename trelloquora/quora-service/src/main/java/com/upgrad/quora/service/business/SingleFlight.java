@@ -0,0 +1,157 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.common.UnexpectedException;
+import com.upgrad.quora.service.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent identical reads: while a read of a key is in flight, the other requests for the same key do
+ * not run it again but wait for its result. The first request runs the read on its own thread and hands the result,
+ * or the exception it failed with, to every request which joined it. Nothing is cached: a request arriving once the
+ * read completed starts a new one.
+ *
+ * Joining requests wait at most the timeout, then fail with a ServiceUnavailableException; the read itself is not
+ * interrupted. Results are shared between threads and must not be modified.
+ */
+public class SingleFlight<K, V> implements MeterBinder {
+
+    private final String name;
+
+    private final long timeoutMillis;
+
+    private final long retryAfterSeconds;
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+
+    private final LongAdder executions = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private final LongAdder timeouts = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * @param name              - tags the metrics of this instance
+     * @param timeoutMillis     - time a request waits for the read it joined
+     * @param retryAfterSeconds - delay suggested to the requests which timed out
+     */
+    public SingleFlight(final String name, final long timeoutMillis, final long retryAfterSeconds) {
+        this.name = name;
+        this.timeoutMillis = timeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Runs the read of the key, or joins the read of the key already in flight
+     * @param key
+     * @param read - may return null
+     * @return result of the read
+     * @throws ServiceUnavailableException if the joined read does not complete in time
+     */
+    public V execute(final K key, final Supplier<V> read) throws ServiceUnavailableException {
+        calls.increment();
+        final CompletableFuture<V> flight = new CompletableFuture<>();
+        final CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+        if (running == null) {
+            return lead(key, flight, read);
+        }
+
+        coalesced.increment();
+        try {
+            return running.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new ServiceUnavailableException("SVC-002", "Too many identical requests in progress, please retry later", retryAfterSeconds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new UnexpectedException(GenericErrorCode.GEN_001, e.getCause());
+        }
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return share of the calls which joined a read in flight instead of running it, 0 when there was no call yet
+     */
+    public double getCoalescingRatio() {
+        final long total = calls.sum();
+        return total == 0 ? 0 : (double) coalesced.sum() / total;
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        final Tags tags = Tags.of("name", name);
+        FunctionCounter.builder("quora.single.flight.calls", this, SingleFlight::getCalls).tags(tags).register(registry);
+        FunctionCounter.builder("quora.single.flight.executions", this, SingleFlight::getExecutions).tags(tags)
+                .description("Reads run against the database").register(registry);
+        FunctionCounter.builder("quora.single.flight.coalesced", this, SingleFlight::getCoalesced).tags(tags)
+                .description("Calls which joined a read in flight").register(registry);
+        FunctionCounter.builder("quora.single.flight.timeouts", this, SingleFlight::getTimeouts).tags(tags).register(registry);
+        FunctionCounter.builder("quora.single.flight.failures", this, SingleFlight::getFailures).tags(tags).register(registry);
+        Gauge.builder("quora.single.flight.coalescing.ratio", this, SingleFlight::getCoalescingRatio).tags(tags).register(registry);
+        Gauge.builder("quora.single.flight.in.flight", this, SingleFlight::getInFlight).tags(tags).register(registry);
+    }
+
+    private V lead(final K key, final CompletableFuture<V> flight, final Supplier<V> read) {
+        executions.increment();
+        final V value;
+        try {
+            value = read.get();
+        } catch (RuntimeException | Error e) {
+            failures.increment();
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        // requests arriving from now on start a new read
+        inFlight.remove(key, flight);
+        flight.complete(value);
+        return value;
+    }
+}
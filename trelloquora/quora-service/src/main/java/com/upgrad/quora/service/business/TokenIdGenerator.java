@@ -0,0 +1,23 @@
+package com.upgrad.quora.service.business;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates the unique "jti" id of access tokens.
+ * UUID.randomUUID draws from one shared SecureRandom, which contends when many threads sign in at once. The id only
+ * has to be unique (the token itself is protected by its signature), so it is drawn from the per-thread
+ * ThreadLocalRandom instead and formatted as a version 4 UUID.
+ */
+public final class TokenIdGenerator {
+
+    private TokenIdGenerator() {
+    }
+
+    public static String nextId() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final long mostSignificantBits = (random.nextLong() & 0xFFFFFFFFFFFF0FFFL) | 0x0000000000004000L;
+        final long leastSignificantBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSignificantBits, leastSignificantBits).toString();
+    }
+}
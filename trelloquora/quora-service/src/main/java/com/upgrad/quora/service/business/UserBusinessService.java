@@ -1,19 +1,31 @@
 package com.upgrad.quora.service.business;
 
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.upgrad.quora.service.cache.AccessTokenFilter;
+import com.upgrad.quora.service.cache.CachedSession;
+import com.upgrad.quora.service.cache.InvalidationBus;
+import com.upgrad.quora.service.cache.InvalidationType;
+import com.upgrad.quora.service.cache.SessionCache;
 import com.upgrad.quora.service.dao.UserDao;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthenticationFailedException;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.ServiceUnavailableException;
 import com.upgrad.quora.service.exception.SignOutRestrictedException;
 import com.upgrad.quora.service.exception.SignUpRestrictedException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.UUID;
 
 @Service
 public class UserBusinessService {
@@ -24,56 +36,114 @@ public class UserBusinessService {
     @Autowired
     private PasswordCryptographyProvider passwordCryptographyProvider;
 
+    @Autowired
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private AccessTokenFilter accessTokenFilter;
+
+    @Autowired
+    private OpaqueTokenProvider opaqueTokenProvider;
+
+    @Autowired
+    private SessionMetrics sessionMetrics;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // "jwt" issues signed JWTs, "opaque" issues short random tokens of which only a digest is stored;
+    // tokens of both kinds are accepted whatever the mode, so that the mode can be switched without signing users out
+    @Value("${quora.session.mode:jwt}")
+    private String sessionMode;
+
     /**
-     * Business login to handle the user signin requests
+     * Business login to handle the user signin requests. The password is hashed outside of any transaction, so that
+     * a signup waiting for the hashing pool does not hold a database connection; the uniqueness checks run in a short
+     * read before the hashing and again in the short transaction which persists the user.
      * @param UserEntity
      * @return UserEntity
      * @throws SignUpRestrictedException
+     * @throws ServiceUnavailableException
      */
-    @Transactional(propagation = Propagation.REQUIRED)
-    public UserEntity signup(UserEntity userEntity) throws SignUpRestrictedException {
-        UserEntity existingUsername = userDao.getUserByUsername(userEntity.getUsername());
-        UserEntity existingEmailid = userDao.getUserByEmail(userEntity.getEmail());
-
-        if(existingUsername != null) {
-            throw new SignUpRestrictedException("SGR-001",
-                    "Try any other Username, this Username has already been taken");
-        }
-        if(existingEmailid != null) {
-            throw new SignUpRestrictedException("SGR-002", "This user has already been registered, try with any other" +
-                    " emailId");
+    public UserEntity signup(UserEntity userEntity) throws SignUpRestrictedException, ServiceUnavailableException {
+        SignUpRestrictedException conflict = readOnlyTransaction().execute(status -> findSignupConflict(userEntity));
+        if(conflict != null) {
+            throw conflict;
         }
 
         //encrypt the user password, split the encrypted code into salt and text and assign to the UserEntity object
-        String[] encryptedText = passwordCryptographyProvider.encrypt(userEntity.getPassword());
+        String[] encryptedText = passwordHashingExecutor.execute(() -> passwordCryptographyProvider.encrypt(userEntity.getPassword()));
         userEntity.setSalt(encryptedText[0]);
         userEntity.setPassword(encryptedText[1]);
-        UserEntity persistedUserEntity = userDao.createUser(userEntity);
 
-        return persistedUserEntity;
+        // the username or email may have been taken while the password was hashed
+        conflict = transaction().execute(status -> {
+            final SignUpRestrictedException concurrentConflict = findSignupConflict(userEntity);
+            if(concurrentConflict == null) {
+                userDao.createUser(userEntity);
+                // other nodes may have cached that the username or email did not exist
+                invalidationBus.publish(InvalidationType.USER, String.valueOf(userEntity.getId()));
+            }
+            return concurrentConflict;
+        });
+        if(conflict != null) {
+            throw conflict;
+        }
+        return userEntity;
 
     }
 
     /**
-     * Business logic to handle the user signin requests
+     * @param userEntity
+     * @return the exception to reject the signup with if the username or email is taken, null otherwise
+     */
+    private SignUpRestrictedException findSignupConflict(final UserEntity userEntity) {
+        if(userDao.getUserByUsername(userEntity.getUsername()) != null) {
+            return new SignUpRestrictedException("SGR-001",
+                    "Try any other Username, this Username has already been taken");
+        }
+        if(userDao.getUserByEmail(userEntity.getEmail()) != null) {
+            return new SignUpRestrictedException("SGR-002", "This user has already been registered, try with any other" +
+                    " emailId");
+        }
+        return null;
+    }
+
+    /**
+     * Business logic to handle the user signin requests. Like signup, the password is verified (and upgraded when
+     * needed) outside of any transaction; only the read of the user and the write of the session hold a connection.
      * @param String username
      * @param String password
      * @return UserAuthEntity
      * @throws AuthenticationFailedException
+     * @throws ServiceUnavailableException
      */
-    @Transactional(propagation = Propagation.REQUIRED)
-    public UserAuthEntity signin(final String username, final String password) throws AuthenticationFailedException {
-        UserEntity userEntity = userDao.getUserByUsername(username);
+    public UserAuthEntity signin(final String username, final String password) throws AuthenticationFailedException, ServiceUnavailableException {
+        // not read-only: the user is written back below when its hash is upgraded
+        UserEntity userEntity = transaction().execute(status -> userDao.getUserByUsername(username));
         if(userEntity == null) {
             throw new AuthenticationFailedException("ATH-001", "This username does not exist");
         }
 
-        // encrypt the password provided by the user during login using the salt stored in the database for that user
-        final String encryptedPassword = passwordCryptographyProvider.encrypt(password, userEntity.getSalt());
-        //check if the encrypted form of user provided password is equal to encrypted password store in the database
-        if(encryptedPassword.equals(userEntity.getPassword())) {
+        // hash the password provided by the user during login with the salt, algorithm and parameters stored in the
+        // database for that user and check if it is equal to the hashed password stored in the database
+        final boolean passwordMatches = passwordHashingExecutor.execute(() ->
+                passwordCryptographyProvider.matches(password, userEntity.getSalt(), userEntity.getPassword()));
+        if(passwordMatches) {
+            // transparently upgrade hashes produced by an older algorithm or a lower cost
+            final boolean rehashed = passwordCryptographyProvider.needsRehash(userEntity.getPassword())
+                    && upgradePasswordHash(userEntity, password);
+
             // generate a JWT Auth Token for the user signin
-            JwtTokenProvider jwtTokenProvider = new JwtTokenProvider(encryptedPassword);
             UserAuthEntity userAuthEntity = new UserAuthEntity();
             userAuthEntity.setUser(userEntity);
 
@@ -81,12 +151,28 @@ public class UserBusinessService {
             final ZonedDateTime now = ZonedDateTime.now();
             final ZonedDateTime expiresAt = now.plusHours(1);
 
-            userAuthEntity.setAccessToken(jwtTokenProvider.generateToken(userEntity.getUuid(), now, expiresAt));
+            final String accessToken = issueToken(userEntity.getUuid(), now, expiresAt);
+            if(opaqueTokenProvider.isOpaqueToken(accessToken)) {
+                userAuthEntity.setAccessTokenDigest(opaqueTokenProvider.digest(accessToken));
+            } else {
+                userAuthEntity.setAccessToken(accessToken);
+            }
+            userAuthEntity.setIssuedToken(accessToken);
             userAuthEntity.setLoginAt(now);
             userAuthEntity.setExpiresAt(expiresAt);
             userAuthEntity.setLoginAt(now);
             userAuthEntity.setUuid(userEntity.getUuid());
-            userDao.createAuthToken(userAuthEntity);
+            transaction().execute(status -> {
+                if(rehashed) {
+                    userDao.updateUser(userEntity);
+                    invalidationBus.publish(InvalidationType.USER, String.valueOf(userEntity.getId()));
+                }
+                return userDao.createAuthToken(userAuthEntity);
+            });
+            if(userAuthEntity.getAccessToken() != null) {
+                accessTokenFilter.add(userAuthEntity.getAccessToken());
+            }
+            sessionMetrics.recordSignin();
             return userAuthEntity;
         }
         else {
@@ -94,23 +180,114 @@ public class UserBusinessService {
         }
     }
 
+    /**
+     * Business logic to handle the access token refresh requests. A signed-in session which has not expired yet gets
+     * a new token with a new expiry of one hour, in place of its current token, without the password being hashed.
+     * The current token is no longer valid afterwards.
+     * @param accessToken
+     * @return UserAuthEntity with the new token
+     * @throws AuthorizationFailedException
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public UserAuthEntity refresh(final String accessToken) throws AuthorizationFailedException {
+        final boolean opaqueToken = opaqueTokenProvider.isOpaqueToken(accessToken);
+        if(!opaqueToken && jwtTokenProvider.isVerificationEnabled() && jwtTokenProvider.verifyToken(accessToken) == null) {
+            sessionMetrics.recordRejectedRefresh();
+            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
+        }
+
+        UserAuthEntity userAuthEntity = findUserAuth(accessToken, opaqueToken);
+        if(userAuthEntity == null) {
+            sessionMetrics.recordRejectedRefresh();
+            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
+        }
+        final ZonedDateTime now = ZonedDateTime.now();
+        if(userAuthEntity.getLogoutAt() != null || !userAuthEntity.getExpiresAt().isAfter(now)) {
+            sessionMetrics.recordRejectedRefresh();
+            throw new AuthorizationFailedException("ATHR-002", "User is signed out");
+        }
+
+        final ZonedDateTime expiresAt = now.plusHours(1);
+        final String newAccessToken = issueToken(userAuthEntity.getUser().getUuid(), now, expiresAt);
+        final boolean refreshed = opaqueTokenProvider.isOpaqueToken(newAccessToken)
+                ? userDao.refreshAuthToken(userAuthEntity, null, opaqueTokenProvider.digest(newAccessToken), expiresAt)
+                : userDao.refreshAuthToken(userAuthEntity, newAccessToken, null, expiresAt);
+        if(!refreshed) {
+            // a concurrent refresh or signout won the race for this token
+            sessionMetrics.recordRejectedRefresh();
+            throw new AuthorizationFailedException("ATHR-002", "User is signed out");
+        }
+        userAuthEntity.setIssuedToken(newAccessToken);
+
+        sessionCache.invalidate(accessToken);
+        // other nodes drop the sessions of the user, tokens are not sent over the bus
+        invalidationBus.publish(InvalidationType.SESSIONS_OF_USER, userAuthEntity.getUser().getUuid().toString());
+        if(userAuthEntity.getAccessToken() != null) {
+            accessTokenFilter.add(userAuthEntity.getAccessToken());
+        }
+        sessionMetrics.recordRefresh();
+        return userAuthEntity;
+    }
+
+    /**
+     * Generate a new access token of the configured session mode
+     * @param userUuid
+     * @param now
+     * @param expiresAt
+     * @return JWT or opaque token
+     */
+    private String issueToken(final UUID userUuid, final ZonedDateTime now, final ZonedDateTime expiresAt) {
+        if("opaque".equals(sessionMode)) {
+            return opaqueTokenProvider.generateToken();
+        }
+        return jwtTokenProvider.generateToken(userUuid.toString(), now, expiresAt);
+    }
+
+    /**
+     * Re-hash the password of a user with the preferred algorithm and cost, the caller writes the user. The upgrade
+     * is skipped when the hashing pool is busy, it will be retried on the next signin.
+     * @param userEntity
+     * @param password
+     * @return true if the user carries the new hash
+     */
+    private boolean upgradePasswordHash(final UserEntity userEntity, final String password) {
+        try {
+            String[] encryptedText = passwordHashingExecutor.execute(() -> passwordCryptographyProvider.encrypt(password));
+            userEntity.setSalt(encryptedText[0]);
+            userEntity.setPassword(encryptedText[1]);
+            return true;
+        } catch (ServiceUnavailableException e) {
+            // keep the current hash
+            return false;
+        }
+    }
+
+    private TransactionTemplate transaction() {
+        return new TransactionTemplate(transactionManager);
+    }
+
+    private TransactionTemplate readOnlyTransaction() {
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        return transactionTemplate;
+    }
+
     /**
      * Business login to retrieve the Details of a Signed-in User
-     * @param String userUuid
+     * @param UUID userUuid
      * @param String accesstoken
      * @return
      * @throws AuthorizationFailedException
      * @throws UserNotFoundException
      */
-    public UserEntity getUserProfile(final String userUuid, final String accesstoken) throws AuthorizationFailedException, UserNotFoundException {
+    public UserEntity getUserProfile(final UUID userUuid, final String accesstoken) throws AuthorizationFailedException, UserNotFoundException {
 
-        UserAuthEntity userAuthEntity = userDao.getUserAuthToken(accesstoken);
-        if(userAuthEntity == null) {
+        CachedSession session = getSession(accesstoken);
+        if(session == null) {
             throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
         }
 
-        ZonedDateTime isUserLogout = userAuthEntity.getLogoutAt();
-        if (isUserLogout == null) {
+        if (!session.isSignedOut() && !session.isSessionExpired()) {
             UserEntity userEntity = userDao.getUserByUuid(userUuid);
             if (userEntity == null) {
                 throw new UserNotFoundException("USR-001", "User with entered uuid does not exist");
@@ -130,7 +307,12 @@ public class UserBusinessService {
     @Transactional(propagation = Propagation.REQUIRED)
     public UserAuthEntity signout(final String accesstoken) throws SignOutRestrictedException {
 
-        UserAuthEntity userAuthEntity = userDao.getUserAuthToken(accesstoken);
+        final boolean opaqueToken = opaqueTokenProvider.isOpaqueToken(accesstoken);
+        if(!opaqueToken && jwtTokenProvider.isVerificationEnabled() && jwtTokenProvider.verifyToken(accesstoken) == null) {
+            throw new SignOutRestrictedException("SGR-001", "User is not Signed in");
+        }
+
+        UserAuthEntity userAuthEntity = findUserAuth(accesstoken, opaqueToken);
 
         // User is considered as actively signed-in only if Auth token is available in the database and
         // user logout time is not filled-in in the database
@@ -142,6 +324,8 @@ public class UserBusinessService {
         final ZonedDateTime now = ZonedDateTime.now();
         userAuthEntity.setLogoutAt(now);
         userDao.updateUserAuth(userAuthEntity);
+        sessionCache.invalidate(accesstoken);
+        invalidationBus.publish(InvalidationType.SESSIONS_OF_USER, userAuthEntity.getUser().getUuid().toString());
 
         return userAuthEntity;
     }
@@ -153,18 +337,76 @@ public class UserBusinessService {
      * @throws AuthorizationFailedException
      */
     public UserEntity getUserFromToken(String authorizationToken) throws AuthorizationFailedException {
-        UserAuthEntity userAuthEntity = userDao.getUserAuthToken(authorizationToken);
+        CachedSession session = getSession(authorizationToken);
 
-        if(userAuthEntity == null){
+        if(session == null){
             throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
         }
-        else if(userAuthEntity.getLogoutAt() != null ){
+        else if(session.isSignedOut() || session.isSessionExpired()){
             throw new AuthorizationFailedException("ATHR-002", "User is signed out");
         }
 
-        UserEntity userEntity = userAuthEntity.getUser();
+        UserEntity userEntity = session.getUser();
 
         return userEntity;
     }
 
+    /**
+     * Resolve the session of an access token, from the session cache when possible and from the database otherwise.
+     * @param accessToken
+     * @return CachedSession or null if the token does not exist
+     */
+    private CachedSession getSession(final String accessToken) {
+        return sessionCache.get(accessToken, this::loadSession);
+    }
+
+    /**
+     * Load the session of an access token missing from the session cache. Tokens which fail the in-memory JWT
+     * verification (garbage, forged or expired) and tokens which the access token filter knows to be absent are
+     * rejected before any database access. Opaque tokens carry nothing to verify and are looked up by their digest
+     * directly.
+     * @param accessToken
+     * @return UserAuthEntity or null if the token does not exist
+     */
+    private UserAuthEntity loadSession(final String accessToken) {
+        if(opaqueTokenProvider.isOpaqueToken(accessToken)) {
+            return findUserAuth(accessToken, true);
+        }
+        final Date issuedAt;
+        if(jwtTokenProvider.isVerificationEnabled()) {
+            DecodedJWT decodedJWT = jwtTokenProvider.verifyToken(accessToken);
+            if(decodedJWT == null) {
+                return null;
+            }
+            issuedAt = decodedJWT.getIssuedAt();
+        } else {
+            issuedAt = jwtTokenProvider.getIssuedAt(accessToken);
+        }
+
+        AccessTokenFilter.Membership membership = accessTokenFilter.check(accessToken, issuedAt);
+        if(membership == AccessTokenFilter.Membership.ABSENT) {
+            return null;
+        }
+
+        UserAuthEntity userAuthEntity = userDao.getUserAuthToken(accessToken);
+        if(userAuthEntity == null && membership == AccessTokenFilter.Membership.MAYBE_PRESENT) {
+            accessTokenFilter.recordFalsePositive();
+        }
+        return userAuthEntity;
+    }
+
+    /**
+     * Look up the session of an access token, by the digest of the token for opaque tokens and by the token itself
+     * for JWTs
+     * @param accessToken
+     * @param opaqueToken
+     * @return UserAuthEntity or null if the token does not exist
+     */
+    private UserAuthEntity findUserAuth(final String accessToken, final boolean opaqueToken) {
+        if(opaqueToken) {
+            return userDao.getUserAuthTokenByDigest(opaqueTokenProvider.digest(accessToken));
+        }
+        return userDao.getUserAuthToken(accessToken);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,172 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.dao.UserDao;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Probabilistic membership filter of the access tokens stored in the user_auth table. A definite miss lets a request
+ * with an unknown token be rejected without querying user_auth.
+ * Tokens are added when they are issued and the filter is periodically rebuilt from the database. Tokens issued after
+ * the last rebuild started may have been issued by another node, so the filter is never trusted for them.
+ */
+@Component
+public class AccessTokenFilter implements MeterBinder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AccessTokenFilter.class);
+
+    /**
+     * Result of a filter check
+     */
+    public enum Membership {
+        ABSENT, MAYBE_PRESENT, NOT_CHECKED
+    }
+
+    @Autowired
+    private UserDao userDao;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final long expectedInsertions;
+
+    private final double falsePositiveProbability;
+
+    private final long clockSkewMillis;
+
+    private volatile BloomFilter filter;
+
+    private volatile BloomFilter rebuilding;
+
+    // tokens issued at or after this instant are not trusted to be in the filter; Long.MAX_VALUE until the first rebuild
+    private volatile long trustedBeforeMillis = Long.MAX_VALUE;
+
+    private final LongAdder definiteMisses = new LongAdder();
+
+    private final LongAdder maybePresent = new LongAdder();
+
+    private final LongAdder falsePositives = new LongAdder();
+
+    private final LongAdder rebuilds = new LongAdder();
+
+    public AccessTokenFilter(final PlatformTransactionManager transactionManager,
+                             @Value("${quora.token-filter.expected-insertions:1000000}") final long expectedInsertions,
+                             @Value("${quora.token-filter.false-positive-probability:0.01}") final double falsePositiveProbability,
+                             @Value("${quora.token-filter.clock-skew-seconds:5}") final long clockSkewSeconds) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.clockSkewMillis = TimeUnit.SECONDS.toMillis(clockSkewSeconds);
+        this.filter = new BloomFilter(expectedInsertions, falsePositiveProbability);
+    }
+
+    /**
+     * Records a newly issued access token
+     * @param accessToken
+     */
+    public void add(final String accessToken) {
+        BloomFilter current;
+        do {
+            current = filter;
+            current.put(accessToken);
+            final BloomFilter next = rebuilding;
+            if (next != null) {
+                next.put(accessToken);
+            }
+        } while (current != filter);
+    }
+
+    /**
+     * Checks whether an access token can exist in the user_auth table
+     * @param accessToken
+     * @param issuedAt - issue time carried by the token, or null if the token carries none
+     * @return Membership
+     */
+    public Membership check(final String accessToken, final Date issuedAt) {
+        if (issuedAt != null && issuedAt.getTime() >= trustedBeforeMillis) {
+            return Membership.NOT_CHECKED;
+        }
+        if (trustedBeforeMillis == Long.MAX_VALUE) {
+            return Membership.NOT_CHECKED;
+        }
+        if (filter.mightContain(accessToken)) {
+            maybePresent.increment();
+            return Membership.MAYBE_PRESENT;
+        }
+        definiteMisses.increment();
+        return Membership.ABSENT;
+    }
+
+    /**
+     * Records that a token reported as MAYBE_PRESENT was not found in the database
+     */
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    /**
+     * Rebuilds the filter from the unexpired sessions in the user_auth table
+     */
+    @Scheduled(initialDelayString = "${quora.token-filter.initial-delay-ms:0}",
+            fixedDelayString = "${quora.token-filter.rebuild-interval-ms:300000}")
+    public void rebuild() {
+        final long startedAt = System.currentTimeMillis();
+        final long size = Math.max(expectedInsertions, filter.getInsertionCount() * 2);
+        final BloomFilter next = new BloomFilter(size, falsePositiveProbability);
+        rebuilding = next;
+        try {
+            transactionTemplate.execute(status -> {
+                userDao.forEachLiveAccessToken(ZonedDateTime.now(), next::put);
+                return null;
+            });
+            filter = next;
+            trustedBeforeMillis = startedAt - clockSkewMillis;
+            rebuilds.increment();
+            LOG.info("Access token filter rebuilt with {} tokens in {} ms", next.getInsertionCount(),
+                    System.currentTimeMillis() - startedAt);
+        } catch (RuntimeException e) {
+            LOG.warn("Access token filter rebuild failed, keeping the previous filter", e);
+        } finally {
+            rebuilding = null;
+        }
+    }
+
+    /**
+     * @return observed false positive rate: tokens the filter let through that did not exist, out of all checked
+     * tokens that did not exist
+     */
+    public double getObservedFalsePositiveRate() {
+        final long falsePositiveCount = falsePositives.sum();
+        final long negatives = falsePositiveCount + definiteMisses.sum();
+        return negatives == 0 ? 0 : (double) falsePositiveCount / negatives;
+    }
+
+    public double getExpectedFalsePositiveProbability() {
+        return filter.expectedFalsePositiveProbability();
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("quora.token.filter.definite.misses", definiteMisses, LongAdder::sum).register(registry);
+        FunctionCounter.builder("quora.token.filter.maybe.present", maybePresent, LongAdder::sum).register(registry);
+        FunctionCounter.builder("quora.token.filter.false.positives", falsePositives, LongAdder::sum).register(registry);
+        FunctionCounter.builder("quora.token.filter.rebuilds", rebuilds, LongAdder::sum).register(registry);
+        Gauge.builder("quora.token.filter.false.positive.rate", this, AccessTokenFilter::getObservedFalsePositiveRate).register(registry);
+        Gauge.builder("quora.token.filter.expected.false.positive.probability", this, AccessTokenFilter::getExpectedFalsePositiveProbability).register(registry);
+    }
+}
@@ -0,0 +1,282 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.dto.QuestionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Bounded LRU cache of the questions of an author, keyed by the uuid of the author, for "/question/all/{userId}".
+ * Every cached list is immutable and ordered newest first, like the listing.
+ *
+ * Lists are maintained incrementally: a created or edited question is put at its position in the cached list of its
+ * author and a deleted question is removed from it, once the writing transaction commits, so that profile pages are
+ * not reloaded after every write of their author. Writes of the other nodes evict the list through the
+ * InvalidationBus.
+ *
+ * Every write bumps a generation before and after its commit; a list loaded while a write happened is returned but
+ * not cached, so a reader cannot put back a list which misses a committed write.
+ */
+@Component
+public class AuthorQuestionCache implements MeterBinder {
+
+    private final int maximumSize;
+
+    // access-ordered, eldest entry first; guarded by the lock
+    private final LinkedHashMap<UUID, List<QuestionSummary>> lists = new LinkedHashMap<UUID, List<QuestionSummary>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<UUID, List<QuestionSummary>> eldest) {
+            if (size() > maximumSize) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // incremented by every write, guarded by the lock
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder updates = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    public AuthorQuestionCache(@Value("${quora.author-question-cache.maximum-size:1000}") final int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Returns the cached questions of the author, or loads and caches them
+     * @param userUuid
+     * @param loader - reads the questions of an author, newest first, null when the author does not exist
+     * @return List<QuestionSummary> or null when the author does not exist
+     */
+    public List<QuestionSummary> get(final UUID userUuid, final Function<UUID, List<QuestionSummary>> loader) {
+        final long loadGeneration;
+        lock.lock();
+        try {
+            final List<QuestionSummary> cached = lists.get(userUuid);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            loadGeneration = generation;
+        } finally {
+            lock.unlock();
+        }
+
+        misses.increment();
+        final List<QuestionSummary> loaded = loader.apply(userUuid);
+        if (loaded == null) {
+            return null;
+        }
+        final List<QuestionSummary> list = Collections.unmodifiableList(new ArrayList<>(loaded));
+        lock.lock();
+        try {
+            if (loadGeneration == generation) {
+                lists.putIfAbsent(userUuid, list);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return list;
+    }
+
+    /**
+     * Puts a created or edited question in the cached list of its author, replacing its previous state, once the
+     * surrounding transaction commits. Nothing is cached when the list of the author is not.
+     * @param userUuid
+     * @param question
+     */
+    public void put(final UUID userUuid, final QuestionSummary question) {
+        write(() -> update(userUuid, question.getId(), question));
+    }
+
+    /**
+     * Removes a deleted question from the cached list of its author once the surrounding transaction commits
+     * @param userUuid
+     * @param questionId
+     */
+    public void remove(final UUID userUuid, final Integer questionId) {
+        write(() -> update(userUuid, questionId, null));
+    }
+
+    /**
+     * Drops the cached list of the author, and again once the surrounding transaction completes
+     * @param userUuid
+     */
+    public void invalidate(final UUID userUuid) {
+        evict(userUuid);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(final int status) {
+                    evict(userUuid);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops every cached list
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            generation++;
+            lists.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getUpdateCount() {
+        return updates.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return lists.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("quora.author.questions.cache.hits", this, AuthorQuestionCache::getHitCount).register(registry);
+        FunctionCounter.builder("quora.author.questions.cache.misses", this, AuthorQuestionCache::getMissCount).register(registry);
+        FunctionCounter.builder("quora.author.questions.cache.updates", this, AuthorQuestionCache::getUpdateCount)
+                .description("Cached lists updated in place after a question was created, edited or deleted").register(registry);
+        FunctionCounter.builder("quora.author.questions.cache.evictions", this, AuthorQuestionCache::getEvictionCount).register(registry);
+        FunctionCounter.builder("quora.author.questions.cache.invalidations", this, AuthorQuestionCache::getInvalidationCount).register(registry);
+        Gauge.builder("quora.author.questions.cache.size", this, AuthorQuestionCache::size).register(registry);
+    }
+
+    /**
+     * Runs the update once the surrounding transaction commits, at once outside of a transaction
+     */
+    private void write(final Runnable update) {
+        bumpGeneration();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(final int status) {
+                if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                    update.run();
+                } else {
+                    bumpGeneration();
+                }
+            }
+        });
+    }
+
+    /**
+     * Replaces the question with the given id in the cached list of the author by the given question, or removes it
+     * when the question is null
+     */
+    private void update(final UUID userUuid, final Integer questionId, final QuestionSummary question) {
+        lock.lock();
+        try {
+            generation++;
+            final List<QuestionSummary> cached = lists.get(userUuid);
+            if (cached == null) {
+                return;
+            }
+            final List<QuestionSummary> updated = new ArrayList<>(cached.size() + 1);
+            for (final QuestionSummary summary : cached) {
+                if (!summary.getId().equals(questionId)) {
+                    updated.add(summary);
+                }
+            }
+            if (question != null) {
+                updated.add(position(updated, question), question);
+            }
+            lists.put(userUuid, Collections.unmodifiableList(updated));
+            updates.increment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evict(final UUID userUuid) {
+        lock.lock();
+        try {
+            generation++;
+            if (lists.remove(userUuid) != null) {
+                invalidations.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void bumpGeneration() {
+        lock.lock();
+        try {
+            generation++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return index of the question in the list ordered newest first, by date then id
+     */
+    private static int position(final List<QuestionSummary> list, final QuestionSummary question) {
+        int index = 0;
+        while (index < list.size() && isNewer(list.get(index), question)) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isNewer(final QuestionSummary a, final QuestionSummary b) {
+        final int byDate = a.getDate().compareTo(b.getDate());
+        return byDate > 0 || (byDate == 0 && a.getId() > b.getId());
+    }
+}
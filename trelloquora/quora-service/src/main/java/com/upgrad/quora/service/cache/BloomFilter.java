@@ -0,0 +1,84 @@
+package com.upgrad.quora.service.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe Bloom filter of strings. Insertions are lock-free, so the filter can be filled while it is being read.
+ * A negative answer of mightContain is definite, a positive answer is wrong with the configured probability.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray bits;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    private final LongAdder insertions = new LongAdder();
+
+    /**
+     * @param expectedInsertions - number of elements the filter is sized for
+     * @param falsePositiveProbability - target false positive probability at the expected number of insertions
+     */
+    public BloomFilter(final long expectedInsertions, final double falsePositiveProbability) {
+        final long n = Math.max(1, expectedInsertions);
+        final long m = Math.max(64, (long) Math.ceil(-n * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2))));
+        final int words = (int) Math.min(Integer.MAX_VALUE - 8, (m + 63) >>> 6);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    public void put(final String value) {
+        final long hash1 = hash(value, 0x9E3779B97F4A7C15L);
+        final long hash2 = hash(value, 0xC2B2AE3D27D4EB4FL) | 1L;
+        for (int i = 0; i < hashCount; i++) {
+            final long index = Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            final int word = (int) (index >>> 6);
+            final long mask = 1L << index;
+            long current = bits.get(word);
+            while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+        insertions.increment();
+    }
+
+    public boolean mightContain(final String value) {
+        final long hash1 = hash(value, 0x9E3779B97F4A7C15L);
+        final long hash2 = hash(value, 0xC2B2AE3D27D4EB4FL) | 1L;
+        for (int i = 0; i < hashCount; i++) {
+            final long index = Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getInsertionCount() {
+        return insertions.sum();
+    }
+
+    /**
+     * @return false positive probability expected at the current number of insertions
+     */
+    public double expectedFalsePositiveProbability() {
+        final double fillRatio = 1 - Math.exp(-(double) hashCount * insertions.sum() / bitCount);
+        return Math.pow(fillRatio, hashCount);
+    }
+
+    private static long hash(final String value, final long seed) {
+        long hash = seed;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,78 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.entity.UserEntity;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+/**
+ * Immutable view of a resolved access token held by the SessionCache: the signed-in user, the logout state and the
+ * expiry of the session at the time it was loaded from the user_auth table.
+ * The session is shared by every request presenting the token, so it keeps a private copy of the user, without its
+ * password hash and salt, and hands every caller a copy of its own.
+ */
+public final class CachedSession {
+
+    // never handed out
+    private final UserEntity user;
+
+    private final ZonedDateTime logoutAt;
+
+    private final long expiresAtMillis;
+
+    private final long deadlineNanos;
+
+    // pending expiry of the cache entry, guarded by the lock of the SessionCache
+    TimingWheel.Timeout<String> timeout;
+
+    CachedSession(final UserEntity user, final ZonedDateTime logoutAt, final ZonedDateTime expiresAt,
+                  final long deadlineNanos) {
+        this.user = copyOf(user);
+        this.logoutAt = logoutAt;
+        this.expiresAtMillis = expiresAt.toInstant().toEpochMilli();
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * @return a detached copy of the signed-in user, which the caller may change or associate with new entities
+     */
+    public UserEntity getUser() {
+        return copyOf(user);
+    }
+
+    UUID getUserUuid() {
+        return user.getUuid();
+    }
+
+    public ZonedDateTime getLogoutAt() {
+        return logoutAt;
+    }
+
+    public boolean isSignedOut() {
+        return logoutAt != null;
+    }
+
+    public boolean isSessionExpired() {
+        return System.currentTimeMillis() >= expiresAtMillis;
+    }
+
+    boolean isExpired(final long nowNanos) {
+        return nowNanos - deadlineNanos >= 0;
+    }
+
+    private static UserEntity copyOf(final UserEntity user) {
+        final UserEntity copy = new UserEntity();
+        copy.setId(user.getId());
+        copy.setUuid(user.getUuid());
+        copy.setFirstName(user.getFirstName());
+        copy.setLastName(user.getLastName());
+        copy.setUsername(user.getUsername());
+        copy.setEmail(user.getEmail());
+        copy.setCountry(user.getCountry());
+        copy.setAboutme(user.getAboutme());
+        copy.setDob(user.getDob());
+        copy.setRole(user.getRole());
+        copy.setContactnumber(user.getContactnumber());
+        return copy;
+    }
+}
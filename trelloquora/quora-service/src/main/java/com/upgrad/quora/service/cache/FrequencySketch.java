@@ -0,0 +1,102 @@
+package com.upgrad.quora.service.cache;
+
+/**
+ * Count-min sketch of 4-bit counters estimating how often each key was accessed recently, in a fixed amount of memory
+ * whatever the number of distinct keys. Every key maps to four counters and its frequency is the smallest of them.
+ *
+ * Once the number of recorded accesses reaches ten times the sized capacity, every counter is halved, so that the
+ * sketch follows changes in popularity instead of remembering keys which were popular long ago. The sketch is not
+ * thread-safe, callers serialize access to it.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L};
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final int MAXIMUM_COUNT = 15;
+
+    // sixteen 4-bit counters per long
+    private final long[] table;
+
+    private final int tableMask;
+
+    private final int sampleSize;
+
+    private int additions;
+
+    /**
+     * @param capacity - number of keys the sketch is sized for, the maximum size of the cache
+     */
+    FrequencySketch(final int capacity) {
+        final int length = Integer.highestOneBit(Math.max(8, Math.min(capacity, 1 << 30) - 1) << 1);
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = 10 * Math.max(1, capacity);
+    }
+
+    /**
+     * @return estimated number of recent accesses to the key, between 0 and 15
+     */
+    int frequency(final Object key) {
+        final int hash = spread(key.hashCode());
+        int frequency = MAXIMUM_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            final long index = index(hash, i);
+            frequency = Math.min(frequency, (int) ((table[(int) index] >>> (index >>> 32)) & 0xF));
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an access to the key
+     */
+    void increment(final Object key) {
+        final int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            final long index = index(hash, i);
+            final int slot = (int) index;
+            final long shift = index >>> 32;
+            if (((table[slot] >>> shift) & 0xF) < MAXIMUM_COUNT) {
+                table[slot] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * @return memory held by the counters, in bytes
+     */
+    long sizeInBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    /**
+     * @return slot of the i-th counter of the key in the low 32 bits, and the bit offset of the counter within the
+     * slot in the high 32 bits
+     */
+    private long index(final int hash, final int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        final long slot = (int) h & tableMask;
+        final long shift = ((h >>> 40) & 0xF) << 2;
+        return (shift << 32) | slot;
+    }
+
+    private static int spread(final int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
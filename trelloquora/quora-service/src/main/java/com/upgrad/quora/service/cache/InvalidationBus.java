@@ -0,0 +1,393 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.dao.CacheInvalidationDao;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Propagates cache invalidations to the other quora-api nodes through Postgres NOTIFY, so that their session, question
+ * and author question caches and their second-level cache of users do not keep serving state that was changed on another node.
+ *
+ * The business services invalidate their local caches themselves and publish the same keys on the bus. Keys published
+ * within a transaction are coalesced and sent in as few notifications as fit in a payload just before the transaction
+ * commits; Postgres delivers them to the listeners on commit only, and drops them on rollback.
+ *
+ * Every node listens on a dedicated connection and applies the invalidations it receives, drained and coalesced in
+ * batches, ignoring those it published itself. Notifications sent while the listener is disconnected are lost, so
+ * the listener flushes every cache whenever it (re)connects. A half-open connection delivers no notification and
+ * raises no error, so the listener also checks its connection with a query at every keepalive interval, with a socket
+ * timeout, and reconnects when the check fails.
+ *
+ * Payload: the id of the publishing node followed by the keys, separated by spaces, each key prefixed with the code
+ * of its InvalidationType. Keys are uuids and ids, so a payload holds one byte per character.
+ */
+@Component
+public class InvalidationBus implements MeterBinder, InitializingBean, DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InvalidationBus.class);
+
+    // application_name of the listener connection in pg_stat_activity
+    public static final String LISTENER_NAME = "quora-invalidation-listener";
+
+    @Autowired
+    private CacheInvalidationDao cacheInvalidationDao;
+
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private QuestionCache questionCache;
+
+    @Autowired
+    private AuthorQuestionCache authorQuestionCache;
+
+    @Autowired
+    private UserCacheRegions userCacheRegions;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 13);
+
+    private final boolean enabled;
+
+    private final String channel;
+
+    private final int maximumPayloadLength;
+
+    private final int pollTimeoutMillis;
+
+    private final long reconnectDelayMillis;
+
+    private final long keepaliveMillis;
+
+    private final int keepaliveTimeoutSeconds;
+
+    private final String url;
+
+    private final String username;
+
+    private final String password;
+
+    private final LongAdder publishedKeys = new LongAdder();
+
+    private final LongAdder coalescedKeys = new LongAdder();
+
+    private final LongAdder notifications = new LongAdder();
+
+    private final LongAdder receivedKeys = new LongAdder();
+
+    private final LongAdder ignoredKeys = new LongAdder();
+
+    private final LongAdder fullFlushes = new LongAdder();
+
+    private final LongAdder keepaliveFailures = new LongAdder();
+
+    private volatile boolean running;
+
+    private volatile boolean connected;
+
+    private Thread listener;
+
+    /**
+     * @param enabled
+     * @param channel              - Postgres channel shared by the nodes
+     * @param maximumPayloadLength - maximum notification payload, below the 8000 bytes accepted by Postgres
+     * @param pollTimeoutMillis    - time the listener waits for notifications before checking for shutdown
+     * @param reconnectDelayMillis - pause before the listener reconnects after losing its connection
+     * @param keepaliveMillis      - interval of the checks of the listener connection
+     * @param keepaliveTimeoutSeconds - time a check, and any read on the listener connection, may take before the
+     *                             connection is considered lost
+     * @param url                  - database of the application
+     * @param username
+     * @param password
+     */
+    public InvalidationBus(@Value("${quora.invalidation-bus.enabled:true}") final boolean enabled,
+                           @Value("${quora.invalidation-bus.channel:quora_cache_invalidation}") final String channel,
+                           @Value("${quora.invalidation-bus.max-payload-bytes:7900}") final int maximumPayloadLength,
+                           @Value("${quora.invalidation-bus.poll-timeout-ms:500}") final int pollTimeoutMillis,
+                           @Value("${quora.invalidation-bus.reconnect-delay-ms:5000}") final long reconnectDelayMillis,
+                           @Value("${quora.invalidation-bus.keepalive-ms:10000}") final long keepaliveMillis,
+                           @Value("${quora.invalidation-bus.keepalive-timeout-seconds:5}") final int keepaliveTimeoutSeconds,
+                           @Value("${spring.datasource.url}") final String url,
+                           @Value("${spring.datasource.username}") final String username,
+                           @Value("${spring.datasource.password}") final String password) {
+        this.enabled = enabled;
+        this.channel = channel;
+        this.maximumPayloadLength = maximumPayloadLength;
+        this.pollTimeoutMillis = pollTimeoutMillis;
+        this.reconnectDelayMillis = reconnectDelayMillis;
+        this.keepaliveMillis = keepaliveMillis;
+        this.keepaliveTimeoutSeconds = keepaliveTimeoutSeconds;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        listener = new Thread(this::listen, "cache-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+            listener.join(pollTimeoutMillis * 2L);
+        }
+    }
+
+    /**
+     * Publishes an invalidation to the other nodes. Within a transaction the key is sent when the transaction
+     * commits, together with the other keys published by the transaction; outside of a transaction it is sent at once.
+     * @param type
+     * @param key
+     */
+    public void publish(final InvalidationType type, final String key) {
+        if (!enabled) {
+            return;
+        }
+        final String entry = type.getCode() + key;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            send(Collections.singleton(entry));
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Set<String> pending = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            final Set<String> entries = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(this, entries);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void beforeCommit(final boolean readOnly) {
+                    send(entries);
+                }
+
+                @Override
+                public void afterCompletion(final int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(InvalidationBus.this);
+                }
+            });
+            pending = entries;
+        }
+        if (!pending.add(entry)) {
+            coalescedKeys.increment();
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public long getPublishedKeys() {
+        return publishedKeys.sum();
+    }
+
+    public long getCoalescedKeys() {
+        return coalescedKeys.sum();
+    }
+
+    public long getNotifications() {
+        return notifications.sum();
+    }
+
+    public long getReceivedKeys() {
+        return receivedKeys.sum();
+    }
+
+    public long getIgnoredKeys() {
+        return ignoredKeys.sum();
+    }
+
+    public long getFullFlushes() {
+        return fullFlushes.sum();
+    }
+
+    public long getKeepaliveFailures() {
+        return keepaliveFailures.sum();
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("quora.invalidation.published", this, InvalidationBus::getPublishedKeys)
+                .description("Keys published to the other nodes").register(registry);
+        FunctionCounter.builder("quora.invalidation.coalesced", this, InvalidationBus::getCoalescedKeys)
+                .description("Keys published again by the same transaction, sent once").register(registry);
+        FunctionCounter.builder("quora.invalidation.notifications", this, InvalidationBus::getNotifications)
+                .description("Notifications sent").register(registry);
+        FunctionCounter.builder("quora.invalidation.received", this, InvalidationBus::getReceivedKeys)
+                .description("Keys received from the other nodes and applied").register(registry);
+        FunctionCounter.builder("quora.invalidation.ignored", this, InvalidationBus::getIgnoredKeys)
+                .description("Keys received back from this node").register(registry);
+        FunctionCounter.builder("quora.invalidation.full.flushes", this, InvalidationBus::getFullFlushes)
+                .description("Caches flushed because the listener (re)connected").register(registry);
+        FunctionCounter.builder("quora.invalidation.keepalive.failures", this, InvalidationBus::getKeepaliveFailures)
+                .description("Checks of the listener connection which failed").register(registry);
+        Gauge.builder("quora.invalidation.listener.connected", this, bus -> bus.isConnected() ? 1 : 0).register(registry);
+    }
+
+    /**
+     * Sends the entries in as few notifications as the maximum payload allows
+     */
+    private void send(final Set<String> entries) {
+        final StringBuilder payload = new StringBuilder(nodeId);
+        for (final String entry : entries) {
+            if (payload.length() > nodeId.length() && payload.length() + 1 + entry.length() > maximumPayloadLength) {
+                cacheInvalidationDao.notify(channel, payload.toString());
+                notifications.increment();
+                payload.setLength(nodeId.length());
+            }
+            payload.append(' ').append(entry);
+            publishedKeys.increment();
+        }
+        if (payload.length() > nodeId.length()) {
+            cacheInvalidationDao.notify(channel, payload.toString());
+            notifications.increment();
+        }
+    }
+
+    private void listen() {
+        final Properties properties = new Properties();
+        properties.setProperty("user", username);
+        properties.setProperty("password", password);
+        // a read on a half-open connection fails after the timeout instead of blocking forever
+        properties.setProperty("socketTimeout", String.valueOf(keepaliveTimeoutSeconds));
+        properties.setProperty("tcpKeepAlive", "true");
+        properties.setProperty("ApplicationName", LISTENER_NAME);
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, properties);
+                 Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN \"" + channel + "\"");
+                statement.setQueryTimeout(keepaliveTimeoutSeconds);
+                connected = true;
+                // invalidations published while this node was not listening are lost
+                flushAll();
+
+                final PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                long lastCheck = System.nanoTime();
+                while (running) {
+                    final PGNotification[] received = pgConnection.getNotifications(pollTimeoutMillis);
+                    if (received != null && received.length > 0) {
+                        apply(received);
+                    }
+                    if (System.nanoTime() - lastCheck >= TimeUnit.MILLISECONDS.toNanos(keepaliveMillis)) {
+                        checkConnection(statement);
+                        lastCheck = System.nanoTime();
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (running) {
+                    LOG.warn("Cache invalidation listener lost its connection, reconnecting in {} ms", reconnectDelayMillis, e);
+                }
+            } finally {
+                connected = false;
+            }
+
+            try {
+                Thread.sleep(reconnectDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs a round trip on the listener connection; getNotifications alone does not notice a connection whose peer
+     * is gone
+     * @throws SQLException if the connection is lost, so that the listener reconnects and flushes the caches
+     */
+    private void checkConnection(final Statement statement) throws SQLException {
+        try {
+            statement.executeQuery("SELECT 1").close();
+        } catch (SQLException e) {
+            keepaliveFailures.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Applies a batch of notifications, each distinct key once
+     */
+    private void apply(final PGNotification[] received) {
+        final Set<String> entries = new LinkedHashSet<>();
+        for (final PGNotification notification : received) {
+            final String[] parts = notification.getParameter().split(" ");
+            final boolean own = nodeId.equals(parts[0]);
+            for (int i = 1; i < parts.length; i++) {
+                if (own) {
+                    ignoredKeys.increment();
+                } else if (!parts[i].isEmpty()) {
+                    entries.add(parts[i]);
+                }
+            }
+        }
+        for (final String entry : entries) {
+            final InvalidationType type = InvalidationType.of(entry.charAt(0));
+            final String key = entry.substring(1);
+            try {
+                if (type == InvalidationType.SESSIONS_OF_USER) {
+                    sessionCache.invalidateUser(UUID.fromString(key));
+                } else if (type == InvalidationType.QUESTION) {
+                    questionCache.invalidate(UUID.fromString(key));
+                } else if (type == InvalidationType.QUESTIONS_OF_USER) {
+                    questionCache.invalidateUser(Integer.valueOf(key));
+                } else if (type == InvalidationType.QUESTION_LIST_OF_USER) {
+                    authorQuestionCache.invalidate(UUID.fromString(key));
+                } else if (type == InvalidationType.USER) {
+                    userCacheRegions.evict(Integer.valueOf(key));
+                } else {
+                    LOG.warn("Ignoring cache invalidation of unknown type: {}", entry);
+                    continue;
+                }
+            } catch (IllegalArgumentException e) {
+                // a malformed key must not fail the batch, which would reconnect and flush every cache
+                LOG.warn("Ignoring malformed cache invalidation: {}", entry);
+                continue;
+            }
+            receivedKeys.increment();
+        }
+    }
+
+    private void flushAll() {
+        sessionCache.clear();
+        questionCache.clear();
+        authorQuestionCache.clear();
+        userCacheRegions.clear();
+        fullFlushes.increment();
+    }
+}
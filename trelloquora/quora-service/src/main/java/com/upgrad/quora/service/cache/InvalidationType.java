@@ -0,0 +1,45 @@
+package com.upgrad.quora.service.cache;
+
+/**
+ * Kinds of cache invalidation exchanged between nodes over the InvalidationBus, with the one-letter code which
+ * prefixes their key on the wire.
+ */
+public enum InvalidationType {
+
+    // sessions of a user, keyed by user uuid; access tokens are never sent over the bus
+    SESSIONS_OF_USER('s'),
+
+    // a question, keyed by question uuid
+    QUESTION('q'),
+
+    // every question of a user, keyed by user id
+    QUESTIONS_OF_USER('o'),
+
+    // the cached list of the questions of a user, keyed by user uuid
+    QUESTION_LIST_OF_USER('l'),
+
+    // a user in the second-level cache, keyed by user id
+    USER('u');
+
+    private final char code;
+
+    InvalidationType(final char code) {
+        this.code = code;
+    }
+
+    char getCode() {
+        return code;
+    }
+
+    /**
+     * @return the type with the given code, null for an unknown code
+     */
+    static InvalidationType of(final char code) {
+        for (final InvalidationType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
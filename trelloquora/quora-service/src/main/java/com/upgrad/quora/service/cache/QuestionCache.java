@@ -0,0 +1,348 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.dto.QuestionSnapshot;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of question snapshots keyed by question uuid, so that the endpoints which only resolve a
+ * question do not have to run the "questionByUuid" query on every request.
+ *
+ * Entries are admitted with the W-TinyLFU policy: new entries go to a small LRU window (1% of the cache), and an
+ * entry leaving the window only displaces the LRU entry of the main segment if a frequency sketch says it was
+ * accessed more often recently. The main segment is a segmented LRU: entries enter on probation and are promoted to
+ * the protected segment (80% of the main segment) on their second access. Hot questions thus stay cached while a scan
+ * of questions read once cannot flush them.
+ *
+ * Snapshots are invalidated when their question is edited or deleted, before the write and again once the writing
+ * transaction completes. A snapshot loaded while an invalidation happened is returned but not cached, so a reader
+ * cannot put back the state being replaced.
+ */
+@Component
+public class QuestionCache implements MeterBinder {
+
+    // estimated bytes of a cached entry without its strings: map entry, snapshot and boxed ids
+    private static final long ENTRY_BYTES = 120;
+
+    // UUID object: header and its two longs
+    private static final long UUID_BYTES = 32;
+
+    private final int windowMaximum;
+
+    private final int mainMaximum;
+
+    private final int protectedMaximum;
+
+    // access-ordered, eldest entry first; all guarded by the lock
+    private final LinkedHashMap<UUID, QuestionSnapshot> window = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LinkedHashMap<UUID, QuestionSnapshot> probation = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LinkedHashMap<UUID, QuestionSnapshot> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final FrequencySketch sketch;
+
+    // reads reorder the segments, so reads take the lock too
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // incremented by every invalidation, guarded by the lock
+    private long generation;
+
+    // written under the lock
+    private volatile long weightBytes;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    public QuestionCache(@Value("${quora.question-cache.maximum-size:10000}") final int maximumSize) {
+        this.windowMaximum = Math.max(1, maximumSize / 100);
+        this.mainMaximum = Math.max(1, maximumSize - windowMaximum);
+        this.protectedMaximum = Math.max(1, mainMaximum * 8 / 10);
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * Returns the cached snapshot of the question, or loads it and caches it
+     * @param uuid
+     * @param loader - reads the snapshot of a question from the database, null when the question does not exist
+     * @return QuestionSnapshot or null when the question does not exist
+     */
+    public QuestionSnapshot get(final UUID uuid, final Function<UUID, QuestionSnapshot> loader) {
+        final long loadGeneration;
+        lock.lock();
+        try {
+            sketch.increment(uuid);
+            final QuestionSnapshot cached = find(uuid);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            loadGeneration = generation;
+        } finally {
+            lock.unlock();
+        }
+
+        misses.increment();
+        final QuestionSnapshot loaded = loader.apply(uuid);
+        if (loaded != null) {
+            lock.lock();
+            try {
+                if (loadGeneration == generation && !contains(loaded.getUuid())) {
+                    add(loaded);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Drops the snapshot of the given question. The entry is dropped again once the surrounding transaction completes,
+     * committed or rolled back, so that a state read within the transaction cannot outlive it.
+     * @param uuid
+     */
+    public void invalidate(final UUID uuid) {
+        remove(uuid);
+        afterCompletion(() -> remove(uuid));
+    }
+
+    /**
+     * Drops the snapshots of every question owned by the given user, whose questions are deleted with the user
+     * @param userId
+     */
+    public void invalidateUser(final Integer userId) {
+        removeUser(userId);
+        afterCompletion(() -> removeUser(userId));
+    }
+
+    /**
+     * Drops every cached snapshot; the frequency sketch is kept
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            generation++;
+            window.clear();
+            probation.clear();
+            protectedSegment.clear();
+            weightBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return share of the lookups served from the cache, 0 when there was no lookup yet
+     */
+    public double getHitRatio() {
+        final long hitCount = hits.sum();
+        final long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    /**
+     * @return estimated memory held by the cached entries and the frequency sketch, in bytes
+     */
+    public long getMemoryBytes() {
+        return weightBytes + sketch.sizeInBytes();
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return window.size() + probation.size() + protectedSegment.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return "window", "probation" or "protected", the segment holding the question, or null if it is not cached;
+     * does not count as an access
+     */
+    String segmentOf(final UUID uuid) {
+        lock.lock();
+        try {
+            if (window.containsKey(uuid)) {
+                return "window";
+            }
+            if (probation.containsKey(uuid)) {
+                return "probation";
+            }
+            return protectedSegment.containsKey(uuid) ? "protected" : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("quora.question.cache.hits", this, QuestionCache::getHitCount).register(registry);
+        FunctionCounter.builder("quora.question.cache.misses", this, QuestionCache::getMissCount).register(registry);
+        FunctionCounter.builder("quora.question.cache.evictions", this, QuestionCache::getEvictionCount)
+                .description("Questions evicted or not admitted by the admission policy").register(registry);
+        FunctionCounter.builder("quora.question.cache.invalidations", this, QuestionCache::getInvalidationCount).register(registry);
+        Gauge.builder("quora.question.cache.hit.ratio", this, QuestionCache::getHitRatio).register(registry);
+        Gauge.builder("quora.question.cache.memory", this, QuestionCache::getMemoryBytes)
+                .description("Estimated memory held by the question cache").baseUnit("bytes").register(registry);
+        Gauge.builder("quora.question.cache.size", this, QuestionCache::size).register(registry);
+    }
+
+    private QuestionSnapshot find(final UUID uuid) {
+        QuestionSnapshot snapshot = window.get(uuid);
+        if (snapshot == null) {
+            snapshot = protectedSegment.get(uuid);
+        }
+        if (snapshot == null) {
+            snapshot = probation.remove(uuid);
+            if (snapshot != null) {
+                // second access, promote the entry and demote the LRU protected entry if the segment is full
+                protectedSegment.put(snapshot.getUuid(), snapshot);
+                if (protectedSegment.size() > protectedMaximum) {
+                    final QuestionSnapshot demoted = removeEldest(protectedSegment);
+                    probation.put(demoted.getUuid(), demoted);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    private boolean contains(final UUID uuid) {
+        return window.containsKey(uuid) || probation.containsKey(uuid) || protectedSegment.containsKey(uuid);
+    }
+
+    private void add(final QuestionSnapshot snapshot) {
+        window.put(snapshot.getUuid(), snapshot);
+        weightBytes += weigh(snapshot);
+        if (window.size() <= windowMaximum) {
+            return;
+        }
+
+        final QuestionSnapshot candidate = removeEldest(window);
+        if (probation.size() + protectedSegment.size() < mainMaximum) {
+            probation.put(candidate.getUuid(), candidate);
+            return;
+        }
+        final LinkedHashMap<UUID, QuestionSnapshot> victimSegment = probation.isEmpty() ? protectedSegment : probation;
+        final QuestionSnapshot victim = victimSegment.entrySet().iterator().next().getValue();
+        if (sketch.frequency(candidate.getUuid()) > sketch.frequency(victim.getUuid())) {
+            victimSegment.remove(victim.getUuid());
+            evict(victim);
+            probation.put(candidate.getUuid(), candidate);
+        } else {
+            evict(candidate);
+        }
+    }
+
+    private void evict(final QuestionSnapshot snapshot) {
+        weightBytes -= weigh(snapshot);
+        evictions.increment();
+    }
+
+    private void remove(final UUID uuid) {
+        lock.lock();
+        try {
+            generation++;
+            QuestionSnapshot snapshot = window.remove(uuid);
+            if (snapshot == null) {
+                snapshot = probation.remove(uuid);
+            }
+            if (snapshot == null) {
+                snapshot = protectedSegment.remove(uuid);
+            }
+            if (snapshot != null) {
+                weightBytes -= weigh(snapshot);
+                invalidations.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeUser(final Integer userId) {
+        lock.lock();
+        try {
+            generation++;
+            removeUser(window, userId);
+            removeUser(probation, userId);
+            removeUser(protectedSegment, userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeUser(final LinkedHashMap<UUID, QuestionSnapshot> segment, final Integer userId) {
+        final Iterator<QuestionSnapshot> iterator = segment.values().iterator();
+        while (iterator.hasNext()) {
+            final QuestionSnapshot snapshot = iterator.next();
+            if (userId.equals(snapshot.getUserId())) {
+                iterator.remove();
+                weightBytes -= weigh(snapshot);
+                invalidations.increment();
+            }
+        }
+    }
+
+    private static QuestionSnapshot removeEldest(final LinkedHashMap<UUID, QuestionSnapshot> segment) {
+        final Iterator<Map.Entry<UUID, QuestionSnapshot>> iterator = segment.entrySet().iterator();
+        final QuestionSnapshot eldest = iterator.next().getValue();
+        iterator.remove();
+        return eldest;
+    }
+
+    private static long weigh(final QuestionSnapshot snapshot) {
+        return ENTRY_BYTES + UUID_BYTES + stringBytes(snapshot.getContent());
+    }
+
+    private static long stringBytes(final String value) {
+        // String object and its char array, 8 byte aligned
+        return 24 + ((16 + 2L * value.length() + 7) & ~7L);
+    }
+
+    private static void afterCompletion(final Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(final int status) {
+                    action.run();
+                }
+            });
+        }
+    }
+}
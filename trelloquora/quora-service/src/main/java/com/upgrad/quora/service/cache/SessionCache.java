@@ -0,0 +1,277 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.entity.UserAuthEntity;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * In-process cache of resolved access tokens, so that authenticated endpoints do not have to run the
+ * "userAuthByAccessToken" query on every request.
+ * The cache is bounded (oldest entries are evicted first) and every entry is dropped once its time to live elapses or
+ * its session expires, whichever comes first. Entries are expired by a hierarchical timing wheel which is advanced
+ * every tick, so the cost of expiring an entry is O(1) whatever the number of cached sessions.
+ */
+@Component
+public class SessionCache implements MeterBinder {
+
+    private final int maximumSize;
+
+    private final long timeToLiveNanos;
+
+    private final LinkedHashMap<String, CachedSession> sessions;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder expirations = new LongAdder();
+
+    // guarded by the write lock
+    private final TimingWheel<String> expiryWheel;
+
+    // incremented by every invalidation, guarded by the lock
+    private long generation;
+
+    public SessionCache(@Value("${quora.session-cache.maximum-size:10000}") final int maximumSize,
+                        @Value("${quora.session-cache.time-to-live-seconds:300}") final long timeToLiveSeconds,
+                        @Value("${quora.session-cache.tick-ms:1000}") final long tickMillis) {
+        this.maximumSize = maximumSize;
+        this.timeToLiveNanos = TimeUnit.SECONDS.toNanos(timeToLiveSeconds);
+        this.expiryWheel = new TimingWheel<>(TimeUnit.MILLISECONDS.toNanos(tickMillis), System.nanoTime());
+        this.sessions = new LinkedHashMap<String, CachedSession>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CachedSession> eldest) {
+                if (size() > SessionCache.this.maximumSize) {
+                    expiryWheel.cancel(eldest.getValue().timeout);
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached session of the given access token, or loads it and caches it
+     * @param accessToken
+     * @param loader - reads the session of a token from the database, null when the token does not exist
+     * @return CachedSession or null when the token does not exist
+     */
+    public CachedSession get(final String accessToken, final Function<String, UserAuthEntity> loader) {
+        CachedSession session;
+        final long loadGeneration;
+        lock.readLock().lock();
+        try {
+            session = sessions.get(accessToken);
+            loadGeneration = generation;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (session != null && session.isExpired(System.nanoTime())) {
+            lock.writeLock().lock();
+            try {
+                if (sessions.remove(accessToken, session)) {
+                    expiryWheel.cancel(session.timeout);
+                    evictions.increment();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            session = null;
+        }
+
+        if (session != null) {
+            hits.increment();
+            return session;
+        }
+        misses.increment();
+        final UserAuthEntity userAuthEntity = loader.apply(accessToken);
+        return userAuthEntity == null ? null : put(accessToken, userAuthEntity, loadGeneration);
+    }
+
+    /**
+     * Caches the user, logout state and expiry of a session loaded from the database. Sessions which have expired
+     * already, and sessions loaded while an invalidation happened (they may predate a signout which just committed),
+     * are returned without being cached.
+     * @param accessToken
+     * @param userAuthEntity
+     * @param loadGeneration - generation of the cache when the load started
+     * @return CachedSession
+     */
+    private CachedSession put(final String accessToken, final UserAuthEntity userAuthEntity, final long loadGeneration) {
+        final long now = System.nanoTime();
+        final long remainingMillis = userAuthEntity.getExpiresAt().toInstant().toEpochMilli() - System.currentTimeMillis();
+        final long deadline = now + Math.min(timeToLiveNanos, TimeUnit.MILLISECONDS.toNanos(remainingMillis));
+        final CachedSession session = new CachedSession(userAuthEntity.getUser(), userAuthEntity.getLogoutAt(),
+                userAuthEntity.getExpiresAt(), deadline);
+        if (remainingMillis <= 0) {
+            return session;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loadGeneration != generation) {
+                return session;
+            }
+            final CachedSession previous = sessions.put(accessToken, session);
+            if (previous != null) {
+                expiryWheel.cancel(previous.timeout);
+            }
+            session.timeout = expiryWheel.schedule(accessToken, deadline);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return session;
+    }
+
+    /**
+     * Drops every entry whose time to live elapsed or whose session expired since the last tick
+     */
+    @Scheduled(fixedDelayString = "${quora.session-cache.tick-ms:1000}")
+    public void expire() {
+        lock.writeLock().lock();
+        try {
+            expiryWheel.advance(System.nanoTime(), timeout -> {
+                final CachedSession session = sessions.get(timeout.getValue());
+                if (session != null && session.timeout == timeout) {
+                    sessions.remove(timeout.getValue());
+                    expirations.increment();
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the cached session of the given access token. The entry is dropped again once the surrounding
+     * transaction commits; both removals advance the generation, so that a concurrent request which read the session
+     * before the commit does not cache it.
+     * @param accessToken
+     */
+    public void invalidate(final String accessToken) {
+        remove(accessToken);
+        afterCommit(() -> remove(accessToken));
+    }
+
+    /**
+     * Drops every cached session that belongs to the given user
+     * @param userUuid
+     */
+    public void invalidateUser(final UUID userUuid) {
+        removeUser(userUuid);
+        afterCommit(() -> removeUser(userUuid));
+    }
+
+    /**
+     * Drops every cached session
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            for (final CachedSession session : sessions.values()) {
+                expiryWheel.cancel(session.timeout);
+            }
+            sessions.clear();
+            generation++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return sessions.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("quora.session.cache.hits", this, SessionCache::getHitCount).register(registry);
+        FunctionCounter.builder("quora.session.cache.misses", this, SessionCache::getMissCount).register(registry);
+        FunctionCounter.builder("quora.session.cache.evictions", this, SessionCache::getEvictionCount).register(registry);
+        FunctionCounter.builder("quora.session.cache.expirations", this, SessionCache::getExpirationCount).register(registry);
+        Gauge.builder("quora.session.cache.size", this, SessionCache::size).register(registry);
+    }
+
+    private void remove(final String accessToken) {
+        lock.writeLock().lock();
+        try {
+            final CachedSession session = sessions.remove(accessToken);
+            if (session != null) {
+                expiryWheel.cancel(session.timeout);
+            }
+            generation++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeUser(final UUID userUuid) {
+        lock.writeLock().lock();
+        try {
+            final Iterator<CachedSession> iterator = sessions.values().iterator();
+            while (iterator.hasNext()) {
+                final CachedSession session = iterator.next();
+                if (userUuid.equals(session.getUserUuid())) {
+                    expiryWheel.cancel(session.timeout);
+                    iterator.remove();
+                }
+            }
+            generation++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void afterCommit(final Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+}
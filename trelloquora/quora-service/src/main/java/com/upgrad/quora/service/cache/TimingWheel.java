@@ -0,0 +1,189 @@
+package com.upgrad.quora.service.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical hashed timing wheel. Scheduling and cancelling a timeout cost O(1) whatever the number of pending
+ * timeouts, and advancing the wheel by one tick only touches the timeouts that are due in that tick (plus, every
+ * 64 ticks, one bucket of the next level which is cascaded down).
+ *
+ * Four levels of 64 buckets cover 64^4 ticks; timeouts further away are parked in the last level and cascaded again
+ * when it comes round. The wheel is not thread-safe, callers serialize access to it.
+ */
+final class TimingWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAXIMUM_DELAY = (1L << (BITS * LEVELS)) - 1;
+
+    /**
+     * A scheduled timeout; an element of the doubly linked list of its bucket
+     */
+    static final class Timeout<T> {
+
+        private final T value;
+
+        private final long deadlineTick;
+
+        private Timeout<T> previous;
+
+        private Timeout<T> next;
+
+        private Timeout<T> bucket;
+
+        private Timeout(final T value, final long deadlineTick) {
+            this.value = value;
+            this.deadlineTick = deadlineTick;
+        }
+
+        T getValue() {
+            return value;
+        }
+
+        boolean isPending() {
+            return bucket != null;
+        }
+    }
+
+    private final long tickNanos;
+
+    private final long originNanos;
+
+    // one sentinel per bucket, buckets[level * SLOTS + slot]
+    @SuppressWarnings("unchecked")
+    private final Timeout<T>[] buckets = new Timeout[LEVELS * SLOTS];
+
+    private long currentTick;
+
+    private int size;
+
+    TimingWheel(final long tickNanos, final long originNanos) {
+        this.tickNanos = tickNanos;
+        this.originNanos = originNanos;
+        for (int i = 0; i < buckets.length; i++) {
+            final Timeout<T> sentinel = new Timeout<>(null, 0);
+            sentinel.previous = sentinel;
+            sentinel.next = sentinel;
+            buckets[i] = sentinel;
+        }
+    }
+
+    /**
+     * Schedules a timeout; it fires on the first advance past its deadline, at most one tick late
+     * @param value
+     * @param deadlineNanos - System.nanoTime based deadline
+     * @return handle to cancel the timeout
+     */
+    Timeout<T> schedule(final T value, final long deadlineNanos) {
+        final long deadlineTick = Math.max(currentTick, ceilDiv(deadlineNanos - originNanos, tickNanos));
+        final Timeout<T> timeout = new Timeout<>(value, deadlineTick);
+        add(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Cancels a pending timeout; cancelling a timeout which fired or was cancelled already does nothing
+     * @param timeout
+     */
+    void cancel(final Timeout<T> timeout) {
+        if (timeout != null && timeout.isPending()) {
+            unlink(timeout);
+            size--;
+        }
+    }
+
+    /**
+     * Advances the wheel to the given time and hands every timeout which is due to the consumer
+     * @param nowNanos - System.nanoTime
+     * @param expired  - consumer of the due timeouts
+     * @return number of due timeouts
+     */
+    int advance(final long nowNanos, final Consumer<Timeout<T>> expired) {
+        final long nowTick = Math.floorDiv(nowNanos - originNanos, tickNanos);
+        int count = 0;
+        while (currentTick <= nowTick) {
+            final int slot = (int) (currentTick & MASK);
+            if (slot == 0) {
+                cascade(1);
+            }
+            final Timeout<T> sentinel = buckets[slot];
+            currentTick++;
+            while (sentinel.next != sentinel) {
+                final Timeout<T> timeout = sentinel.next;
+                unlink(timeout);
+                size--;
+                count++;
+                expired.accept(timeout);
+            }
+        }
+        return count;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Moves the timeouts of the current bucket of a level down to the lower levels, and cascades the next level
+     * too when this level wraps around
+     */
+    private void cascade(final int level) {
+        if (level >= LEVELS) {
+            return;
+        }
+        final int slot = (int) ((currentTick >>> (BITS * level)) & MASK);
+        if (slot == 0) {
+            cascade(level + 1);
+        }
+        final Timeout<T> sentinel = buckets[level * SLOTS + slot];
+        Timeout<T> timeout = sentinel.next;
+        sentinel.next = sentinel;
+        sentinel.previous = sentinel;
+        while (timeout != sentinel) {
+            final Timeout<T> next = timeout.next;
+            add(timeout);
+            timeout = next;
+        }
+    }
+
+    private void add(final Timeout<T> timeout) {
+        final long delay = timeout.deadlineTick - currentTick;
+        final Timeout<T> sentinel;
+        if (delay < 0) {
+            sentinel = buckets[(int) (currentTick & MASK)];
+        } else if (delay > MAXIMUM_DELAY) {
+            // parked in the top level, cascaded down again when it comes round
+            sentinel = bucket(LEVELS - 1, currentTick + MAXIMUM_DELAY);
+        } else {
+            int level = 0;
+            while (delay >= 1L << (BITS * (level + 1))) {
+                level++;
+            }
+            sentinel = bucket(level, timeout.deadlineTick);
+        }
+        timeout.bucket = sentinel;
+        timeout.previous = sentinel.previous;
+        timeout.next = sentinel;
+        sentinel.previous.next = timeout;
+        sentinel.previous = timeout;
+    }
+
+    private Timeout<T> bucket(final int level, final long tick) {
+        return buckets[level * SLOTS + (int) ((tick >>> (BITS * level)) & MASK)];
+    }
+
+    private void unlink(final Timeout<T> timeout) {
+        timeout.previous.next = timeout.next;
+        timeout.next.previous = timeout.previous;
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.bucket = null;
+    }
+
+    private static long ceilDiv(final long dividend, final long divisor) {
+        return -Math.floorDiv(-dividend, divisor);
+    }
+}
@@ -0,0 +1,106 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.entity.UserEntity;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.NaturalIdCacheStatistics;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The second-level cache regions of UserEntity: the entities by id, the uuid natural ids and the username and email
+ * lookups. Hibernate keeps them consistent with the writes of this node; writes of the other nodes are evicted through
+ * the InvalidationBus.
+ *
+ * Publishes the hits, misses, puts and size of every region, tagged with the region name. The statistics are only
+ * collected with hibernate.generate_statistics enabled.
+ */
+@Component
+public class UserCacheRegions implements MeterBinder {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Evicts the user from the entity region. A user cannot be found by natural id or by a lookup query from its id,
+     * so the natural-id and query regions are dropped altogether; users are written rarely.
+     * @param userId
+     */
+    public void evict(final Integer userId) {
+        final Cache cache = cache();
+        cache.evictEntityData(UserEntity.class, userId);
+        cache.evictNaturalIdData(UserEntity.class);
+        cache.evictQueryRegion(UserEntity.QUERY_CACHE_REGION);
+    }
+
+    /**
+     * Drops every cached user
+     */
+    public void clear() {
+        final Cache cache = cache();
+        cache.evictEntityData(UserEntity.class);
+        cache.evictNaturalIdData(UserEntity.class);
+        cache.evictQueryRegion(UserEntity.QUERY_CACHE_REGION);
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        final Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        final String entityRegion = UserEntity.CACHE_REGION;
+        bind(registry, entityRegion, statistics,
+                s -> entityStatistics(s, entityRegion).getHitCount(),
+                s -> entityStatistics(s, entityRegion).getMissCount(),
+                s -> entityStatistics(s, entityRegion).getPutCount(),
+                s -> entityStatistics(s, entityRegion).getElementCountInMemory());
+
+        final String naturalIdRegion = UserEntity.NATURAL_ID_CACHE_REGION;
+        bind(registry, naturalIdRegion, statistics,
+                s -> naturalIdStatistics(s, naturalIdRegion).getHitCount(),
+                s -> naturalIdStatistics(s, naturalIdRegion).getMissCount(),
+                s -> naturalIdStatistics(s, naturalIdRegion).getPutCount(),
+                s -> naturalIdStatistics(s, naturalIdRegion).getElementCountInMemory());
+
+        // Hibernate 5.2 only counts the query cache as a whole; the user lookups are the only cached queries
+        bind(registry, UserEntity.QUERY_CACHE_REGION, statistics,
+                Statistics::getQueryCacheHitCount,
+                Statistics::getQueryCacheMissCount,
+                Statistics::getQueryCachePutCount,
+                null);
+    }
+
+    private void bind(final MeterRegistry registry, final String region, final Statistics statistics,
+                      final ToDoubleFunction<Statistics> hits, final ToDoubleFunction<Statistics> misses,
+                      final ToDoubleFunction<Statistics> puts, final ToDoubleFunction<Statistics> size) {
+        final Tags tags = Tags.of("region", region);
+        FunctionCounter.builder("quora.hibernate.cache.hits", statistics, hits).tags(tags).register(registry);
+        FunctionCounter.builder("quora.hibernate.cache.misses", statistics, misses).tags(tags).register(registry);
+        FunctionCounter.builder("quora.hibernate.cache.puts", statistics, puts).tags(tags).register(registry);
+        if (size != null) {
+            Gauge.builder("quora.hibernate.cache.size", statistics, size).tags(tags)
+                    .description("Entries held in memory by the region").register(registry);
+        }
+    }
+
+    private Cache cache() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+
+    private static SecondLevelCacheStatistics entityStatistics(final Statistics statistics, final String region) {
+        return statistics.getSecondLevelCacheStatistics(region);
+    }
+
+    private static NaturalIdCacheStatistics naturalIdStatistics(final Statistics statistics, final String region) {
+        return statistics.getNaturalIdCacheStatistics(region);
+    }
+}
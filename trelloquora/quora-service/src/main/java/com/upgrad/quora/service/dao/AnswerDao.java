@@ -1,5 +1,6 @@
 package com.upgrad.quora.service.dao;
 
+import com.upgrad.quora.service.dto.AnswerSummary;
 import com.upgrad.quora.service.entity.AnswerEntity;
 import com.upgrad.quora.service.entity.QuestionEntity;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,11 +9,15 @@ import org.springframework.stereotype.Repository;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 
 @Repository
 public class AnswerDao {
 
+    private static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+
     @PersistenceContext
     private EntityManager entityManager;
 
@@ -21,20 +26,68 @@ public class AnswerDao {
         return answerEntity;
     }
 
-    public AnswerEntity getAnswerByUuid(final String Uuid) {
+    /*
+        createAnswers - Persist the answers of a bulk chunk, flushed together as JDBC batches and detached afterwards.
+        Must be called within a transaction.
+     */
+    public void createAnswers(final List<AnswerEntity> answerEntities) {
+        for (final AnswerEntity answerEntity : answerEntities) {
+            entityManager.persist(answerEntity);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    /*
+        getAnswerByUuid - Return the answer with its owner joined in the same statement, which the edit and delete
+        endpoints check; the question of the answer is not loaded
+     */
+    public AnswerEntity getAnswerByUuid(final UUID uuid) {
         try {
-            return entityManager.createNamedQuery("answerByAnswerUuid", AnswerEntity.class).setParameter("uuid", Uuid).getSingleResult();
+            return entityManager.createNamedQuery("answerByAnswerUuid", AnswerEntity.class)
+                    .setHint(FETCH_GRAPH, entityManager.getEntityGraph("AnswerEntity.user"))
+                    .setParameter("uuid", uuid)
+                    .getSingleResult();
         } catch (NoResultException e) {
             return null;
         }
     }
 
-    public List<AnswerEntity> getAnswersByQuestionId(final Integer id) {
-        try {
-            return entityManager.createNamedQuery("answersByQuestionid", AnswerEntity.class).setParameter("id", id).getResultList();
-        } catch (NoResultException e) {
+    /*
+        getAnswersByQuestionUuid - Resolve a question by its uuid and return its answers in a single statement. The
+        question is outer joined to its answers, so a question without answers still yields one row, without answer.
+        Returns null when the question does not exist and an empty list when it has no answers.
+     */
+    public List<AnswerSummary> getAnswersByQuestionUuid(final UUID questionUuid) {
+        final List<AnswerSummary> rows = entityManager.createNamedQuery("answersByQuestionUuid", AnswerSummary.class)
+                .setParameter("uuid", questionUuid)
+                .getResultList();
+        if (rows.isEmpty()) {
             return null;
         }
+        if (rows.get(0).getUuid() == null) {
+            return Collections.emptyList();
+        }
+        return rows;
+    }
+
+    /*
+        getAnswersPage - Return at most limit answers to a question, in id order, starting after the answer with the
+        given id or from the first answer when afterId is null. The summaries carry no question content and no entity is
+        loaded; served by the (question_id, id) index without scanning skipped rows.
+     */
+    public List<AnswerSummary> getAnswersPage(final Integer questionId, final Integer afterId, final int limit) {
+        if (afterId == null) {
+            return entityManager.createNamedQuery("answerSummariesByQuestionId", AnswerSummary.class)
+                    .setParameter("id", questionId)
+                    .setMaxResults(limit)
+                    .getResultList();
+        }
+        return entityManager.createNamedQuery("answerSummariesAfterId", AnswerSummary.class)
+                .setParameter("id", questionId)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
+                .getResultList();
     }
 
     public AnswerEntity updateAnswer(AnswerEntity answerEntity) {
@@ -0,0 +1,24 @@
+package com.upgrad.quora.service.dao;
+
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+@Repository
+public class CacheInvalidationDao {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /*
+        notify - Send a notification on a Postgres channel. Within a transaction the notification is only delivered
+        to the listeners once the transaction commits, and never if it rolls back.
+     */
+    public void notify(final String channel, final String payload) {
+        entityManager.createNativeQuery("select cast(pg_notify(:channel, :payload) as text)")
+                .setParameter("channel", channel)
+                .setParameter("payload", payload)
+                .getSingleResult();
+    }
+}
@@ -0,0 +1,97 @@
+package com.upgrad.quora.service.dao;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Checks at startup that the INCREMENT BY of every sequence the entity ids are allocated from equals the increment_size
+ * of its generator. The pooled optimizers take a nextval as the start of a block of increment_size ids, so with a
+ * smaller INCREMENT BY (the 1 of a SERIAL column not migrated by V4__pooled_id_sequences.sql) two nodes, or two blocks
+ * of one node, would hand out the same ids; the startup fails instead.
+ */
+@Component
+@ConditionalOnProperty(name = "quora.id-allocation.validate", havingValue = "true", matchIfMissing = true)
+public class IdSequenceValidator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IdSequenceValidator.class);
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void validate() {
+        final Map<String, Integer> incrementSizes = incrementSizes();
+        final Map<String, Long> incrementBys = new TreeMap<>();
+        final EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            for (final String sequenceName : incrementSizes.keySet()) {
+                final List<?> incrementBy = entityManager.createNativeQuery("select increment_by from pg_sequences "
+                        + "where schemaname = current_schema() and sequencename = :sequenceName")
+                        .setParameter("sequenceName", sequenceName)
+                        .getResultList();
+                if (!incrementBy.isEmpty()) {
+                    incrementBys.put(sequenceName, ((Number) incrementBy.get(0)).longValue());
+                }
+            }
+        } finally {
+            entityManager.close();
+        }
+        check(incrementSizes, incrementBys);
+        LOG.info("Id sequences match their entity generators {}", incrementSizes);
+    }
+
+    /**
+     * @param incrementSizes - increment_size of the generators by sequence name
+     * @param incrementBys - INCREMENT BY of the sequences which exist, by sequence name
+     * @throws IllegalStateException naming every sequence which is missing or whose INCREMENT BY differs
+     */
+    static void check(final Map<String, Integer> incrementSizes, final Map<String, Long> incrementBys) {
+        final List<String> mismatches = new ArrayList<>();
+        for (final Map.Entry<String, Integer> sequence : incrementSizes.entrySet()) {
+            final Long incrementBy = incrementBys.get(sequence.getKey());
+            if (incrementBy == null) {
+                mismatches.add(sequence.getKey() + " does not exist");
+            } else if (incrementBy != sequence.getValue().longValue()) {
+                mismatches.add(sequence.getKey() + " has INCREMENT BY " + incrementBy
+                        + " but increment_size " + sequence.getValue());
+            }
+        }
+        if (!mismatches.isEmpty()) {
+            throw new IllegalStateException("Id sequences do not match their entity generators, alter the sequences "
+                    + "or set quora.id-allocation.[sequence_name].increment-size: " + String.join(", ", mismatches));
+        }
+    }
+
+    /**
+     * @return increment_size of the generator of every entity whose id comes from a sequence, by sequence name
+     */
+    private Map<String, Integer> incrementSizes() {
+        final SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        final Map<String, Integer> incrementSizes = new TreeMap<>();
+        for (final EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+            final IdentifierGenerator generator = persister.getIdentifierGenerator();
+            if (generator instanceof SequenceStyleGenerator) {
+                final DatabaseStructure structure = ((SequenceStyleGenerator) generator).getDatabaseStructure();
+                final String name = structure.getName();
+                incrementSizes.put(name.substring(name.lastIndexOf('.') + 1).toLowerCase(), structure.getIncrementSize());
+            }
+        }
+        return incrementSizes;
+    }
+}
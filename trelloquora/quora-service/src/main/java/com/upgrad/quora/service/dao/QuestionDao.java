@@ -1,5 +1,7 @@
 package com.upgrad.quora.service.dao;
 
+import com.upgrad.quora.service.dto.QuestionSnapshot;
+import com.upgrad.quora.service.dto.QuestionSummary;
 import com.upgrad.quora.service.entity.QuestionEntity;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
@@ -7,11 +9,16 @@ import org.springframework.stereotype.Repository;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import java.sql.Timestamp;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 
 @Repository
 public class QuestionDao {
 
+    private static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+
     @PersistenceContext
     private EntityManager entityManager;
 
@@ -20,6 +27,18 @@ public class QuestionDao {
         return questionEntity;
     }
 
+    /*
+        createQuestions - Persist the questions of a bulk chunk and flush them at once, so their inserts go out as JDBC
+        batches, then detach them to keep the persistence context small. Must be called within a transaction.
+     */
+    public void createQuestions(final List<QuestionEntity> questionEntities) {
+        for (final QuestionEntity questionEntity : questionEntities) {
+            entityManager.persist(questionEntity);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
     public QuestionEntity updateQuestion(QuestionEntity questionEntity) {
         entityManager.merge(questionEntity);
         return questionEntity;
@@ -30,28 +49,71 @@ public class QuestionDao {
         return questionEntity;
     }
 
-    public QuestionEntity getQuestion(final String uuid) {
+    /*
+        getQuestionSnapshot - Return an immutable snapshot of the question, for the question cache
+     */
+    public QuestionSnapshot getQuestionSnapshot(final UUID uuid) {
         try {
-            return entityManager.createNamedQuery("questionByUuid", QuestionEntity.class).setParameter("uuid", uuid).getSingleResult();
+            return entityManager.createNamedQuery("questionSnapshotByUuid", QuestionSnapshot.class).setParameter("uuid", uuid).getSingleResult();
         } catch (NoResultException e) {
             return null;
         }
     }
 
-    public List<QuestionEntity> getQuestions() {
+    /*
+        getQuestionReference - Return a reference to the question with the given id without reading it, to associate
+        an answer with a question
+     */
+    public QuestionEntity getQuestionReference(final Integer id) {
+        return entityManager.getReference(QuestionEntity.class, id);
+    }
+
+    /*
+        getQuestionWithUser - Return the question with its owner joined in the same statement, for the call sites
+        which check the ownership of the question
+     */
+    public QuestionEntity getQuestionWithUser(final UUID uuid) {
         try {
-            return entityManager.createNamedQuery("questions", QuestionEntity.class).getResultList();
+            return entityManager.createNamedQuery("questionByUuid", QuestionEntity.class)
+                    .setHint(FETCH_GRAPH, entityManager.getEntityGraph("QuestionEntity.user"))
+                    .setParameter("uuid", uuid)
+                    .getSingleResult();
         } catch (NoResultException e) {
             return null;
         }
     }
 
-    public List<QuestionEntity> getQuestionsByUser(final String userUuid) {
-        try {
-            return entityManager.createNamedQuery("questionsByUser", QuestionEntity.class).setParameter("uuid", userUuid).getResultList();
-        } catch (NoResultException e) {
+    /*
+        getQuestionsPage - Return at most limit questions, newest first, starting after the given position or from the
+        newest question when the position is null. Served by the (date, id) index without scanning skipped rows.
+     */
+    public List<QuestionSummary> getQuestionsPage(final Timestamp afterDate, final Integer afterId, final int limit) {
+        if (afterDate == null) {
+            return entityManager.createNamedQuery("questionsFirstPage", QuestionSummary.class).setMaxResults(limit).getResultList();
+        }
+        return entityManager.createNamedQuery("questionsAfterCursor", QuestionSummary.class)
+                .setParameter("date", afterDate)
+                .setParameter("id", afterId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /*
+        getQuestionsByUserUuid - Resolve a user by its uuid and return its questions, newest first, in a single
+        statement. The user is outer joined to its questions, so a user without questions still yields one row, without
+        question. Returns null when the user does not exist and an empty list when it has no questions.
+     */
+    public List<QuestionSummary> getQuestionsByUserUuid(final UUID userUuid) {
+        final List<QuestionSummary> rows = entityManager.createNamedQuery("questionsByUserUuid", QuestionSummary.class)
+                .setParameter("uuid", userUuid)
+                .getResultList();
+        if (rows.isEmpty()) {
             return null;
         }
+        if (rows.get(0).getUuid() == null) {
+            return Collections.emptyList();
+        }
+        return rows;
     }
 }
 
@@ -2,15 +2,29 @@ package com.upgrad.quora.service.dao;
 
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.entity.UserEntity;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 @Repository
 public class UserDao {
 
+    private static final int FETCH_SIZE = 1000;
+
+    // every session lookup hands the user of the session to the session cache, so the user is joined in
+    private static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+
     @PersistenceContext
     private EntityManager entityManager;
 
@@ -33,15 +47,10 @@ public class UserDao {
     }
 
     /*
-      getUserByUuid - Get UserEntity Object from its UUID
+      getUserByUuid - Get UserEntity Object from its UUID, resolved through the natural-id and entity caches
    */
-    public UserEntity getUserByUuid(final String uuid) {
-        try{
-            return entityManager.createNamedQuery("userByUuid", UserEntity.class).setParameter("uuid", uuid).getSingleResult();
-        }
-        catch(NoResultException e) {
-            return null;
-        }
+    public UserEntity getUserByUuid(final UUID uuid) {
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(UserEntity.class).load(uuid);
     }
 
     public UserEntity getUserByEmail(final String email) {
@@ -67,28 +76,114 @@ public class UserDao {
     }
 
     /*
-        getUserAuthToken - This Method will return the AuthToken for the Signed In User
+        getUserAuthToken - This Method will return the AuthToken for the Signed In User, with its user
      */
     public UserAuthEntity getUserAuthToken(final String accessToken) {
         try {
-            return entityManager.createNamedQuery("userAuthByAccessToken", UserAuthEntity.class).setParameter("accessToken", accessToken).getSingleResult();
+            return entityManager.createNamedQuery("userAuthByAccessToken", UserAuthEntity.class)
+                    .setHint(FETCH_GRAPH, entityManager.getEntityGraph("UserAuthEntity.user"))
+                    .setParameter("accessToken", accessToken)
+                    .getSingleResult();
         } 
         catch (NoResultException nre) {
             return null;
         }
     }
 
+    /*
+        getUserAuthTokenByDigest - Return the AuthToken of an opaque session by the digest of its token, with its user
+     */
+    public UserAuthEntity getUserAuthTokenByDigest(final byte[] accessTokenDigest) {
+        try {
+            return entityManager.createNamedQuery("userAuthByAccessTokenDigest", UserAuthEntity.class)
+                    .setHint(FETCH_GRAPH, entityManager.getEntityGraph("UserAuthEntity.user"))
+                    .setParameter("accessTokenDigest", accessTokenDigest)
+                    .getSingleResult();
+        }
+        catch (NoResultException nre) {
+            return null;
+        }
+    }
+
+    /*
+        refreshAuthToken - Replace the token and expiry of a session in a single UPDATE. The update only applies while
+        the session still has the expiry it was read with and is not signed out, so that a token can be refreshed once.
+        On success the entity is detached and carries the new values; returns false when the session changed meanwhile.
+     */
+    public boolean refreshAuthToken(final UserAuthEntity userAuthEntity, final String accessToken,
+                                    final byte[] accessTokenDigest, final ZonedDateTime expiresAt) {
+        final int updated = entityManager.createNamedQuery("refreshUserAuth")
+                .setParameter("accessToken", accessToken)
+                .setParameter("accessTokenDigest", accessTokenDigest)
+                .setParameter("expiresAt", expiresAt)
+                .setParameter("id", userAuthEntity.getId())
+                .setParameter("currentExpiresAt", userAuthEntity.getExpiresAt())
+                .executeUpdate();
+        if (updated == 0) {
+            return false;
+        }
+        entityManager.detach(userAuthEntity);
+        userAuthEntity.setAccessToken(accessToken);
+        userAuthEntity.setAccessTokenDigest(accessTokenDigest);
+        userAuthEntity.setExpiresAt(expiresAt);
+        return true;
+    }
+
     public void updateUserAuth(final UserAuthEntity updatedUserAuthEntity) {
         entityManager.merge(updatedUserAuthEntity);
     }
 
     public void updateUser(final UserEntity updateUserEntity) {
         entityManager.merge(updateUserEntity);
-    }	
+    }
+
+    /*
+        forEachLiveAccessToken - Stream the access token of every unexpired session, one row at a time
+     */
+    public void forEachLiveAccessToken(final ZonedDateTime now, final Consumer<String> consumer) {
+        final Query<String> query = entityManager.createNamedQuery("liveAccessTokens", String.class)
+                .setParameter("now", now)
+                .unwrap(Query.class);
+        try (ScrollableResults results = query.setFetchSize(FETCH_SIZE).setReadOnly(true).scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                consumer.accept((String) results.get(0));
+            }
+        }
+    }
+
+    /*
+        findStaleUserAuthIds - Return the ids of at most limit sessions which expired or were signed out before the cutoff
+     */
+    public List<Integer> findStaleUserAuthIds(final ZonedDateTime cutoff, final int limit) {
+        return entityManager.createNamedQuery("staleUserAuthIds", Integer.class)
+                .setParameter("cutoff", cutoff)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /*
+        deleteUserAuths - Delete the sessions with the given ids in a single statement
+     */
+    public int deleteUserAuths(final List<Integer> ids) {
+        return entityManager.createNamedQuery("deleteUserAuthByIds").setParameter("ids", ids).executeUpdate();
+    }
+
+    /*
+        dropUserAuthPartitionsBefore - Drop the monthly partitions of the partitioned user_auth schema
+        (quora_partitioned.sql) whose sessions all signed in before the cutoff
+     */
+    public int dropUserAuthPartitionsBefore(final ZonedDateTime cutoff) {
+        return ((Number) entityManager.createNativeQuery("select drop_user_auth_partitions_before(cast(:cutoff as timestamp))")
+                .setParameter("cutoff", Timestamp.from(cutoff.toInstant()))
+                .getSingleResult()).intValue();
+    }
 
     public UserAuthEntity getUserAuth(final String accessToken) {
         try {
-            return entityManager.createNamedQuery("userAuthByAccessToken", UserAuthEntity.class).setParameter("accessToken", accessToken).getSingleResult();
+            return entityManager.createNamedQuery("userAuthByAccessToken", UserAuthEntity.class)
+                    .setHint(FETCH_GRAPH, entityManager.getEntityGraph("UserAuthEntity.user"))
+                    .setParameter("accessToken", accessToken)
+                    .getSingleResult();
         } catch (NoResultException e) {
             return null;
         }
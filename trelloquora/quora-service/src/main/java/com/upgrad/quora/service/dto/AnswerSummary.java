@@ -0,0 +1,45 @@
+package com.upgrad.quora.service.dto;
+
+import java.util.UUID;
+
+/**
+ * Read-only projection of an answer for list endpoints, together with the content of the question it answers. The id
+ * positions the answer in keyset-paginated listings, which leave the question content out.
+ */
+public final class AnswerSummary {
+
+    private final Integer id;
+
+    private final UUID uuid;
+
+    private final String questionContent;
+
+    private final String answerContent;
+
+    public AnswerSummary(final Integer id, final UUID uuid, final String questionContent, final String answerContent) {
+        this.id = id;
+        this.uuid = uuid;
+        this.questionContent = questionContent;
+        this.answerContent = answerContent;
+    }
+
+    public AnswerSummary(final Integer id, final UUID uuid, final String answerContent) {
+        this(id, uuid, null, answerContent);
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public String getQuestionContent() {
+        return questionContent;
+    }
+
+    public String getAnswerContent() {
+        return answerContent;
+    }
+}
@@ -0,0 +1,83 @@
+package com.upgrad.quora.service.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Outcome of one item of a bulk request, at the position of the item in the request. A created item carries the uuid
+ * it was stored under; a rejected or failed item carries the error code and message instead.
+ */
+public final class BulkItemResult {
+
+    public enum Status {
+        // stored
+        CREATED,
+        // not valid, not sent to the database
+        REJECTED,
+        // valid, but the chunk it was written in was rolled back
+        FAILED
+    }
+
+    private final int index;
+
+    private final Status status;
+
+    private final UUID uuid;
+
+    private final String code;
+
+    private final String message;
+
+    private BulkItemResult(final int index, final Status status, final UUID uuid, final String code, final String message) {
+        this.index = index;
+        this.status = status;
+        this.uuid = uuid;
+        this.code = code;
+        this.message = message;
+    }
+
+    public static BulkItemResult created(final int index, final UUID uuid) {
+        return new BulkItemResult(index, Status.CREATED, uuid, null, null);
+    }
+
+    public static BulkItemResult rejected(final int index, final String code, final String message) {
+        return new BulkItemResult(index, Status.REJECTED, null, code, message);
+    }
+
+    public static BulkItemResult failed(final int index, final String code, final String message) {
+        return new BulkItemResult(index, Status.FAILED, null, code, message);
+    }
+
+    /**
+     * @return number of the results with the given status
+     */
+    public static int count(final List<BulkItemResult> results, final Status status) {
+        int count = 0;
+        for (final BulkItemResult result : results) {
+            if (result.getStatus() == status) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
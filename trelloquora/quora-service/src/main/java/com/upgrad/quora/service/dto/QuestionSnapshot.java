@@ -0,0 +1,50 @@
+package com.upgrad.quora.service.dto;
+
+import java.sql.Timestamp;
+import java.util.UUID;
+
+/**
+ * Immutable snapshot of a question held by the QuestionCache: the question itself and the id of its owner, as read
+ * from the question table. The owner is referenced by id, read from the foreign key column without a join.
+ */
+public final class QuestionSnapshot {
+
+    private final Integer id;
+
+    private final UUID uuid;
+
+    private final String content;
+
+    private final long dateMillis;
+
+    private final Integer userId;
+
+    public QuestionSnapshot(final Integer id, final UUID uuid, final String content, final Timestamp date,
+                            final Integer userId) {
+        this.id = id;
+        this.uuid = uuid;
+        this.content = content;
+        this.dateMillis = date.getTime();
+        this.userId = userId;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public Timestamp getDate() {
+        return new Timestamp(dateMillis);
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+}
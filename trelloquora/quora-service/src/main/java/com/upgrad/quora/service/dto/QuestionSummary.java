@@ -0,0 +1,42 @@
+package com.upgrad.quora.service.dto;
+
+import java.sql.Timestamp;
+import java.util.UUID;
+
+/**
+ * Read-only projection of a question for list endpoints. It carries the fields the responses need, plus the date and
+ * id which position the question in keyset-paginated listings, and is never attached to a persistence context.
+ */
+public final class QuestionSummary {
+
+    private final Integer id;
+
+    private final UUID uuid;
+
+    private final String content;
+
+    private final Timestamp date;
+
+    public QuestionSummary(final Integer id, final UUID uuid, final String content, final Timestamp date) {
+        this.id = id;
+        this.uuid = uuid;
+        this.content = content;
+        this.date = date;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public Timestamp getDate() {
+        return date;
+    }
+}
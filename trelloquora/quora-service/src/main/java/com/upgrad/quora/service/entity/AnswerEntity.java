@@ -4,33 +4,45 @@ import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.Type;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import java.io.Serializable;
 import java.sql.Timestamp;
+import java.util.UUID;
 
 @Entity
 @Table(name = "answer")
 @NamedQueries(
         {
                 @NamedQuery(name = "answerByAnswerUuid", query = "select u from AnswerEntity u where u.uuid = :uuid"),
-                @NamedQuery(name = "answersByQuestionid", query = "select u from AnswerEntity u where u.question.id = :id")
+                @NamedQuery(name = "answersByQuestionUuid", query = "select new com.upgrad.quora.service.dto.AnswerSummary(u.id, u.uuid, q.content, u.ans) from QuestionEntity q left join AnswerEntity u on u.question = q where q.uuid = :uuid order by u.id"),
+                @NamedQuery(name = "answerSummariesByQuestionId", query = "select new com.upgrad.quora.service.dto.AnswerSummary(u.id, u.uuid, u.ans) from AnswerEntity u where u.question.id = :id order by u.id"),
+                @NamedQuery(name = "answerSummariesAfterId", query = "select new com.upgrad.quora.service.dto.AnswerSummary(u.id, u.uuid, u.ans) from AnswerEntity u where u.question.id = :id and u.id > :afterId order by u.id")
         }
 )
+@NamedEntityGraph(name = "AnswerEntity.user", attributeNodes = @NamedAttributeNode("user"))
 
 public class AnswerEntity implements Serializable {
 
 
+    // allocated pooled-lo from answer_id_seq in blocks of its INCREMENT BY, so answers created together are batched
     @Id
     @Column(name = "ID")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "answer_id")
+    @GenericGenerator(name = "answer_id", strategy = PooledSequenceGenerator.STRATEGY, parameters = {
+            @Parameter(name = "sequence_name", value = "answer_id_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
     private Integer id;
 
     @Column(name = "UUID")
-    @Size(max = 60)
-    private String uuid;
+    @Type(type = "pg-uuid")
+    private UUID uuid;
 
     @Column(name = "ANS")
     @NotNull
@@ -41,11 +53,11 @@ public class AnswerEntity implements Serializable {
     @NotNull
     private Timestamp date;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "USER_ID")
     private UserEntity user;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "QUESTION_ID")
     private QuestionEntity question;
 
@@ -57,11 +69,11 @@ public class AnswerEntity implements Serializable {
         this.id = id;
     }
 
-    public String getUuid() {
+    public UUID getUuid() {
         return uuid;
     }
 
-    public void setUuid(String uuid) {
+    public void setUuid(UUID uuid) {
         this.uuid = uuid;
     }
 
@@ -0,0 +1,34 @@
+package com.upgrad.quora.service.entity;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Sequence generator of the entity ids whose increment_size can be set per sequence with the property
+ * quora.id-allocation.[sequence_name].increment-size, which IdAllocationConfiguration hands to Hibernate, instead of in
+ * the @GenericGenerator of the entity, which then only gives the default. The sequence must be altered to the same
+ * INCREMENT BY, which IdSequenceValidator checks at startup.
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String STRATEGY = "com.upgrad.quora.service.entity.PooledSequenceGenerator";
+
+    public static final String INCREMENT_SIZE_SETTING = "quora.id-allocation.%s.increment-size";
+
+    @Override
+    public void configure(final Type type, final Properties params, final ServiceRegistry serviceRegistry)
+            throws MappingException {
+        final String sequenceName = params.getProperty(SEQUENCE_PARAM);
+        final Object incrementSize = serviceRegistry.getService(ConfigurationService.class).getSettings()
+                .get(String.format(INCREMENT_SIZE_SETTING, sequenceName));
+        if (sequenceName != null && incrementSize != null) {
+            params.setProperty(INCREMENT_PARAM, incrementSize.toString().trim());
+        }
+        super.configure(type, params, serviceRegistry);
+    }
+}
@@ -4,12 +4,16 @@ import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.Type;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import java.io.Serializable;
 import java.sql.Timestamp;
+import java.util.UUID;
 
 @Entity
 @Table(name = "question")
@@ -17,22 +21,31 @@ import java.sql.Timestamp;
 @NamedQueries(
         {
                 @NamedQuery(name = "questionByUuid", query = "select q from QuestionEntity q where q.uuid = :uuid"),
-                @NamedQuery(name = "questions", query = "select q from QuestionEntity q"),
-                @NamedQuery(name = "questionsByUser", query = "select q from QuestionEntity q where q.user.uuid = :uuid")
+                @NamedQuery(name = "questionSnapshotByUuid", query = "select new com.upgrad.quora.service.dto.QuestionSnapshot(q.id, q.uuid, q.content, q.date, q.user.id) from QuestionEntity q where q.uuid = :uuid"),
+                @NamedQuery(name = "questionsFirstPage", query = "select new com.upgrad.quora.service.dto.QuestionSummary(q.id, q.uuid, q.content, q.date) from QuestionEntity q order by q.date desc, q.id desc"),
+                @NamedQuery(name = "questionsAfterCursor", query = "select new com.upgrad.quora.service.dto.QuestionSummary(q.id, q.uuid, q.content, q.date) from QuestionEntity q where q.date <= :date and (q.date < :date or q.id < :id) order by q.date desc, q.id desc"),
+                @NamedQuery(name = "questionsByUserUuid", query = "select new com.upgrad.quora.service.dto.QuestionSummary(q.id, q.uuid, q.content, q.date) from UserEntity u left join QuestionEntity q on q.user = u where u.uuid = :uuid order by q.date desc, q.id desc")
         }
 )
+@NamedEntityGraph(name = "QuestionEntity.user", attributeNodes = @NamedAttributeNode("user"))
 
 public class QuestionEntity implements Serializable {
 
 
+    // allocated pooled-lo from question_id_seq, whose INCREMENT BY must stay equal to increment_size: ids are then
+    // known at persist time and the inserts of a flush go out as one JDBC batch
     @Id
     @Column(name = "ID")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "question_id")
+    @GenericGenerator(name = "question_id", strategy = PooledSequenceGenerator.STRATEGY, parameters = {
+            @Parameter(name = "sequence_name", value = "question_id_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
     private Integer id;
 
     @Column(name = "UUID")
-    @Size(max = 60)
-    private String uuid;
+    @Type(type = "pg-uuid")
+    private UUID uuid;
 
     @Column(name = "CONTENT")
     @NotNull
@@ -43,7 +56,7 @@ public class QuestionEntity implements Serializable {
     @NotNull
     private Timestamp date;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "USER_ID")
     private UserEntity user;
 
@@ -55,11 +68,11 @@ public class QuestionEntity implements Serializable {
         this.id = id;
     }
 
-    public String getUuid() {
+    public UUID getUuid() {
         return uuid;
     }
 
-    public void setUuid(String uuid) {
+    public void setUuid(UUID uuid) {
         this.uuid = uuid;
     }
 
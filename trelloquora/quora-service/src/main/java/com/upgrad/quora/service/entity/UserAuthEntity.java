@@ -4,43 +4,72 @@ import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.Type;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import java.io.Serializable;
 import java.time.ZonedDateTime;
+import java.util.UUID;
 
 @Entity
 @Table(name = "user_auth"/*, schema = "quora"*/)
 @NamedQueries(
     {
         @NamedQuery(name = "userAuthByAccessToken",
-                query = "select ua from UserAuthEntity ua where ua.accessToken = :accessToken")
+                query = "select ua from UserAuthEntity ua where ua.accessToken = :accessToken"),
+        @NamedQuery(name = "userAuthByAccessTokenDigest",
+                query = "select ua from UserAuthEntity ua where ua.accessTokenDigest = :accessTokenDigest"),
+        @NamedQuery(name = "refreshUserAuth",
+                query = "update UserAuthEntity ua set ua.accessToken = :accessToken, ua.accessTokenDigest = :accessTokenDigest, ua.expiresAt = :expiresAt" +
+                        " where ua.id = :id and ua.expiresAt = :currentExpiresAt and ua.logoutAt is null"),
+        @NamedQuery(name = "staleUserAuthIds",
+                query = "select ua.id from UserAuthEntity ua where ua.expiresAt < :cutoff or ua.logoutAt < :cutoff"),
+        @NamedQuery(name = "deleteUserAuthByIds",
+                query = "delete from UserAuthEntity ua where ua.id in :ids"),
+        @NamedQuery(name = "liveAccessTokens",
+                query = "select ua.accessToken from UserAuthEntity ua where ua.expiresAt > :now and ua.accessToken is not null")
     }
 )
+@NamedEntityGraph(name = "UserAuthEntity.user", attributeNodes = @NamedAttributeNode("user"))
 
 public class UserAuthEntity implements Serializable {
 
+    // one nextval of user_auth_id_seq reserves the ids of the next 50 sessions of this node
     @Id
     @Column(name = "ID")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_auth_id")
+    @GenericGenerator(name = "user_auth_id", strategy = PooledSequenceGenerator.STRATEGY, parameters = {
+            @Parameter(name = "sequence_name", value = "user_auth_id_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
     private Integer id;
 
     @Column(name = "UUID")
-    @Size(max = 60)
-    private String uuid;
+    @Type(type = "pg-uuid")
+    private UUID uuid;
 
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "USER_ID")
     private UserEntity user;
 
+    // JWT sessions store the token itself, opaque sessions only the SHA-256 digest of the token
     @Column(name = "ACCESS_TOKEN")
-    @NotNull
     @Size(max = 500)
     private String accessToken;
 
+    @Column(name = "ACCESS_TOKEN_DIGEST")
+    @Size(min = 32, max = 32)
+    private byte[] accessTokenDigest;
+
+    // token handed to the client at signin, not persisted
+    @Transient
+    private String issuedToken;
+
     @Column(name = "EXPIRES_AT")
     @NotNull
     private ZonedDateTime expiresAt;
@@ -60,11 +89,11 @@ public class UserAuthEntity implements Serializable {
         this.id = id;
     }
 
-    public String getUuid() {
+    public UUID getUuid() {
         return uuid;
     }
 
-    public void setUuid(String uuid) {
+    public void setUuid(UUID uuid) {
         this.uuid = uuid;
     }
 
@@ -84,6 +113,22 @@ public class UserAuthEntity implements Serializable {
         this.accessToken = accessToken;
     }
 
+    public byte[] getAccessTokenDigest() {
+        return accessTokenDigest;
+    }
+
+    public void setAccessTokenDigest(byte[] accessTokenDigest) {
+        this.accessTokenDigest = accessTokenDigest;
+    }
+
+    public String getIssuedToken() {
+        return issuedToken;
+    }
+
+    public void setIssuedToken(String issuedToken) {
+        this.issuedToken = issuedToken;
+    }
+
     public ZonedDateTime getExpiresAt() {
         return expiresAt;
     }
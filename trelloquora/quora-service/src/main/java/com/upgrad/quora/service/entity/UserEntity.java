@@ -4,36 +4,69 @@ import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.Type;
 
 import javax.persistence.*;
 import javax.validation.constraints.*;
 import java.io.Serializable;
+import java.util.UUID;
 
 @Entity
 @Table(name = "users"/*, schema = "quora"*/) //schema not required for public DB schema
 @NamedQueries(
         {
                 @NamedQuery(name = "userByUsername",
-                        query = "select u from UserEntity u where u.username = :username"),
+                        query = "select u from UserEntity u where u.username = :username",
+                        hints = {
+                                @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+                                @QueryHint(name = "org.hibernate.cacheRegion", value = UserEntity.QUERY_CACHE_REGION)
+                        }),
                 @NamedQuery(name = "userByEmail",
-                        query = "select u from UserEntity u where u.email = :email"),
-                @NamedQuery(name = "userByUuid",
-                        query = "select u from UserEntity u where u.uuid = :uuid")
+                        query = "select u from UserEntity u where u.email = :email",
+                        hints = {
+                                @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+                                @QueryHint(name = "org.hibernate.cacheRegion", value = UserEntity.QUERY_CACHE_REGION)
+                        })
         }
 )
+// users are read on every signin, signup and profile view and almost never written, so they are kept in the
+// second-level cache; the regions are sized in ehcache.xml
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = UserEntity.CACHE_REGION)
+@NaturalIdCache(region = UserEntity.NATURAL_ID_CACHE_REGION)
 
 
 public class UserEntity implements Serializable {
 
+    public static final String CACHE_REGION = "quora.user";
+
+    public static final String NATURAL_ID_CACHE_REGION = "quora.user.natural-id";
+
+    // results of the username and email lookups; Hibernate allows a single natural id per entity, which is the uuid
+    public static final String QUERY_CACHE_REGION = "quora.user.query";
+
+    // allocated pooled-lo from users_id_seq, a block of 10 ids per nextval; signups are rare, so a node restarting
+    // leaves few unused ids behind
     @Id
     @Column(name = "ID")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_id")
+    @GenericGenerator(name = "users_id", strategy = PooledSequenceGenerator.STRATEGY, parameters = {
+            @Parameter(name = "sequence_name", value = "users_id_seq"),
+            @Parameter(name = "increment_size", value = "10"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
     private Integer id;
 
+    @NaturalId
     @Column(name = "UUID")
+    @Type(type = "pg-uuid")
     @NotNull
-    @Size(max = 200)
-    private String uuid;
+    private UUID uuid;
 
     @Column(name = "FIRSTNAME")
     @NotNull
@@ -94,11 +127,11 @@ public class UserEntity implements Serializable {
         this.id = id;
     }
 
-    public String getUuid() {
+    public UUID getUuid() {
         return uuid;
     }
 
-    public void setUuid(String uuid) {
+    public void setUuid(UUID uuid) {
         this.uuid = uuid;
     }
 
@@ -0,0 +1,47 @@
+package com.upgrad.quora.service.exception;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+
+/**
+ * ServiceUnavailableException is thrown when the server is too busy to accept a request; the client should retry after the given delay.
+ */
+public class ServiceUnavailableException extends Exception {
+    private final String code;
+    private final String errorMessage;
+    private final long retryAfterSeconds;
+
+    public ServiceUnavailableException(final String code, final String errorMessage, final long retryAfterSeconds) {
+        this.code = code;
+        this.errorMessage = errorMessage;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public void printStackTrace() {
+        super.printStackTrace();
+    }
+
+    @Override
+    public void printStackTrace(PrintStream s) {
+        super.printStackTrace(s);
+    }
+
+    @Override
+    public void printStackTrace(PrintWriter s) {
+        super.printStackTrace(s);
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+}